@@ -0,0 +1,218 @@
+package com.demo.outwindowvideo.kernel;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 每帧不透明区域的包围盒，随视频一起离线生成（视频文件名加 {@link #SUFFIX}）
+ * <p>
+ * 出框视频大部分区域是全透明的，渲染器用包围盒裁剪绘制范围，全透明的帧直接不画。包围盒是输出画面里的
+ * 归一化坐标 (left, top, right, bottom)，原点在左上角，与视图尺寸无关；left >= right 表示整帧透明。
+ * <p>
+ * 生成方式：用 {@link Builder} 逐帧传入解码出的打包帧和它的时间戳，再 {@link #write(OutputStream)} 到文件；
+ * 已经导出成图片的帧可以直接交给 {@link AlphaBoundsTool}。
+ *
+ * @since 2026/10/17
+ */
+public final class AlphaBoundsIndex {
+
+    public static final String SUFFIX = ".bounds";
+    private static final int FILE_MAGIC = 0x41424931;
+
+    private final long[] timestampsUs;
+    /**
+     * 每帧4个值
+     */
+    private final float[] boxes;
+
+    private AlphaBoundsIndex(long[] timestampsUs, float[] boxes) {
+        this.timestampsUs = timestampsUs;
+        this.boxes = boxes;
+    }
+
+    public int size() {
+        return timestampsUs.length;
+    }
+
+    /**
+     * 取 [positionUs - toleranceUs, positionUs + toleranceUs] 内所有帧包围盒的并集
+     * <p>
+     * 播放位置不精确时用容差覆盖前后几帧，结果只会比真实包围盒大，不会裁掉可见内容
+     *
+     * @param out 长度为4，写入并集；全部透明时 left >= right
+     * @return 范围内没有帧时返回false，此时不知道包围盒，应绘制全部
+     */
+    public boolean boundsAround(long positionUs, long toleranceUs, float[] out) {
+        int index = Arrays.binarySearch(timestampsUs, positionUs - toleranceUs);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        while (index > 0 && timestampsUs[index - 1] == positionUs - toleranceUs) {
+            index--;
+        }
+        long end = positionUs + toleranceUs;
+        boolean found = false;
+        out[0] = 1f;
+        out[1] = 1f;
+        out[2] = 0f;
+        out[3] = 0f;
+        for (; index < timestampsUs.length && timestampsUs[index] <= end; index++) {
+            found = true;
+            int offset = index * 4;
+            if (boxes[offset] >= boxes[offset + 2]) {
+                continue;
+            }
+            out[0] = Math.min(out[0], boxes[offset]);
+            out[1] = Math.min(out[1], boxes[offset + 1]);
+            out[2] = Math.max(out[2], boxes[offset + 2]);
+            out[3] = Math.max(out[3], boxes[offset + 3]);
+        }
+        return found;
+    }
+
+    /**
+     * 把包围盒换算成 glScissor 的参数（左下角为原点的像素），向外取整并留出1像素给线性过滤
+     *
+     * @param out x, y, width, height
+     */
+    public static void toScissor(float[] box, int width, int height, int[] out) {
+        int left = Math.max(0, (int) Math.floor(box[0] * width) - 1);
+        int right = Math.min(width, (int) Math.ceil(box[2] * width) + 1);
+        int bottom = Math.max(0, (int) Math.floor((1f - box[3]) * height) - 1);
+        int top = Math.min(height, (int) Math.ceil((1f - box[1]) * height) + 1);
+        out[0] = left;
+        out[1] = bottom;
+        out[2] = Math.max(0, right - left);
+        out[3] = Math.max(0, top - bottom);
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(FILE_MAGIC);
+        data.writeInt(timestampsUs.length);
+        for (int i = 0; i < timestampsUs.length; i++) {
+            data.writeLong(timestampsUs[i]);
+            for (int j = 0; j < 4; j++) {
+                data.writeFloat(boxes[i * 4 + j]);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * @return 文件内容不完整或格式不对时返回null
+     */
+    public static AlphaBoundsIndex read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        try {
+            if (data.readInt() != FILE_MAGIC) {
+                return null;
+            }
+            int count = data.readInt();
+            if (count < 0) {
+                return null;
+            }
+            Builder builder = new Builder();
+            for (int i = 0; i < count; i++) {
+                builder.addFrame(data.readLong(), data.readFloat(), data.readFloat(), data.readFloat(),
+                        data.readFloat());
+            }
+            if (data.read() != -1) {
+                return null;
+            }
+            return builder.build();
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 离线生成索引，帧可以乱序传入
+     */
+    public static final class Builder {
+        private long[] timestampsUs = new long[64];
+        private float[] boxes = new float[64 * 4];
+        private int size;
+        private int threshold;
+
+        /**
+         * 透明度大于该值（0~255）的像素才算不透明，默认0。压缩噪声较大的视频可以适当调高
+         */
+        public Builder setThreshold(int threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * 从打包帧的透明度部分计算包围盒
+         *
+         * @param packed ARGB 像素，自上而下逐行排列，透明度取 r 通道，尺寸与 layout 一致
+         */
+        public Builder addFrame(long timestampUs, int[] packed, PackedLayout layout) {
+            int packedWidth = layout.packedWidth;
+            int x0 = layout.alphaX;
+            int y0 = layout.alphaY;
+            int width = layout.alphaWidth;
+            int height = layout.alphaHeight;
+            int minX = width;
+            int minY = height;
+            int maxX = -1;
+            int maxY = -1;
+            for (int y = 0; y < height; y++) {
+                int row = (y + y0) * packedWidth + x0;
+                for (int x = 0; x < width; x++) {
+                    if (((packed[row + x] >> 16) & 0xff) > threshold) {
+                        minX = Math.min(minX, x);
+                        maxX = Math.max(maxX, x);
+                        minY = Math.min(minY, y);
+                        maxY = Math.max(maxY, y);
+                    }
+                }
+            }
+            if (maxX < 0) {
+                return addFrame(timestampUs, 0f, 0f, 0f, 0f);
+            }
+            // 向外多留一个源像素，线性过滤会采到相邻像素
+            return addFrame(timestampUs,
+                    Math.max(0, minX - 1) / (float) width,
+                    Math.max(0, minY - 1) / (float) height,
+                    Math.min(width, maxX + 2) / (float) width,
+                    Math.min(height, maxY + 2) / (float) height);
+        }
+
+        public Builder addFrame(long timestampUs, float left, float top, float right, float bottom) {
+            if (size == timestampsUs.length) {
+                timestampsUs = Arrays.copyOf(timestampsUs, size * 2);
+                boxes = Arrays.copyOf(boxes, size * 2 * 4);
+            }
+            timestampsUs[size] = timestampUs;
+            boxes[size * 4] = left;
+            boxes[size * 4 + 1] = top;
+            boxes[size * 4 + 2] = right;
+            boxes[size * 4 + 3] = bottom;
+            size++;
+            return this;
+        }
+
+        public AlphaBoundsIndex build() {
+            // 按时间戳排序，查询时二分
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(timestampsUs[a], timestampsUs[b]));
+            long[] sortedTimestamps = new long[size];
+            float[] sortedBoxes = new float[size * 4];
+            for (int i = 0; i < size; i++) {
+                sortedTimestamps[i] = timestampsUs[order[i]];
+                System.arraycopy(boxes, order[i] * 4, sortedBoxes, i * 4, 4);
+            }
+            return new AlphaBoundsIndex(sortedTimestamps, sortedBoxes);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.demo.outwindowvideo.kernel;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+/**
+ * 把导出成图片的打包帧生成 {@link AlphaBoundsIndex} 文件，放到视频旁边（视频文件名加 {@link AlphaBoundsIndex#SUFFIX}）
+ * <p>
+ * 帧按文件名排序，时间戳按固定帧率推算，例如：
+ * <pre>
+ * ffmpeg -i frontVideo.mp4 frames/%05d.png
+ * java -cp alphakernel.jar com.demo.outwindowvideo.kernel.AlphaBoundsTool left 25 frames frontVideo.mp4
+ * </pre>
+ * 布局名与 app 的 AlphaModel 对应：left、right、top、bottom 是透明度所在的一半，
+ * right-half、right-quarter 是彩色右侧窄条里缩小2倍、4倍的透明度。
+ *
+ * @since 2026/10/17
+ */
+public final class AlphaBoundsTool {
+
+    private AlphaBoundsTool() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("usage: AlphaBoundsTool <layout> <fps> <frames dir> <video> [threshold]");
+            System.exit(2);
+        }
+        double fps = Double.parseDouble(args[1]);
+        File[] frames = new File(args[2]).listFiles((dir, name) -> name.endsWith(".png"));
+        if (frames == null || frames.length == 0) {
+            throw new IOException("no png frames in " + args[2]);
+        }
+        Arrays.sort(frames);
+        AlphaBoundsIndex.Builder builder = new AlphaBoundsIndex.Builder();
+        if (args.length > 4) {
+            builder.setThreshold(Integer.parseInt(args[4]));
+        }
+        PackedLayout layout = null;
+        int[] packed = null;
+        for (int i = 0; i < frames.length; i++) {
+            BufferedImage image = ImageIO.read(frames[i]);
+            if (image == null) {
+                throw new IOException("unreadable frame " + frames[i]);
+            }
+            int width = image.getWidth();
+            int height = image.getHeight();
+            if (layout == null || layout.packedWidth != width || layout.packedHeight != height) {
+                layout = layout(args[0], width, height);
+                packed = new int[width * height];
+            }
+            image.getRGB(0, 0, width, height, packed, 0, width);
+            builder.addFrame(Math.round(i * 1_000_000L / fps), packed, layout);
+        }
+        File output = new File(args[3] + AlphaBoundsIndex.SUFFIX);
+        try (OutputStream out = new FileOutputStream(output)) {
+            builder.build().write(out);
+        }
+        System.out.println(frames.length + " frames -> " + output);
+    }
+
+    /**
+     * @param name 布局名，见类注释
+     */
+    static PackedLayout layout(String name, int packedWidth, int packedHeight) {
+        float[] left = {0f, 0f, 0.5f, 1f};
+        float[] right = {0.5f, 0f, 0.5f, 1f};
+        float[] top = {0f, 0f, 1f, 0.5f};
+        float[] bottom = {0f, 0.5f, 1f, 0.5f};
+        switch (name) {
+            case "left":
+                return PackedLayout.of(packedWidth, packedHeight, right, left);
+            case "right":
+                return PackedLayout.of(packedWidth, packedHeight, left, right);
+            case "top":
+                return PackedLayout.of(packedWidth, packedHeight, bottom, top);
+            case "bottom":
+                return PackedLayout.of(packedWidth, packedHeight, top, bottom);
+            case "right-half":
+                return strip(packedWidth, packedHeight, 0.5f);
+            case "right-quarter":
+                return strip(packedWidth, packedHeight, 0.25f);
+            default:
+                throw new IllegalArgumentException("unknown layout " + name);
+        }
+    }
+
+    /**
+     * 彩色宽 W，右边窄条宽 W * scale，透明度缩小 scale 倍后放在窄条顶部
+     */
+    private static PackedLayout strip(int packedWidth, int packedHeight, float scale) {
+        return PackedLayout.of(packedWidth, packedHeight, new float[]{0f, 0f, 1f / (1f + scale), 1f},
+                new float[]{1f / (1f + scale), 0f, scale / (1f + scale), scale});
+    }
+}
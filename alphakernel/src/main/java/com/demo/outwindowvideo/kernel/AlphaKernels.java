@@ -0,0 +1,369 @@
+package com.demo.outwindowvideo.kernel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 在CPU上把打包的彩色 + 透明度视频帧合成为带透明度的像素，用于封面、缩略图和GL不可用的设备
+ * <p>
+ * 输入输出两种形式：
+ * <ul>
+ * <li>{@code int[]}：ARGB 像素（与 android.graphics.Color 相同），自上而下逐行排列，行宽等于帧宽；</li>
+ * <li>{@link ByteBuffer}：逐字节 R、G、B、A（如 ImageReader 的 RGBA_8888、glReadPixels），行距单独指定；</li>
+ * <li>{@link YuvPlanes}：解码器直接输出的 YUV 4:2:0（ImageReader 的 YUV_420_888），只作输入，输出为 RGBA 字节。</li>
+ * </ul>
+ * 透明度取自透明度区域的 r 通道。直通输出 (rgb, a) 可交给 Bitmap.setPixels；预乘输出 (rgb * a, a)
+ * 与 Bitmap 的内存格式相同，可以直接 copyPixelsFromBuffer。
+ * <p>
+ * 合成过程不分配内存。并行版本按行切分交给 {@link ForkJoinPool}，只为切分出的任务分配少量对象。
+ *
+ * @since 2026/10/17
+ */
+public final class AlphaKernels {
+
+    /**
+     * 并行时每个任务至少处理的行数，更少时调度开销比合成本身还大
+     */
+    static final int MIN_ROWS_PER_TASK = 16;
+
+    private AlphaKernels() {
+    }
+
+    // region int[]
+    /**
+     * @param packed 打包的帧，长度至少为 packedWidth * packedHeight
+     * @param out    输出，长度至少为 width * height
+     */
+    public static void composite(int[] packed, PackedLayout layout, boolean premultiplied, int[] out) {
+        checkSize(packed.length, layout.packedWidth * layout.packedHeight);
+        checkSize(out.length, layout.width * layout.height);
+        compositeRows(packed, layout, premultiplied, out, 0, layout.height);
+    }
+
+    public static void compositeParallel(ForkJoinPool pool, final int[] packed, final PackedLayout layout,
+                                         final boolean premultiplied, final int[] out) {
+        checkSize(packed.length, layout.packedWidth * layout.packedHeight);
+        checkSize(out.length, layout.width * layout.height);
+        pool.invoke(new RowTask(new Rows() {
+            @Override
+            public void compute(int from, int to) {
+                compositeRows(packed, layout, premultiplied, out, from, to);
+            }
+        }, 0, layout.height, rowsPerTask(pool, layout.height)));
+    }
+
+    static void compositeRows(int[] packed, PackedLayout layout, boolean premultiplied, int[] out,
+                              int fromRow, int toRow) {
+        int stride = layout.packedWidth;
+        int width = layout.width;
+        boolean fullResolution = layout.isFullResolutionAlpha();
+        for (int y = fromRow; y < toRow; y++) {
+            int colorRow = (y + layout.colorY) * stride + layout.colorX;
+            int outRow = y * width;
+            if (fullResolution) {
+                int alphaRow = (y + layout.alphaY) * stride + layout.alphaX;
+                for (int x = 0; x < width; x++) {
+                    int a = (packed[alphaRow + x] >> 16) & 0xff;
+                    out[outRow + x] = pixel(packed[colorRow + x], a, premultiplied);
+                }
+            } else {
+                int top = (layout.rowTop[y] + layout.alphaY) * stride + layout.alphaX;
+                int bottom = (layout.rowBottom[y] + layout.alphaY) * stride + layout.alphaX;
+                int fy = layout.rowWeight[y];
+                for (int x = 0; x < width; x++) {
+                    int left = layout.columnLeft[x];
+                    int right = layout.columnRight[x];
+                    int fx = layout.columnWeight[x];
+                    int upper = ((packed[top + left] >> 16) & 0xff) * (256 - fx)
+                            + ((packed[top + right] >> 16) & 0xff) * fx;
+                    int lower = ((packed[bottom + left] >> 16) & 0xff) * (256 - fx)
+                            + ((packed[bottom + right] >> 16) & 0xff) * fx;
+                    int a = (upper * (256 - fy) + lower * fy + 32768) >> 16;
+                    out[outRow + x] = pixel(packed[colorRow + x], a, premultiplied);
+                }
+            }
+        }
+    }
+
+    private static int pixel(int color, int a, boolean premultiplied) {
+        if (!premultiplied) {
+            return a << 24 | (color & 0xffffff);
+        }
+        return a << 24 | multiply((color >> 16) & 0xff, a) << 16 | multiply((color >> 8) & 0xff, a) << 8
+                | multiply(color & 0xff, a);
+    }
+    // endregion
+
+    // region ByteBuffer
+    /**
+     * 只用绝对位置读写，不改变两个缓冲区的 position
+     *
+     * @param packed          打包的帧，RGBA 字节
+     * @param packedRowStride 输入每行的字节数，至少 packedWidth * 4
+     * @param out             输出，RGBA 字节
+     * @param outRowStride    输出每行的字节数，至少 width * 4
+     */
+    public static void composite(ByteBuffer packed, int packedRowStride, PackedLayout layout, boolean premultiplied,
+                                 ByteBuffer out, int outRowStride) {
+        checkBuffer(packed, packedRowStride, layout.packedWidth, layout.packedHeight);
+        checkBuffer(out, outRowStride, layout.width, layout.height);
+        compositeRows(packed, packedRowStride, layout, premultiplied, out, outRowStride, 0, layout.height);
+    }
+
+    public static void compositeParallel(ForkJoinPool pool, final ByteBuffer packed, final int packedRowStride,
+                                         final PackedLayout layout, final boolean premultiplied,
+                                         final ByteBuffer out, final int outRowStride) {
+        checkBuffer(packed, packedRowStride, layout.packedWidth, layout.packedHeight);
+        checkBuffer(out, outRowStride, layout.width, layout.height);
+        pool.invoke(new RowTask(new Rows() {
+            @Override
+            public void compute(int from, int to) {
+                compositeRows(packed, packedRowStride, layout, premultiplied, out, outRowStride, from, to);
+            }
+        }, 0, layout.height, rowsPerTask(pool, layout.height)));
+    }
+
+    static void compositeRows(ByteBuffer packed, int stride, PackedLayout layout, boolean premultiplied,
+                              ByteBuffer out, int outStride, int fromRow, int toRow) {
+        int width = layout.width;
+        boolean fullResolution = layout.isFullResolutionAlpha();
+        for (int y = fromRow; y < toRow; y++) {
+            int colorRow = (y + layout.colorY) * stride + layout.colorX * 4;
+            int outRow = y * outStride;
+            int top;
+            int bottom = 0;
+            int fy = 0;
+            if (fullResolution) {
+                top = (y + layout.alphaY) * stride + layout.alphaX * 4;
+            } else {
+                top = (layout.rowTop[y] + layout.alphaY) * stride + layout.alphaX * 4;
+                bottom = (layout.rowBottom[y] + layout.alphaY) * stride + layout.alphaX * 4;
+                fy = layout.rowWeight[y];
+            }
+            for (int x = 0; x < width; x++) {
+                int a;
+                if (fullResolution) {
+                    a = packed.get(top + x * 4) & 0xff;
+                } else {
+                    int left = layout.columnLeft[x] * 4;
+                    int right = layout.columnRight[x] * 4;
+                    int fx = layout.columnWeight[x];
+                    int upper = (packed.get(top + left) & 0xff) * (256 - fx) + (packed.get(top + right) & 0xff) * fx;
+                    int lower = (packed.get(bottom + left) & 0xff) * (256 - fx)
+                            + (packed.get(bottom + right) & 0xff) * fx;
+                    a = (upper * (256 - fy) + lower * fy + 32768) >> 16;
+                }
+                int src = colorRow + x * 4;
+                int dst = outRow + x * 4;
+                int r = packed.get(src) & 0xff;
+                int g = packed.get(src + 1) & 0xff;
+                int b = packed.get(src + 2) & 0xff;
+                if (premultiplied) {
+                    r = multiply(r, a);
+                    g = multiply(g, a);
+                    b = multiply(b, a);
+                }
+                out.put(dst, (byte) r);
+                out.put(dst + 1, (byte) g);
+                out.put(dst + 2, (byte) b);
+                out.put(dst + 3, (byte) a);
+            }
+        }
+    }
+    // endregion
+
+    // region YUV 4:2:0
+    /**
+     * 亮度、色度到 RGB 的各项（BT.601 有限范围，定点 8 位小数），按字节值查表
+     */
+    private static final int[] LUMA = new int[256];
+    private static final int[] RED_V = new int[256];
+    private static final int[] GREEN_U = new int[256];
+    private static final int[] GREEN_V = new int[256];
+    private static final int[] BLUE_U = new int[256];
+    /**
+     * 亮度扩展到全范围，透明度区域是灰度，解码后的 r 就是它
+     */
+    private static final int[] ALPHA = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            LUMA[i] = 298 * (i - 16) + 128;
+            RED_V[i] = 409 * (i - 128);
+            GREEN_U[i] = -100 * (i - 128);
+            GREEN_V[i] = -208 * (i - 128);
+            BLUE_U[i] = 516 * (i - 128);
+            ALPHA[i] = clamp(LUMA[i] >> 8);
+        }
+    }
+
+    /**
+     * 直接合成解码器输出的 YUV 帧，省掉一次 RGB 转换。透明度在亮度上插值后再扩展到全范围。
+     * 只用绝对位置读写，不改变缓冲区的 position
+     *
+     * @param out          输出，RGBA 字节
+     * @param outRowStride 输出每行的字节数，至少 width * 4
+     */
+    public static void compositeYuv(YuvPlanes frame, PackedLayout layout, boolean premultiplied,
+                                    ByteBuffer out, int outRowStride) {
+        checkPlanes(frame, layout);
+        checkBuffer(out, outRowStride, layout.width, layout.height);
+        compositeYuvRows(frame, layout, premultiplied, out, outRowStride, 0, layout.height);
+    }
+
+    public static void compositeYuvParallel(ForkJoinPool pool, final YuvPlanes frame, final PackedLayout layout,
+                                            final boolean premultiplied, final ByteBuffer out,
+                                            final int outRowStride) {
+        checkPlanes(frame, layout);
+        checkBuffer(out, outRowStride, layout.width, layout.height);
+        pool.invoke(new RowTask(new Rows() {
+            @Override
+            public void compute(int from, int to) {
+                compositeYuvRows(frame, layout, premultiplied, out, outRowStride, from, to);
+            }
+        }, 0, layout.height, rowsPerTask(pool, layout.height)));
+    }
+
+    static void compositeYuvRows(YuvPlanes frame, PackedLayout layout, boolean premultiplied,
+                                 ByteBuffer out, int outStride, int fromRow, int toRow) {
+        ByteBuffer luma = frame.y;
+        ByteBuffer u = frame.u;
+        ByteBuffer v = frame.v;
+        int stride = frame.yRowStride;
+        int uvStride = frame.uvRowStride;
+        int uvPixelStride = frame.uvPixelStride;
+        int width = layout.width;
+        boolean fullResolution = layout.isFullResolutionAlpha();
+        for (int y = fromRow; y < toRow; y++) {
+            int packedY = y + layout.colorY;
+            int colorRow = packedY * stride + layout.colorX;
+            int chromaRow = (packedY >> 1) * uvStride;
+            int outRow = y * outStride;
+            int top;
+            int bottom = 0;
+            int fy = 0;
+            if (fullResolution) {
+                top = (y + layout.alphaY) * stride + layout.alphaX;
+            } else {
+                top = (layout.rowTop[y] + layout.alphaY) * stride + layout.alphaX;
+                bottom = (layout.rowBottom[y] + layout.alphaY) * stride + layout.alphaX;
+                fy = layout.rowWeight[y];
+            }
+            for (int x = 0; x < width; x++) {
+                int a;
+                if (fullResolution) {
+                    a = ALPHA[luma.get(top + x) & 0xff];
+                } else {
+                    int left = layout.columnLeft[x];
+                    int right = layout.columnRight[x];
+                    int fx = layout.columnWeight[x];
+                    int upper = (luma.get(top + left) & 0xff) * (256 - fx) + (luma.get(top + right) & 0xff) * fx;
+                    int lower = (luma.get(bottom + left) & 0xff) * (256 - fx)
+                            + (luma.get(bottom + right) & 0xff) * fx;
+                    a = ALPHA[(upper * (256 - fy) + lower * fy + 32768) >> 16];
+                }
+                int chroma = chromaRow + ((x + layout.colorX) >> 1) * uvPixelStride;
+                int l = LUMA[luma.get(colorRow + x) & 0xff];
+                int cb = u.get(chroma) & 0xff;
+                int cr = v.get(chroma) & 0xff;
+                int r = clamp((l + RED_V[cr]) >> 8);
+                int g = clamp((l + GREEN_U[cb] + GREEN_V[cr]) >> 8);
+                int b = clamp((l + BLUE_U[cb]) >> 8);
+                if (premultiplied) {
+                    r = multiply(r, a);
+                    g = multiply(g, a);
+                    b = multiply(b, a);
+                }
+                int dst = outRow + x * 4;
+                out.put(dst, (byte) r);
+                out.put(dst + 1, (byte) g);
+                out.put(dst + 2, (byte) b);
+                out.put(dst + 3, (byte) a);
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : value > 255 ? 255 : value;
+    }
+
+    private static void checkPlanes(YuvPlanes frame, PackedLayout layout) {
+        if (frame.y == null) {
+            throw new IllegalArgumentException("planes not set");
+        }
+        int width = layout.packedWidth;
+        int height = layout.packedHeight;
+        if (frame.yRowStride < width || frame.y.limit() < frame.yRowStride * (height - 1) + width) {
+            throw new IllegalArgumentException("luma plane too small for " + width + "x" + height);
+        }
+        int chromaLast = frame.uvRowStride * ((height + 1) / 2 - 1) + ((width + 1) / 2 - 1) * frame.uvPixelStride + 1;
+        if (frame.uvPixelStride < 1 || frame.u.limit() < chromaLast || frame.v.limit() < chromaLast) {
+            throw new IllegalArgumentException("chroma planes too small for " + width + "x" + height);
+        }
+    }
+    // endregion
+
+    /**
+     * 两个归一化的8位值相乘并四舍五入，等于 (c * a + 127) / 255，不用除法
+     */
+    static int multiply(int c, int a) {
+        int t = c * a + 128;
+        return (t + (t >> 8)) >> 8;
+    }
+
+    private static int rowsPerTask(ForkJoinPool pool, int height) {
+        // 每个线程分到几块，便于空闲线程窃取
+        int tasks = pool.getParallelism() * 4;
+        return Math.max(MIN_ROWS_PER_TASK, (height + tasks - 1) / tasks);
+    }
+
+    private static void checkSize(int length, int required) {
+        if (length < required) {
+            throw new IllegalArgumentException("array length " + length + " < " + required);
+        }
+    }
+
+    private static void checkBuffer(ByteBuffer buffer, int rowStride, int width, int height) {
+        if (rowStride < width * 4) {
+            throw new IllegalArgumentException("row stride " + rowStride + " < " + width * 4);
+        }
+        if (buffer.limit() < rowStride * (height - 1) + width * 4) {
+            throw new IllegalArgumentException("buffer limit " + buffer.limit() + " too small");
+        }
+    }
+
+    private interface Rows {
+        void compute(int fromRow, int toRow);
+    }
+
+    /**
+     * 把 [from, to) 行对半切分，直到不超过 rowsPerTask
+     */
+    private static final class RowTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Rows rows;
+        private final int from;
+        private final int to;
+        private final int rowsPerTask;
+
+        RowTask(Rows rows, int from, int to, int rowsPerTask) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.rowsPerTask = rowsPerTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= rowsPerTask) {
+                rows.compute(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RowTask(rows, from, middle, rowsPerTask), new RowTask(rows, middle, to, rowsPerTask));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.demo.outwindowvideo.kernel;
+
+import java.util.Arrays;
+
+/**
+ * 离线把带透明度的帧打包成 {@link PackedLayout} 布局，再交给视频编码器
+ * <p>
+ * 彩色部分保留原始 rgb，透明度写成灰度（r = g = b = a）。透明度区域比彩色区域小时先做方块平均，
+ * 窄条里没用到的部分填黑，编码后几乎不占码率。
+ *
+ * @since 2026/10/17
+ */
+public final class AlphaPacker {
+
+    private static final int OPAQUE = 0xff000000;
+
+    private AlphaPacker() {
+    }
+
+    /**
+     * @param width     原始帧宽，即彩色区域的宽度
+     * @param height    原始帧高，同上
+     * @param colorRect 彩色区域 (x, y, 宽, 高)，纹理坐标
+     * @param alphaRect 透明度区域，同上
+     * @return 彩色区域正好是 width x height 的布局
+     */
+    public static PackedLayout layout(int width, int height, float[] colorRect, float[] alphaRect) {
+        PackedLayout layout = PackedLayout.of(Math.round(width / colorRect[2]), Math.round(height / colorRect[3]),
+                colorRect, alphaRect);
+        if (layout.width != width || layout.height != height) {
+            throw new IllegalArgumentException("size " + width + "x" + height + " does not fit the layout");
+        }
+        return layout;
+    }
+
+    /**
+     * @param argb   ARGB 像素，自上而下逐行排列，尺寸为 layout 的彩色区域
+     * @param layout 透明度区域要求是彩色区域按整数倍等比缩小
+     * @return 打包后的帧，尺寸为 layout 的 packedWidth x packedHeight
+     */
+    public static int[] pack(int[] argb, PackedLayout layout) {
+        int width = layout.width;
+        int height = layout.height;
+        int scale = width / layout.alphaWidth;
+        if (layout.alphaWidth * scale != width || layout.alphaHeight * scale != height) {
+            throw new IllegalArgumentException("alpha " + layout.alphaWidth + "x" + layout.alphaHeight
+                    + " is not an integer downscale of " + width + "x" + height);
+        }
+        if (argb.length < width * height) {
+            throw new IllegalArgumentException("argb length " + argb.length + " < " + width * height);
+        }
+        int packedWidth = layout.packedWidth;
+        int[] packed = new int[packedWidth * layout.packedHeight];
+        Arrays.fill(packed, OPAQUE);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                packed[(y + layout.colorY) * packedWidth + x + layout.colorX] = OPAQUE | argb[y * width + x];
+            }
+        }
+
+        int area = scale * scale;
+        for (int y = 0; y < layout.alphaHeight; y++) {
+            for (int x = 0; x < layout.alphaWidth; x++) {
+                int sum = 0;
+                for (int dy = 0; dy < scale; dy++) {
+                    int row = (y * scale + dy) * width + x * scale;
+                    for (int dx = 0; dx < scale; dx++) {
+                        sum += argb[row + dx] >>> 24;
+                    }
+                }
+                int a = (sum + area / 2) / area;
+                packed[(y + layout.alphaY) * packedWidth + x + layout.alphaX] = OPAQUE | a << 16 | a << 8 | a;
+            }
+        }
+        return packed;
+    }
+}
@@ -0,0 +1,113 @@
+package com.demo.outwindowvideo.kernel;
+
+/**
+ * 一帧打包视频中彩色和透明度两个区域的像素位置
+ * <p>
+ * 由 (x, y, 宽, 高) 的纹理坐标区域（0~1，原点在左上角）换算成像素，彩色区域与输出1:1，
+ * 透明度区域可以比彩色区域小，合成时双线性放大（与GPU线性过滤一致，像素中心对齐，越界取边缘）。
+ * 放大用的坐标和权重在创建时算好，合成时不再分配内存，同一尺寸的视频应复用同一个实例。
+ *
+ * @since 2026/10/17
+ */
+public final class PackedLayout {
+
+    final int packedWidth;
+    final int packedHeight;
+    final int colorX;
+    final int colorY;
+    final int width;
+    final int height;
+    final int alphaX;
+    final int alphaY;
+    final int alphaWidth;
+    final int alphaHeight;
+    /**
+     * 透明度需要放大时，每个输出列/行对应的两个源像素（相对透明度区域）和后一个的权重（0~256）；不需要时为null
+     */
+    final int[] columnLeft;
+    final int[] columnRight;
+    final int[] columnWeight;
+    final int[] rowTop;
+    final int[] rowBottom;
+    final int[] rowWeight;
+
+    private PackedLayout(int packedWidth, int packedHeight, float[] colorRect, float[] alphaRect) {
+        this.packedWidth = packedWidth;
+        this.packedHeight = packedHeight;
+        colorX = Math.round(colorRect[0] * packedWidth);
+        colorY = Math.round(colorRect[1] * packedHeight);
+        width = Math.round(colorRect[2] * packedWidth);
+        height = Math.round(colorRect[3] * packedHeight);
+        alphaX = Math.round(alphaRect[0] * packedWidth);
+        alphaY = Math.round(alphaRect[1] * packedHeight);
+        alphaWidth = Math.round(alphaRect[2] * packedWidth);
+        alphaHeight = Math.round(alphaRect[3] * packedHeight);
+        if (width <= 0 || height <= 0 || alphaWidth <= 0 || alphaHeight <= 0
+                || colorX < 0 || colorY < 0 || colorX + width > packedWidth || colorY + height > packedHeight
+                || alphaX < 0 || alphaY < 0 || alphaX + alphaWidth > packedWidth
+                || alphaY + alphaHeight > packedHeight) {
+            throw new IllegalArgumentException("regions do not fit in " + packedWidth + "x" + packedHeight);
+        }
+        if (isFullResolutionAlpha()) {
+            columnLeft = columnRight = columnWeight = null;
+            rowTop = rowBottom = rowWeight = null;
+        } else {
+            columnLeft = new int[width];
+            columnRight = new int[width];
+            columnWeight = new int[width];
+            computeTaps(width, alphaWidth, columnLeft, columnRight, columnWeight);
+            rowTop = new int[height];
+            rowBottom = new int[height];
+            rowWeight = new int[height];
+            computeTaps(height, alphaHeight, rowTop, rowBottom, rowWeight);
+        }
+    }
+
+    /**
+     * 输出的第 i 个像素中心对应源坐标 (i + 0.5) * src / dst - 0.5
+     */
+    private static void computeTaps(int dst, int src, int[] first, int[] second, int[] weight) {
+        for (int i = 0; i < dst; i++) {
+            double position = (i + 0.5) * src / dst - 0.5;
+            position = Math.max(0, Math.min(src - 1, position));
+            int index = (int) position;
+            first[i] = index;
+            second[i] = Math.min(src - 1, index + 1);
+            weight[i] = (int) Math.round((position - index) * 256);
+        }
+    }
+
+    /**
+     * @param colorRect 彩色区域 (x, y, 宽, 高)，纹理坐标
+     * @param alphaRect 透明度区域，同上
+     */
+    public static PackedLayout of(int packedWidth, int packedHeight, float[] colorRect, float[] alphaRect) {
+        return new PackedLayout(packedWidth, packedHeight, colorRect, alphaRect);
+    }
+
+    public int getPackedWidth() {
+        return packedWidth;
+    }
+
+    public int getPackedHeight() {
+        return packedHeight;
+    }
+
+    /**
+     * @return 输出宽度，等于彩色区域的宽度
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return 输出高度，等于彩色区域的高度
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    boolean isFullResolutionAlpha() {
+        return alphaWidth == width && alphaHeight == height;
+    }
+}
@@ -0,0 +1,44 @@
+package com.demo.outwindowvideo.kernel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 一帧 YUV 4:2:0 的三个平面，对应 ImageReader 的 YUV_420_888
+ * <p>
+ * 亮度平面每像素一字节；两个色度平面宽高各减半，像素间隔为1（I420/YV12）或2（NV12/NV21 交错）。
+ * 可变，每帧 {@link #set} 一次后复用，不分配内存。
+ *
+ * @since 2026/10/17
+ */
+public final class YuvPlanes {
+
+    ByteBuffer y;
+    int yRowStride;
+    ByteBuffer u;
+    ByteBuffer v;
+    int uvRowStride;
+    int uvPixelStride;
+
+    /**
+     * @param yRowStride    亮度平面每行的字节数
+     * @param uvRowStride   色度平面每行的字节数，两个色度平面相同
+     * @param uvPixelStride 色度平面相邻像素的字节间隔，两个色度平面相同
+     */
+    public YuvPlanes set(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v, int uvRowStride,
+                         int uvPixelStride) {
+        this.y = y;
+        this.yRowStride = yRowStride;
+        this.u = u;
+        this.v = v;
+        this.uvRowStride = uvRowStride;
+        this.uvPixelStride = uvPixelStride;
+        return this;
+    }
+
+    /**
+     * 不再持有缓冲区，Image 关闭后缓冲区就失效了
+     */
+    public void clear() {
+        y = u = v = null;
+    }
+}
@@ -0,0 +1,141 @@
+package com.demo.outwindowvideo.kernel;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * 包围盒的离线计算、文件格式和按播放位置查询
+ */
+public class AlphaBoundsIndexTest {
+
+    private static final float DELTA = 1e-6f;
+
+    @Test
+    public void boxFromAlphaHalfIsPaddedBySourcePixel() {
+        // 左边 8x4 是透明度，只有 (3,1)、(4,2) 两个像素不透明
+        int width = 16;
+        int height = 4;
+        int[] packed = new int[width * height];
+        packed[width + 3] = 0xffff0000;
+        packed[2 * width + 4] = 0xff800000;
+        // 彩色部分不影响结果
+        packed[width - 1] = 0xffffffff;
+        AlphaBoundsIndex index = new AlphaBoundsIndex.Builder()
+                .addFrame(0, packed, AlphaBoundsTool.layout("left", width, height))
+                .build();
+
+        float[] box = new float[4];
+        assertTrue(index.boundsAround(0, 0, box));
+        assertArrayEquals(new float[]{2 / 8f, 0 / 4f, 6 / 8f, 4 / 4f}, box, DELTA);
+    }
+
+    @Test
+    public void transparentFrameHasEmptyBox() {
+        int[] packed = new int[8 * 8];
+        Arrays.fill(packed, 0xff080808);
+        AlphaBoundsIndex index = new AlphaBoundsIndex.Builder()
+                .setThreshold(8)
+                .addFrame(0, packed, AlphaBoundsTool.layout("bottom", 8, 8))
+                .build();
+
+        float[] box = new float[4];
+        assertTrue(index.boundsAround(0, 0, box));
+        assertTrue(box[0] >= box[2]);
+    }
+
+    @Test
+    public void queryUnitesFramesWithinTolerance() {
+        AlphaBoundsIndex index = new AlphaBoundsIndex.Builder()
+                .addFrame(66_000, 0.5f, 0.5f, 0.6f, 0.6f)
+                .addFrame(0, 0.1f, 0.2f, 0.3f, 0.4f)
+                .addFrame(33_000, 0f, 0f, 0f, 0f)
+                .build();
+        float[] box = new float[4];
+
+        assertTrue(index.boundsAround(0, 10_000, box));
+        assertArrayEquals(new float[]{0.1f, 0.2f, 0.3f, 0.4f}, box, DELTA);
+
+        assertTrue(index.boundsAround(33_000, 10_000, box));
+        assertTrue(box[0] >= box[2]);
+
+        assertTrue(index.boundsAround(40_000, 30_000, box));
+        assertArrayEquals(new float[]{0.5f, 0.5f, 0.6f, 0.6f}, box, DELTA);
+
+        assertTrue(index.boundsAround(33_000, 40_000, box));
+        assertArrayEquals(new float[]{0.1f, 0.2f, 0.6f, 0.6f}, box, DELTA);
+
+        // 超出索引范围时不知道包围盒
+        assertFalse(index.boundsAround(200_000, 10_000, box));
+    }
+
+    @Test
+    public void scissorIsBottomUpAndRoundedOutward() {
+        int[] scissor = new int[4];
+        AlphaBoundsIndex.toScissor(new float[]{0.25f, 0f, 0.5f, 0.5f}, 100, 200, scissor);
+        assertArrayEquals(new int[]{24, 99, 27, 101}, scissor);
+
+        AlphaBoundsIndex.toScissor(new float[]{0f, 0f, 1f, 1f}, 100, 200, scissor);
+        assertArrayEquals(new int[]{0, 0, 100, 200}, scissor);
+    }
+
+    @Test
+    public void fileRoundTrip() throws Exception {
+        AlphaBoundsIndex index = new AlphaBoundsIndex.Builder()
+                .addFrame(0, 0.1f, 0.2f, 0.3f, 0.4f)
+                .addFrame(33_000, 0f, 0f, 0f, 0f)
+                .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.write(out);
+        byte[] file = out.toByteArray();
+
+        AlphaBoundsIndex read = AlphaBoundsIndex.read(new ByteArrayInputStream(file));
+        assertNotNull(read);
+        assertEquals(2, read.size());
+        float[] box = new float[4];
+        assertTrue(read.boundsAround(0, 0, box));
+        assertArrayEquals(new float[]{0.1f, 0.2f, 0.3f, 0.4f}, box, DELTA);
+
+        assertNull(AlphaBoundsIndex.read(new ByteArrayInputStream(Arrays.copyOf(file, file.length - 1))));
+        assertNull(AlphaBoundsIndex.read(new ByteArrayInputStream(new byte[4])));
+    }
+
+    @Test
+    public void toolWritesSidecarNextToVideo() throws Exception {
+        File dir = Files.createTempDirectory("bounds").toFile();
+        File frames = new File(dir, "frames");
+        assertTrue(frames.mkdir());
+        // 右侧窄条的透明度缩小4倍：彩色 8x4，窄条 2x4，透明度占顶部 2x1
+        for (int i = 0; i < 2; i++) {
+            BufferedImage image = new BufferedImage(10, 4, BufferedImage.TYPE_INT_ARGB);
+            image.setRGB(8 + i, 0, 0xffffffff);
+            assertTrue(ImageIO.write(image, "png", new File(frames, "0000" + i + ".png")));
+        }
+        File video = new File(dir, "front.mp4");
+        AlphaBoundsTool.main(new String[]{"right-quarter", "25", frames.getPath(), video.getPath()});
+
+        AlphaBoundsIndex index;
+        try (InputStream in = new FileInputStream(video.getPath() + AlphaBoundsIndex.SUFFIX)) {
+            index = AlphaBoundsIndex.read(in);
+        }
+        assertNotNull(index);
+        assertEquals(2, index.size());
+        float[] box = new float[4];
+        assertTrue(index.boundsAround(0, 0, box));
+        assertArrayEquals(new float[]{0f, 0f, 1f, 1f}, box, DELTA);
+        assertTrue(index.boundsAround(40_000, 0, box));
+        assertArrayEquals(new float[]{0f, 0f, 1f, 1f}, box, DELTA);
+        assertFalse(index.boundsAround(20_000, 0, box));
+    }
+}
@@ -0,0 +1,215 @@
+package com.demo.outwindowvideo.kernel;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * 不同入口的合成结果必须一致
+ */
+public class AlphaKernelsTest {
+
+    // 左彩色、右侧窄条顶部半分辨率透明度
+    private static final float[] STRIP_COLOR = {0f, 0f, 2f / 3f, 1f};
+    private static final float[] STRIP_ALPHA = {2f / 3f, 0f, 1f / 3f, 0.5f};
+    private static final float[] TOP_HALF = {0f, 0f, 1f, 0.5f};
+    private static final float[] BOTTOM_HALF = {0f, 0.5f, 1f, 0.5f};
+
+    @Test
+    public void multiplyRoundsLikeDivision() {
+        for (int c = 0; c < 256; c++) {
+            for (int a = 0; a < 256; a++) {
+                assertEquals((c * a + 127) / 255, AlphaKernels.multiply(c, a));
+            }
+        }
+    }
+
+    @Test
+    public void parallelMatchesSerial() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (PackedLayout layout : new PackedLayout[]{
+                    PackedLayout.of(96, 200, BOTTOM_HALF, TOP_HALF),
+                    PackedLayout.of(96, 100, STRIP_COLOR, STRIP_ALPHA)}) {
+                int[] packed = randomPixels(layout.getPackedWidth() * layout.getPackedHeight());
+                int[] serial = new int[layout.getWidth() * layout.getHeight()];
+                int[] parallel = new int[serial.length];
+                AlphaKernels.composite(packed, layout, true, serial);
+                AlphaKernels.compositeParallel(pool, packed, layout, true, parallel);
+                assertArrayEquals(serial, parallel);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void byteBufferMatchesIntArray() {
+        PackedLayout layout = PackedLayout.of(48, 32, STRIP_COLOR, STRIP_ALPHA);
+        int[] packed = randomPixels(48 * 32);
+        // 行尾带填充，和 ImageReader 的 rowStride 一样
+        int packedStride = 48 * 4 + 12;
+        ByteBuffer packedBytes = ByteBuffer.allocateDirect(packedStride * 32);
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 48; x++) {
+                int c = packed[y * 48 + x];
+                int i = y * packedStride + x * 4;
+                packedBytes.put(i, (byte) (c >> 16));
+                packedBytes.put(i + 1, (byte) (c >> 8));
+                packedBytes.put(i + 2, (byte) c);
+                packedBytes.put(i + 3, (byte) (c >>> 24));
+            }
+        }
+        for (boolean premultiplied : new boolean[]{false, true}) {
+            int[] expected = new int[32 * 32];
+            AlphaKernels.composite(packed, layout, premultiplied, expected);
+            int outStride = 32 * 4 + 4;
+            ByteBuffer out = ByteBuffer.allocate(outStride * 32);
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            AlphaKernels.compositeParallel(pool, packedBytes, packedStride, layout, premultiplied, out, outStride);
+            assertEquals(0, out.position());
+            for (int y = 0; y < 32; y++) {
+                for (int x = 0; x < 32; x++) {
+                    int i = y * outStride + x * 4;
+                    int actual = (out.get(i + 3) & 0xff) << 24 | (out.get(i) & 0xff) << 16
+                            | (out.get(i + 1) & 0xff) << 8 | (out.get(i + 2) & 0xff);
+                    assertEquals(expected[y * 32 + x], actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void yuvLimitedRangeEndpoints() {
+        PackedLayout layout = PackedLayout.of(4, 4, BOTTOM_HALF, TOP_HALF);
+        byte[] luma = {
+                (byte) 235, (byte) 235, 16, 16,
+                (byte) 235, (byte) 235, 16, 16,
+                (byte) 235, 16, (byte) 235, 16,
+                (byte) 235, 16, (byte) 235, 16};
+        byte[] chroma = {(byte) 128, (byte) 128, (byte) 128, (byte) 128};
+        YuvPlanes frame = new YuvPlanes().set(ByteBuffer.wrap(luma), 4, ByteBuffer.wrap(chroma),
+                ByteBuffer.wrap(chroma), 2, 1);
+        ByteBuffer out = ByteBuffer.allocate(4 * 2 * 4);
+        AlphaKernels.compositeYuv(frame, layout, false, out, 16);
+        // 第一行：白色不透明、黑色不透明、白色全透明、黑色全透明
+        assertEquals(0xffffffff, out.getInt(0));
+        assertEquals(0x000000ff, out.getInt(4));
+        assertEquals(0xffffff00, out.getInt(8));
+        assertEquals(0x00000000, out.getInt(12));
+    }
+
+    @Test
+    public void yuvMatchesDecodedRgb() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            PackedLayout layout = PackedLayout.of(96, 200, BOTTOM_HALF, TOP_HALF);
+            int[] ys = new int[96 * 200];
+            Random random = new Random(7);
+            for (int i = 0; i < ys.length; i++) {
+                ys[i] = random.nextInt(256);
+            }
+            int[] us = new int[48 * 100];
+            int[] vs = new int[48 * 100];
+            for (int i = 0; i < us.length; i++) {
+                // 透明度区域（上半）是灰度
+                boolean alphaRegion = i / 48 < 50;
+                us[i] = alphaRegion ? 128 : random.nextInt(256);
+                vs[i] = alphaRegion ? 128 : random.nextInt(256);
+            }
+            int[] decoded = new int[ys.length];
+            for (int i = 0; i < ys.length; i++) {
+                int c = (i / 96 / 2) * 48 + (i % 96) / 2;
+                decoded[i] = decode(ys[i], us[c], vs[c]);
+            }
+            int[] expected = new int[96 * 100];
+            AlphaKernels.composite(decoded, layout, true, expected);
+
+            // I420（色度各自成平面）和 NV12（色度交错）两种内存布局
+            for (int uvPixelStride = 1; uvPixelStride <= 2; uvPixelStride++) {
+                YuvPlanes frame = planes(ys, 96, 200, us, vs, uvPixelStride);
+                int outStride = 96 * 4 + 8;
+                ByteBuffer serial = ByteBuffer.allocate(outStride * 100);
+                ByteBuffer parallel = ByteBuffer.allocate(outStride * 100);
+                AlphaKernels.compositeYuv(frame, layout, true, serial, outStride);
+                AlphaKernels.compositeYuvParallel(pool, frame, layout, true, parallel, outStride);
+                assertEquals(serial, parallel);
+                for (int y = 0; y < 100; y++) {
+                    for (int x = 0; x < 96; x++) {
+                        int i = y * outStride + x * 4;
+                        int actual = (serial.get(i + 3) & 0xff) << 24 | (serial.get(i) & 0xff) << 16
+                                | (serial.get(i + 1) & 0xff) << 8 | (serial.get(i + 2) & 0xff);
+                        assertEquals(expected[y * 96 + x], actual);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shortChromaPlaneIsRejected() {
+        PackedLayout layout = PackedLayout.of(8, 8, BOTTOM_HALF, TOP_HALF);
+        YuvPlanes frame = new YuvPlanes().set(ByteBuffer.allocate(64), 8, ByteBuffer.allocate(15),
+                ByteBuffer.allocate(16), 4, 1);
+        AlphaKernels.compositeYuv(frame, layout, false, ByteBuffer.allocate(8 * 4 * 4), 8 * 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void regionsOutsideFrameAreRejected() {
+        PackedLayout.of(10, 10, new float[]{0.5f, 0f, 1f, 1f}, TOP_HALF);
+    }
+
+    /**
+     * BT.601 有限范围，和GPU外部纹理采样的转换公式一致
+     */
+    private static int decode(int y, int u, int v) {
+        int c = 298 * (y - 16) + 128;
+        int r = Math.max(0, Math.min(255, (c + 409 * (v - 128)) >> 8));
+        int g = Math.max(0, Math.min(255, (c - 100 * (u - 128) - 208 * (v - 128)) >> 8));
+        int b = Math.max(0, Math.min(255, (c + 516 * (u - 128)) >> 8));
+        return 0xff000000 | r << 16 | g << 8 | b;
+    }
+
+    private static YuvPlanes planes(int[] ys, int width, int height, int[] us, int[] vs, int uvPixelStride) {
+        int yStride = width + 16;
+        ByteBuffer luma = ByteBuffer.allocateDirect(yStride * height);
+        for (int i = 0; i < ys.length; i++) {
+            luma.put(i / width * yStride + i % width, (byte) ys[i]);
+        }
+        int chromaWidth = width / 2;
+        int uvStride = chromaWidth * uvPixelStride + 8;
+        ByteBuffer u;
+        ByteBuffer v;
+        if (uvPixelStride == 1) {
+            u = ByteBuffer.allocateDirect(uvStride * height / 2);
+            v = ByteBuffer.allocateDirect(uvStride * height / 2);
+        } else {
+            // 和 NV12 一样两个平面共用一块内存，v 错开一个字节，比 u 短一个字节
+            ByteBuffer shared = ByteBuffer.allocateDirect(uvStride * height / 2);
+            u = shared.duplicate();
+            shared.position(1);
+            v = shared.slice();
+        }
+        for (int i = 0; i < us.length; i++) {
+            int offset = i / chromaWidth * uvStride + i % chromaWidth * uvPixelStride;
+            u.put(offset, (byte) us[i]);
+            v.put(offset, (byte) vs[i]);
+        }
+        return new YuvPlanes().set(luma, yStride, u, v, uvStride, uvPixelStride);
+    }
+
+    private static int[] randomPixels(int count) {
+        Random random = new Random(count);
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+}
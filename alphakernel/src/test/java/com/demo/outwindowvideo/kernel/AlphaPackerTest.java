@@ -0,0 +1,71 @@
+package com.demo.outwindowvideo.kernel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 打包后的像素位置、透明度的方块平均和合成结果
+ */
+public class AlphaPackerTest {
+
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 8;
+    // 左彩色、右侧窄条顶部缩小2倍、4倍的透明度
+    private static final float[] HALF_COLOR = {0f, 0f, 2f / 3f, 1f};
+    private static final float[] HALF_ALPHA = {2f / 3f, 0f, 1f / 3f, 0.5f};
+    private static final float[] QUARTER_COLOR = {0f, 0f, 0.8f, 1f};
+    private static final float[] QUARTER_ALPHA = {0.8f, 0f, 0.2f, 0.25f};
+    private static final float[] LEFT_HALF = {0f, 0f, 0.5f, 1f};
+    private static final float[] RIGHT_HALF = {0.5f, 0f, 0.5f, 1f};
+
+    @Test
+    public void layoutFitsSourceSize() {
+        PackedLayout half = AlphaPacker.layout(WIDTH, HEIGHT, HALF_COLOR, HALF_ALPHA);
+        assertEquals(24, half.getPackedWidth());
+        assertEquals(HEIGHT, half.getPackedHeight());
+        PackedLayout quarter = AlphaPacker.layout(WIDTH, HEIGHT, QUARTER_COLOR, QUARTER_ALPHA);
+        assertEquals(20, quarter.getPackedWidth());
+        assertEquals(WIDTH, quarter.getWidth());
+        assertEquals(HEIGHT, quarter.getHeight());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeNotMultipleOfDownscaleIsRejected() {
+        PackedLayout layout = AlphaPacker.layout(18, HEIGHT, QUARTER_COLOR, QUARTER_ALPHA);
+        AlphaPacker.pack(new int[18 * HEIGHT], layout);
+    }
+
+    @Test
+    public void alphaIsBoxAveraged() {
+        int[] argb = new int[WIDTH * HEIGHT];
+        // 左上 2x2 里一个像素不透明
+        argb[0] = 0xff102030;
+        int[] packed = AlphaPacker.pack(argb, AlphaPacker.layout(WIDTH, HEIGHT, HALF_COLOR, HALF_ALPHA));
+        int packedWidth = 24;
+        assertEquals(0xff102030, packed[0]);
+        // 透明度放在彩色右边的窄条顶部
+        assertEquals(0xff404040, packed[WIDTH]);
+        assertEquals(0xff000000, packed[WIDTH + 1]);
+        // 窄条下半部分没有用到
+        assertEquals(0xff000000, packed[(HEIGHT - 1) * packedWidth + WIDTH]);
+    }
+
+    @Test
+    public void uniformAlphaMatchesFullResolution() {
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = 0x80000000 | (i * 7 & 0xff) << 16 | (i * 3 & 0xff) << 8 | i;
+        }
+        int[] expected = composite(argb, LEFT_HALF, RIGHT_HALF);
+        assertArrayEquals(expected, composite(argb, HALF_COLOR, HALF_ALPHA));
+        assertArrayEquals(expected, composite(argb, QUARTER_COLOR, QUARTER_ALPHA));
+    }
+
+    private static int[] composite(int[] argb, float[] colorRect, float[] alphaRect) {
+        PackedLayout layout = AlphaPacker.layout(WIDTH, HEIGHT, colorRect, alphaRect);
+        int[] out = new int[WIDTH * HEIGHT];
+        AlphaKernels.composite(AlphaPacker.pack(argb, layout), layout, true, out);
+        return out;
+    }
+}
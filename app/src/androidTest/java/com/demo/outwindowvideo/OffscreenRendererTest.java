@@ -0,0 +1,98 @@
+package com.demo.outwindowvideo;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.view.Surface;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 离屏渲染的像素与CPU参考实现逐个比较
+ */
+@RunWith(AndroidJUnit4.class)
+public class OffscreenRendererTest {
+
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 8;
+    /**
+     * GPU混合的舍入误差
+     */
+    private static final int TOLERANCE = 2;
+
+    @Test
+    public void matchesCpuReference() throws Exception {
+        int[] packed = createPackedFrame();
+        int[] expected = AlphaFrameReference.composite(packed, WIDTH * 2, HEIGHT,
+                AlphaModel.VIDEO_TRANS_LEFT_ALPHA);
+
+        OffscreenRenderer offscreen = new OffscreenRenderer(AlphaModel.VIDEO_TRANS_LEFT_ALPHA, WIDTH, HEIGHT);
+        offscreen.setSourceBufferSize(WIDTH * 2, HEIGHT);
+        CountDownLatch surfaceReady = new CountDownLatch(1);
+        AtomicReference<Surface> surface = new AtomicReference<>();
+        offscreen.setOnSurfacePrepareListener(s -> {
+            surface.set(s);
+            surfaceReady.countDown();
+        });
+        CountDownLatch rendered = new CountDownLatch(1);
+        AtomicReference<byte[]> result = new AtomicReference<>();
+        offscreen.setOnFrameRenderedListener((rgba, width, height) -> {
+            byte[] copy = new byte[width * height * 4];
+            rgba.get(copy);
+            result.set(copy);
+            rendered.countDown();
+        });
+        offscreen.start();
+        try {
+            assertTrue(surfaceReady.await(5, TimeUnit.SECONDS));
+            Bitmap bitmap = Bitmap.createBitmap(WIDTH * 2, HEIGHT, Bitmap.Config.ARGB_8888);
+            bitmap.setPixels(packed, 0, WIDTH * 2, 0, 0, WIDTH * 2, HEIGHT);
+            Canvas canvas = surface.get().lockCanvas(null);
+            canvas.drawBitmap(bitmap, 0, 0, null);
+            surface.get().unlockCanvasAndPost(canvas);
+
+            assertTrue(rendered.await(5, TimeUnit.SECONDS));
+            assertPixelsClose(expected, result.get());
+        } finally {
+            offscreen.release();
+        }
+    }
+
+    /**
+     * 左半是渐变的透明度，右半是不透明的彩色
+     */
+    private static int[] createPackedFrame() {
+        int[] packed = new int[WIDTH * 2 * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int a = (x * HEIGHT + y) * 255 / (WIDTH * HEIGHT - 1);
+                packed[y * WIDTH * 2 + x] = Color.rgb(a, a, a);
+                packed[y * WIDTH * 2 + WIDTH + x] = Color.rgb(x * 16, y * 32, 200);
+            }
+        }
+        return packed;
+    }
+
+    private static void assertPixelsClose(int[] expected, byte[] rgba) {
+        for (int i = 0; i < expected.length; i++) {
+            int[] want = {Color.red(expected[i]), Color.green(expected[i]), Color.blue(expected[i]),
+                    Color.alpha(expected[i])};
+            for (int c = 0; c < 4; c++) {
+                int got = rgba[i * 4 + c] & 0xff;
+                if (Math.abs(got - want[c]) > TOLERANCE) {
+                    fail("pixel " + i + " channel " + c + ": expected " + want[c] + " but was " + got);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.demo.outwindowvideo;
+
+/**
+ * {@link AlphaVideoRenderer} 绘制结果的CPU参考实现，用于在没有GPU的环境校验着色器输出
+ * <p>
+ * 输入是一帧打包好的视频（彩色和黑白的透明度，布局见 {@link AlphaLayout}），输出是渲染器以1:1的像素比例画到清空为透明的缓冲区后的结果：
+ * 片元着色器输出 (rgb, a)，再经过 glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA) 与 (0, 0, 0, 0) 混合，
+ * 得到 (rgb * a, a * a)。预乘模式（{@link AlphaVideoRenderer#setPremultipliedAlpha(boolean)}）关闭混合，
+ * 着色器直接输出 (rgb * a, a)。
+ * <p>
+ * 像素均为 {@link android.graphics.Color} 的 ARGB 格式，自上而下逐行排列。
+ *
+ * @since 2026/10/17
+ */
+final class AlphaFrameReference {
+
+    private AlphaFrameReference() {
+    }
+
+    /**
+     * @return 输出宽度，等于彩色部分的宽度
+     */
+    static int outputWidth(int packedWidth, @AlphaModel int alphaModel) {
+        return Math.round(packedWidth * AlphaLayout.colorRect(alphaModel)[2]);
+    }
+
+    /**
+     * @return 输出高度，等于彩色部分的高度
+     */
+    static int outputHeight(int packedHeight, @AlphaModel int alphaModel) {
+        return Math.round(packedHeight * AlphaLayout.colorRect(alphaModel)[3]);
+    }
+
+    static int[] composite(int[] packed, int packedWidth, int packedHeight, @AlphaModel int alphaModel) {
+        return composite(packed, packedWidth, packedHeight, alphaModel, false);
+    }
+
+    static int[] composite(int[] packed, int packedWidth, int packedHeight, @AlphaModel int alphaModel,
+                           boolean premultiplied) {
+        int width = outputWidth(packedWidth, alphaModel);
+        int height = outputHeight(packedHeight, alphaModel);
+        int[] out = new int[width * height];
+        float[] colorRect = AlphaLayout.colorRect(alphaModel);
+        float[] alphaRect = AlphaLayout.alphaRect(alphaModel);
+        // 彩色部分与输出1:1，透明度部分可能缩小过，按GPU的线性过滤放大
+        int colorX = Math.round(colorRect[0] * packedWidth);
+        int colorY = Math.round(colorRect[1] * packedHeight);
+        int alphaX = Math.round(alphaRect[0] * packedWidth);
+        int alphaY = Math.round(alphaRect[1] * packedHeight);
+        int alphaWidth = Math.round(alphaRect[2] * packedWidth);
+        int alphaHeight = Math.round(alphaRect[3] * packedHeight);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int color = packed[(y + colorY) * packedWidth + x + colorX];
+                int a = sampleRed(packed, packedWidth, alphaX, alphaY, alphaWidth, alphaHeight,
+                        (x + 0.5f) * alphaWidth / width - 0.5f, (y + 0.5f) * alphaHeight / height - 0.5f);
+                int r = multiply((color >> 16) & 0xff, a);
+                int g = multiply((color >> 8) & 0xff, a);
+                int b = multiply(color & 0xff, a);
+                int outAlpha = premultiplied ? a : multiply(a, a);
+                out[y * width + x] = outAlpha << 24 | r << 16 | g << 8 | b;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 在 (left, top) 开始的 width * height 区域内对 r 通道做双线性采样，坐标以像素中心为整数，
+     * 超出区域时取边缘像素（对应着色器里的 clamp）
+     */
+    private static int sampleRed(int[] packed, int stride, int left, int top, int width, int height,
+                                 float x, float y) {
+        x = Math.max(0f, Math.min(width - 1, x));
+        y = Math.max(0f, Math.min(height - 1, y));
+        int x0 = (int) x;
+        int y0 = (int) y;
+        int x1 = Math.min(width - 1, x0 + 1);
+        int y1 = Math.min(height - 1, y0 + 1);
+        float fx = x - x0;
+        float fy = y - y0;
+        float upper = red(packed, stride, left + x0, top + y0) * (1 - fx)
+                + red(packed, stride, left + x1, top + y0) * fx;
+        float lower = red(packed, stride, left + x0, top + y1) * (1 - fx)
+                + red(packed, stride, left + x1, top + y1) * fx;
+        return Math.round(upper * (1 - fy) + lower * fy);
+    }
+
+    private static int red(int[] packed, int stride, int x, int y) {
+        return (packed[y * stride + x] >> 16) & 0xff;
+    }
+
+    /**
+     * 两个归一化的8位值相乘，四舍五入
+     */
+    static int multiply(int c, int a) {
+        return (c * a + 127) / 255;
+    }
+}
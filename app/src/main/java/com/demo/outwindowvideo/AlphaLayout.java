@@ -0,0 +1,128 @@
+package com.demo.outwindowvideo;
+
+import com.demo.outwindowvideo.kernel.PackedLayout;
+
+/**
+ * 彩色和透明度两部分在视频帧中的位置
+ * <p>
+ * 每个区域用 (x, y, 宽, 高) 表示，都是纹理坐标（0~1，原点在画面左上角）。着色器把输出的纹理坐标 uv
+ * 换算成 {@code rect.xy + uv * rect.zw} 分别采样两个区域，所以同一个着色器程序可以绘制所有 {@link AlphaModel}。
+ * 透明度区域比彩色区域小时（如 {@link AlphaModel#VIDEO_TRANS_RIGHT_HALF_ALPHA}），由纹理的线性过滤放大。
+ *
+ * @since 2026/10/17
+ */
+final class AlphaLayout {
+
+    private static final float[] LEFT_HALF = {0f, 0f, 0.5f, 1f};
+    private static final float[] RIGHT_HALF = {0.5f, 0f, 0.5f, 1f};
+    private static final float[] TOP_HALF = {0f, 0f, 1f, 0.5f};
+    private static final float[] BOTTOM_HALF = {0f, 0.5f, 1f, 0.5f};
+    // 彩色宽 W，右边窄条宽 W * scale，透明度缩小 scale 倍后放在窄条顶部
+    private static final float[] HALF_STRIP_COLOR = stripColorRect(0.5f);
+    private static final float[] HALF_STRIP_ALPHA = stripAlphaRect(0.5f);
+    private static final float[] QUARTER_STRIP_COLOR = stripColorRect(0.25f);
+    private static final float[] QUARTER_STRIP_ALPHA = stripAlphaRect(0.25f);
+
+    private AlphaLayout() {
+    }
+
+    /**
+     * @return 彩色部分的区域，不要修改返回的数组
+     */
+    static float[] colorRect(@AlphaModel int alphaModel) {
+        switch (alphaModel) {
+            case AlphaModel.VIDEO_TRANS_TOP_ALPHA:
+                return BOTTOM_HALF;
+            case AlphaModel.VIDEO_TRANS_BOTTOM_ALPHA:
+                return TOP_HALF;
+            case AlphaModel.VIDEO_TRANS_RIGHT_ALPHA:
+                return LEFT_HALF;
+            case AlphaModel.VIDEO_TRANS_RIGHT_HALF_ALPHA:
+                return HALF_STRIP_COLOR;
+            case AlphaModel.VIDEO_TRANS_RIGHT_QUARTER_ALPHA:
+                return QUARTER_STRIP_COLOR;
+            case AlphaModel.VIDEO_TRANS_LEFT_ALPHA:
+            default:
+                return RIGHT_HALF;
+        }
+    }
+
+    /**
+     * @return 透明度部分的区域，不要修改返回的数组
+     */
+    static float[] alphaRect(@AlphaModel int alphaModel) {
+        switch (alphaModel) {
+            case AlphaModel.VIDEO_TRANS_TOP_ALPHA:
+                return TOP_HALF;
+            case AlphaModel.VIDEO_TRANS_BOTTOM_ALPHA:
+                return BOTTOM_HALF;
+            case AlphaModel.VIDEO_TRANS_RIGHT_ALPHA:
+                return RIGHT_HALF;
+            case AlphaModel.VIDEO_TRANS_RIGHT_HALF_ALPHA:
+                return HALF_STRIP_ALPHA;
+            case AlphaModel.VIDEO_TRANS_RIGHT_QUARTER_ALPHA:
+                return QUARTER_STRIP_ALPHA;
+            case AlphaModel.VIDEO_TRANS_LEFT_ALPHA:
+            default:
+                return LEFT_HALF;
+        }
+    }
+
+    /**
+     * @return 透明度相对彩色的分辨率，1 表示相同
+     */
+    static int alphaDownscale(@AlphaModel int alphaModel) {
+        switch (alphaModel) {
+            case AlphaModel.VIDEO_TRANS_RIGHT_HALF_ALPHA:
+                return 2;
+            case AlphaModel.VIDEO_TRANS_RIGHT_QUARTER_ALPHA:
+                return 4;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * @return 彩色宽度为 width 时打包后的帧宽度
+     */
+    static int packedWidth(int width, @AlphaModel int alphaModel) {
+        switch (alphaModel) {
+            case AlphaModel.VIDEO_TRANS_LEFT_ALPHA:
+            case AlphaModel.VIDEO_TRANS_RIGHT_ALPHA:
+                return width * 2;
+            case AlphaModel.VIDEO_TRANS_RIGHT_HALF_ALPHA:
+            case AlphaModel.VIDEO_TRANS_RIGHT_QUARTER_ALPHA:
+                return width + width / alphaDownscale(alphaModel);
+            default:
+                return width;
+        }
+    }
+
+    /**
+     * @return 彩色高度为 height 时打包后的帧高度
+     */
+    static int packedHeight(int height, @AlphaModel int alphaModel) {
+        switch (alphaModel) {
+            case AlphaModel.VIDEO_TRANS_TOP_ALPHA:
+            case AlphaModel.VIDEO_TRANS_BOTTOM_ALPHA:
+                return height * 2;
+            default:
+                return height;
+        }
+    }
+
+    /**
+     * @return 供 {@link com.demo.outwindowvideo.kernel.AlphaKernels} 在CPU上合成用的像素布局
+     */
+    static PackedLayout packedLayout(int packedWidth, int packedHeight, @AlphaModel int alphaModel) {
+        return PackedLayout.of(packedWidth, packedHeight, colorRect(alphaModel), alphaRect(alphaModel));
+    }
+
+    private static float[] stripColorRect(float scale) {
+        return new float[]{0f, 0f, 1f / (1f + scale), 1f};
+    }
+
+    private static float[] stripAlphaRect(float scale) {
+        return new float[]{1f / (1f + scale), 0f, scale / (1f + scale), scale};
+    }
+}
@@ -12,7 +12,9 @@ import java.lang.annotation.RetentionPolicy;
         AlphaModel.VIDEO_TRANS_TOP_ALPHA,
         AlphaModel.VIDEO_TRANS_BOTTOM_ALPHA,
         AlphaModel.VIDEO_TRANS_LEFT_ALPHA,
-        AlphaModel.VIDEO_TRANS_RIGHT_ALPHA
+        AlphaModel.VIDEO_TRANS_RIGHT_ALPHA,
+        AlphaModel.VIDEO_TRANS_RIGHT_HALF_ALPHA,
+        AlphaModel.VIDEO_TRANS_RIGHT_QUARTER_ALPHA
 })
 @Retention(RetentionPolicy.SOURCE)
 public @interface AlphaModel {
@@ -24,4 +26,8 @@ public @interface AlphaModel {
     int VIDEO_TRANS_LEFT_ALPHA = 2;
     // 左边是彩色，右边是透明通道
     int VIDEO_TRANS_RIGHT_ALPHA = 3;
+    // 左边是彩色，右边窄条的上半部分是半分辨率（宽高各一半）的透明通道，整帧宽度是彩色的1.5倍
+    int VIDEO_TRANS_RIGHT_HALF_ALPHA = 4;
+    // 左边是彩色，右边窄条的顶部是四分之一分辨率的透明通道，整帧宽度是彩色的1.25倍
+    int VIDEO_TRANS_RIGHT_QUARTER_ALPHA = 5;
 }
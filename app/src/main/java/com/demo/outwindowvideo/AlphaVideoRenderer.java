@@ -5,6 +5,8 @@ import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
 import android.view.Surface;
 
+import com.demo.outwindowvideo.kernel.AlphaBoundsIndex;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
@@ -18,200 +20,164 @@ import javax.microedition.khronos.opengles.GL10;
  */
 public class AlphaVideoRenderer implements GLTextureView.Renderer, SurfaceTexture.OnFrameAvailableListener {
 
-    private final @AlphaModel
+    private volatile @AlphaModel
     int alphaModel;
 
     private static final int FLOAT_SIZE_BYTES = 4;
     private static final int TRIANGLE_VERTICES_DATA_STRIDE_BYTES = 4 * FLOAT_SIZE_BYTES;
     private static final int TRIANGLE_VERTICES_DATA_POS_OFFSET = 0;
-    private static final int TRIANGLE_VERTICES_DATA_UV_OFFSET = 2;
+    private static final int TRIANGLE_VERTICES_DATA_UV_OFFSET = 2 * FLOAT_SIZE_BYTES;
+    /**
+     * 链接前绑定的 attribute 位置
+     */
+    private static final int ATTRIB_POSITION = 0;
+    private static final int ATTRIB_TEX_COORD = 1;
 
 
     private FloatBuffer triangleVertices;
 
-    // 左右分布（包含左色彩右黑白、左黑白右色彩）的顶点坐标和纹理坐标，每四个中，前两位为顶点坐标，后两位为纹理坐标
-    private static final float[] horizontalVerticesData = {
-            -1.0f, 1.0f, 0.5f, 0.0f,
+    // 铺满视图的顶点坐标和纹理坐标，每四个中，前两位为顶点坐标，后两位为纹理坐标
+    private static final float[] verticesData = {
+            -1.0f, 1.0f, 0.0f, 0.0f,
             1.0f, 1.0f, 1.0f, 0.0f,
-            -1.0f, -1.0f, 0.5f, 1.0f,
-            1.0f, -1.0f, 1.0f, 1.0f,
-    };
-
-    // 上下分布（包含上色彩下黑白、上黑白下色彩）的顶点坐标和纹理坐标
-    private static final float[] verticalVerticesData = {
-            -1.0f, 1.0f, 0.0f, 0.5f,
-            1.0f, 1.0f, 1.0f, 0.5f,
             -1.0f, -1.0f, 0.0f, 1.0f,
             1.0f, -1.0f, 1.0f, 1.0f,
     };
 
+    /**
+     * 彩色和透明度区域由 uniform 传入（见 {@link AlphaLayout}），所有 {@link AlphaModel} 共用这一个程序。
+     * 采样坐标在顶点着色器里算好；透明度在片元着色器里限制在区域内半个像素，
+     * 缩小分辨率的透明度经线性过滤放大时不会混进相邻的彩色像素
+     */
     private static final String vertexShader = "attribute vec2 a_position;\n"
             + "attribute vec2 a_texCoord;\n"
-            + "varying vec2 v_texcoord;\n"
+            + "uniform vec4 u_colorRect;\n"
+            + "uniform vec4 u_alphaRect;\n"
+            + "varying vec2 v_colorCoord;\n"
+            + "varying vec2 v_alphaCoord;\n"
             + "void main(void) {\n"
             + "  gl_Position = vec4(a_position, 0.0, 1.0);\n"
-            + "  v_texcoord = a_texCoord;\n"
+            + "  v_colorCoord = u_colorRect.xy + a_texCoord * u_colorRect.zw;\n"
+            + "  v_alphaCoord = u_alphaRect.xy + a_texCoord * u_alphaRect.zw;\n"
             + "}\n";
 
-    /**
-     * 对应源视频要求为：左彩色、右黑白
-     */
-    private static final String rightAlphaShader = "#extension GL_OES_EGL_image_external : require\n"
+    private static final String fragmentShader = "#extension GL_OES_EGL_image_external : require\n"
             + "precision mediump float;\n"
-            + "varying vec2 v_texcoord;\n"
+            + "varying vec2 v_colorCoord;\n"
+            + "varying vec2 v_alphaCoord;\n"
             + "uniform samplerExternalOES sTexture;\n"
+            + "uniform vec4 u_alphaClamp;\n"
+            + "uniform float u_premultiplied;\n"
             + "void main() {\n"
-            + "  gl_FragColor = vec4(texture2D(sTexture, v_texcoord + vec2(-0.5, 0)).rgb, texture2D(sTexture, v_texcoord).r);\n"
+            + "  vec2 alphaCoord = clamp(v_alphaCoord, u_alphaClamp.xy, u_alphaClamp.zw);\n"
+            + "  float alpha = texture2D(sTexture, alphaCoord).r;\n"
+            + "  vec3 rgb = texture2D(sTexture, v_colorCoord).rgb;\n"
+            + "  gl_FragColor = vec4(rgb * mix(1.0, alpha, u_premultiplied), alpha);\n"
             + "}\n";
 
 
+    private int program;
+    private int colorRectLocation = -1;
+    private int alphaRectLocation = -1;
+    private int alphaClampLocation = -1;
+    private int premultipliedLocation = -1;
+    private final float[] alphaClamp = new float[4];
+    private int textureID;
+    private int vertexBuffer;
+    private int surfaceWidth;
+    private int surfaceHeight;
     /**
-     * 对应源视频要求为：左黑白、右彩色
+     * onSurfaceCreated 后换成当前 context 共用的实例
      */
-    private static final String leftAlphaShader = "#extension GL_OES_EGL_image_external : require\n"
-            + "precision mediump float;\n"
-            + "varying vec2 v_texcoord;\n"
-            + "uniform samplerExternalOES sTexture;\n"
-            + "void main() {\n"
-            + "  gl_FragColor = vec4(texture2D(sTexture, v_texcoord).rgb, texture2D(sTexture, v_texcoord + vec2(-0.5, 0)).r);\n"
-            + "}\n";
+    private GLStateTracker stateTracker = new GLStateTracker();
 
+    private SurfaceTexture surface;
     /**
-     * 对应源视频要求为：上彩色、下黑白
+     * 交给视图的输出 Surface，随 {@link #surface} 一起释放
      */
-    private static final String bottomAlphaShader = "#extension GL_OES_EGL_image_external : require\n"
-            + "precision mediump float;\n"
-            + "varying vec2 v_texcoord;\n"
-            + "uniform samplerExternalOES sTexture;\n"
-            + "void main() {\n"
-            + "  gl_FragColor = vec4(texture2D(sTexture, v_texcoord + vec2(0, -0.5)).rgb, texture2D(sTexture, v_texcoord).r);\n"
-            + "}\n";
-
-
+    private Surface outputSurface;
+    private final FrameScheduler frameScheduler = new FrameScheduler();
+    private final FrameSync frameSync = new FrameSync();
+    private volatile int maxFramesInFlight = FrameSync.DEFAULT_FRAMES_IN_FLIGHT;
+    private volatile boolean resetSyncStats;
+    private volatile long averageSyncNanos;
+    private volatile RenderMetrics renderMetrics;
+    private volatile boolean premultipliedAlpha;
+    private volatile AlphaBoundsIndex alphaBounds;
+    private volatile PositionSource positionSource;
+    private volatile long boundsToleranceUs;
+    private final float[] box = new float[4];
+    private final int[] scissor = new int[4];
+    private volatile int defaultBufferWidth;
+    private volatile int defaultBufferHeight;
     /**
-     * 对应源视频要求为：上黑白、下彩色
+     * 视频帧尺寸，用来算半个像素的纹理坐标，未知时为0
      */
-    private static final String topAlphaShader = "#extension GL_OES_EGL_image_external : require\n"
-            + "precision mediump float;\n"
-            + "varying vec2 v_texcoord;\n"
-            + "uniform samplerExternalOES sTexture;\n"
-            + "void main() {\n"
-            + "  gl_FragColor = vec4(texture2D(sTexture, v_texcoord).rgb, texture2D(sTexture, v_texcoord + vec2(0, -0.5)).r);\n"
-            + "}\n";
-
-
-    private int program;
-    private int textureID;
-    private int aPositionHandle;
-    private int aTextureHandle;
-
-    private SurfaceTexture surface;
-    private boolean updateSurface = false;
+    private volatile int videoWidth;
+    private volatile int videoHeight;
+    /**
+     * 同一次绘制中垫在下面的不透明视频，没有时为null
+     */
+    private volatile OpaqueVideoLayer underlay;
 
     private OnSurfacePrepareListener onSurfacePrepareListener;
+    private volatile GLTextureView.OnRenderFailureListener onRenderFailureListener;
 
     public AlphaVideoRenderer(@AlphaModel int alphaModel) {
         this.alphaModel = alphaModel;
-        float[] vertices = getAlphaShaderData();
-
-        triangleVertices = ByteBuffer.allocateDirect(vertices.length * FLOAT_SIZE_BYTES)
+        triangleVertices = ByteBuffer.allocateDirect(verticesData.length * FLOAT_SIZE_BYTES)
                 .order(ByteOrder.nativeOrder()).asFloatBuffer();
-        triangleVertices.put(vertices).position(0);
-    }
-
-    private float[] getAlphaShaderData() {
-        if (this.alphaModel == AlphaModel.VIDEO_TRANS_TOP_ALPHA || this.alphaModel == AlphaModel.VIDEO_TRANS_BOTTOM_ALPHA) {
-            return verticalVerticesData;
-        } else {
-            return horizontalVerticesData;
-        }
+        triangleVertices.put(verticesData).position(0);
     }
 
     @Override
-    public void onSurfaceCreated(GL10 glUnused, EGLConfig config) {
-        program = createProgram(vertexShader, getAlphaModel());
+    public void onSurfaceCreated(GL10 gl, EGLConfig config) {
+        // 同一context内复用，GLES 3 下从程序二进制加载，都没有才从源码编译
+        program = ShaderProgramCache.obtainProgram(vertexShader, fragmentShader, "a_position", "a_texCoord");
         if (program == 0) {
+            // 驱动编译或链接不了着色器，交给视图换用CPU合成
+            GLTextureView.OnRenderFailureListener listener = onRenderFailureListener;
+            if (listener != null) {
+                listener.onRenderFailure(new IllegalStateException("alpha video shader program unavailable"));
+            }
             return;
         }
-        aPositionHandle = GLES20.glGetAttribLocation(program, "a_position");
-        if (aPositionHandle == -1) {
-            throw new RuntimeException("Could not get attrib location for aPosition");
-        }
-        aTextureHandle = GLES20.glGetAttribLocation(program, "a_texCoord");
-        if (aTextureHandle == -1) {
-            throw new RuntimeException("Could not get attrib location for aTextureCoord");
-        }
+        colorRectLocation = GLES20.glGetUniformLocation(program, "u_colorRect");
+        alphaRectLocation = GLES20.glGetUniformLocation(program, "u_alphaRect");
+        alphaClampLocation = GLES20.glGetUniformLocation(program, "u_alphaClamp");
+        premultipliedLocation = GLES20.glGetUniformLocation(program, "u_premultiplied");
+        Gles gles = Gles.from(gl);
+        stateTracker = GLStateTracker.forCurrentContext();
+        stateTracker.setGles(gles);
+
+        // 顶点只上传一次，之后每帧直接从 VBO 取
+        int[] buffers = new int[1];
+        gles.glGenBuffers(1, buffers, 0);
+        vertexBuffer = buffers[0];
+        stateTracker.bindArrayBuffer(vertexBuffer);
+        triangleVertices.position(0);
+        gles.glBufferData(GLES20.GL_ARRAY_BUFFER, triangleVertices.capacity() * FLOAT_SIZE_BYTES,
+                triangleVertices, GLES20.GL_STATIC_DRAW);
+        frameSync.onContextCreated();
 
         prepareSurface();
-    }
-
-    private String getAlphaModel() {
-        String model;
-        switch (alphaModel) {
-            case AlphaModel.VIDEO_TRANS_TOP_ALPHA:
-                model = topAlphaShader;
-                break;
-            case AlphaModel.VIDEO_TRANS_BOTTOM_ALPHA:
-                model = bottomAlphaShader;
-                break;
-            case AlphaModel.VIDEO_TRANS_RIGHT_ALPHA:
-                model = rightAlphaShader;
-                break;
-            default:
-                model = leftAlphaShader;
-                break;
-        }
-        return model;
-    }
-
-    private int createProgram(String vertexSource, String fragmentSource) {
-        int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, vertexSource);
-        if (vertexShader == 0) {
-            return 0;
-        }
-        int pixelShader = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
-        if (pixelShader == 0) {
-            return 0;
-        }
-
-        int program = GLES20.glCreateProgram();
-        if (program != 0) {
-            GLES20.glAttachShader(program, vertexShader);
-            GLES20.glAttachShader(program, pixelShader);
-            GLES20.glLinkProgram(program);
-            int[] linkStatus = new int[1];
-            GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
-            if (linkStatus[0] != GLES20.GL_TRUE) {
-                GLES20.glDeleteProgram(program);
-                program = 0;
-            }
-        }
-        return program;
-    }
-
-    private int loadShader(int shaderType, String source) {
-        int shader = GLES20.glCreateShader(shaderType);
-        if (shader != 0) {
-            GLES20.glShaderSource(shader, source);
-            GLES20.glCompileShader(shader);
-            int[] compiled = new int[1];
-            GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
-            if (compiled[0] == 0) {
-                GLES20.glDeleteShader(shader);
-                shader = 0;
-            }
+        OpaqueVideoLayer layer = underlay;
+        if (layer != null) {
+            layer.onSurfaceCreated(stateTracker);
+            layer.onSurfaceChanged(surfaceWidth, surfaceHeight);
         }
-        return shader;
     }
 
     private void prepareSurface() {
+        // context 丢失后重建时，旧的 SurfaceTexture 绑着已经失效的纹理
+        releaseSurface();
         int[] textures = new int[1];
         // 创建纹理
         GLES20.glGenTextures(1, textures, 0);
 
         textureID = textures[0];
         // 绑定
-        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureID);
+        stateTracker.bindTextureUnit(GLES20.GL_TEXTURE0, GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureID);
 
         // 创建纹理
         GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER,
@@ -220,60 +186,314 @@ public class AlphaVideoRenderer implements GLTextureView.Renderer, SurfaceTextur
                 GLES20.GL_LINEAR);
 
         surface = new SurfaceTexture(textureID);
+        if (defaultBufferWidth > 0 && defaultBufferHeight > 0) {
+            surface.setDefaultBufferSize(defaultBufferWidth, defaultBufferHeight);
+        }
         surface.setOnFrameAvailableListener(this);
 
-        Surface surface = new Surface(this.surface);
-        onSurfacePrepareListener.surfacePrepared(surface);
+        outputSurface = new Surface(this.surface);
+        onSurfacePrepareListener.surfacePrepared(outputSurface);
+
+        frameScheduler.reset();
+    }
+
+    private void releaseSurface() {
+        if (outputSurface != null) {
+            outputSurface.release();
+            outputSurface = null;
+        }
+        if (surface != null) {
+            surface.setOnFrameAvailableListener(null);
+            surface.release();
+            surface = null;
+        }
+    }
+
+    /**
+     * 跳过 onSurfaceCreated，把已有的程序和顶点 VBO 当作创建好的，单元测试用
+     */
+    void setGlObjects(int program, int vertexBuffer) {
+        this.program = program;
+        this.vertexBuffer = vertexBuffer;
+    }
 
-        synchronized (this) {
-            updateSurface = false;
+    /**
+     * 共用渲染线程时视图离开后 context 还留给其他视图，这里创建的对象要自己删掉。
+     * 着色器程序由 {@link ShaderProgramCache} 在同一 context 内共用，不删除
+     */
+    @Override
+    public void onDetachedFromContext(GL10 gl) {
+        OpaqueVideoLayer layer = underlay;
+        if (layer != null) {
+            layer.onDetachedFromContext();
+        }
+        if (vertexBuffer != 0) {
+            GLES20.glDeleteBuffers(1, new int[]{vertexBuffer}, 0);
+            vertexBuffer = 0;
         }
+        if (textureID != 0) {
+            GLES20.glDeleteTextures(1, new int[]{textureID}, 0);
+            textureID = 0;
+        }
+        releaseSurface();
+        frameSync.onContextReleased();
+        // 删掉的对象可能还记为已绑定，同一 context 里的其他渲染器要重新绑定
+        stateTracker.reset();
     }
 
 
     @Override
-    public void onDrawFrame(GL10 glUnused) {
-        synchronized (this) {
-            if (updateSurface) {
+    public void onDrawFrame(GL10 gl) {
+        // 只有解码器送来新帧时才需要更新纹理，尺寸变化引起的重绘沿用当前纹理
+        // 经过 GLProfiler 等包装时由包装层转发，否则直接调用GLES20
+        Gles gles = Gles.from(gl);
+        GLStateTracker state = stateTracker;
+        state.setGles(gles);
+        OpaqueVideoLayer layer = underlay;
+        if (layer != null) {
+            layer.latchFrame(state);
+        }
+        if (frameScheduler.beginDraw()) {
+            // updateTexImage 会把纹理绑定到当前纹理单元，本视频固定用纹理单元0
+            state.activeTexture(GLES20.GL_TEXTURE0);
+            RenderMetrics metrics = renderMetrics;
+            if (metrics != null) {
+                long start = System.nanoTime();
                 surface.updateTexImage();
-                updateSurface = false;
+                metrics.record(RenderMetrics.STAGE_UPDATE_TEX_IMAGE, System.nanoTime() - start);
+            } else {
+                surface.updateTexImage();
+            }
+            state.onTextureBound(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureID);
+        }
+        // 以下状态只有变化时才会真正调用GL；共用context的其他渲染器改过状态时也能正确恢复
+        if (surfaceWidth > 0) {
+            state.viewport(0, 0, surfaceWidth, surfaceHeight);
+        }
+        // 后缓冲的内容在交换后是未定义的，必须整个清空；在分块渲染的GPU上整屏清空也比局部清空快
+        boolean bounded = lookUpBounds();
+        state.setScissorEnabled(false);
+        state.clearColor(0f, 0.0f, 0.0f, 0.0f);
+        gles.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
+        if (program == 0 || vertexBuffer == 0) {
+            // 着色器不可用或 onSurfaceCreated 还没成功，只画透明；没有程序和 VBO 时 glDrawArrays 会在驱动里崩溃
+            return;
+        }
+        if (layer != null) {
+            layer.draw(gles, state, vertexBuffer);
+        }
+        // 整帧透明时只清空，不采样也不混合
+        if (!bounded || box[0] < box[2]) {
+            if (bounded) {
+                AlphaBoundsIndex.toScissor(box, surfaceWidth, surfaceHeight, scissor);
+                state.setScissorEnabled(true);
+                state.scissor(scissor[0], scissor[1], scissor[2], scissor[3]);
             }
+            drawQuad(gles, state, layer != null);
         }
-        GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
-        GLES20.glEnable(GLES20.GL_BLEND);
-        GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
-        GLES20.glClearColor(0f, 0.0f, 0.0f, 0.0f);
-        GLES20.glUseProgram(program);
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureID);
-
-        triangleVertices.position(TRIANGLE_VERTICES_DATA_POS_OFFSET);
-        GLES20.glVertexAttribPointer(aPositionHandle, 2, GLES20.GL_FLOAT, false,
-                TRIANGLE_VERTICES_DATA_STRIDE_BYTES, triangleVertices);
-        GLES20.glEnableVertexAttribArray(aPositionHandle);
-
-        triangleVertices.position(TRIANGLE_VERTICES_DATA_UV_OFFSET);
-        GLES20.glVertexAttribPointer(aTextureHandle, 2, GLES20.GL_FLOAT, false,
-                TRIANGLE_VERTICES_DATA_STRIDE_BYTES, triangleVertices);
-        GLES20.glEnableVertexAttribArray(aTextureHandle);
-
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
-        GLES20.glFinish();
+
+        if (resetSyncStats) {
+            resetSyncStats = false;
+            frameSync.resetStats();
+        }
+        frameSync.setMaxFramesInFlight(maxFramesInFlight);
+        frameSync.endFrame();
+        averageSyncNanos = frameSync.getAverageSyncNanos();
+    }
+
+    private void drawQuad(Gles gles, GLStateTracker state, boolean overUnderlay) {
+        // 叠在不透明视频上时总是输出预乘透明度再混合，结果的透明度在不透明视频范围内才是1
+        boolean premultiplied = premultipliedAlpha || overUnderlay;
+        if (overUnderlay) {
+            state.setBlendEnabled(true);
+            state.blendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        } else if (premultiplied) {
+            // 只画一个四边形到清空的缓冲区上，着色器输出就是最终结果，不需要读目标像素混合
+            state.setBlendEnabled(false);
+        } else {
+            state.setBlendEnabled(true);
+            state.blendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        }
+        state.useProgram(program);
+        state.uniform1f(premultipliedLocation, premultiplied ? 1f : 0f);
+        // 布局没变时 uniform 也不会重复上传
+        @AlphaModel int model = alphaModel;
+        state.uniform4f(colorRectLocation, AlphaLayout.colorRect(model));
+        float[] alphaRect = AlphaLayout.alphaRect(model);
+        state.uniform4f(alphaRectLocation, alphaRect);
+        computeAlphaClamp(alphaRect);
+        state.uniform4f(alphaClampLocation, alphaClamp);
+        state.bindTextureUnit(GLES20.GL_TEXTURE0, GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureID);
+
+        state.bindArrayBuffer(vertexBuffer);
+        state.vertexAttribPointer(ATTRIB_POSITION, 2, GLES20.GL_FLOAT, false,
+                TRIANGLE_VERTICES_DATA_STRIDE_BYTES, TRIANGLE_VERTICES_DATA_POS_OFFSET);
+        state.enableVertexAttribArray(ATTRIB_POSITION);
+        state.vertexAttribPointer(ATTRIB_TEX_COORD, 2, GLES20.GL_FLOAT, false,
+                TRIANGLE_VERTICES_DATA_STRIDE_BYTES, TRIANGLE_VERTICES_DATA_UV_OFFSET);
+        state.enableVertexAttribArray(ATTRIB_TEX_COORD);
+
+        gles.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+    }
+
+    private void computeAlphaClamp(float[] alphaRect) {
+        int width = videoWidth;
+        int height = videoHeight;
+        float halfTexelX = width > 0 ? 0.5f / width : 0f;
+        float halfTexelY = height > 0 ? 0.5f / height : 0f;
+        alphaClamp[0] = alphaRect[0] + halfTexelX;
+        alphaClamp[1] = alphaRect[1] + halfTexelY;
+        alphaClamp[2] = alphaRect[0] + alphaRect[2] - halfTexelX;
+        alphaClamp[3] = alphaRect[1] + alphaRect[3] - halfTexelY;
+    }
+
+    /**
+     * 取当前帧的不透明包围盒写入 {@link #box}
+     *
+     * @return false 表示没有索引或查不到，绘制整个视图
+     */
+    private boolean lookUpBounds() {
+        AlphaBoundsIndex bounds = alphaBounds;
+        if (bounds == null || surfaceWidth <= 0) {
+            return false;
+        }
+        PositionSource source = positionSource;
+        // 直接用 MediaCodec 渲染时纹理时间戳就是显示时间戳
+        long positionUs = source != null ? source.getPositionUs() : surface.getTimestamp() / 1000;
+        return positionUs >= 0 && bounds.boundsAround(positionUs, boundsToleranceUs, box);
     }
 
     @Override
-    public void onSurfaceChanged(GL10 glUnused, int width, int height) {
-        GLES20.glViewport(0, 0, width, height);
+    public void onSurfaceChanged(GL10 gl, int width, int height) {
+        surfaceWidth = width;
+        surfaceHeight = height;
+        stateTracker.setGles(Gles.from(gl));
+        stateTracker.viewport(0, 0, width, height);
+        OpaqueVideoLayer layer = underlay;
+        if (layer != null) {
+            layer.onSurfaceChanged(width, height);
+        }
+    }
+
+    /**
+     * 切换透明视频的模式，只改 uniform，不需要重建渲染器或重新编译着色器，下一帧生效
+     */
+    void setAlphaModel(@AlphaModel int alphaModel) {
+        this.alphaModel = alphaModel;
+    }
+
+    @AlphaModel
+    int getAlphaModel() {
+        return alphaModel;
     }
 
-    synchronized public void onFrameAvailable(SurfaceTexture surface) {
-        updateSurface = true;
+    public void onFrameAvailable(SurfaceTexture surface) {
+        frameScheduler.onFrameAvailable();
+    }
+
+    /**
+     * 设置后每来一帧视频才请求一次渲染，配合 {@link GLTextureView#RENDERMODE_WHEN_DIRTY} 使用
+     */
+    void setRenderRequester(FrameScheduler.RenderRequester renderRequester) {
+        frameScheduler.setRenderRequester(renderRequester);
+    }
+
+    /**
+     * 设置允许GPU同时处理的帧数，大于0时用fence做流水线，等于0时回退到每帧glFinish
+     */
+    void setMaxFramesInFlight(int maxFramesInFlight) {
+        if (maxFramesInFlight < 0) {
+            throw new IllegalArgumentException("maxFramesInFlight must be >= 0");
+        }
+        this.maxFramesInFlight = maxFramesInFlight;
+        resetSyncStats = true;
+    }
+
+    /**
+     * 渲染线程平均每帧阻塞在帧同步上的CPU时间，纳秒。切换模式后重新统计，可以对比两种模式节省的时间
+     */
+    long getAverageFrameSyncNanos() {
+        return averageSyncNanos;
+    }
+
+    /**
+     * 设置后记录每帧 updateTexImage 的耗时，传null停止记录
+     */
+    void setRenderMetrics(RenderMetrics renderMetrics) {
+        this.renderMetrics = renderMetrics;
+    }
+
+    /**
+     * 输出预乘透明度的像素 (rgb * a, a)，并关闭混合
+     * <p>
+     * TextureView 把缓冲区当作预乘透明度合成。默认的直通透明度经 (GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA)
+     * 混合到透明背景上得到 (rgb * a, a * a)，半透明边缘会被再乘一次透明度；
+     * 预乘模式的输出可以被系统直接合成，同时省掉每帧的GL混合
+     */
+    void setPremultipliedAlpha(boolean premultipliedAlpha) {
+        this.premultipliedAlpha = premultipliedAlpha;
+    }
+
+    boolean isPremultipliedAlpha() {
+        return premultipliedAlpha;
+    }
+
+    /**
+     * 设置每帧的不透明包围盒，绘制时只画包围盒内的部分，整帧透明时跳过绘制
+     *
+     * @param positionSource 当前帧在视频中的位置；传null时使用 SurfaceTexture 的时间戳，
+     *                       只适用于用 MediaCodec 直接按显示时间戳渲染的情况
+     * @param toleranceUs    位置的误差，取这个范围内所有帧的包围盒并集
+     */
+    void setAlphaBounds(AlphaBoundsIndex alphaBounds, PositionSource positionSource, long toleranceUs) {
+        this.positionSource = positionSource;
+        this.boundsToleranceUs = toleranceUs;
+        this.alphaBounds = alphaBounds;
+    }
+
+    /**
+     * 输入不是解码器（例如用 Canvas 绘制）时指定 SurfaceTexture 的缓冲区大小，需要在 onSurfaceCreated 之前调用
+     */
+    void setDefaultBufferSize(int width, int height) {
+        defaultBufferWidth = width;
+        defaultBufferHeight = height;
+        setVideoSize(width, height);
+    }
+
+    /**
+     * 设置打包后视频帧的尺寸。透明度分辨率较低的布局靠它避免区域边缘混色，不设置时不做修正
+     */
+    void setVideoSize(int width, int height) {
+        videoWidth = width;
+        videoHeight = height;
+    }
+
+    /**
+     * 在透明视频下面、同一次绘制中先画一个不透明视频，两个视频合成到同一个 surface 上。
+     * 需要在 onSurfaceCreated 之前调用；设置后透明视频总是按预乘透明度混合到它上面
+     */
+    void setUnderlay(OpaqueVideoLayer underlay) {
+        this.underlay = underlay;
     }
 
     void setOnSurfacePrepareListener(OnSurfacePrepareListener onSurfacePrepareListener) {
         this.onSurfacePrepareListener = onSurfacePrepareListener;
     }
 
+    /**
+     * 着色器程序不可用时在渲染线程回调，之后不会再绘制任何内容
+     */
+    void setOnRenderFailureListener(GLTextureView.OnRenderFailureListener onRenderFailureListener) {
+        this.onRenderFailureListener = onRenderFailureListener;
+    }
+
+    interface PositionSource {
+        /**
+         * @return 当前显示帧的时间戳，微秒；不知道时返回负数
+         */
+        long getPositionUs();
+    }
+
     interface OnSurfacePrepareListener {
         void surfacePrepared(Surface surface);
     }
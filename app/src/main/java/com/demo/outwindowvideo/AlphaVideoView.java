@@ -2,15 +2,27 @@ package com.demo.outwindowvideo;
 
 import android.content.Context;
 import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
+import android.graphics.SurfaceTexture;
 import android.media.MediaMetadataRetriever;
-import android.media.MediaPlayer;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.Surface;
 
+import com.demo.outwindowvideo.kernel.AlphaBoundsIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+
 /**
  * 可播放带透明度视频的播放器
  *
@@ -24,39 +36,61 @@ import android.view.Surface;
  * OpenGL基本使用
  * https://www.jianshu.com/p/6581703e1d98
  */
-public class AlphaVideoView extends GLTextureView
-        implements MediaPlayer.OnInfoListener, MediaPlayer.OnErrorListener, MediaPlayer.OnCompletionListener {
+public class AlphaVideoView extends GLTextureView {
 
     private static final String TAG = "AlphaVideoView";
     private static final int GL_CONTEXT_VERSION = 2;
-
+    private static final String SHADER_CACHE_DIR = "shader_cache";
+    private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
     /**
-     * 当前播放器状态
+     * 所有实例共用，共享渲染线程时各视图的 context 也就兼容
      */
-    private int currentState = PlayerState.IDLE;
+    private static final EGLContextFactory CONTEXT_FACTORY = new CachingContextFactory();
+    /**
+     * getCurrentPosition 只精确到毫秒且与显示的帧有延迟，取前后这个范围内所有帧的包围盒
+     */
+    private static final long ALPHA_BOUNDS_TOLERANCE_US = 200_000;
+
     /**
      * 透明视频的模式
      */
     private @AlphaModel
     int alphaModel = AlphaModel.VIDEO_TRANS_LEFT_ALPHA;
+    /**
+     * 是否与其他视图共用同一个渲染线程和EGLContext
+     */
+    private boolean sharedRenderThread;
+    /**
+     * 离开窗口时是否把渲染线程和EGLContext留在池中，列表中快速复用
+     */
+    private boolean renderThreadPool;
+    /**
+     * 是否输出预乘透明度，由系统直接合成
+     */
+    private boolean premultipliedAlpha;
 
     private AlphaVideoRenderer renderer;
     /**
-     * mediaPlayer
+     * GL初始化失败后改用CPU合成，否则为null
      */
-    private MediaPlayer mediaPlayer;
+    private SoftwareAlphaRenderer softwareRenderer;
+    private final VideoPlayerController controller = new VideoPlayerController(VideoPlayer.MEDIA_PLAYER);
     private Surface surfaceTexture;
     /**
      * 视频源
      */
     private String assetsFileName;
+    private VideoPreloader preloader;
     /**
      * 标记播放器是否准备就绪
      */
     private boolean isSurfaceCreated;
     private boolean isDataSourceSet;
+    /**
+     * 每次 {@link #openVideo()} 加一，CPU合成时在播放线程读完尺寸回到主线程，已经又打开过就丢掉
+     */
+    private int openRequest;
 
-    private VideoListener.OnBufferingListener bufferingListener;
     private VideoListener.OnErrorListener errorListener;
 
     // region 构造
@@ -91,36 +125,72 @@ public class AlphaVideoView extends GLTextureView
                     case "3":
                         alphaModel = AlphaModel.VIDEO_TRANS_RIGHT_ALPHA;
                         break;
+                    case "4":
+                        alphaModel = AlphaModel.VIDEO_TRANS_RIGHT_HALF_ALPHA;
+                        break;
+                    case "5":
+                        alphaModel = AlphaModel.VIDEO_TRANS_RIGHT_QUARTER_ALPHA;
+                        break;
                     default:
                         break;
                 }
             }
+            sharedRenderThread = ta.getBoolean(R.styleable.AlphaVideoView_sharedRenderThread, false);
+            renderThreadPool = ta.getBoolean(R.styleable.AlphaVideoView_renderThreadPool, false);
+            premultipliedAlpha = ta.getBoolean(R.styleable.AlphaVideoView_premultipliedAlpha, false);
             ta.recycle();
         }
     }
     // endregion
 
     private void init() {
+        // 链接好的着色器程序缓存到磁盘，冷启动时免去编译
+        ShaderProgramCache.setCacheDir(new File(getContext().getCacheDir(), SHADER_CACHE_DIR));
         // 设置OpenGL ES 2.0
         setEGLContextClientVersion(GL_CONTEXT_VERSION);
+        // context 销毁时一并清掉按 context 缓存的着色器程序和GL状态
+        setEGLContextFactory(CONTEXT_FACTORY);
+        // 多个出框视频同屏时共用一个渲染线程
+        setSharedRenderThread(sharedRenderThread);
+        // 列表滑动时复用离屏视图的渲染线程
+        setRenderThreadPooling(renderThreadPool);
         // 安装一个配置器，颜色，深度，模板等设置
         setEGLConfigChooser(8, 8, 8, 8, 16, 0);
         // 创建可播放透明视频的渲染器
         renderer = new AlphaVideoRenderer(alphaModel);
-        // 监听onSurfaceCreated
-        renderer.setOnSurfacePrepareListener(surface -> {
+        // 输出预乘透明度时省掉GL混合，TextureView 直接合成
+        renderer.setPremultipliedAlpha(premultipliedAlpha);
+        // 监听onSurfaceCreated，纹理在渲染线程创建，播放器回到主线程打开
+        renderer.setOnSurfacePrepareListener(surface -> post(() -> {
+            if (surfaceTexture != null && surfaceTexture != surface && softwareRenderer == null) {
+                surfaceTexture.release();
+            }
             surfaceTexture = surface;
+            controller.setSurface(surface);
             isSurfaceCreated = true;
             openVideo();
+        }));
+        controller.setOnErrorListener((mp, frameworkErr, implErr) -> {
+            Log.w(TAG, "Error: " + frameworkErr + "," + implErr);
+            if (errorListener != null) {
+                errorListener.onVideoError(mp, frameworkErr, implErr);
+            }
         });
+        // 透明度分辨率较低的布局需要知道帧尺寸
+        controller.setOnVideoSizeChangedListener((width, height) -> renderer.setVideoSize(width, height));
+        // 解码器出帧时才请求渲染
+        renderer.setRenderRequester(this::requestRender);
+        // EGL或着色器初始化失败时改用CPU合成，而不是崩溃或什么都不画
+        setOnRenderFailureListener(this::fallBackToSoftware);
+        renderer.setOnRenderFailureListener(e -> post(() -> fallBackToSoftware(e)));
         // 设置与此视图相关联的渲染器，有些方法必须在此方法之前调用，有些必须在之后调用
         setRenderer(renderer);
+        // 只在有新帧或尺寸变化时绘制，暂停、停止、缓冲时不再空转
+        setRenderMode(RENDERMODE_WHEN_DIRTY);
         // 控制在暂停和恢复GLTextureView时是否保留EGLContext
         setPreserveEGLContextOnPause(true);
         // 设置是否不透明
         setOpaque(false);
-        // 设置当前状态
-        currentState = PlayerState.IDLE;
     }
 
     /**
@@ -129,171 +199,325 @@ public class AlphaVideoView extends GLTextureView
     public void setVideoFromAssets(String assetsFileName) {
         this.assetsFileName = assetsFileName;
         isDataSourceSet = true;
+        loadAlphaBounds();
         openVideo();
     }
 
-    private void openVideo() {
-        // 未准备就绪
-        if (!isSurfaceCreated || !isDataSourceSet) {
-            return;
-        }
-        stop();
+    /**
+     * 视频旁边有离线生成的包围盒索引（文件名加 {@link AlphaBoundsIndex#SUFFIX}）时，只绘制不透明的区域。
+     * 索引在播放线程读，读完回到主线程时视频已经换了就丢掉
+     */
+    private void loadAlphaBounds() {
+        final String fileName = assetsFileName;
+        final AssetManager assets = getContext().getAssets();
+        final PlayerThread playerThread = PlayerThread.getDefault();
+        playerThread.execute(() -> {
+            AlphaBoundsIndex bounds = null;
+            try (InputStream in = assets.open(fileName + AlphaBoundsIndex.SUFFIX)) {
+                bounds = AlphaBoundsIndex.read(in);
+            } catch (IOException e) {
+                // 没有索引，绘制整个视图
+            }
+            final AlphaBoundsIndex loaded = bounds;
+            playerThread.runOnMain(() -> {
+                if (fileName.equals(assetsFileName)) {
+                    renderer.setAlphaBounds(loaded, this::getPlaybackPositionUs, ALPHA_BOUNDS_TOLERANCE_US);
+                }
+            });
+        });
+    }
 
-        initMediaPlayer();
-        setVideoDataSourceFromAssets();
-        currentState = PlayerState.PREPARING;
-        prepareAsync();
+    /**
+     * 设置解码引擎，默认 {@link VideoPlayer#MEDIA_PLAYER}。会释放当前的播放器，之后打开的视频生效
+     */
+    public void setVideoPlayerFactory(VideoPlayer.Factory factory) {
+        controller.setFactory(factory);
+        openVideo();
     }
 
-    private void initMediaPlayer() {
-        if (mediaPlayer == null) {
-            mediaPlayer = new MediaPlayer();
-            // 设置播放的时候一直让屏幕变亮
-            mediaPlayer.setScreenOnWhilePlaying(true);
-            mediaPlayer.setSurface(surfaceTexture);
-            surfaceTexture.release();
-        }
-        mediaPlayer.setOnInfoListener(this);
-        mediaPlayer.setOnErrorListener(this);
-        mediaPlayer.setOnCompletionListener(this);
-        currentState = PlayerState.IDLE;
+    /**
+     * 打开视频时先看预加载里有没有准备好的播放器，有就直接接手
+     */
+    public void setVideoPreloader(VideoPreloader preloader) {
+        this.preloader = preloader;
     }
 
     /**
-     * 将assets中的文件设置到mediaPlayer中
+     * 在渲染线程和主线程调用
      */
-    public void setVideoDataSourceFromAssets() {
-        try {
-            AssetFileDescriptor assetFileDescriptor = getContext().getAssets().openFd
-                    (assetsFileName);
-            mediaPlayer.setDataSource(assetFileDescriptor.getFileDescriptor(),
-                    assetFileDescriptor.getStartOffset(), assetFileDescriptor.getLength());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    long getPlaybackPositionUs() {
+        return controller.getPositionUs();
     }
 
-    // region 播放器状态
-    public void start() {
-        if (mediaPlayer == null) {
+    private void openVideo() {
+        // 未准备就绪
+        if (!isSurfaceCreated || !isDataSourceSet) {
             return;
         }
-        switch (currentState) {
-            case PlayerState.PREPARED:
-            case PlayerState.PAUSED:
-            case PlayerState.PLAYBACK_COMPLETED:
-                mediaPlayer.start();
-                currentState = PlayerState.PLAYING;
-                break;
-            case PlayerState.STOPPED:
-                prepareAsync(mediaPlayer -> {
-                    mediaPlayer.start();
-                    currentState = PlayerState.PLAYING;
+        final int request = ++openRequest;
+        if (isRenderingAbandoned()) {
+            if (softwareRenderer == null) {
+                startSoftwareRenderer();
+            }
+            // ImageReader 创建时就要知道尺寸，在播放器准备好之前从文件头读出，读文件放到播放线程
+            final String fileName = assetsFileName;
+            final AssetManager assets = getContext().getAssets();
+            final PlayerThread playerThread = PlayerThread.getDefault();
+            playerThread.execute(() -> {
+                final int[] size = readVideoSize(assets, fileName);
+                playerThread.runOnMain(() -> {
+                    if (size == null || request != openRequest || softwareRenderer == null) {
+                        return;
+                    }
+                    // 换了视频，ImageReader 可能按新尺寸重建了
+                    surfaceTexture = softwareRenderer.createInputSurface(size[0], size[1]);
+                    controller.setSurface(surfaceTexture);
+                    startPlayer();
                 });
-                break;
+            });
+            return;
         }
+        startPlayer();
     }
 
-    public void pause() {
-        if (mediaPlayer == null) {
+    private void startPlayer() {
+        if (preloader != null && preloader.handOver(assetsFileName, controller)) {
             return;
         }
-        if (currentState == PlayerState.PLAYING) {
-            mediaPlayer.pause();
-            currentState = PlayerState.PAUSED;
-        }
+        // 子类覆盖的 stop 可能还控制着其他播放器，这里只操作自己的；文件在播放线程打开
+        controller.open(getContext().getAssets(), assetsFileName);
+    }
+
+    // region 播放器状态
+    public void start() {
+        controller.start();
+    }
+
+    public void pause() {
+        controller.pause();
     }
 
     public void stop() {
-        if (mediaPlayer == null) {
-            return;
+        controller.stop();
+    }
+
+    public void release() {
+        controller.release();
+        if (softwareRenderer != null) {
+            softwareRenderer.release();
+            softwareRenderer = null;
         }
-        switch (currentState) {
-            case PlayerState.PREPARED:
-            case PlayerState.PLAYING:
-            case PlayerState.PAUSED:
-            case PlayerState.PLAYBACK_COMPLETED:
-                mediaPlayer.stop();
-                currentState = PlayerState.STOPPED;
-                break;
+    }
+    // endregion
+
+    // region 同步
+    // 以下只控制本视图自己的播放器，供 PlaybackSync 与另一个视频对齐，子类覆盖的播放控制方法不受影响
+
+    boolean isPlaying() {
+        return controller.isPlaying();
+    }
+
+    /**
+     * 只在播放中生效，暂停时设置速度会让 MediaPlayer 开始播放
+     */
+    void setPlaybackSpeed(float speed) {
+        controller.setPlaybackSpeed(speed);
+    }
+
+    void seekToUs(long positionUs) {
+        controller.seekTo(positionUs);
+    }
+
+    void holdPlayback() {
+        controller.pause();
+    }
+
+    void resumePlayback() {
+        if (controller.getState() == PlayerState.PAUSED) {
+            controller.start();
         }
     }
+    // endregion
 
-    public void release() {
-        if (mediaPlayer != null) {
-            mediaPlayer.reset();
-            mediaPlayer.release();
-            mediaPlayer.setOnInfoListener(null);
-            mediaPlayer.setOnErrorListener(null);
-            mediaPlayer.setOnCompletionListener(null);
-            mediaPlayer = null;
-            currentState = PlayerState.END;
+    // region 渲染
+    /**
+     * 播放中切换透明视频的模式，所有模式共用同一个着色器程序，不需要重建渲染器
+     */
+    public void setAlphaModel(@AlphaModel int alphaModel) {
+        this.alphaModel = alphaModel;
+        renderer.setAlphaModel(alphaModel);
+        if (softwareRenderer != null) {
+            softwareRenderer.setAlphaModel(alphaModel);
         }
+        // 暂停时也要用当前帧按新布局重绘
+        requestRender();
     }
 
-    private void prepareAsync() {
-        prepareAsync(null);
+    @AlphaModel
+    public int getAlphaModel() {
+        return alphaModel;
     }
 
-    private void prepareAsync(final MediaPlayer.OnPreparedListener onPreparedListener) {
-        if (mediaPlayer == null) {
+    /**
+     * 切换预乘透明度输出，下一帧生效
+     *
+     * @see AlphaVideoRenderer#setPremultipliedAlpha(boolean)
+     */
+    public void setPremultipliedAlpha(boolean premultipliedAlpha) {
+        this.premultipliedAlpha = premultipliedAlpha;
+        renderer.setPremultipliedAlpha(premultipliedAlpha);
+        requestRender();
+    }
+
+    public boolean isPremultipliedAlpha() {
+        return premultipliedAlpha;
+    }
+
+    /**
+     * 停掉GL渲染线程，解码器改为输出到 ImageReader，由 {@link SoftwareAlphaRenderer} 在CPU上合成后画到本视图。
+     * 已在播放的视频只切换输出，播放进度不变。子类叠加的渲染层没有CPU实现，不再显示
+     */
+    private void fallBackToSoftware(RuntimeException cause) {
+        if (isRenderingAbandoned()) {
             return;
         }
-        if (currentState == PlayerState.PREPARING || currentState == PlayerState.STOPPED) {
-            mediaPlayer.setOnPreparedListener(mp -> {
-                currentState = PlayerState.PREPARED;
-                if (onPreparedListener != null) {
-                    onPreparedListener.onPrepared(mp);
+        Log.w(TAG, "GL rendering failed, compositing on the CPU", cause);
+        abandonRendering();
+        startSoftwareRenderer();
+        // 渲染线程已停，TextureView 的 surface 变化改由这里转给CPU合成
+        addSurfaceTextureListener(new SurfaceTextureListener() {
+            @Override
+            public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+                if (softwareRenderer != null) {
+                    softwareRenderer.setOutput(surface, width, height);
                 }
-            });
-            mediaPlayer.prepareAsync();
+            }
+
+            @Override
+            public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+                if (softwareRenderer != null) {
+                    softwareRenderer.setOutputSize(width, height);
+                }
+            }
+
+            @Override
+            public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+                if (softwareRenderer != null) {
+                    softwareRenderer.setOutput(null, 0, 0);
+                }
+                return true;
+            }
+
+            @Override
+            public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+            }
+        });
+        if (controller.getVideoWidth() > 0 && controller.getVideoHeight() > 0) {
+            surfaceTexture = softwareRenderer.createInputSurface(controller.getVideoWidth(),
+                    controller.getVideoHeight());
+            controller.setSurface(surfaceTexture);
+        } else {
+            isSurfaceCreated = true;
+            openVideo();
         }
     }
-    // endregion
 
-    // region 播放器回调
-    @Override
-    public void onCompletion(MediaPlayer mediaPlayer) {
-        currentState = PlayerState.PLAYBACK_COMPLETED;
+    private void startSoftwareRenderer() {
+        softwareRenderer = new SoftwareAlphaRenderer(alphaModel);
+        softwareRenderer.setOutput(getSurfaceTexture(), getWidth(), getHeight());
     }
 
-    @Override
-    public boolean onError(MediaPlayer mp, int frameworkErr, int implErr) {
-        currentState = PlayerState.ERROR;
-        if (errorListener != null) {
-            errorListener.onVideoError(mp, frameworkErr, implErr);
+    /**
+     * 在播放线程调用
+     *
+     * @return 宽、高，读不出时返回null
+     */
+    private static int[] readVideoSize(AssetManager assets, String fileName) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try (AssetFileDescriptor fd = assets.openFd(fileName)) {
+            retriever.setDataSource(fd.getFileDescriptor(), fd.getStartOffset(), fd.getLength());
+            int width = Integer.parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+            int height = Integer.parseInt(
+                    retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+            return width > 0 && height > 0 ? new int[]{width, height} : null;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "cannot read video size of " + fileName, e);
+            return null;
+        } finally {
+            retriever.release();
         }
-        Log.w(TAG, "Error: " + frameworkErr + "," + implErr);
-        return true;
     }
 
+    /**
+     * @return GL不可用、正在用CPU合成时为true
+     */
+    public boolean isSoftwareRendering() {
+        return isRenderingAbandoned();
+    }
+
+    /**
+     * 子类在同一个渲染器上叠加其他渲染层时使用
+     */
+    AlphaVideoRenderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * 设置允许GPU同时处理的帧数，默认2帧流水线；传0回退到每帧glFinish的旧行为
+     */
+    public void setMaxFramesInFlight(int maxFramesInFlight) {
+        renderer.setMaxFramesInFlight(maxFramesInFlight);
+    }
+
+    /**
+     * 渲染线程平均每帧等待GPU的CPU时间，纳秒
+     */
+    public long getAverageFrameSyncNanos() {
+        return renderer.getAverageFrameSyncNanos();
+    }
+
+    /**
+     * 开启后额外统计每帧 updateTexImage 的耗时，通过 {@link #getRenderMetrics()} 查询
+     */
     @Override
-    public boolean onInfo(MediaPlayer mediaPlayer, int what, int extra) {
-        switch (what) {
-            // 开始卡顿
-            case MediaPlayer.MEDIA_INFO_BUFFERING_START:
-                if (bufferingListener != null) {
-                    bufferingListener.onStartBuffering();
-                }
-                break;
-            // 卡顿结束
-            case MediaPlayer.MEDIA_INFO_BUFFERING_END:
-                if (bufferingListener != null) {
-                    bufferingListener.onEndBuffering();
-                }
-                break;
-        }
-        return false;
+    public void setRenderMetricsEnabled(boolean enabled) {
+        super.setRenderMetricsEnabled(enabled);
+        renderer.setRenderMetrics(getRenderMetrics());
     }
     // endregion
 
     // region 视频状态监听
     public void setOnBufferingListener(VideoListener.OnBufferingListener listener) {
-        this.bufferingListener = listener;
+        controller.setOnBufferingListener(listener);
+    }
+
+    public void setOnFrameListener(VideoListener.OnFrameListener listener) {
+        controller.setOnFrameListener(listener);
     }
 
     public void setOnErrorListener(VideoListener.OnErrorListener listener) {
         this.errorListener = listener;
     }
     // endregion
+
+    /**
+     * 创建 GLES 2 context，销毁时通知 {@link ShaderProgramCache} 和 {@link GLStateTracker}
+     */
+    private static final class CachingContextFactory implements EGLContextFactory {
+
+        @Override
+        public EGLContext createContext(EGL10 egl, EGLDisplay display, EGLConfig eglConfig) {
+            int[] attribList = {EGL_CONTEXT_CLIENT_VERSION, GL_CONTEXT_VERSION, EGL10.EGL_NONE};
+            return egl.eglCreateContext(display, eglConfig, EGL10.EGL_NO_CONTEXT, attribList);
+        }
+
+        @Override
+        public void destroyContext(EGL10 egl, EGLDisplay display, EGLContext context) {
+            ShaderProgramCache.onContextDestroyed(context);
+            GLStateTracker.onContextDestroyed(context);
+            if (!egl.eglDestroyContext(display, context)) {
+                throw new RuntimeException("eglDestroyContext failed: " + egl.eglGetError());
+            }
+        }
+    }
 }
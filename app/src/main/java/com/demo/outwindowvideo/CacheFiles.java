@@ -0,0 +1,73 @@
+package com.demo.outwindowvideo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 磁盘缓存共用的文件名摘要和写入，见 {@link CoverDiskCache}、{@link ShaderProgramCache}
+ *
+ * @since 2026/10/17
+ */
+final class CacheFiles {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    interface Writer {
+        /**
+         * @return false 表示没有写出完整的内容，例如 Bitmap.compress 失败
+         */
+        boolean writeTo(OutputStream out) throws IOException;
+    }
+
+    private CacheFiles() {
+    }
+
+    /**
+     * @param algorithm 摘要算法，如 SHA-1、SHA-256
+     * @return text 按 UTF-8 编码后的摘要，小写十六进制
+     */
+    static String hexDigest(String algorithm, String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance(algorithm).digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 先写临时文件再改名，进程中途被杀或写入失败都不会留下半个文件。目录不存在时先创建
+     *
+     * @return 是否写入成功
+     * @throws IOException 写入出错，临时文件已删掉
+     */
+    static boolean writeAtomically(File file, Writer writer) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            return false;
+        }
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        boolean written = false;
+        try (OutputStream out = new FileOutputStream(temp)) {
+            written = writer.writeTo(out);
+        } finally {
+            if (!written) {
+                temp.delete();
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,216 @@
+package com.demo.outwindowvideo;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * 在同一个 surface 上、同一次绘制中合成不透明视频和透明视频
+ * <p>
+ * 原来不透明视频用 {@link VideoView}（SurfaceView）播放，透明视频叠在上面的 {@link AlphaVideoView}（TextureView）里，
+ * 每帧要经过两个合成层，全宽的透明视图还带来大面积过度绘制。本视图只有一个 TextureView：
+ * 清空后先把不透明视频画到 {@link #setBackVideoAnchor(View)} 指定的区域，再把透明视频混合在上面。
+ * 两个视频各用一个外部纹理，每层一次绘制。
+ * <p>
+ * 两个视频由各自的 MediaPlayer 解码，播放期间以不透明视频为准定时对齐透明视频，见 {@link PlaybackSync}。
+ *
+ * @since 2026/10/17
+ */
+public class CompositorVideoView extends AlphaVideoView {
+
+    /**
+     * 对齐两个视频的间隔
+     */
+    private static final long SYNC_INTERVAL_MS = 100;
+
+    private final OpaqueVideoLayer backLayer = new OpaqueVideoLayer();
+    private final LayerPlayer backPlayer;
+    private final PlaybackSync playbackSync;
+    private final Runnable syncTask = new Runnable() {
+        @Override
+        public void run() {
+            playbackSync.update(System.nanoTime());
+            postDelayed(this, SYNC_INTERVAL_MS);
+        }
+    };
+    private final int[] anchorLocation = new int[2];
+    private final int[] selfLocation = new int[2];
+    /**
+     * 不透明视频的位置跟随的视图，为null时铺满本视图
+     */
+    private View backAnchor;
+    private final OnLayoutChangeListener anchorLayoutListener =
+            (v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> updateBackBounds();
+
+    // region 构造
+    public CompositorVideoView(Context context) {
+        this(context, null);
+    }
+
+    public CompositorVideoView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        backPlayer = new LayerPlayer(context);
+        // 渲染层的纹理在渲染线程创建，播放器回到主线程打开
+        backLayer.setOnSurfacePrepareListener(surface -> post(() -> backPlayer.setSurface(surface)));
+        // 两个视频任意一个出帧都重绘
+        backLayer.setRenderRequester(this::requestRender);
+        getRenderer().setUnderlay(backLayer);
+        playbackSync = new PlaybackSync(new PlaybackSync.Stream() {
+            @Override
+            public long getPositionUs() {
+                return backPlayer.getPositionUs();
+            }
+
+            @Override
+            public boolean isPlaying() {
+                return backPlayer.isPlaying();
+            }
+        }, new PlaybackSync.Follower() {
+            @Override
+            public long getPositionUs() {
+                return getPlaybackPositionUs();
+            }
+
+            @Override
+            public boolean isPlaying() {
+                return CompositorVideoView.this.isPlaying();
+            }
+
+            @Override
+            public void setSpeed(float speed) {
+                setPlaybackSpeed(speed);
+            }
+
+            @Override
+            public void seekTo(long positionUs) {
+                seekToUs(positionUs);
+            }
+
+            @Override
+            public void hold() {
+                holdPlayback();
+            }
+
+            @Override
+            public void resume() {
+                resumePlayback();
+            }
+        });
+        addOnLayoutChangeListener(anchorLayoutListener);
+    }
+    // endregion
+
+    /**
+     * 设置不透明视频 从assets文件中
+     */
+    public void setBackVideoFromAssets(String assetsFileName) {
+        backPlayer.setVideoFromAssets(assetsFileName);
+    }
+
+    /**
+     * 设置不透明视频的解码引擎，默认 {@link VideoPlayer#MEDIA_PLAYER}
+     */
+    public void setBackVideoPlayerFactory(VideoPlayer.Factory factory) {
+        backPlayer.setVideoPlayerFactory(factory);
+    }
+
+    /**
+     * 两个视频都从同一个预加载里接手播放器
+     */
+    @Override
+    public void setVideoPreloader(VideoPreloader preloader) {
+        super.setVideoPreloader(preloader);
+        backPlayer.setVideoPreloader(preloader);
+    }
+
+    /**
+     * 不透明视频画在 anchor 所在的区域，anchor 一般是布局中占位的空视图。传null时铺满本视图
+     */
+    public void setBackVideoAnchor(View anchor) {
+        if (backAnchor != null) {
+            backAnchor.removeOnLayoutChangeListener(anchorLayoutListener);
+        }
+        backAnchor = anchor;
+        if (anchor != null) {
+            anchor.addOnLayoutChangeListener(anchorLayoutListener);
+        }
+        updateBackBounds();
+    }
+
+    private void updateBackBounds() {
+        View anchor = backAnchor;
+        if (anchor == null || anchor.getWidth() == 0 || anchor.getHeight() == 0) {
+            backLayer.setBounds(0, 0, 0, 0);
+        } else {
+            anchor.getLocationInWindow(anchorLocation);
+            getLocationInWindow(selfLocation);
+            int left = anchorLocation[0] - selfLocation[0];
+            int top = anchorLocation[1] - selfLocation[1];
+            backLayer.setBounds(left, top, left + anchor.getWidth(), top + anchor.getHeight());
+        }
+        // 暂停时也要按新位置重绘
+        requestRender();
+    }
+
+    /**
+     * 两个视频的漂移和纠正统计
+     */
+    public PlaybackSync getPlaybackSync() {
+        return playbackSync;
+    }
+
+    // region 播放器状态
+    @Override
+    public void start() {
+        playbackSync.reset();
+        super.start();
+        backPlayer.start();
+        removeCallbacks(syncTask);
+        postDelayed(syncTask, SYNC_INTERVAL_MS);
+    }
+
+    @Override
+    public void pause() {
+        stopSync();
+        super.pause();
+        backPlayer.pause();
+    }
+
+    @Override
+    public void stop() {
+        stopSync();
+        super.stop();
+        backPlayer.stop();
+    }
+
+    @Override
+    public void release() {
+        stopSync();
+        super.release();
+        backPlayer.release();
+        backLayer.release();
+    }
+
+    /**
+     * 在操作播放器之前调用，先把调过的速度恢复
+     */
+    private void stopSync() {
+        removeCallbacks(syncTask);
+        playbackSync.reset();
+    }
+    // endregion
+
+    // region 视频状态监听
+    public void setOnBackBufferingListener(VideoListener.OnBufferingListener listener) {
+        backPlayer.setOnBufferingListener(listener);
+    }
+
+    public void setOnBackFrameListener(VideoListener.OnFrameListener listener) {
+        backPlayer.setOnFrameListener(listener);
+    }
+
+    public void setOnBackErrorListener(VideoListener.OnErrorListener listener) {
+        backPlayer.setOnErrorListener(listener);
+    }
+    // endregion
+}
@@ -0,0 +1,93 @@
+package com.demo.outwindowvideo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 封面的磁盘缓存：一个键一个文件，按最后访问时间淘汰
+ * <p>
+ * 键由调用方根据视频来源拼出，这里取 SHA-1 作为文件名，写入见 {@link CacheFiles#writeAtomically}。
+ * 只在一个线程上使用。
+ *
+ * @since 2026/10/17
+ */
+final class CoverDiskCache {
+
+    private final File directory;
+    private final long maxBytes;
+
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    CoverDiskCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return 缓存的文件，没有时返回null。命中会刷新访问时间
+     */
+    File get(String key) {
+        File file = new File(directory, hashKey(key));
+        if (!file.isFile()) {
+            misses++;
+            return null;
+        }
+        hits++;
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * 写入 key 对应的文件，然后淘汰到预算以内
+     *
+     * @return 是否写入成功
+     */
+    boolean put(String key, CacheFiles.Writer writer) {
+        boolean written;
+        try {
+            written = CacheFiles.writeAtomically(new File(directory, hashKey(key)), writer);
+        } catch (IOException e) {
+            written = false;
+        }
+        if (!written) {
+            return false;
+        }
+        trimToSize();
+        return true;
+    }
+
+    String getStats() {
+        return "hits=" + hits + " misses=" + misses + " evictions=" + evictions;
+    }
+
+    static String hashKey(String key) {
+        return CacheFiles.hexDigest("SHA-1", key);
+    }
+
+    // region 内部
+    private void trimToSize() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length && totalBytes > maxBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                totalBytes -= length;
+                evictions++;
+            }
+        }
+    }
+    // endregion
+}
@@ -0,0 +1,263 @@
+package com.demo.outwindowvideo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * 封面的内存缓存：按访问顺序保留、总大小有预算，合并同一封面的并发请求，记录哪些图可以作为 inBitmap 复用
+ * <p>
+ * 与 Android 无关，图片类型由 {@link Bitmaps} 描述，加载交给 worker 执行、结果切回 main，便于在JVM上测试。
+ * 从内存淘汰的图只有在没有绑定到视图、也没有交给调用方时才会复用。除 {@link Loader#load} 外都在 main 上调用。
+ *
+ * @param <B> 图片类型，Android 上即 Bitmap
+ * @since 2026/10/17
+ */
+final class CoverMemoryCache<B> {
+
+    interface Bitmaps<B> {
+        /**
+         * @return 占用的内存，字节
+         */
+        long sizeOf(B bitmap);
+
+        /**
+         * @return 能否作为 inBitmap 解码别的图（可变、没有回收）
+         */
+        boolean isReusable(B bitmap);
+    }
+
+    interface Loader<B> {
+        /**
+         * 在 worker 上执行
+         *
+         * @param candidate 可以复用内存的图，没有时为null；没用上时交还给缓存
+         * @return 取不到时返回null
+         */
+        B load(B candidate);
+    }
+
+    interface Callback<B> {
+        /**
+         * @param cover 取不到时为null
+         */
+        void onLoaded(B cover);
+    }
+
+    /**
+     * 目标当前要显示的图
+     */
+    private static final class Binding<B> {
+        B bitmap;
+    }
+
+    private final long maxBytes;
+    private final int maxReusable;
+    private final Bitmaps<B> bitmaps;
+    private final Executor worker;
+    private final Executor main;
+
+    private final LinkedHashMap<String, B> memoryCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private final ArrayList<B> reusable = new ArrayList<>();
+    private final Map<String, ArrayList<Callback<B>>> loading = new LinkedHashMap<>();
+    private final WeakHashMap<Object, Binding<B>> bindings = new WeakHashMap<>();
+    /**
+     * 直接交给调用方的图，不知道什么时候不再使用，不能复用
+     */
+    private final Set<B> external = Collections.newSetFromMap(new WeakHashMap<B, Boolean>());
+
+    private int requests;
+    private int memoryHits;
+    private int loaded;
+    private int reused;
+    private int failed;
+
+    /**
+     * @param maxBytes    内存缓存的预算
+     * @param maxReusable 最多留几张待复用的图
+     */
+    CoverMemoryCache(long maxBytes, int maxReusable, Bitmaps<B> bitmaps, Executor worker, Executor main) {
+        this.maxBytes = maxBytes;
+        this.maxReusable = maxReusable;
+        this.bitmaps = bitmaps;
+        this.worker = worker;
+        this.main = main;
+    }
+
+    /**
+     * 取 key 对应的图直接交给调用方，之后不再复用它的内存
+     *
+     * @param expectedBytes 解码结果大约的大小，用来挑选可复用的图
+     */
+    void load(String key, long expectedBytes, Loader<B> loader, final Callback<B> callback) {
+        request(key, expectedBytes, loader, cover -> {
+            if (cover != null) {
+                external.add(cover);
+            }
+            callback.onLoaded(cover);
+        });
+    }
+
+    /**
+     * 取 key 对应的图给 target 显示。同一个 target 后发起的请求优先，先发起的结果不再回调；
+     * 换下来的图不再被引用时才会复用
+     */
+    void bind(final Object target, String key, long expectedBytes, Loader<B> loader, final Callback<B> callback) {
+        final Binding<B> binding = new Binding<>();
+        final Binding<B> previous = bindings.put(target, binding);
+        request(key, expectedBytes, loader, cover -> {
+            if (bindings.get(target) != binding) {
+                return;
+            }
+            binding.bitmap = cover;
+            callback.onLoaded(cover);
+            if (previous != null && previous.bitmap != null && previous.bitmap != cover) {
+                B old = previous.bitmap;
+                previous.bitmap = null;
+                reuseIfUnused(old);
+            }
+        });
+    }
+
+    /**
+     * 清掉内存缓存和待复用的图
+     */
+    void trimMemory() {
+        memoryCache.clear();
+        memoryBytes = 0;
+        reusable.clear();
+    }
+
+    long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    int getReusableCount() {
+        return reusable.size();
+    }
+
+    String getStats() {
+        return "requests=" + requests + " memoryHits=" + memoryHits + " loaded=" + loaded
+                + " reused=" + reused + " failed=" + failed + " memoryBytes=" + memoryBytes;
+    }
+
+    // region 内部
+    private void request(final String key, long expectedBytes, final Loader<B> loader, Callback<B> callback) {
+        requests++;
+        B cached = memoryCache.get(key);
+        if (cached != null) {
+            memoryHits++;
+            callback.onLoaded(cached);
+            return;
+        }
+        ArrayList<Callback<B>> callbacks = loading.get(key);
+        if (callbacks != null) {
+            callbacks.add(callback);
+            return;
+        }
+        callbacks = new ArrayList<>();
+        callbacks.add(callback);
+        loading.put(key, callbacks);
+        final B candidate = takeReusable(expectedBytes);
+        worker.execute(() -> {
+            B cover = null;
+            try {
+                cover = loader.load(candidate);
+            } finally {
+                // 加载抛出异常时也要结束这次请求，否则同一个 key 以后都在等它
+                final B result = cover;
+                main.execute(() -> deliver(key, result, candidate));
+            }
+        });
+    }
+
+    private void deliver(String key, B cover, B candidate) {
+        if (cover != null) {
+            loaded++;
+        } else {
+            failed++;
+        }
+        if (candidate != null) {
+            if (cover == candidate) {
+                reused++;
+            } else {
+                offerReusable(candidate);
+            }
+        }
+        if (cover != null) {
+            putMemory(key, cover);
+        }
+        ArrayList<Callback<B>> callbacks = loading.remove(key);
+        if (callbacks != null) {
+            for (Callback<B> callback : callbacks) {
+                callback.onLoaded(cover);
+            }
+        }
+    }
+
+    private void putMemory(String key, B cover) {
+        B old = memoryCache.put(key, cover);
+        memoryBytes += bitmaps.sizeOf(cover);
+        if (old != null && old != cover) {
+            memoryBytes -= bitmaps.sizeOf(old);
+            reuseIfUnused(old);
+        }
+        Iterator<Map.Entry<String, B>> it = memoryCache.entrySet().iterator();
+        while (memoryBytes > maxBytes && it.hasNext()) {
+            B evicted = it.next().getValue();
+            if (evicted == cover) {
+                // 刚放进去的一个就超了预算，留着
+                break;
+            }
+            it.remove();
+            memoryBytes -= bitmaps.sizeOf(evicted);
+            reuseIfUnused(evicted);
+        }
+    }
+
+    /**
+     * 不在内存缓存里、没有绑定到目标、也没交给调用方的图，放进复用列表
+     */
+    private void reuseIfUnused(B bitmap) {
+        if (!bitmaps.isReusable(bitmap) || external.contains(bitmap) || memoryCache.containsValue(bitmap)) {
+            return;
+        }
+        for (Binding<B> binding : bindings.values()) {
+            if (binding.bitmap == bitmap) {
+                return;
+            }
+        }
+        offerReusable(bitmap);
+    }
+
+    private void offerReusable(B bitmap) {
+        if (reusable.contains(bitmap)) {
+            return;
+        }
+        if (reusable.size() >= maxReusable) {
+            reusable.remove(0);
+        }
+        reusable.add(bitmap);
+    }
+
+    /**
+     * @return 放得下 bytes 的最小一个，没有时返回null
+     */
+    private B takeReusable(long bytes) {
+        int best = -1;
+        for (int i = 0; i < reusable.size(); i++) {
+            long size = bitmaps.sizeOf(reusable.get(i));
+            if (size >= bytes && (best < 0 || size < bitmaps.sizeOf(reusable.get(best)))) {
+                best = i;
+            }
+        }
+        return best >= 0 ? reusable.remove(best) : null;
+    }
+    // endregion
+}
@@ -0,0 +1,71 @@
+package com.demo.outwindowvideo;
+
+/**
+ * 按解码帧驱动渲染
+ * <p>
+ * 解码器每产出一帧（SurfaceTexture.onFrameAvailable）才请求一次渲染，
+ * 渲染线程处理完之前到达的多帧只会触发一次 requestRender，绘制时只需 updateTexImage 一次取最新帧。
+ * 播放器暂停、停止或缓冲时没有新帧，渲染线程也就不再绘制。
+ *
+ * @since 2026/10/17
+ */
+final class FrameScheduler {
+
+    /**
+     * 请求渲染线程绘制一帧，通常就是 {@link GLTextureView#requestRender()}
+     */
+    interface RenderRequester {
+        void requestRender();
+    }
+
+    private RenderRequester renderRequester;
+    /**
+     * 上次绘制之后到达、尚未被取走的帧数
+     */
+    private int pendingFrames;
+    /**
+     * 已请求渲染但渲染线程还未开始绘制
+     */
+    private boolean renderRequested;
+
+    synchronized void setRenderRequester(RenderRequester renderRequester) {
+        this.renderRequested = false;
+        this.renderRequester = renderRequester;
+    }
+
+    /**
+     * 解码器产出新帧，任意线程调用
+     */
+    void onFrameAvailable() {
+        RenderRequester requester;
+        synchronized (this) {
+            pendingFrames++;
+            if (renderRequested || renderRequester == null) {
+                return;
+            }
+            renderRequested = true;
+            requester = renderRequester;
+        }
+        requester.requestRender();
+    }
+
+    /**
+     * 渲染线程开始绘制时调用
+     *
+     * @return 是否有新帧需要 updateTexImage
+     */
+    synchronized boolean beginDraw() {
+        renderRequested = false;
+        boolean hasNewFrame = pendingFrames > 0;
+        pendingFrames = 0;
+        return hasNewFrame;
+    }
+
+    /**
+     * 新的纹理被创建后丢弃旧的计数
+     */
+    synchronized void reset() {
+        pendingFrames = 0;
+        renderRequested = false;
+    }
+}
@@ -0,0 +1,124 @@
+package com.demo.outwindowvideo;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+/**
+ * 渲染线程的帧同步
+ * <p>
+ * 旧的做法是每帧结束调用 glFinish，CPU 要等到 GPU 空闲后才能 eglSwapBuffers。
+ * 流水线模式下每帧只插入一个 fence，仅当在途帧数超过上限时才等待最早那一帧的 fence，
+ * CPU 可以提前准备后面的帧。上下文不支持 fence（GLES 3.0 以下）时只依赖 eglSwapBuffers 自身的节流。
+ * <p>
+ * 同时统计每帧在同步上阻塞的 CPU 时间，可用来对比两种模式。只能在渲染线程使用。
+ *
+ * @since 2026/10/17
+ */
+final class FrameSync {
+
+    /**
+     * 在途帧数上限为 0 时回退到每帧 glFinish
+     */
+    static final int FINISH_EVERY_FRAME = 0;
+    static final int DEFAULT_FRAMES_IN_FLIGHT = 2;
+
+    private static final long FENCE_TIMEOUT_NANOS = 100_000_000L;
+
+    private int maxFramesInFlight = DEFAULT_FRAMES_IN_FLIGHT;
+    private boolean fenceSupported;
+    private long[] fences = new long[DEFAULT_FRAMES_IN_FLIGHT];
+    private int oldest;
+    private int inFlight;
+
+    private long syncNanos;
+    private long frames;
+
+    /**
+     * 新的 EGLContext 创建后调用，旧 context 的 fence 已经失效
+     */
+    void onContextCreated() {
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        fenceSupported = version != null && version.startsWith("OpenGL ES ")
+                && version.length() > 10 && version.charAt(10) >= '3';
+        oldest = 0;
+        inFlight = 0;
+    }
+
+    /**
+     * 离开还会继续使用的 context 之前调用，删掉还没等待的 fence
+     */
+    void onContextReleased() {
+        while (inFlight > 0) {
+            GLES30.glDeleteSync(fences[oldest]);
+            fences[oldest] = 0;
+            oldest = (oldest + 1) % maxFramesInFlight;
+            inFlight--;
+        }
+        oldest = 0;
+    }
+
+    void setMaxFramesInFlight(int maxFramesInFlight) {
+        if (maxFramesInFlight < 0) {
+            throw new IllegalArgumentException("maxFramesInFlight must be >= 0");
+        }
+        if (maxFramesInFlight == this.maxFramesInFlight) {
+            return;
+        }
+        drain();
+        this.maxFramesInFlight = maxFramesInFlight;
+        if (maxFramesInFlight > fences.length) {
+            fences = new long[maxFramesInFlight];
+        }
+    }
+
+    int getMaxFramesInFlight() {
+        return maxFramesInFlight;
+    }
+
+    /**
+     * 在 onDrawFrame 的最后调用，之后由 GLThread 执行 eglSwapBuffers
+     */
+    void endFrame() {
+        long start = System.nanoTime();
+        if (maxFramesInFlight == FINISH_EVERY_FRAME) {
+            GLES20.glFinish();
+        } else if (fenceSupported) {
+            if (inFlight == maxFramesInFlight) {
+                waitOldest();
+            }
+            fences[(oldest + inFlight) % maxFramesInFlight] =
+                    GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            inFlight++;
+        }
+        syncNanos += System.nanoTime() - start;
+        frames++;
+    }
+
+    private void waitOldest() {
+        long fence = fences[oldest];
+        GLES30.glClientWaitSync(fence, GLES30.GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT_NANOS);
+        GLES30.glDeleteSync(fence);
+        fences[oldest] = 0;
+        oldest = (oldest + 1) % maxFramesInFlight;
+        inFlight--;
+    }
+
+    private void drain() {
+        while (inFlight > 0) {
+            waitOldest();
+        }
+        oldest = 0;
+    }
+
+    /**
+     * @return 平均每帧阻塞在 glFinish 或 fence 等待上的 CPU 时间
+     */
+    long getAverageSyncNanos() {
+        return frames == 0 ? 0 : syncNanos / frames;
+    }
+
+    void resetStats() {
+        syncNanos = 0;
+        frames = 0;
+    }
+}
@@ -0,0 +1,320 @@
+package com.demo.outwindowvideo;
+
+import android.opengl.GLES20;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.microedition.khronos.opengles.GL;
+
+/**
+ * 统计每帧GL调用的 {@link GLTextureView.GLWrapper}
+ * <p>
+ * 通过 {@link GLTextureView#setGLWrapper(GLTextureView.GLWrapper)} 安装后，按方法名统计渲染器每帧的GL调用次数，
+ * 并标记冗余的状态设置，即设置的值与当前GL状态相同，例如每帧重复的 glEnable(GL_BLEND)、glBlendFunc、glClearColor。
+ * 同时统计包装层自身的耗时（不含真正的GL调用）。
+ * <p>
+ * 包装后的GL对象同时实现 {@link Gles}，通过 {@link Gles#from(GL)} 取调用入口的渲染器（如 {@link AlphaVideoRenderer}）
+ * 的 GLES20 调用也会被统计。与 {@link GLTextureView#DEBUG_LOG_GL_CALLS} 等调试开关同时使用时，
+ * GLDebugHelper 会再包一层，GLES20 调用就统计不到了。
+ * <p>
+ * 每帧结束时生成一份不可变的 {@link FrameSummary}，可在任意线程通过 {@link #getLastFrame()} 获取，测试可直接断言。
+ * 包装层使用反射，每次调用都有分配，只用于调试和测试。
+ *
+ * @since 2026/10/17
+ */
+public final class GLProfiler implements GLTextureView.FrameAwareGLWrapper {
+
+    /**
+     * 每帧统计结果，在渲染线程回调
+     */
+    public interface OnFrameProfiledListener {
+        void onFrameProfiled(FrameSummary summary);
+    }
+
+    private final Gles gles;
+    private final StateTracker stateTracker = new StateTracker();
+
+    // 以下只在渲染线程访问
+    private final HashMap<String, int[]> callCounts = new HashMap<>();
+    private final HashMap<String, int[]> redundantCounts = new HashMap<>();
+    private long overheadNanos;
+    private long frameIndex;
+
+    private volatile FrameSummary lastFrame;
+    private volatile OnFrameProfiledListener listener;
+
+    public GLProfiler() {
+        this(Gles.SYSTEM);
+    }
+
+    /**
+     * @param gles {@link Gles} 调用最终转发的对象，测试时可传入假的实现
+     */
+    GLProfiler(Gles gles) {
+        this.gles = gles;
+    }
+
+    @Override
+    public GL wrap(GL gl) {
+        // 新的GL对象通常意味着新的context，之前记录的状态作废
+        stateTracker.reset();
+        Set<Class<?>> interfaces = new LinkedHashSet<>();
+        // Gles 放在最前，与GL10同名同参的方法（glClear等）转发给 gles
+        interfaces.add(Gles.class);
+        for (Class<?> c = gl.getClass(); c != null; c = c.getSuperclass()) {
+            collectInterfaces(c, interfaces);
+        }
+        return (GL) Proxy.newProxyInstance(GLProfiler.class.getClassLoader(),
+                interfaces.toArray(new Class<?>[0]), new ProfilingHandler(gl));
+    }
+
+    private static void collectInterfaces(Class<?> c, Set<Class<?>> out) {
+        for (Class<?> i : c.getInterfaces()) {
+            if (out.add(i)) {
+                collectInterfaces(i, out);
+            }
+        }
+    }
+
+    @Override
+    public void onFrameEnd() {
+        FrameSummary summary = new FrameSummary(frameIndex++, snapshot(callCounts),
+                snapshot(redundantCounts), overheadNanos);
+        callCounts.clear();
+        redundantCounts.clear();
+        overheadNanos = 0;
+        lastFrame = summary;
+        OnFrameProfiledListener l = listener;
+        if (l != null) {
+            l.onFrameProfiled(summary);
+        }
+    }
+
+    /**
+     * @return 最近一帧的统计，还没有完整的一帧时为null
+     */
+    public FrameSummary getLastFrame() {
+        return lastFrame;
+    }
+
+    public void setOnFrameProfiledListener(OnFrameProfiledListener listener) {
+        this.listener = listener;
+    }
+
+    private static Map<String, Integer> snapshot(HashMap<String, int[]> counts) {
+        HashMap<String, Integer> copy = new HashMap<>();
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue()[0]);
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static void increment(HashMap<String, int[]> counts, String name) {
+        int[] count = counts.get(name);
+        if (count == null) {
+            count = new int[1];
+            counts.put(name, count);
+        }
+        count[0]++;
+    }
+
+    private final class ProfilingHandler implements InvocationHandler {
+        private final GL gl;
+
+        ProfilingHandler(GL gl) {
+            this.gl = gl;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "GLProfiler(" + gl + ")";
+                }
+            }
+            long start = System.nanoTime();
+            String name = method.getName();
+            increment(callCounts, name);
+            if (stateTracker.isRedundant(name, args)) {
+                increment(redundantCounts, name);
+            }
+            Object target = method.getDeclaringClass() == Gles.class ? gles : gl;
+            long callStart = System.nanoTime();
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                long callEnd = System.nanoTime();
+                overheadNanos += (callStart - start) + (System.nanoTime() - callEnd);
+            }
+        }
+    }
+
+    /**
+     * 记录已知的GL状态，判断一次状态设置是否多余。未知状态（还没设置过）不算冗余
+     */
+    private static final class StateTracker {
+        private final HashMap<Integer, Boolean> caps = new HashMap<>();
+        private final HashSet<Integer> enabledAttribArrays = new HashSet<>();
+        private final HashMap<Long, Integer> boundTextures = new HashMap<>();
+        private final HashMap<String, Object[]> lastArgs = new HashMap<>();
+        private int activeTexture = GLES20.GL_TEXTURE0;
+
+        void reset() {
+            caps.clear();
+            enabledAttribArrays.clear();
+            boundTextures.clear();
+            lastArgs.clear();
+            activeTexture = GLES20.GL_TEXTURE0;
+        }
+
+        boolean isRedundant(String name, Object[] args) {
+            switch (name) {
+                case "glEnable":
+                    return Boolean.TRUE.equals(caps.put((Integer) args[0], Boolean.TRUE));
+                case "glDisable":
+                    return Boolean.FALSE.equals(caps.put((Integer) args[0], Boolean.FALSE));
+                case "glEnableVertexAttribArray":
+                    return !enabledAttribArrays.add((Integer) args[0]);
+                case "glDisableVertexAttribArray":
+                    enabledAttribArrays.remove((Integer) args[0]);
+                    return false;
+                case "glActiveTexture": {
+                    int unit = (Integer) args[0];
+                    boolean redundant = unit == activeTexture;
+                    activeTexture = unit;
+                    return redundant;
+                }
+                case "glBindTexture": {
+                    long key = ((long) activeTexture << 32) | ((Integer) args[0] & 0xffffffffL);
+                    Integer previous = boundTextures.put(key, (Integer) args[1]);
+                    return args[1].equals(previous);
+                }
+                case "glUniform1f":
+                case "glUniform4f": {
+                    // uniform 属于当前程序
+                    Object[] program = lastArgs.get("glUseProgram");
+                    String key = name + (program != null ? program[0] : "") + ":" + args[0];
+                    Object[] previous = lastArgs.put(key, args.clone());
+                    return program != null && Arrays.equals(previous, args);
+                }
+                case "glBlendFunc":
+                case "glClearColor":
+                case "glUseProgram":
+                case "glViewport":
+                case "glBindBuffer":
+                case "glLineWidth":
+                case "glDepthMask":
+                case "glColorMask":
+                case "glScissor": {
+                    // glBindBuffer 按 target 分别记录
+                    String key = "glBindBuffer".equals(name) ? name + args[0] : name;
+                    Object[] previous = lastArgs.put(key, args.clone());
+                    return Arrays.equals(previous, args);
+                }
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * 一帧的GL调用统计
+     */
+    public static final class FrameSummary {
+        private final long frameIndex;
+        private final Map<String, Integer> callCounts;
+        private final Map<String, Integer> redundantCounts;
+        private final long overheadNanos;
+        private final int totalCalls;
+        private final int totalRedundantCalls;
+
+        FrameSummary(long frameIndex, Map<String, Integer> callCounts,
+                     Map<String, Integer> redundantCounts, long overheadNanos) {
+            this.frameIndex = frameIndex;
+            this.callCounts = callCounts;
+            this.redundantCounts = redundantCounts;
+            this.overheadNanos = overheadNanos;
+            this.totalCalls = sum(callCounts);
+            this.totalRedundantCalls = sum(redundantCounts);
+        }
+
+        private static int sum(Map<String, Integer> counts) {
+            int total = 0;
+            for (int count : counts.values()) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * 从0开始的帧序号
+         */
+        public long getFrameIndex() {
+            return frameIndex;
+        }
+
+        public int getCallCount(String glFunction) {
+            Integer count = callCounts.get(glFunction);
+            return count == null ? 0 : count;
+        }
+
+        public int getRedundantCount(String glFunction) {
+            Integer count = redundantCounts.get(glFunction);
+            return count == null ? 0 : count;
+        }
+
+        public int getTotalCalls() {
+            return totalCalls;
+        }
+
+        public int getTotalRedundantCalls() {
+            return totalRedundantCalls;
+        }
+
+        /**
+         * 按方法名的调用次数
+         */
+        public Map<String, Integer> getCallCounts() {
+            return callCounts;
+        }
+
+        /**
+         * 按方法名的冗余调用次数
+         */
+        public Map<String, Integer> getRedundantCounts() {
+            return redundantCounts;
+        }
+
+        /**
+         * 包装层本身在这一帧花费的时间，不含真正的GL调用
+         */
+        public long getOverheadNanos() {
+            return overheadNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "FrameSummary{frame=" + frameIndex
+                    + ", calls=" + totalCalls
+                    + ", redundant=" + totalRedundantCalls + " " + redundantCounts
+                    + ", overhead=" + overheadNanos / 1000 + "us}";
+        }
+    }
+}
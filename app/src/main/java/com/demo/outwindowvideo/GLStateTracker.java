@@ -0,0 +1,339 @@
+package com.demo.outwindowvideo;
+
+import android.opengl.GLES20;
+
+import java.util.HashMap;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLContext;
+
+/**
+ * 记录一个 EGLContext 当前的GL状态，只有值变化时才真正调用GL
+ * <p>
+ * GL状态属于 context 而不属于渲染器，同一 context 上的所有渲染器（如共用渲染线程时）必须共用同一个实例，
+ * 通过 {@link #forCurrentContext()} 获取。还没设置过的状态视为未知，第一次总会调用。
+ * 绕过本类修改了状态（例如 SurfaceTexture.updateTexImage 会绑定纹理）时需要告诉它，否则记录就不准了。
+ * 只能在渲染线程使用。
+ *
+ * @since 2026/10/17
+ */
+final class GLStateTracker {
+
+    private static final int UNKNOWN = -1;
+    private static final int MAX_ATTRIBS = 8;
+    private static final int MAX_TEXTURE_UNITS = 8;
+    private static final int TEXTURE_TARGETS = 2;
+    private static final int MAX_UNIFORMS = 16;
+
+    private static final HashMap<EGLContext, GLStateTracker> trackers = new HashMap<>();
+
+    private Gles gles = Gles.SYSTEM;
+
+    // 以下为 UNKNOWN 时表示不知道当前值
+    private int blend = UNKNOWN;
+    private int blendSrc = UNKNOWN;
+    private int blendDst = UNKNOWN;
+    private boolean clearColorKnown;
+    private float clearRed;
+    private float clearGreen;
+    private float clearBlue;
+    private float clearAlpha;
+    private final int[] viewport = {UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN};
+    private int scissorTest = UNKNOWN;
+    private final int[] scissor = {UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN};
+    private int program = UNKNOWN;
+    /**
+     * uniform 属于程序，记录每个 location 上次的值是设置给哪个程序的
+     */
+    private final int[] uniformPrograms = new int[MAX_UNIFORMS];
+    private final float[][] uniformValues = new float[MAX_UNIFORMS][4];
+    private int activeTexture = UNKNOWN;
+    /**
+     * [纹理单元][GL_TEXTURE_2D, GL_TEXTURE_EXTERNAL_OES]
+     */
+    private final int[][] boundTextures = new int[MAX_TEXTURE_UNITS][TEXTURE_TARGETS];
+    private int arrayBuffer = UNKNOWN;
+    private final int[] attribEnabled = new int[MAX_ATTRIBS];
+    /**
+     * 每个 attribute 的 buffer、size、type、normalized、stride、offset
+     */
+    private final int[][] attribPointers = new int[MAX_ATTRIBS][6];
+
+    GLStateTracker() {
+        reset();
+    }
+
+    /**
+     * @return 当前 context 共用的实例
+     */
+    static GLStateTracker forCurrentContext() {
+        EGLContext context = ((EGL10) EGLContext.getEGL()).eglGetCurrentContext();
+        synchronized (GLStateTracker.class) {
+            GLStateTracker tracker = trackers.get(context);
+            if (tracker == null) {
+                tracker = new GLStateTracker();
+                trackers.put(context, tracker);
+            }
+            return tracker;
+        }
+    }
+
+    /**
+     * context 销毁时调用
+     */
+    static synchronized void onContextDestroyed(EGLContext context) {
+        trackers.remove(context);
+    }
+
+    /**
+     * 设置真正执行GL调用的对象，每帧从渲染器拿到的 GL 对象可能不同（如经过 {@link GLProfiler} 包装）
+     */
+    void setGles(Gles gles) {
+        this.gles = gles;
+    }
+
+    /**
+     * 忘掉所有记录的状态
+     */
+    void reset() {
+        blend = UNKNOWN;
+        blendSrc = UNKNOWN;
+        blendDst = UNKNOWN;
+        clearColorKnown = false;
+        for (int i = 0; i < viewport.length; i++) {
+            viewport[i] = UNKNOWN;
+            scissor[i] = UNKNOWN;
+        }
+        scissorTest = UNKNOWN;
+        program = UNKNOWN;
+        for (int i = 0; i < MAX_UNIFORMS; i++) {
+            uniformPrograms[i] = UNKNOWN;
+        }
+        activeTexture = UNKNOWN;
+        for (int[] unit : boundTextures) {
+            unit[0] = UNKNOWN;
+            unit[1] = UNKNOWN;
+        }
+        arrayBuffer = UNKNOWN;
+        for (int i = 0; i < MAX_ATTRIBS; i++) {
+            attribEnabled[i] = UNKNOWN;
+            attribPointers[i][0] = UNKNOWN;
+        }
+    }
+
+    void setBlendEnabled(boolean enabled) {
+        int value = enabled ? 1 : 0;
+        if (blend != value) {
+            blend = value;
+            if (enabled) {
+                gles.glEnable(GLES20.GL_BLEND);
+            } else {
+                gles.glDisable(GLES20.GL_BLEND);
+            }
+        }
+    }
+
+    void blendFunc(int sfactor, int dfactor) {
+        if (blendSrc != sfactor || blendDst != dfactor) {
+            blendSrc = sfactor;
+            blendDst = dfactor;
+            gles.glBlendFunc(sfactor, dfactor);
+        }
+    }
+
+    void clearColor(float red, float green, float blue, float alpha) {
+        if (!clearColorKnown || clearRed != red || clearGreen != green || clearBlue != blue
+                || clearAlpha != alpha) {
+            clearColorKnown = true;
+            clearRed = red;
+            clearGreen = green;
+            clearBlue = blue;
+            clearAlpha = alpha;
+            gles.glClearColor(red, green, blue, alpha);
+        }
+    }
+
+    void viewport(int x, int y, int width, int height) {
+        if (viewport[0] != x || viewport[1] != y || viewport[2] != width || viewport[3] != height) {
+            viewport[0] = x;
+            viewport[1] = y;
+            viewport[2] = width;
+            viewport[3] = height;
+            gles.glViewport(x, y, width, height);
+        }
+    }
+
+    void setScissorEnabled(boolean enabled) {
+        int value = enabled ? 1 : 0;
+        if (scissorTest != value) {
+            scissorTest = value;
+            if (enabled) {
+                gles.glEnable(GLES20.GL_SCISSOR_TEST);
+            } else {
+                gles.glDisable(GLES20.GL_SCISSOR_TEST);
+            }
+        }
+    }
+
+    void scissor(int x, int y, int width, int height) {
+        if (scissor[0] != x || scissor[1] != y || scissor[2] != width || scissor[3] != height) {
+            scissor[0] = x;
+            scissor[1] = y;
+            scissor[2] = width;
+            scissor[3] = height;
+            gles.glScissor(x, y, width, height);
+        }
+    }
+
+    void useProgram(int program) {
+        if (this.program != program) {
+            this.program = program;
+            gles.glUseProgram(program);
+        }
+    }
+
+    /**
+     * 给当前程序的 vec4 uniform 赋值
+     *
+     * @param value 长度为4
+     */
+    void uniform4f(int location, float[] value) {
+        if (location < 0) {
+            return;
+        }
+        if (location >= MAX_UNIFORMS || program == UNKNOWN) {
+            gles.glUniform4f(location, value[0], value[1], value[2], value[3]);
+            return;
+        }
+        float[] last = uniformValues[location];
+        if (uniformPrograms[location] == program && last[0] == value[0] && last[1] == value[1]
+                && last[2] == value[2] && last[3] == value[3]) {
+            return;
+        }
+        uniformPrograms[location] = program;
+        System.arraycopy(value, 0, last, 0, 4);
+        gles.glUniform4f(location, value[0], value[1], value[2], value[3]);
+    }
+
+    /**
+     * 给当前程序的 float uniform 赋值
+     */
+    void uniform1f(int location, float value) {
+        if (location < 0) {
+            return;
+        }
+        if (location >= MAX_UNIFORMS || program == UNKNOWN) {
+            gles.glUniform1f(location, value);
+            return;
+        }
+        float[] last = uniformValues[location];
+        if (uniformPrograms[location] == program && last[0] == value) {
+            return;
+        }
+        uniformPrograms[location] = program;
+        last[0] = value;
+        gles.glUniform1f(location, value);
+    }
+
+    void activeTexture(int texture) {
+        if (activeTexture != texture) {
+            activeTexture = texture;
+            gles.glActiveTexture(texture);
+        }
+    }
+
+    void bindTexture(int target, int texture) {
+        int[] slot = textureSlot(target);
+        if (slot == null) {
+            gles.glBindTexture(target, texture);
+            return;
+        }
+        int index = targetIndex(target);
+        if (slot[index] != texture) {
+            slot[index] = texture;
+            gles.glBindTexture(target, texture);
+        }
+    }
+
+    /**
+     * 保证纹理单元 unit 上绑定的是 texture；已经绑定时连当前纹理单元也不切换。
+     * 多个渲染层各用一个纹理单元时，每帧都不需要重新绑定
+     */
+    void bindTextureUnit(int unit, int target, int texture) {
+        int index = unit - GLES20.GL_TEXTURE0;
+        if (index >= 0 && index < MAX_TEXTURE_UNITS && boundTextures[index][targetIndex(target)] == texture) {
+            return;
+        }
+        activeTexture(unit);
+        bindTexture(target, texture);
+    }
+
+    /**
+     * 纹理已经在GL之外被绑定到当前纹理单元，例如 SurfaceTexture.updateTexImage
+     */
+    void onTextureBound(int target, int texture) {
+        int[] slot = textureSlot(target);
+        if (slot != null) {
+            slot[targetIndex(target)] = texture;
+        } else {
+            // 不知道绑定到了哪个纹理单元
+            for (int[] unit : boundTextures) {
+                unit[targetIndex(target)] = UNKNOWN;
+            }
+        }
+    }
+
+    void bindArrayBuffer(int buffer) {
+        if (arrayBuffer != buffer) {
+            arrayBuffer = buffer;
+            gles.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffer);
+        }
+    }
+
+    /**
+     * 从当前绑定的 GL_ARRAY_BUFFER 取数据
+     */
+    void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        int[] pointer = index < MAX_ATTRIBS ? attribPointers[index] : null;
+        int norm = normalized ? 1 : 0;
+        if (pointer != null && arrayBuffer != UNKNOWN && pointer[0] == arrayBuffer && pointer[1] == size
+                && pointer[2] == type && pointer[3] == norm && pointer[4] == stride && pointer[5] == offset) {
+            return;
+        }
+        if (pointer != null) {
+            pointer[0] = arrayBuffer;
+            pointer[1] = size;
+            pointer[2] = type;
+            pointer[3] = norm;
+            pointer[4] = stride;
+            pointer[5] = offset;
+        }
+        gles.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    void enableVertexAttribArray(int index) {
+        if (index >= MAX_ATTRIBS) {
+            gles.glEnableVertexAttribArray(index);
+            return;
+        }
+        if (attribEnabled[index] != 1) {
+            attribEnabled[index] = 1;
+            gles.glEnableVertexAttribArray(index);
+        }
+    }
+
+    private int[] textureSlot(int target) {
+        if (activeTexture == UNKNOWN) {
+            return null;
+        }
+        int unit = activeTexture - GLES20.GL_TEXTURE0;
+        if (unit < 0 || unit >= MAX_TEXTURE_UNITS) {
+            return null;
+        }
+        return boundTextures[unit];
+    }
+
+    private static int targetIndex(int target) {
+        return target == GLES20.GL_TEXTURE_2D ? 0 : 1;
+    }
+}
@@ -3,6 +3,9 @@ package com.demo.outwindowvideo;
 import android.content.Context;
 import android.graphics.SurfaceTexture;
 import android.opengl.GLDebugHelper;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.TextureView;
@@ -11,6 +14,8 @@ import android.view.View;
 import java.io.Writer;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 
 import javax.microedition.khronos.egl.EGL10;
@@ -97,7 +102,8 @@ public class GLTextureView extends TextureView
         try {
             if (glThread != null) {
                 // GLThread may still be running if this view was never
-                // attached to a window.
+                // attached to a window, or parked in the GLThreadPool, which
+                // only ever returns a thread to the view that parked it.
                 glThread.requestExitAndWait();
             }
         } finally {
@@ -179,6 +185,39 @@ public class GLTextureView extends TextureView
         return preserveEGLContextOnPause;
     }
 
+    /**
+     * Control whether this view renders on its own {@link GLThread} or on the single
+     * process-wide render thread shared by every GLTextureView that opts in.
+     * <p>
+     * In shared mode one EGL context is created for all opted-in views, and the shared
+     * thread makes it current on each view's window surface in turn before calling that
+     * view's {@link Renderer}. This keeps thread count, context memory and scheduler
+     * wakeups constant as the number of views grows. All views sharing the thread must
+     * use compatible EGL configs and client versions; the config and context are created
+     * with the factories of the first view that needs to draw.
+     * <p>
+     * Unlike the dedicated thread, {@link #surfaceChanged} does not block until a frame
+     * of the new size has been rendered.
+     * <p>If this method is
+     * called, it must be called before {@link #setRenderer(Renderer)}
+     * is called.
+     * <p>
+     * The default is false.
+     *
+     * @param shared true to render on the shared render thread
+     */
+    public void setSharedRenderThread(boolean shared) {
+        checkRenderThreadState();
+        sharedRenderThread = shared;
+    }
+
+    /**
+     * @return true if this view renders on the shared render thread
+     */
+    public boolean isSharedRenderThread() {
+        return sharedRenderThread;
+    }
+
     /**
      * Set the renderer associated with this view. Also starts the thread that
      * will call the renderer, which in turn causes the rendering to start.
@@ -217,10 +256,140 @@ public class GLTextureView extends TextureView
             eglWindowSurfaceFactory = new DefaultWindowSurfaceFactory();
         }
         this.renderer = renderer;
-        glThread = new GLThread(mThisWeakRef);
+        glThread = createRenderLoop();
         glThread.start();
     }
 
+    /**
+     * Enable or disable per-frame timing of this view's render loop. While enabled the
+     * render thread records the time spent in {@link Renderer#onDrawFrame(GL10)} and
+     * eglSwapBuffers and the interval between frames into preallocated histograms, so
+     * measuring adds no per-frame allocations. Renderers can add their own
+     * updateTexImage timing to the same {@link RenderMetrics}.
+     * <p>
+     * The default is false. Disabling drops the collected data.
+     *
+     * @param enabled true to collect frame timings
+     */
+    public void setRenderMetricsEnabled(boolean enabled) {
+        if (enabled) {
+            if (renderMetrics == null) {
+                renderMetrics = new RenderMetrics();
+            }
+        } else {
+            renderMetrics = null;
+        }
+    }
+
+    /**
+     * @return the frame timings of this view, or null if they are not being collected
+     * @see #setRenderMetricsEnabled(boolean)
+     */
+    public RenderMetrics getRenderMetrics() {
+        return renderMetrics;
+    }
+
+    /**
+     * Register a callback for failures of the render thread. Without a listener an EGL
+     * failure such as a context or surface that cannot be created is thrown on the render
+     * thread and crashes the process. With a listener the render thread releases its EGL
+     * objects, exits, and the listener is called on the UI thread, where the view can
+     * switch to another way of drawing, see {@link #abandonRendering()}.
+     * <p>
+     * Only failures of a dedicated or pooled render thread are reported; a failure on the
+     * shared render thread still propagates, since it would take down every view on it.
+     *
+     * @param listener the callback, or null to let failures propagate
+     */
+    public void setOnRenderFailureListener(OnRenderFailureListener listener) {
+        renderFailureListener = listener;
+    }
+
+    /**
+     * Stop the render thread for good and release its EGL surface, so that the
+     * TextureView can be drawn through other producers such as
+     * {@link #lockCanvas()}. The view will not start a new render thread when it is
+     * re-attached. Must be called on the UI thread.
+     */
+    public void abandonRendering() {
+        if (renderingAbandoned) {
+            return;
+        }
+        renderingAbandoned = true;
+        if (glThread != null) {
+            glThread.requestExitAndWait();
+        }
+    }
+
+    /**
+     * @return true once {@link #abandonRendering()} has been called
+     */
+    public boolean isRenderingAbandoned() {
+        return renderingAbandoned;
+    }
+
+    /*
+     * Called on the render thread that failed. Returns false if nobody handles the failure,
+     * in which case the caller rethrows it.
+     */
+    static boolean dispatchRenderFailure(GLTextureView view, final RuntimeException e) {
+        final OnRenderFailureListener listener = view != null ? view.renderFailureListener : null;
+        if (listener == null) {
+            return false;
+        }
+        Log.w(TAG, "render thread failed", e);
+        view.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onRenderFailure(e);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Keep this view's render thread and its EGL context in a process-wide pool while
+     * the view is detached, instead of stopping it. Re-attaching the view picks the
+     * thread up again without recreating the context or calling
+     * {@link Renderer#onSurfaceCreated(GL10, EGLConfig)}; see
+     * {@link #configureRenderThreadPool(int, long)} for the pool limits. Meant for views
+     * that scroll in and out of lists. Ignored for views on the shared render thread,
+     * which keeps its context anyway.
+     * <p>
+     * The default is false.
+     *
+     * @param pooling true to park the render thread on detach
+     */
+    public void setRenderThreadPooling(boolean pooling) {
+        renderThreadPooling = pooling;
+    }
+
+    /**
+     * @return true if this view parks its render thread on detach
+     */
+    public boolean isRenderThreadPooling() {
+        return renderThreadPooling;
+    }
+
+    /**
+     * Set how many detached render threads are kept and for how long. Threads beyond
+     * either limit exit and release their EGL context. Must be called on the UI thread.
+     * Passing 0 for either value disables pooling.
+     *
+     * @param maxParkedThreads  maximum number of parked threads, 3 by default
+     * @param idleTimeoutMillis how long a thread may stay parked, 10 seconds by default
+     */
+    public static void configureRenderThreadPool(int maxParkedThreads, long idleTimeoutMillis) {
+        GLThreadPool.configure(maxParkedThreads, idleTimeoutMillis);
+    }
+
+    private RenderLoop createRenderLoop() {
+        if (sharedRenderThread) {
+            return new SharedGLThread.Target(mThisWeakRef);
+        }
+        return new GLThread(mThisWeakRef);
+    }
+
     /**
      * Install a custom EGLContextFactory.
      * <p>If this method is
@@ -429,7 +598,22 @@ public class GLTextureView extends TextureView
      * @param r the runnable to be run on the GL rendering thread.
      */
     public void queueEvent(Runnable r) {
-        glThread.queueEvent(r);
+        glThread.queueEvent(null, r);
+    }
+
+    /**
+     * Queue a runnable to be run on the GL rendering thread, replacing any runnable
+     * queued earlier with an equal key that has not run yet. The replacement keeps
+     * the queue position of the first one. Use this for events that only need their
+     * latest value applied, such as a resize or a layout switch driven from scroll
+     * callbacks.
+     * Must not be called before a renderer has been set.
+     *
+     * @param coalesceKey key identifying events that collapse into one, or null to never collapse
+     * @param r           the runnable to be run on the GL rendering thread.
+     */
+    public void queueEvent(Object coalesceKey, Runnable r) {
+        glThread.queueEvent(coalesceKey, r);
     }
 
     /**
@@ -442,16 +626,22 @@ public class GLTextureView extends TextureView
         if (LOG_ATTACH_DETACH) {
             Log.d(TAG, "onAttachedToWindow reattach =" + detached);
         }
-        if (detached && (renderer != null)) {
+        if (detached && (renderer != null) && !renderingAbandoned) {
             int renderMode = RENDERMODE_CONTINUOUSLY;
             if (glThread != null) {
                 renderMode = glThread.getRenderMode();
             }
-            glThread = new GLThread(mThisWeakRef);
-            if (renderMode != RENDERMODE_CONTINUOUSLY) {
+            GLThread pooled = renderThreadPooling ? GLThreadPool.acquire(mThisWeakRef) : null;
+            if (pooled != null) {
+                glThread = pooled;
                 glThread.setRenderMode(renderMode);
+            } else {
+                glThread = createRenderLoop();
+                if (renderMode != RENDERMODE_CONTINUOUSLY) {
+                    glThread.setRenderMode(renderMode);
+                }
+                glThread.start();
             }
-            glThread.start();
         }
         detached = false;
     }
@@ -466,8 +656,11 @@ public class GLTextureView extends TextureView
         if (LOG_ATTACH_DETACH) {
             Log.d(TAG, "onDetachedFromWindow");
         }
-        if (glThread != null) {
-            glThread.requestExitAndWait();
+        if (glThread != null && !renderingAbandoned) {
+            if (!(renderThreadPooling && glThread instanceof GLThread
+                    && GLThreadPool.park((GLThread) glThread))) {
+                glThread.requestExitAndWait();
+            }
         }
         detached = true;
         super.onDetachedFromWindow();
@@ -510,8 +703,8 @@ public class GLTextureView extends TextureView
     }
 
     public void onSurfaceTextureUpdated(SurfaceTexture surface) {
-        requestRender();
-
+        // This is called after each of our own eglSwapBuffers, so requesting a render
+        // here would keep RENDERMODE_WHEN_DIRTY drawing continuously.
         for (SurfaceTextureListener l : surfaceTextureListeners) {
             l.onSurfaceTextureUpdated(surface);
         }
@@ -551,6 +744,27 @@ public class GLTextureView extends TextureView
         GL wrap(GL gl);
     }
 
+    /**
+     * A GLWrapper that also wants to know where frames end, e.g. to collect per-frame
+     * statistics. {@link #onFrameEnd()} is called on the render thread right after
+     * {@link Renderer#onDrawFrame(GL10)} returns, before the buffers are swapped.
+     *
+     * @see GLProfiler
+     */
+    public interface FrameAwareGLWrapper extends GLWrapper {
+        void onFrameEnd();
+    }
+
+    /**
+     * Notified on the UI thread when the render thread has died from an exception, e.g.
+     * because no EGL context or window surface could be created.
+     *
+     * @see #setOnRenderFailureListener(OnRenderFailureListener)
+     */
+    public interface OnRenderFailureListener {
+        void onRenderFailure(RuntimeException e);
+    }
+
     /**
      * A generic renderer interface.
      * <p>
@@ -656,6 +870,22 @@ public class GLTextureView extends TextureView
          *           test if the interface supports GL11 or higher interfaces.
          */
         void onDrawFrame(GL10 gl);
+
+        /**
+         * Called when the renderer stops using an EGL context that outlives it.
+         * <p>
+         * A view that uses a shared render thread (see {@link #setSharedRenderThread(boolean)})
+         * leaves the shared context when it is detached, but the context stays alive as long
+         * as any other view uses it. The resources created in
+         * {@link #onSurfaceCreated(GL10, EGLConfig)} are therefore not deleted with the
+         * context, and must be released here. The context is current on the calling thread.
+         * <p>
+         * A renderer that gets onSurfaceCreated again afterwards recreates its resources as usual.
+         *
+         * @param gl the GL interface. Use <code>instanceof</code> to
+         *           test if the interface supports GL11 or higher interfaces.
+         */
+        void onDetachedFromContext(GL10 gl);
     }
 
     /**
@@ -667,6 +897,11 @@ public class GLTextureView extends TextureView
     public interface EGLContextFactory {
         EGLContext createContext(EGL10 egl, EGLDisplay display, EGLConfig eglConfig);
 
+        /**
+         * Called on the render thread once the context is no longer current, also when the
+         * view that created it is already gone. Clients that keep per-context state (shader
+         * programs, tracked GL state) should drop it here.
+         */
         void destroyContext(EGL10 egl, EGLDisplay display, EGLContext context);
     }
 
@@ -784,6 +1019,14 @@ public class GLTextureView extends TextureView
 
         abstract EGLConfig chooseConfig(EGL10 egl, EGLDisplay display, EGLConfig[] configs);
 
+        /**
+         * @return a key identifying the config this chooser picks. Choosers with equal
+         * keys pick the same config, so the result can be shared through EglConfigCache.
+         */
+        String getCacheKey() {
+            return getClass().getName() + Arrays.toString(mConfigSpec);
+        }
+
         protected int[] mConfigSpec;
 
         private int[] filterConfigSpec(int[] configSpec) {
@@ -871,6 +1114,70 @@ public class GLTextureView extends TextureView
         }
     }
 
+    /**
+     * Process-wide cache of the initialized default EGLDisplay and of the EGLConfig
+     * chosen for each config spec. Starting a render thread then no longer calls
+     * eglInitialize or walks every config's attributes again. Only the built-in
+     * choosers are cached; a custom {@link EGLConfigChooser} is asked every time.
+     *
+     * @see #invalidateEglCache()
+     */
+    static class EglConfigCache {
+        private static EGLDisplay display;
+        private static final HashMap<String, EGLConfig> configs = new HashMap<>();
+
+        static synchronized EGLDisplay obtainDisplay(EGL10 egl) {
+            if (display == null) {
+                EGLDisplay newDisplay = egl.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
+                if (newDisplay == EGL10.EGL_NO_DISPLAY) {
+                    throw new RuntimeException("eglGetDisplay failed");
+                }
+                int[] version = new int[2];
+                if (!egl.eglInitialize(newDisplay, version)) {
+                    throw new RuntimeException("eglInitialize failed");
+                }
+                if (LOG_EGL) {
+                    Log.w("EglConfigCache", "eglInitialize " + version[0] + "." + version[1]);
+                }
+                display = newDisplay;
+            }
+            return display;
+        }
+
+        static EGLConfig chooseConfig(EGL10 egl, EGLDisplay eglDisplay, EGLConfigChooser chooser) {
+            if (!(chooser instanceof BaseConfigChooser)) {
+                return chooser.chooseConfig(egl, eglDisplay);
+            }
+            String key = ((BaseConfigChooser) chooser).getCacheKey();
+            synchronized (EglConfigCache.class) {
+                if (eglDisplay != display) {
+                    // Invalidated since the caller obtained its display.
+                    return chooser.chooseConfig(egl, eglDisplay);
+                }
+                EGLConfig config = configs.get(key);
+                if (config == null) {
+                    config = chooser.chooseConfig(egl, eglDisplay);
+                    configs.put(key, config);
+                }
+                return config;
+            }
+        }
+
+        static synchronized void invalidate() {
+            configs.clear();
+            display = null;
+        }
+    }
+
+    /**
+     * Drop the process-wide EGLDisplay and EGLConfig cache, for example after the
+     * display configuration changed. Render threads started afterwards initialize
+     * EGL and choose their config again; running threads keep what they have.
+     */
+    public static void invalidateEglCache() {
+        EglConfigCache.invalidate();
+    }
+
     /**
      * An EGL helper class.
      */
@@ -893,33 +1200,23 @@ public class GLTextureView extends TextureView
             egl = (EGL10) EGLContext.getEGL();
 
             /*
-             * Get to the default display.
+             * Get to the default display, initialized once per process.
              */
-            eglDisplay = egl.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
+            eglDisplay = EglConfigCache.obtainDisplay(egl);
 
-            if (eglDisplay == EGL10.EGL_NO_DISPLAY) {
-                throw new RuntimeException("eglGetDisplay failed");
-            }
-
-            /*
-             * We can now initialize EGL for that display
-             */
-            int[] version = new int[2];
-            if (!egl.eglInitialize(eglDisplay, version)) {
-                throw new RuntimeException("eglInitialize failed");
-            }
             GLTextureView view = glTextureViewWeakRef.get();
             if (view == null) {
                 eglConfig = null;
                 eglContext = null;
             } else {
-                eglConfig = view.eglConfigChooser.chooseConfig(egl, eglDisplay);
+                eglConfig = EglConfigCache.chooseConfig(egl, eglDisplay, view.eglConfigChooser);
 
                 /*
                  * Create an EGL context. We want to do this as rarely as we can, because an
                  * EGL context is a somewhat heavy object.
                  */
-                eglContext = view.eglContextFactory.createContext(egl, eglDisplay, eglConfig);
+                eglContextFactory = view.eglContextFactory;
+                eglContext = eglContextFactory.createContext(egl, eglDisplay, eglConfig);
             }
             if (eglContext == null || eglContext == EGL10.EGL_NO_CONTEXT) {
                 eglContext = null;
@@ -1001,9 +1298,13 @@ public class GLTextureView extends TextureView
          * Create a GL object for the current EGL context.
          */
         GL createGL() {
+            return wrapGL(eglContext.getGL(), glTextureViewWeakRef.get());
+        }
 
-            GL gl = eglContext.getGL();
-            GLTextureView view = glTextureViewWeakRef.get();
+        /**
+         * Apply the view's GLWrapper and debug flags to a raw GL object.
+         */
+        static GL wrapGL(GL gl, GLTextureView view) {
             if (view != null) {
                 if (view.glWrapper != null) {
                     gl = view.glWrapper.wrap(gl);
@@ -1060,16 +1361,13 @@ public class GLTextureView extends TextureView
                 Log.w("EglHelper", "finish() tid=" + Thread.currentThread().getId());
             }
             if (eglContext != null) {
-                GLTextureView view = glTextureViewWeakRef.get();
-                if (view != null) {
-                    view.eglContextFactory.destroyContext(egl, eglDisplay, eglContext);
-                }
+                // The factory that created the context destroys it, even after the view is gone.
+                eglContextFactory.destroyContext(egl, eglDisplay, eglContext);
                 eglContext = null;
+                eglContextFactory = null;
             }
-            if (eglDisplay != null) {
-                egl.eglTerminate(eglDisplay);
-                eglDisplay = null;
-            }
+            // The display is shared through EglConfigCache and stays initialized.
+            eglDisplay = null;
         }
 
         private void throwEglException(String function) {
@@ -1094,6 +1392,7 @@ public class GLTextureView extends TextureView
         }
 
         private WeakReference<GLTextureView> glTextureViewWeakRef;
+        private EGLContextFactory eglContextFactory;
         EGL10 egl;
         EGLDisplay eglDisplay;
         EGLSurface eglSurface;
@@ -1101,15 +1400,48 @@ public class GLTextureView extends TextureView
         EGLContext eglContext;
     }
 
+    /**
+     * The render-loop operations a GLTextureView drives. Implemented by {@link GLThread},
+     * which owns one EGL context per view, and by {@link SharedGLThread.Target}, which
+     * multiplexes every opted-in view onto one render thread.
+     */
+    interface RenderLoop {
+        void start();
+
+        void setRenderMode(int renderMode);
+
+        int getRenderMode();
+
+        void requestRender();
+
+        void surfaceCreated();
+
+        void surfaceDestroyed();
+
+        void onWindowResize(int w, int h);
+
+        void onPause();
+
+        void onResume();
+
+        void queueEvent(Object coalesceKey, Runnable r);
+
+        void requestExitAndWait();
+    }
+
     /**
      * A generic GL Thread. Takes care of initializing EGL and GL. Delegates
      * to a Renderer instance to do the actual drawing. Can be configured to
      * render continuously or on request.
      * <p>
-     * All potentially blocking synchronization is done through the
-     * glThreadManager object. This avoids multiple-lock ordering issues.
+     * Each GLThread waits and is signalled on its own monitor, so a request on one
+     * view only wakes that view's thread. Only EGL context ownership is arbitrated by
+     * the global glThreadManager, whose monitor is never held while taking a GLThread
+     * monitor. Signals to other threads produced while holding our own monitor are
+     * collected in pendingWakeups and delivered after it is released, which avoids
+     * multiple-lock ordering issues.
      */
-    static class GLThread extends Thread {
+    static class GLThread extends Thread implements RenderLoop {
         GLThread(WeakReference<GLTextureView> glTextureViewWeakRef) {
             super();
             width = 0;
@@ -1130,14 +1462,41 @@ public class GLTextureView extends TextureView
                 guardedRun();
             } catch (InterruptedException e) {
                 // fall thru and exit normally
+            } catch (RuntimeException e) {
+                // guardedRun has already released the EGL surface and context.
+                if (!dispatchRenderFailure(glTextureViewWeakRef.get(), e)) {
+                    throw e;
+                }
             } finally {
-                glThreadManager.threadExiting(this);
+                glThreadManager.threadExiting(this, pendingWakeups);
+                synchronized (this) {
+                    exited = true;
+                    notifyAll();
+                }
+                deliverPendingWakeups();
+            }
+        }
+
+        /*
+         * Wake the threads the glThreadManager asked us to signal. Must be called
+         * without holding our own monitor.
+         */
+        private void deliverPendingWakeups() {
+            for (int i = 0; i < pendingWakeups.size(); i++) {
+                pendingWakeups.get(i).wakeUp();
+            }
+            pendingWakeups.clear();
+        }
+
+        void wakeUp() {
+            synchronized (this) {
+                notifyAll();
             }
         }
 
         /*
          * This private method should only be called inside a
-         * synchronized(glThreadManager) block.
+         * synchronized(this) block.
          */
         private void stopEglSurfaceLocked() {
             if (haveEglSurface) {
@@ -1148,13 +1507,13 @@ public class GLTextureView extends TextureView
 
         /*
          * This private method should only be called inside a
-         * synchronized(glThreadManager) block.
+         * synchronized(this) block.
          */
         private void stopEglContextLocked() {
             if (haveEglContext) {
                 eglHelper.finish();
                 haveEglContext = false;
-                glThreadManager.releaseEglContextLocked(this);
+                glThreadManager.releaseEglContext(this, pendingWakeups);
             }
         }
 
@@ -1174,17 +1533,17 @@ public class GLTextureView extends TextureView
                 boolean askedToReleaseEglContext = false;
                 int w = 0;
                 int h = 0;
-                Runnable event = null;
+                boolean wakeOthersOnly = false;
 
                 while (true) {
-                    synchronized (glThreadManager) {
+                    synchronized (this) {
                         while (true) {
                             if (shouldExit) {
                                 return;
                             }
 
                             if (!eventQueue.isEmpty()) {
-                                event = eventQueue.remove(0);
+                                eventQueue.drainTo(eventBatch);
                                 break;
                             }
 
@@ -1193,7 +1552,7 @@ public class GLTextureView extends TextureView
                             if (paused != requestPaused) {
                                 pausing = requestPaused;
                                 paused = requestPaused;
-                                glThreadManager.notifyAll();
+                                notifyAll();
                                 if (LOG_PAUSE_RESUME) {
                                     Log.i("GLThread", "paused is now " + paused + " tid=" + getId());
                                 }
@@ -1259,7 +1618,7 @@ public class GLTextureView extends TextureView
                                 }
                                 waitingForSurface = true;
                                 surfaceIsBad = false;
-                                glThreadManager.notifyAll();
+                                notifyAll();
                             }
 
                             // Have we acquired the surface view surface?
@@ -1268,7 +1627,7 @@ public class GLTextureView extends TextureView
                                     Log.i("GLThread", "noticed textureView surface acquired tid=" + getId());
                                 }
                                 waitingForSurface = false;
-                                glThreadManager.notifyAll();
+                                notifyAll();
                             }
 
                             if (doRenderNotification) {
@@ -1278,7 +1637,7 @@ public class GLTextureView extends TextureView
                                 wantRenderNotification = false;
                                 doRenderNotification = false;
                                 renderComplete = true;
-                                glThreadManager.notifyAll();
+                                notifyAll();
                             }
 
                             // Ready to draw?
@@ -1288,17 +1647,17 @@ public class GLTextureView extends TextureView
                                 if (!haveEglContext) {
                                     if (askedToReleaseEglContext) {
                                         askedToReleaseEglContext = false;
-                                    } else if (glThreadManager.tryAcquireEglContextLocked(this)) {
+                                    } else if (glThreadManager.tryAcquireEglContext(this, pendingWakeups)) {
                                         try {
                                             eglHelper.start();
                                         } catch (RuntimeException t) {
-                                            glThreadManager.releaseEglContextLocked(this);
+                                            glThreadManager.releaseEglContext(this, pendingWakeups);
                                             throw t;
                                         }
                                         haveEglContext = true;
                                         createEglContext = true;
 
-                                        glThreadManager.notifyAll();
+                                        notifyAll();
                                     }
                                 }
 
@@ -1325,11 +1684,17 @@ public class GLTextureView extends TextureView
                                         this.sizeChanged = false;
                                     }
                                     requestRender = false;
-                                    glThreadManager.notifyAll();
+                                    notifyAll();
                                     break;
                                 }
                             }
 
+                            // Leave the monitor to signal other threads before going to sleep.
+                            if (!pendingWakeups.isEmpty()) {
+                                wakeOthersOnly = true;
+                                break;
+                            }
+
                             // By design, this is the only place in a GLThread thread where we wait().
                             if (LOG_THREADS) {
                                 Log.i("GLThread", "waiting tid=" + getId() + " haveEglContext: " + haveEglContext
@@ -1338,13 +1703,21 @@ public class GLTextureView extends TextureView
                                         + waitingForSurface + " width: " + width + " height: " + height
                                         + " requestRender: " + requestRender + " renderMode: " + renderMode);
                             }
-                            glThreadManager.wait();
+                            wait();
                         }
-                    } // end of synchronized(glThreadManager)
+                    } // end of synchronized(this)
 
-                    if (event != null) {
-                        event.run();
-                        event = null;
+                    deliverPendingWakeups();
+                    if (wakeOthersOnly) {
+                        wakeOthersOnly = false;
+                        continue;
+                    }
+
+                    if (!eventBatch.isEmpty()) {
+                        for (int i = 0; i < eventBatch.size(); i++) {
+                            eventBatch.get(i).run();
+                        }
+                        eventBatch.clear();
                         continue;
                     }
 
@@ -1353,9 +1726,9 @@ public class GLTextureView extends TextureView
                             Log.w("GLThread", "egl createSurface");
                         }
                         if (!eglHelper.createSurface()) {
-                            synchronized (glThreadManager) {
+                            synchronized (this) {
                                 surfaceIsBad = true;
-                                glThreadManager.notifyAll();
+                                notifyAll();
                             }
                             continue;
                         }
@@ -1365,7 +1738,8 @@ public class GLTextureView extends TextureView
                     if (createGlInterface) {
                         gl = (GL10) eglHelper.createGL();
 
-                        glThreadManager.checkGLDriver(gl);
+                        glThreadManager.checkGLDriver(gl, pendingWakeups);
+                        deliverPendingWakeups();
                         createGlInterface = false;
                     }
 
@@ -1394,13 +1768,28 @@ public class GLTextureView extends TextureView
                     if (LOG_RENDERER_DRAW_FRAME) {
                         Log.w("GLThread", "onDrawFrame tid=" + getId());
                     }
+                    RenderMetrics metrics = null;
+                    long drawStartNanos = 0;
                     {
                         GLTextureView view = glTextureViewWeakRef.get();
                         if (view != null) {
+                            metrics = view.renderMetrics;
+                            if (metrics != null) {
+                                drawStartNanos = System.nanoTime();
+                                metrics.onFrameStart(drawStartNanos);
+                            }
                             view.renderer.onDrawFrame(gl);
+                            if (view.glWrapper instanceof FrameAwareGLWrapper) {
+                                ((FrameAwareGLWrapper) view.glWrapper).onFrameEnd();
+                            }
                         }
                     }
+                    long swapStartNanos = metrics != null ? System.nanoTime() : 0;
                     int swapError = eglHelper.swap();
+                    if (metrics != null) {
+                        metrics.record(RenderMetrics.STAGE_DRAW_FRAME, swapStartNanos - drawStartNanos);
+                        metrics.record(RenderMetrics.STAGE_SWAP_BUFFERS, System.nanoTime() - swapStartNanos);
+                    }
                     switch (swapError) {
                         case EGL10.EGL_SUCCESS:
                             break;
@@ -1417,9 +1806,9 @@ public class GLTextureView extends TextureView
                             // Log the error to help developers understand why rendering stopped.
                             EglHelper.logEglErrorAsWarning("GLThread", "eglSwapBuffers", swapError);
 
-                            synchronized (glThreadManager) {
+                            synchronized (this) {
                                 surfaceIsBad = true;
-                                glThreadManager.notifyAll();
+                                notifyAll();
                             }
                             break;
                     }
@@ -1432,7 +1821,7 @@ public class GLTextureView extends TextureView
                 /*
                  * clean-up everything...
                  */
-                synchronized (glThreadManager) {
+                synchronized (this) {
                     stopEglSurfaceLocked();
                     stopEglContextLocked();
                 }
@@ -1452,35 +1841,35 @@ public class GLTextureView extends TextureView
             if (!((RENDERMODE_WHEN_DIRTY <= renderMode) && (renderMode <= RENDERMODE_CONTINUOUSLY))) {
                 throw new IllegalArgumentException("renderMode");
             }
-            synchronized (glThreadManager) {
+            synchronized (this) {
                 this.renderMode = renderMode;
-                glThreadManager.notifyAll();
+                notifyAll();
             }
         }
 
         public int getRenderMode() {
-            synchronized (glThreadManager) {
+            synchronized (this) {
                 return renderMode;
             }
         }
 
         public void requestRender() {
-            synchronized (glThreadManager) {
+            synchronized (this) {
                 requestRender = true;
-                glThreadManager.notifyAll();
+                notifyAll();
             }
         }
 
         public void surfaceCreated() {
-            synchronized (glThreadManager) {
+            synchronized (this) {
                 if (LOG_THREADS) {
                     Log.i("GLThread", "surfaceCreated tid=" + getId());
                 }
                 hasSurface = true;
-                glThreadManager.notifyAll();
+                notifyAll();
                 while ((waitingForSurface) && (!exited)) {
                     try {
-                        glThreadManager.wait();
+                        wait();
                     } catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
                     }
@@ -1489,15 +1878,15 @@ public class GLTextureView extends TextureView
         }
 
         public void surfaceDestroyed() {
-            synchronized (glThreadManager) {
+            synchronized (this) {
                 if (LOG_THREADS) {
                     Log.i("GLThread", "surfaceDestroyed tid=" + getId());
                 }
                 hasSurface = false;
-                glThreadManager.notifyAll();
+                notifyAll();
                 while ((!waitingForSurface) && (!exited)) {
                     try {
-                        glThreadManager.wait();
+                        wait();
                     } catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
                     }
@@ -1506,18 +1895,18 @@ public class GLTextureView extends TextureView
         }
 
         public void onPause() {
-            synchronized (glThreadManager) {
+            synchronized (this) {
                 if (LOG_PAUSE_RESUME) {
                     Log.i("GLThread", "onPause tid=" + getId());
                 }
                 requestPaused = true;
-                glThreadManager.notifyAll();
+                notifyAll();
                 while ((!exited) && (!paused)) {
                     if (LOG_PAUSE_RESUME) {
                         Log.i("Main thread", "onPause waiting for paused.");
                     }
                     try {
-                        glThreadManager.wait();
+                        wait();
                     } catch (InterruptedException ex) {
                         Thread.currentThread().interrupt();
                     }
@@ -1526,20 +1915,20 @@ public class GLTextureView extends TextureView
         }
 
         public void onResume() {
-            synchronized (glThreadManager) {
+            synchronized (this) {
                 if (LOG_PAUSE_RESUME) {
                     Log.i("GLThread", "onResume tid=" + getId());
                 }
                 requestPaused = false;
                 requestRender = true;
                 renderComplete = false;
-                glThreadManager.notifyAll();
+                notifyAll();
                 while ((!exited) && paused && (!renderComplete)) {
                     if (LOG_PAUSE_RESUME) {
                         Log.i("Main thread", "onResume waiting for !paused.");
                     }
                     try {
-                        glThreadManager.wait();
+                        wait();
                     } catch (InterruptedException ex) {
                         Thread.currentThread().interrupt();
                     }
@@ -1548,13 +1937,13 @@ public class GLTextureView extends TextureView
         }
 
         public void onWindowResize(int w, int h) {
-            synchronized (glThreadManager) {
+            synchronized (this) {
                 width = w;
                 height = h;
                 sizeChanged = true;
                 requestRender = true;
                 renderComplete = false;
-                glThreadManager.notifyAll();
+                notifyAll();
 
                 // Wait for thread to react to resize and render a frame
                 while (!exited && !paused && !renderComplete && ableToDraw()) {
@@ -1562,7 +1951,7 @@ public class GLTextureView extends TextureView
                         Log.i("Main thread", "onWindowResize waiting for render complete from tid=" + getId());
                     }
                     try {
-                        glThreadManager.wait();
+                        wait();
                     } catch (InterruptedException ex) {
                         Thread.currentThread().interrupt();
                     }
@@ -1573,12 +1962,12 @@ public class GLTextureView extends TextureView
         public void requestExitAndWait() {
             // don't call this from GLThread thread or it is a guaranteed
             // deadlock!
-            synchronized (glThreadManager) {
+            synchronized (this) {
                 shouldExit = true;
-                glThreadManager.notifyAll();
+                notifyAll();
                 while (!exited) {
                     try {
-                        glThreadManager.wait();
+                        wait();
                     } catch (InterruptedException ex) {
                         Thread.currentThread().interrupt();
                     }
@@ -1586,28 +1975,65 @@ public class GLTextureView extends TextureView
             }
         }
 
-        public void requestReleaseEglContextLocked() {
+        /**
+         * Ask the thread to exit without waiting for it. Used when evicting a parked
+         * thread from the GLThreadPool; the thread releases its EGL objects itself.
+         */
+        void requestExit() {
+            synchronized (this) {
+                shouldExit = true;
+                notifyAll();
+            }
+        }
+
+        boolean hasExited() {
+            synchronized (this) {
+                return exited;
+            }
+        }
+
+        /**
+         * @return true if this thread currently renders for the view behind the given reference
+         */
+        boolean isBoundTo(WeakReference<GLTextureView> ref) {
+            return glTextureViewWeakRef == ref;
+        }
+
+        /**
+         * @return true if the view this thread rendered for has been garbage collected
+         */
+        boolean isOrphaned() {
+            return glTextureViewWeakRef.get() == null;
+        }
+
+        /**
+         * Ask this thread to give up its EGL context. Called by the glThreadManager while
+         * holding its own monitor; the thread is woken separately through {@link #wakeUp()}.
+         */
+        void requestReleaseEglContext() {
             shouldReleaseEglContext = true;
-            glThreadManager.notifyAll();
         }
 
         /**
          * Queue an "event" to be run on the GL rendering thread.
          *
-         * @param r the runnable to be run on the GL rendering thread.
+         * @param coalesceKey events with an equal non-null key collapse into the latest one.
+         * @param r           the runnable to be run on the GL rendering thread.
          */
-        public void queueEvent(Runnable r) {
+        public void queueEvent(Object coalesceKey, Runnable r) {
             if (r == null) {
                 throw new IllegalArgumentException("r must not be null");
             }
-            synchronized (glThreadManager) {
-                eventQueue.add(r);
-                glThreadManager.notifyAll();
+            synchronized (this) {
+                // A coalesced event is already covered by an earlier wakeup.
+                if (eventQueue.offer(coalesceKey, r)) {
+                    notifyAll();
+                }
             }
         }
 
         // Once the thread is started, all accesses to the following member
-        // variables are protected by the glThreadManager monitor
+        // variables are protected by this thread's monitor
         private boolean shouldExit;
         private boolean exited;
         private boolean requestPaused;
@@ -1617,25 +2043,584 @@ public class GLTextureView extends TextureView
         private boolean waitingForSurface;
         private boolean haveEglContext;
         private boolean haveEglSurface;
-        private boolean shouldReleaseEglContext;
+        private volatile boolean shouldReleaseEglContext;
         private int width;
         private int height;
         private int renderMode;
         private boolean requestRender;
         private boolean renderComplete;
-        private ArrayList<Runnable> eventQueue = new ArrayList<>();
+        private final RenderEventQueue eventQueue = new RenderEventQueue();
         private boolean sizeChanged = true;
 
-        // End of member variables protected by the glThreadManager monitor.
+        // End of member variables protected by this thread's monitor.
 
         private EglHelper eglHelper;
 
         /**
-         * Set once at thread construction time, nulled out when the parent view is garbage
+         * Events drained from eventQueue in one pass. Only accessed from this thread.
+         */
+        private final ArrayList<Runnable> eventBatch = new ArrayList<>();
+
+        /**
+         * Threads to signal once this thread leaves its own monitor. Only accessed
+         * from this thread.
+         */
+        private final ArrayList<GLThread> pendingWakeups = new ArrayList<>();
+
+        /**
+         * Set at thread construction time, nulled out when the parent view is garbage
          * called. This weak reference allows the GLTextureView to be garbage collected while
-         * the GLThread is still alive.
+         * the GLThread is still alive. A pooled thread stays bound to the same view
+         * for its whole life.
          */
-        private WeakReference<GLTextureView> glTextureViewWeakRef;
+        private final WeakReference<GLTextureView> glTextureViewWeakRef;
+    }
+
+    /**
+     * A single render thread shared by every GLTextureView that opted in with
+     * {@link #setSharedRenderThread(boolean)}. Owns one EGL context and one window surface
+     * per attached view, and on each pass makes the context current on every view that is
+     * ready to draw before calling its Renderer.
+     * <p>
+     * All state of the attached {@link Target}s is protected by this thread's monitor.
+     * The EGL objects are only touched from the render thread itself.
+     */
+    static class SharedGLThread extends Thread {
+
+        private static SharedGLThread instance;
+
+        static synchronized SharedGLThread getInstance() {
+            if (instance == null) {
+                instance = new SharedGLThread();
+                instance.start();
+            }
+            return instance;
+        }
+
+        private SharedGLThread() {
+            super();
+        }
+
+        @Override
+        public void run() {
+            setName("SharedGLThread " + getId());
+            if (LOG_THREADS) {
+                Log.i("SharedGLThread", "starting tid=" + getId());
+            }
+
+            try {
+                guardedRun();
+            } catch (InterruptedException e) {
+                // fall thru and exit normally
+            } finally {
+                synchronized (SharedGLThread.class) {
+                    if (instance == this) {
+                        instance = null;
+                    }
+                }
+                synchronized (this) {
+                    targets.addAll(exitTargets);
+                    exitTargets.clear();
+                    for (Target target : targets) {
+                        destroySurfaceLocked(target);
+                        target.exited = true;
+                    }
+                    targets.clear();
+                    finishEgl();
+                    notifyAll();
+                }
+            }
+        }
+
+        void attach(Target target) {
+            synchronized (this) {
+                if (LOG_THREADS) {
+                    Log.i("SharedGLThread", "attach target, count=" + (targets.size() + 1));
+                }
+                targets.add(target);
+                notifyAll();
+            }
+        }
+
+        private void guardedRun() throws InterruptedException {
+            while (true) {
+                synchronized (this) {
+                    while (true) {
+                        boolean notify = false;
+                        for (int i = targets.size() - 1; i >= 0; i--) {
+                            Target target = targets.get(i);
+
+                            // Update the pause state.
+                            if (target.paused != target.requestPaused) {
+                                target.paused = target.requestPaused;
+                                notify = true;
+                            }
+
+                            // Leaving targets keep their window surface until their renderer
+                            // has released its resources, see releaseExitingTargets().
+                            if (target.shouldExit) {
+                                targets.remove(i);
+                                exitTargets.add(target);
+                                continue;
+                            }
+
+                            // Release the window surface when it is gone or paused.
+                            if (target.haveEglSurface && (target.paused || !target.hasSurface)) {
+                                destroySurfaceLocked(target);
+                                notify = true;
+                            }
+
+                            if (!target.hasSurface) {
+                                target.surfaceIsBad = false;
+                            }
+
+                            if (!target.eventQueue.isEmpty()) {
+                                target.eventQueue.drainTo(target.pendingEvents);
+                                eventTargets.add(target);
+                            }
+
+                            if (target.readyToDraw()) {
+                                if (!target.haveEglSurface || target.sizeChanged) {
+                                    // Destroy and recreate the EGL surface at the new size.
+                                    target.haveEglSurface = true;
+                                    target.createEglSurface = true;
+                                    target.drawSizeChanged = true;
+                                    target.drawWidth = target.width;
+                                    target.drawHeight = target.height;
+                                    target.sizeChanged = false;
+                                }
+                                target.requestRender = false;
+                                drawTargets.add(target);
+                            }
+                        }
+
+                        // Nobody left to draw for: give the context memory back.
+                        if (targets.isEmpty() && exitTargets.isEmpty() && eglContext != null) {
+                            finishEgl();
+                        }
+                        if (notify) {
+                            notifyAll();
+                        }
+                        if (!exitTargets.isEmpty() || !eventTargets.isEmpty() || !drawTargets.isEmpty()) {
+                            break;
+                        }
+                        if (LOG_THREADS) {
+                            Log.i("SharedGLThread", "waiting tid=" + getId() + " targets: " + targets.size());
+                        }
+                        wait();
+                    }
+                } // end of synchronized(this)
+
+                if (!exitTargets.isEmpty()) {
+                    releaseExitingTargets();
+                }
+
+                for (int i = 0; i < eventTargets.size(); i++) {
+                    Target target = eventTargets.get(i);
+                    if (target.eglSurface != null) {
+                        egl.eglMakeCurrent(eglDisplay, target.eglSurface, target.eglSurface, eglContext);
+                    }
+                    for (int j = 0; j < target.pendingEvents.size(); j++) {
+                        target.pendingEvents.get(j).run();
+                    }
+                    target.pendingEvents.clear();
+                }
+                eventTargets.clear();
+
+                if (!drawTargets.isEmpty() && eglContext == null) {
+                    startEgl();
+                }
+                for (int i = 0; i < drawTargets.size(); i++) {
+                    if (!drawTarget(drawTargets.get(i))) {
+                        break;
+                    }
+                }
+                drawTargets.clear();
+            }
+        }
+
+        /**
+         * Let the renderers of leaving targets delete what they created in the shared
+         * context, then drop their surfaces and release the waiting UI threads.
+         */
+        private void releaseExitingTargets() {
+            for (int i = 0; i < exitTargets.size(); i++) {
+                Target target = exitTargets.get(i);
+                GLTextureView view = target.glTextureViewWeakRef.get();
+                // Nothing to release if the renderer never saw the current context.
+                if (view == null || eglContext == null || target.contextGeneration != contextGeneration) {
+                    continue;
+                }
+                // Without a window surface, rely on EGL_KHR_surfaceless_context.
+                EGLSurface surface = target.eglSurface != null ? target.eglSurface : EGL10.EGL_NO_SURFACE;
+                if (!egl.eglMakeCurrent(eglDisplay, surface, surface, eglContext)) {
+                    EglHelper.logEglErrorAsWarning("SharedGLThread", "eglMakeCurrent", egl.eglGetError());
+                    continue;
+                }
+                GL10 gl = target.gl != null ? target.gl : (GL10) EglHelper.wrapGL(eglContext.getGL(), view);
+                if (LOG_RENDERER) {
+                    Log.w("SharedGLThread", "onDetachedFromContext");
+                }
+                view.renderer.onDetachedFromContext(gl);
+            }
+            synchronized (this) {
+                for (int i = 0; i < exitTargets.size(); i++) {
+                    Target target = exitTargets.get(i);
+                    destroySurfaceLocked(target);
+                    target.exited = true;
+                }
+                exitTargets.clear();
+                if (targets.isEmpty() && eglContext != null) {
+                    finishEgl();
+                }
+                notifyAll();
+            }
+        }
+
+        /**
+         * Initialize EGL with the config and context factory of the first live view.
+         */
+        private void startEgl() {
+            GLTextureView view = null;
+            for (int i = 0; i < drawTargets.size() && view == null; i++) {
+                view = drawTargets.get(i).glTextureViewWeakRef.get();
+            }
+            if (view == null) {
+                return;
+            }
+            egl = (EGL10) EGLContext.getEGL();
+            eglDisplay = EglConfigCache.obtainDisplay(egl);
+            eglConfig = EglConfigCache.chooseConfig(egl, eglDisplay, view.eglConfigChooser);
+            eglContextFactory = view.eglContextFactory;
+            eglContext = eglContextFactory.createContext(egl, eglDisplay, eglConfig);
+            if (eglContext == null || eglContext == EGL10.EGL_NO_CONTEXT) {
+                eglContext = null;
+                EglHelper.throwEglException("createContext", egl.eglGetError());
+            }
+            contextGeneration++;
+            if (LOG_EGL) {
+                Log.w("SharedGLThread", "createContext " + eglContext + " tid=" + getId());
+            }
+        }
+
+        /**
+         * Draw one frame for the target.
+         *
+         * @return false if the EGL context was lost and the pass must be abandoned.
+         */
+        private boolean drawTarget(Target target) {
+            GLTextureView view = target.glTextureViewWeakRef.get();
+            if (view == null || eglContext == null) {
+                return true;
+            }
+
+            if (target.createEglSurface) {
+                if (target.eglSurface != null) {
+                    destroySurfaceImp(target);
+                }
+                target.surfaceFactory = view.eglWindowSurfaceFactory;
+                target.eglSurface = target.surfaceFactory.createWindowSurface(egl, eglDisplay, eglConfig,
+                        view.getSurfaceTexture());
+                if (target.eglSurface == null || target.eglSurface == EGL10.EGL_NO_SURFACE) {
+                    target.eglSurface = null;
+                    int error = egl.eglGetError();
+                    if (error == EGL10.EGL_BAD_NATIVE_WINDOW) {
+                        Log.e("SharedGLThread", "createWindowSurface returned EGL_BAD_NATIVE_WINDOW.");
+                    }
+                    markSurfaceBad(target);
+                    return true;
+                }
+                target.gl = (GL10) EglHelper.wrapGL(eglContext.getGL(), view);
+                target.createEglSurface = false;
+            }
+
+            if (!egl.eglMakeCurrent(eglDisplay, target.eglSurface, target.eglSurface, eglContext)) {
+                EglHelper.logEglErrorAsWarning("SharedGLThread", "eglMakeCurrent", egl.eglGetError());
+                markSurfaceBad(target);
+                return true;
+            }
+
+            // The shared context survives surface loss, so only rebuild resources for a new one.
+            if (target.contextGeneration != contextGeneration) {
+                if (LOG_RENDERER) {
+                    Log.w("SharedGLThread", "onSurfaceCreated");
+                }
+                view.renderer.onSurfaceCreated(target.gl, eglConfig);
+                target.contextGeneration = contextGeneration;
+            }
+
+            if (target.drawSizeChanged) {
+                if (LOG_RENDERER) {
+                    Log.w("SharedGLThread", "onSurfaceChanged(" + target.drawWidth + ", " + target.drawHeight + ")");
+                }
+                view.renderer.onSurfaceChanged(target.gl, target.drawWidth, target.drawHeight);
+                target.drawSizeChanged = false;
+            }
+
+            if (LOG_RENDERER_DRAW_FRAME) {
+                Log.w("SharedGLThread", "onDrawFrame tid=" + getId());
+            }
+            RenderMetrics metrics = view.renderMetrics;
+            long drawStartNanos = 0;
+            if (metrics != null) {
+                drawStartNanos = System.nanoTime();
+                metrics.onFrameStart(drawStartNanos);
+            }
+            view.renderer.onDrawFrame(target.gl);
+            if (view.glWrapper instanceof FrameAwareGLWrapper) {
+                ((FrameAwareGLWrapper) view.glWrapper).onFrameEnd();
+            }
+
+            long swapStartNanos = metrics != null ? System.nanoTime() : 0;
+            int swapError = EGL10.EGL_SUCCESS;
+            if (!egl.eglSwapBuffers(eglDisplay, target.eglSurface)) {
+                swapError = egl.eglGetError();
+            }
+            if (metrics != null) {
+                metrics.record(RenderMetrics.STAGE_DRAW_FRAME, swapStartNanos - drawStartNanos);
+                metrics.record(RenderMetrics.STAGE_SWAP_BUFFERS, System.nanoTime() - swapStartNanos);
+            }
+            switch (swapError) {
+                case EGL10.EGL_SUCCESS:
+                    return true;
+                case EGL11.EGL_CONTEXT_LOST:
+                    if (LOG_SURFACE) {
+                        Log.i("SharedGLThread", "egl context lost tid=" + getId());
+                    }
+                    synchronized (this) {
+                        for (Target t : targets) {
+                            destroySurfaceLocked(t);
+                            t.requestRender = true;
+                        }
+                        finishEgl();
+                        notifyAll();
+                    }
+                    return false;
+                default:
+                    EglHelper.logEglErrorAsWarning("SharedGLThread", "eglSwapBuffers", swapError);
+                    markSurfaceBad(target);
+                    return true;
+            }
+        }
+
+        private void markSurfaceBad(Target target) {
+            synchronized (this) {
+                target.surfaceIsBad = true;
+                destroySurfaceLocked(target);
+                notifyAll();
+            }
+        }
+
+        /*
+         * This private method should only be called on the shared thread inside a
+         * synchronized(this) block.
+         */
+        private void destroySurfaceLocked(Target target) {
+            destroySurfaceImp(target);
+            target.haveEglSurface = false;
+            target.createEglSurface = false;
+        }
+
+        private void destroySurfaceImp(Target target) {
+            if (target.eglSurface != null) {
+                egl.eglMakeCurrent(eglDisplay, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE,
+                        EGL10.EGL_NO_CONTEXT);
+                target.surfaceFactory.destroySurface(egl, eglDisplay, target.eglSurface);
+                target.eglSurface = null;
+                target.gl = null;
+            }
+        }
+
+        private void finishEgl() {
+            if (eglContext != null) {
+                egl.eglMakeCurrent(eglDisplay, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE,
+                        EGL10.EGL_NO_CONTEXT);
+                eglContextFactory.destroyContext(egl, eglDisplay, eglContext);
+                eglContext = null;
+                eglContextFactory = null;
+            }
+            eglDisplay = null;
+        }
+
+        // Protected by this thread's monitor.
+        private final ArrayList<Target> targets = new ArrayList<>();
+
+        // Only accessed from the shared thread.
+        private final ArrayList<Target> exitTargets = new ArrayList<>();
+        private final ArrayList<Target> eventTargets = new ArrayList<>();
+        private final ArrayList<Target> drawTargets = new ArrayList<>();
+        private EGL10 egl;
+        private EGLDisplay eglDisplay;
+        private EGLConfig eglConfig;
+        private EGLContext eglContext;
+        private EGLContextFactory eglContextFactory;
+        private int contextGeneration;
+
+        /**
+         * One GLTextureView's slot on the shared render thread. Mirrors the handshakes of
+         * {@link GLThread} so that GLTextureView can drive either through {@link RenderLoop}.
+         */
+        static class Target implements RenderLoop {
+            Target(WeakReference<GLTextureView> glTextureViewWeakRef) {
+                this.glTextureViewWeakRef = glTextureViewWeakRef;
+                owner = SharedGLThread.getInstance();
+                requestRender = true;
+                renderMode = RENDERMODE_CONTINUOUSLY;
+            }
+
+            public void start() {
+                synchronized (owner) {
+                    attached = true;
+                }
+                owner.attach(this);
+            }
+
+            private boolean readyToDraw() {
+                return (!paused) && hasSurface && (!surfaceIsBad) && (width > 0) && (height > 0) && (
+                        requestRender || (renderMode == RENDERMODE_CONTINUOUSLY));
+            }
+
+            public void setRenderMode(int renderMode) {
+                if (!((RENDERMODE_WHEN_DIRTY <= renderMode) && (renderMode <= RENDERMODE_CONTINUOUSLY))) {
+                    throw new IllegalArgumentException("renderMode");
+                }
+                synchronized (owner) {
+                    this.renderMode = renderMode;
+                    owner.notifyAll();
+                }
+            }
+
+            public int getRenderMode() {
+                synchronized (owner) {
+                    return renderMode;
+                }
+            }
+
+            public void requestRender() {
+                synchronized (owner) {
+                    requestRender = true;
+                    owner.notifyAll();
+                }
+            }
+
+            public void surfaceCreated() {
+                synchronized (owner) {
+                    hasSurface = true;
+                    owner.notifyAll();
+                }
+            }
+
+            public void surfaceDestroyed() {
+                synchronized (owner) {
+                    hasSurface = false;
+                    owner.notifyAll();
+                    while (haveEglSurface && (!exited)) {
+                        try {
+                            owner.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            }
+
+            public void onPause() {
+                synchronized (owner) {
+                    requestPaused = true;
+                    owner.notifyAll();
+                    while (attached && (!exited) && (!paused)) {
+                        try {
+                            owner.wait();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            }
+
+            public void onResume() {
+                synchronized (owner) {
+                    requestPaused = false;
+                    requestRender = true;
+                    owner.notifyAll();
+                    while (attached && (!exited) && paused) {
+                        try {
+                            owner.wait();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            }
+
+            public void onWindowResize(int w, int h) {
+                synchronized (owner) {
+                    width = w;
+                    height = h;
+                    sizeChanged = true;
+                    requestRender = true;
+                    owner.notifyAll();
+                }
+            }
+
+            public void requestExitAndWait() {
+                // don't call this from the shared thread or it is a guaranteed
+                // deadlock!
+                synchronized (owner) {
+                    shouldExit = true;
+                    owner.notifyAll();
+                    while (attached && !exited) {
+                        try {
+                            owner.wait();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            }
+
+            public void queueEvent(Object coalesceKey, Runnable r) {
+                if (r == null) {
+                    throw new IllegalArgumentException("r must not be null");
+                }
+                synchronized (owner) {
+                    if (eventQueue.offer(coalesceKey, r)) {
+                        owner.notifyAll();
+                    }
+                }
+            }
+
+            private final SharedGLThread owner;
+
+            // Protected by the owner's monitor.
+            private boolean attached;
+            private boolean shouldExit;
+            private boolean exited;
+            private boolean requestPaused;
+            private boolean paused;
+            private boolean hasSurface;
+            private boolean surfaceIsBad;
+            private boolean haveEglSurface;
+            private boolean createEglSurface;
+            private int width;
+            private int height;
+            private boolean sizeChanged = true;
+            private int renderMode;
+            private boolean requestRender;
+            private final RenderEventQueue eventQueue = new RenderEventQueue();
+
+            // Only accessed from the shared thread.
+            private final ArrayList<Runnable> pendingEvents = new ArrayList<>();
+            private EGLSurface eglSurface;
+            private EGLWindowSurfaceFactory surfaceFactory;
+            private GL10 gl;
+            private int contextGeneration;
+            private boolean drawSizeChanged;
+            private int drawWidth;
+            private int drawHeight;
+
+            private final WeakReference<GLTextureView> glTextureViewWeakRef;
+        }
     }
 
     static class LogWriter extends Writer {
@@ -1678,56 +2663,198 @@ public class GLTextureView extends TextureView
         }
     }
 
+    /**
+     * A bounded pool of parked GLThreads that still hold their EGL context, so views that
+     * are detached and re-attached in quick succession (e.g. rows of a RecyclerView)
+     * don't pay for a new thread, context and renderer setup every time.
+     * <p>
+     * A detached view parks its thread here instead of stopping it. When the view is
+     * attached again it takes back its own thread, and the renderer's GL objects are
+     * still valid. Threads are never handed to another view: the GL objects of the old
+     * renderer live in that context and nobody would delete them.
+     * <p>
+     * Threads parked longer than the idle timeout, pushed out by a full pool, or whose
+     * view has been garbage collected are asked to exit, which destroys their context.
+     * All methods are called on the UI thread.
+     */
+    static class GLThreadPool {
+        private static final int DEFAULT_MAX_PARKED = 3;
+        private static final long DEFAULT_IDLE_TIMEOUT_MS = 10_000;
+
+        private static int maxParked = DEFAULT_MAX_PARKED;
+        private static long idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+        private static final ArrayList<Entry> parked = new ArrayList<>();
+        private static Handler handler;
+        private static final Runnable evictRunnable = GLThreadPool::evictIdle;
+
+        private static final class Entry {
+            final GLThread thread;
+            final long parkedAtMs;
+
+            Entry(GLThread thread, long parkedAtMs) {
+                this.thread = thread;
+                this.parkedAtMs = parkedAtMs;
+            }
+        }
+
+        static void configure(int maxParkedThreads, long idleTimeoutMillis) {
+            if (maxParkedThreads < 0 || idleTimeoutMillis < 0) {
+                throw new IllegalArgumentException("pool size and idle timeout must be >= 0");
+            }
+            maxParked = maxParkedThreads;
+            idleTimeoutMs = idleTimeoutMillis;
+            while (parked.size() > maxParked) {
+                parked.remove(0).thread.requestExit();
+            }
+            evictIdle();
+        }
+
+        /**
+         * @return false if the pool is disabled and the caller must stop the thread itself
+         */
+        static boolean park(GLThread thread) {
+            if (maxParked == 0 || idleTimeoutMs == 0) {
+                return false;
+            }
+            removeExited();
+            parked.add(new Entry(thread, SystemClock.uptimeMillis()));
+            if (parked.size() > maxParked) {
+                // Oldest first.
+                parked.remove(0).thread.requestExit();
+            }
+            scheduleEviction();
+            return true;
+        }
+
+        /**
+         * @return a running thread bound to the view behind ref, or null if none is parked
+         */
+        static GLThread acquire(WeakReference<GLTextureView> ref) {
+            removeExited();
+            for (int i = 0; i < parked.size(); i++) {
+                GLThread thread = parked.get(i).thread;
+                if (thread.isBoundTo(ref)) {
+                    parked.remove(i);
+                    return thread;
+                }
+            }
+            return null;
+        }
+
+        static int size() {
+            return parked.size();
+        }
+
+        private static void removeExited() {
+            for (int i = parked.size() - 1; i >= 0; i--) {
+                GLThread thread = parked.get(i).thread;
+                if (thread.hasExited()) {
+                    parked.remove(i);
+                } else if (thread.isOrphaned()) {
+                    // Its view can never come back to claim it.
+                    parked.remove(i);
+                    thread.requestExit();
+                }
+            }
+        }
+
+        private static void evictIdle() {
+            long now = SystemClock.uptimeMillis();
+            for (int i = parked.size() - 1; i >= 0; i--) {
+                Entry entry = parked.get(i);
+                if (now - entry.parkedAtMs >= idleTimeoutMs) {
+                    parked.remove(i);
+                    entry.thread.requestExit();
+                }
+            }
+            scheduleEviction();
+        }
+
+        private static void scheduleEviction() {
+            if (handler == null) {
+                handler = new Handler(Looper.getMainLooper());
+            }
+            handler.removeCallbacks(evictRunnable);
+            if (!parked.isEmpty()) {
+                long deadline = parked.get(0).parkedAtMs + idleTimeoutMs;
+                handler.postAtTime(evictRunnable, Math.max(deadline, SystemClock.uptimeMillis()));
+            }
+        }
+    }
+
+    /**
+     * Arbitrates EGL context ownership between GLThreads. Its monitor only protects the
+     * ownership state and is never held while taking a GLThread monitor: threads that
+     * need to be signalled are appended to the caller's wakeup list, and the caller
+     * wakes them once it has released its own monitor.
+     */
     private static class GLThreadManager {
         private static String TAG = "GLThreadManager";
 
-        public synchronized void threadExiting(GLThread thread) {
+        public synchronized void threadExiting(GLThread thread, List<GLThread> wakeups) {
             if (LOG_THREADS) {
                 Log.i("GLThread", "exiting tid=" + thread.getId());
             }
-            thread.exited = true;
+            waiters.remove(thread);
             if (eglOwner == thread) {
-                eglOwner = null;
+                releaseOwnershipLocked(wakeups);
             }
-            notifyAll();
         }
 
         /*
          * Tries once to acquire the right to use an EGL
-         * context. Does not block. Requires that we are already
-         * in the glThreadManager monitor when this is called.
+         * context. Does not block. Threads that must be signalled
+         * as a result are added to wakeups.
          *
          * @return true if the right to use an EGL context was acquired.
          */
-        public boolean tryAcquireEglContextLocked(GLThread thread) {
+        public synchronized boolean tryAcquireEglContext(GLThread thread, List<GLThread> wakeups) {
             if (eglOwner == thread || eglOwner == null) {
                 eglOwner = thread;
-                notifyAll();
+                waiters.remove(thread);
                 return true;
             }
             checkGLESVersion();
             if (multipleGLESContextsAllowed) {
                 return true;
             }
-            // Notify the owning thread that it should release the context.
+            if (!waiters.contains(thread)) {
+                waiters.add(thread);
+            }
+            // Notify the owning thread that it should release the context, once per owner.
             // TODO: implement a fairness policy. Currently
             // if the owning thread is drawing continuously it will just
             // reacquire the EGL context.
-            if (eglOwner != null) {
-                eglOwner.requestReleaseEglContextLocked();
+            if (!releaseRequested) {
+                releaseRequested = true;
+                eglOwner.requestReleaseEglContext();
+                addWakeup(wakeups, eglOwner);
             }
             return false;
         }
 
         /*
-         * Releases the EGL context. Requires that we are already in the
-         * glThreadManager monitor when this is called.
+         * Releases the EGL context. Threads waiting for it are added
+         * to wakeups so that they retry.
          */
-        public void releaseEglContextLocked(GLThread thread) {
+        public synchronized void releaseEglContext(GLThread thread, List<GLThread> wakeups) {
             if (eglOwner == thread) {
-                eglOwner = null;
+                releaseOwnershipLocked(wakeups);
+            }
+        }
+
+        private void releaseOwnershipLocked(List<GLThread> wakeups) {
+            eglOwner = null;
+            releaseRequested = false;
+            for (int i = 0; i < waiters.size(); i++) {
+                addWakeup(wakeups, waiters.get(i));
+            }
+        }
+
+        private static void addWakeup(List<GLThread> wakeups, GLThread thread) {
+            if (!wakeups.contains(thread)) {
+                wakeups.add(thread);
             }
-            notifyAll();
         }
 
         public synchronized boolean shouldReleaseEGLContextWhenPausing() {
@@ -1742,13 +2869,17 @@ public class GLTextureView extends TextureView
             return !multipleGLESContextsAllowed;
         }
 
-        public synchronized void checkGLDriver(GL10 gl) {
+        public synchronized void checkGLDriver(GL10 gl, List<GLThread> wakeups) {
             if (!glesDriverCheckComplete) {
                 checkGLESVersion();
                 String renderer = gl.glGetString(GL10.GL_RENDERER);
                 if (glesVersion < kGLES_20) {
                     multipleGLESContextsAllowed = !renderer.startsWith(kMSM7K_RENDERER_PREFIX);
-                    notifyAll();
+                    // Threads blocked on the owner may now proceed with their own context.
+                    for (int i = 0; i < waiters.size(); i++) {
+                        addWakeup(wakeups, waiters.get(i));
+                    }
+                    waiters.clear();
                 }
                 limitedGLESContexts = !multipleGLESContextsAllowed;
                 if (LOG_SURFACE) {
@@ -1778,14 +2909,21 @@ public class GLTextureView extends TextureView
         private static final int kGLES_20 = 0x20000;
         private static final String kMSM7K_RENDERER_PREFIX = "Q3Dimension MSM7500 ";
         private GLThread eglOwner;
+        private boolean releaseRequested;
+        private final ArrayList<GLThread> waiters = new ArrayList<>();
     }
 
     private static final GLThreadManager glThreadManager = new GLThreadManager();
 
     private final WeakReference<GLTextureView> mThisWeakRef = new WeakReference<>(this);
-    private GLThread glThread;
+    private RenderLoop glThread;
     private Renderer renderer;
     private boolean detached;
+    private boolean sharedRenderThread;
+    private boolean renderThreadPooling;
+    private volatile OnRenderFailureListener renderFailureListener;
+    private boolean renderingAbandoned;
+    private volatile RenderMetrics renderMetrics;
     private EGLConfigChooser eglConfigChooser;
     private EGLContextFactory eglContextFactory;
     private EGLWindowSurfaceFactory eglWindowSurfaceFactory;
@@ -0,0 +1,59 @@
+package com.demo.outwindowvideo;
+
+import java.nio.Buffer;
+
+import javax.microedition.khronos.opengles.GL;
+
+/**
+ * 渲染器每帧用到的 GLES 2.0 调用
+ * <p>
+ * GLES20 只有静态方法，{@link GLTextureView.GLWrapper} 拦截不到。渲染器通过 {@link #from(GL)}
+ * 取得调用入口：GLWrapper 返回的 GL 对象如果实现了本接口就走它（如 {@link GLProfiler}），
+ * 否则直接调用 GLES20。单元测试也可以传入假的实现记录调用。
+ *
+ * @since 2026/10/17
+ */
+interface Gles {
+
+    Gles SYSTEM = new SystemGles();
+
+    static Gles from(GL gl) {
+        return gl instanceof Gles ? (Gles) gl : SYSTEM;
+    }
+
+    void glClear(int mask);
+
+    void glClearColor(float red, float green, float blue, float alpha);
+
+    void glEnable(int cap);
+
+    void glDisable(int cap);
+
+    void glBlendFunc(int sfactor, int dfactor);
+
+    void glViewport(int x, int y, int width, int height);
+
+    void glScissor(int x, int y, int width, int height);
+
+    void glUseProgram(int program);
+
+    void glUniform1f(int location, float x);
+
+    void glUniform4f(int location, float x, float y, float z, float w);
+
+    void glActiveTexture(int texture);
+
+    void glBindTexture(int target, int texture);
+
+    void glGenBuffers(int n, int[] buffers, int offset);
+
+    void glBindBuffer(int target, int buffer);
+
+    void glBufferData(int target, int size, Buffer data, int usage);
+
+    void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset);
+
+    void glEnableVertexAttribArray(int index);
+
+    void glDrawArrays(int mode, int first, int count);
+}
@@ -0,0 +1,126 @@
+package com.demo.outwindowvideo;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.Log;
+import android.view.Surface;
+
+/**
+ * 播放到给定 Surface 上的播放器，状态机见 {@link VideoPlayerController}
+ * <p>
+ * 不自带视图，用于 {@link CompositorVideoView} 中画在同一个 surface 上的不透明视频。只在主线程调用。
+ *
+ * @since 2026/10/17
+ */
+final class LayerPlayer {
+
+    private static final String TAG = "LayerPlayer";
+
+    private final Context context;
+    private final VideoPlayerController controller = new VideoPlayerController(VideoPlayer.MEDIA_PLAYER);
+    private Surface surface;
+    /**
+     * 视频源
+     */
+    private String assetsFileName;
+    private VideoPreloader preloader;
+
+    private VideoListener.OnErrorListener errorListener;
+
+    LayerPlayer(Context context) {
+        this.context = context;
+        controller.setOnErrorListener((mp, frameworkErr, implErr) -> {
+            Log.w(TAG, "Error: " + frameworkErr + "," + implErr);
+            if (errorListener != null) {
+                errorListener.onVideoError(mp, frameworkErr, implErr);
+            }
+        });
+    }
+
+    /**
+     * 渲染层的 surface 准备好后调用，surface 重建时会重新打开视频
+     */
+    void setSurface(Surface surface) {
+        if (this.surface != null && this.surface != surface) {
+            release();
+            this.surface.release();
+        }
+        this.surface = surface;
+        controller.setSurface(surface);
+        openVideo();
+    }
+
+    void setVideoFromAssets(String assetsFileName) {
+        this.assetsFileName = assetsFileName;
+        openVideo();
+    }
+
+    /**
+     * 换解码引擎，下次打开视频时生效
+     */
+    void setVideoPlayerFactory(VideoPlayer.Factory factory) {
+        controller.setFactory(factory);
+        openVideo();
+    }
+
+    /**
+     * 打开视频时先看预加载里有没有准备好的播放器，有就直接接手
+     */
+    void setVideoPreloader(VideoPreloader preloader) {
+        this.preloader = preloader;
+    }
+
+    private void openVideo() {
+        if (TextUtils.isEmpty(assetsFileName) || surface == null) {
+            return;
+        }
+        if (preloader != null && preloader.handOver(assetsFileName, controller)) {
+            return;
+        }
+        // 文件在播放线程打开
+        controller.open(context.getAssets(), assetsFileName);
+    }
+
+    // region 播放器状态
+    void start() {
+        controller.start();
+    }
+
+    void pause() {
+        controller.pause();
+    }
+
+    void stop() {
+        controller.stop();
+    }
+
+    boolean isPlaying() {
+        return controller.isPlaying();
+    }
+
+    /**
+     * @return 播放位置，微秒；还没准备好时返回-1
+     */
+    long getPositionUs() {
+        return controller.getPositionUs();
+    }
+
+    void release() {
+        controller.release();
+    }
+    // endregion
+
+    // region 视频状态监听
+    void setOnBufferingListener(VideoListener.OnBufferingListener listener) {
+        controller.setOnBufferingListener(listener);
+    }
+
+    void setOnFrameListener(VideoListener.OnFrameListener listener) {
+        controller.setOnFrameListener(listener);
+    }
+
+    void setOnErrorListener(VideoListener.OnErrorListener listener) {
+        this.errorListener = listener;
+    }
+    // endregion
+}
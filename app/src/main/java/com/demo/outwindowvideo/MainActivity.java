@@ -8,9 +8,11 @@ import android.widget.ImageView;
 
 public class MainActivity extends AppCompatActivity {
 
-    private VideoView backVideoView;
     private ImageView backVideoCover;
-    private AlphaVideoView frontVideoView;
+    /**
+     * 不透明视频和透明视频合成在同一个视图里
+     */
+    private CompositorVideoView videoView;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -25,29 +27,30 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void initView() {
-        backVideoView = findViewById(R.id.back_video);
-        frontVideoView = findViewById(R.id.front_video);
+        videoView = findViewById(R.id.compositor_video);
         backVideoCover = findViewById(R.id.back_video_cover);
+        // 不透明视频画在占位视图的区域
+        videoView.setBackVideoAnchor(findViewById(R.id.back_video));
 
         // 添加评论假数据
         FakeCommentUtil.addFakeComment(this, findViewById(R.id.comment_container));
         // 设置播放资源
-        backVideoView.setVideoFromAssets("backVideo.mp4");
-        frontVideoView.setVideoFromAssets("frontVideo.mp4");
-        // 设置封面
-        backVideoCover.setImageBitmap(backVideoView.getFirstFrame());
+        videoView.setBackVideoFromAssets("backVideo.mp4");
+        videoView.setVideoFromAssets("frontVideo.mp4");
+        // 设置封面，后台取帧，按封面视图的尺寸缓存
+        VideoCoverLoader.get(this).load("backVideo.mp4", backVideoCover);
         // 播放视频
-        frontVideoView.postDelayed(this::startAllVideo, 500);
+        videoView.postDelayed(this::startAllVideo, 500);
     }
 
     private void initVideoListener() {
         // 监听首帧出现
-        backVideoView.setOnFrameListener(() -> backVideoCover.setVisibility(View.GONE));
+        videoView.setOnBackFrameListener(() -> backVideoCover.setVisibility(View.GONE));
         // 播放错误监听
-        frontVideoView.setOnErrorListener((mp, frameworkErr, implErr) -> stopAllVideo());
-        backVideoView.setOnErrorListener((mp, frameworkErr, implErr) -> stopAllVideo());
+        videoView.setOnErrorListener((mp, frameworkErr, implErr) -> stopAllVideo());
+        videoView.setOnBackErrorListener((mp, frameworkErr, implErr) -> stopAllVideo());
         // 缓存状态监听
-        frontVideoView.setOnBufferingListener(new VideoListener.OnBufferingListener() {
+        videoView.setOnBufferingListener(new VideoListener.OnBufferingListener() {
             @Override
             public void onStartBuffering() {
                 pauseAllVideo();
@@ -58,7 +61,7 @@ public class MainActivity extends AppCompatActivity {
                 startAllVideo();
             }
         });
-        backVideoView.setOnBufferingListener(new VideoListener.OnBufferingListener() {
+        videoView.setOnBackBufferingListener(new VideoListener.OnBufferingListener() {
             @Override
             public void onStartBuffering() {
                 pauseAllVideo();
@@ -75,32 +78,28 @@ public class MainActivity extends AppCompatActivity {
      * 播放视频
      */
     private void startAllVideo() {
-        backVideoView.start();
-        frontVideoView.start();
+        videoView.start();
     }
 
     /**
      * 暂停播放视频
      */
     private void pauseAllVideo() {
-        backVideoView.pause();
-        frontVideoView.pause();
+        videoView.pause();
     }
 
     /**
      * 停止播放视频
      */
     private void stopAllVideo() {
-        backVideoView.stop();
-        frontVideoView.stop();
+        videoView.stop();
     }
 
     /**
      * 释放视频
      */
     private void releaseAllVideo() {
-        backVideoView.release();
-        frontVideoView.release();
+        videoView.release();
     }
 
     @Override
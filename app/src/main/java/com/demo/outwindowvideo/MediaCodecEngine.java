@@ -0,0 +1,546 @@
+package com.demo.outwindowvideo;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+import android.view.Surface;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * MediaExtractor + MediaCodec 实现的 {@link VideoPlayer}，解码后直接渲染到 surface
+ * <p>
+ * 与 MediaPlayer 相比：
+ * <ul>
+ * <li>起播：解码器在自己的线程里创建，准备好后立刻渲染第一帧，start 之前画面就在，不会先黑一下；</li>
+ * <li>出帧时间：每帧按播放时钟换算成 System.nanoTime 交给 releaseOutputBuffer，由系统对齐到最近的 vsync；</li>
+ * <li>丢帧：落后时钟超过 {@link #LATE_THRESHOLD_US} 的帧不渲染直接丢掉，解码跟不上时画面仍跟着时钟走。</li>
+ * </ul>
+ * 只播放视频轨，音频轨忽略，适合出框特效这类无声视频。数据源是本地文件，不会有缓冲事件。
+ * <p>
+ * 所有解码操作都在一个 HandlerThread 上串行执行，{@link PlayerThread} 上的调用只是把命令投递过去；
+ * 回调投递回主线程，命令已被后来的 stop/reset 作废时不再回调。
+ *
+ * @since 2026/10/17
+ */
+final class MediaCodecEngine implements VideoPlayer {
+
+    private static final String TAG = "MediaCodecEngine";
+    /**
+     * 播放时每隔多久送一次数据、取一次帧
+     */
+    private static final long WORK_INTERVAL_MS = 10;
+    /**
+     * 帧最多提前这么久交给系统，再早就留在解码器里等
+     */
+    private static final long RELEASE_AHEAD_US = 50_000;
+    /**
+     * 帧落后时钟超过这么久就丢掉
+     */
+    private static final long LATE_THRESHOLD_US = 30_000;
+
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable workTask = this::doWork;
+
+    // 以下在播放线程写，回调时在主线程读
+    private volatile Listener listener;
+    /**
+     * 每次 prepare/stop/reset 加一，回调时不一致说明命令已作废
+     */
+    private volatile int generation;
+    private volatile boolean released;
+    /**
+     * 数据源的副本，调用方设置完就可以关闭自己的
+     */
+    private ParcelFileDescriptor fd;
+    private long offset;
+    private long length;
+
+    // 以下只在解码线程访问
+    private MediaExtractor extractor;
+    private MediaCodec codec;
+    private MediaFormat trackFormat;
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    private Surface surface;
+    private boolean configuredWithSurface;
+    private boolean playing;
+    private boolean inputDone;
+    private boolean outputDone;
+    private int pendingIndex = -1;
+    private long pendingPtsUs;
+    private boolean pendingEndOfStream;
+    /**
+     * 精确跳转时，早于目标的帧只解码不显示
+     */
+    private long seekTargetUs = -1;
+    private boolean firstFrameRendered;
+    private boolean renderingStartReported;
+    private int preparedGeneration;
+
+    private volatile Clock clock = new Clock(0, 0, 1f, false);
+    private volatile int videoWidth;
+    private volatile int videoHeight;
+    private volatile long durationUs;
+    private volatile long droppedFrames;
+
+    MediaCodecEngine() {
+        thread = new HandlerThread(TAG);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * 播放时钟：anchorNanos 时刻位于 positionUs，之后按 speed 前进
+     */
+    private static final class Clock {
+        final long positionUs;
+        final long anchorNanos;
+        final float speed;
+        final boolean running;
+
+        Clock(long positionUs, long anchorNanos, float speed, boolean running) {
+            this.positionUs = positionUs;
+            this.anchorNanos = anchorNanos;
+            this.speed = speed;
+            this.running = running;
+        }
+
+        long positionAt(long nowNanos) {
+            if (!running) {
+                return positionUs;
+            }
+            return positionUs + (long) ((nowNanos - anchorNanos) / 1000 * speed);
+        }
+    }
+
+    // region 主线程命令
+    @Override
+    public void setSurface(final Surface surface) {
+        handler.post(() -> applySurface(surface));
+    }
+
+    @Override
+    public void setDataSource(FileDescriptor fd, long offset, long length) throws IOException {
+        if (fd == null || !fd.valid()) {
+            throw new IOException("invalid file descriptor");
+        }
+        closeLater(this.fd);
+        this.fd = ParcelFileDescriptor.dup(fd);
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public void prepareAsync() {
+        final int prepareGeneration = ++generation;
+        final FileDescriptor source = fd != null ? fd.getFileDescriptor() : null;
+        final long sourceOffset = offset;
+        final long sourceLength = length;
+        handler.post(() -> prepare(prepareGeneration, source, sourceOffset, sourceLength));
+    }
+
+    @Override
+    public void start() {
+        handler.post(() -> {
+            if (codec == null) {
+                return;
+            }
+            if (outputDone) {
+                // 与 MediaPlayer 相同，播完后 start 从头播放
+                seekInternal(0);
+            }
+            playing = true;
+            clock = new Clock(clock.positionUs, System.nanoTime(), clock.speed, true);
+            scheduleWork(0);
+        });
+    }
+
+    @Override
+    public void pause() {
+        handler.post(() -> {
+            playing = false;
+            Clock current = clock;
+            clock = new Clock(current.positionAt(System.nanoTime()), 0, current.speed, false);
+        });
+    }
+
+    @Override
+    public void stop() {
+        generation++;
+        handler.post(() -> {
+            releaseCodec();
+            clock = new Clock(0, 0, clock.speed, false);
+        });
+    }
+
+    @Override
+    public void seekTo(final long positionUs) {
+        handler.post(() -> {
+            if (codec == null) {
+                return;
+            }
+            seekInternal(positionUs);
+            scheduleWork(0);
+        });
+    }
+
+    @Override
+    public long getCurrentPositionUs() {
+        long position = clock.positionAt(System.nanoTime());
+        long duration = durationUs;
+        return Math.max(0, duration > 0 ? Math.min(duration, position) : position);
+    }
+
+    @Override
+    public int getVideoWidth() {
+        return videoWidth;
+    }
+
+    @Override
+    public int getVideoHeight() {
+        return videoHeight;
+    }
+
+    @Override
+    public void setPlaybackSpeed(final float speed) {
+        handler.post(() -> {
+            long now = System.nanoTime();
+            Clock current = clock;
+            clock = new Clock(current.positionAt(now), now, speed, current.running);
+        });
+    }
+
+    @Override
+    public void reset() {
+        generation++;
+        closeLater(fd);
+        fd = null;
+        handler.post(() -> {
+            releaseCodec();
+            clock = new Clock(0, 0, 1f, false);
+            videoWidth = 0;
+            videoHeight = 0;
+        });
+    }
+
+    @Override
+    public void release() {
+        generation++;
+        released = true;
+        listener = null;
+        mainHandler.removeCallbacksAndMessages(null);
+        handler.post(this::releaseCodec);
+        closeLater(fd);
+        fd = null;
+        thread.quitSafely();
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 解码线程上排在前面的 prepare 可能还在用，排在它们后面关闭
+     */
+    private void closeLater(final ParcelFileDescriptor source) {
+        if (source == null) {
+            return;
+        }
+        handler.post(() -> {
+            try {
+                source.close();
+            } catch (IOException e) {
+                Log.w(TAG, "close data source failed", e);
+            }
+        });
+    }
+
+    /**
+     * @return 因落后时钟而丢掉的帧数
+     */
+    long getDroppedFrames() {
+        return droppedFrames;
+    }
+    // endregion
+
+    // region 解码线程
+    private void prepare(int prepareGeneration, FileDescriptor source, long sourceOffset, long sourceLength) {
+        releaseCodec();
+        MediaFormat format = null;
+        try {
+            extractor = new MediaExtractor();
+            extractor.setDataSource(source, sourceOffset, sourceLength);
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat track = extractor.getTrackFormat(i);
+                String mime = track.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("video/")) {
+                    extractor.selectTrack(i);
+                    format = track;
+                    break;
+                }
+            }
+            if (format == null) {
+                fail(prepareGeneration, MediaPlayer.MEDIA_ERROR_UNSUPPORTED, null);
+                return;
+            }
+            trackFormat = format;
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            configuredWithSurface = surface != null && surface.isValid();
+            codec.configure(format, configuredWithSurface ? surface : null, null, 0);
+            codec.start();
+        } catch (IOException e) {
+            fail(prepareGeneration, MediaPlayer.MEDIA_ERROR_IO, e);
+            return;
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            fail(prepareGeneration, MediaPlayer.MEDIA_ERROR_MALFORMED, e);
+            return;
+        }
+        durationUs = format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : 0;
+        preparedGeneration = prepareGeneration;
+        playing = false;
+        clock = new Clock(0, 0, clock.speed, false);
+        final int width = format.getInteger(MediaFormat.KEY_WIDTH);
+        final int height = format.getInteger(MediaFormat.KEY_HEIGHT);
+        videoWidth = width;
+        videoHeight = height;
+        postToMain(prepareGeneration, () -> {
+            listener.onVideoSizeChanged(width, height);
+            listener.onPrepared();
+        });
+        // 不等 start，先把第一帧解出来画上
+        scheduleWork(0);
+    }
+
+    private void applySurface(Surface surface) {
+        this.surface = surface;
+        if (codec == null || surface == null || !surface.isValid()) {
+            return;
+        }
+        if (configuredWithSurface) {
+            codec.setOutputSurface(surface);
+            return;
+        }
+        // 预加载时没有 surface，这样配置的解码器不能再绑定 surface，只能重新配置，再从当前位置解码
+        try {
+            codec.stop();
+            codec.configure(trackFormat, surface, null, 0);
+            codec.start();
+            configuredWithSurface = true;
+            seekInternal(clock.positionAt(System.nanoTime()));
+            scheduleWork(0);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            fail(preparedGeneration, MediaPlayer.MEDIA_ERROR_MALFORMED, e);
+        }
+    }
+
+    private void seekInternal(long positionUs) {
+        extractor.seekTo(positionUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+        codec.flush();
+        pendingIndex = -1;
+        inputDone = false;
+        outputDone = false;
+        seekTargetUs = positionUs;
+        // 暂停时也显示跳转后的帧
+        firstFrameRendered = false;
+        clock = new Clock(positionUs, System.nanoTime(), clock.speed, playing);
+    }
+
+    private void scheduleWork(long delayMs) {
+        handler.removeCallbacks(workTask);
+        if (delayMs == 0) {
+            handler.post(workTask);
+        } else {
+            handler.postDelayed(workTask, delayMs);
+        }
+    }
+
+    private void doWork() {
+        if (codec == null) {
+            return;
+        }
+        try {
+            feedInput();
+            drainOutput();
+        } catch (IllegalStateException e) {
+            // 含 MediaCodec.CodecException
+            fail(preparedGeneration, MediaPlayer.MEDIA_ERROR_UNKNOWN, e);
+            return;
+        }
+        if (outputDone) {
+            return;
+        }
+        // 暂停且已经有画面时不再空转，start 或 seek 时重新开始
+        if (playing || !firstFrameRendered) {
+            scheduleWork(WORK_INTERVAL_MS);
+        }
+    }
+
+    private void feedInput() {
+        while (!inputDone) {
+            int index = codec.dequeueInputBuffer(0);
+            if (index < 0) {
+                return;
+            }
+            ByteBuffer buffer = codec.getInputBuffer(index);
+            int size = buffer != null ? extractor.readSampleData(buffer, 0) : -1;
+            if (size < 0) {
+                codec.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                inputDone = true;
+            } else {
+                codec.queueInputBuffer(index, 0, size, extractor.getSampleTime(), 0);
+                extractor.advance();
+            }
+        }
+    }
+
+    private void drainOutput() {
+        while (!outputDone) {
+            if (pendingIndex < 0) {
+                int index = codec.dequeueOutputBuffer(info, 0);
+                if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    continue;
+                }
+                if (index < 0) {
+                    return;
+                }
+                pendingIndex = index;
+                pendingPtsUs = info.presentationTimeUs;
+                pendingEndOfStream = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                if (pendingEndOfStream && info.size == 0) {
+                    codec.releaseOutputBuffer(index, false);
+                    pendingIndex = -1;
+                    onEndOfStream();
+                    return;
+                }
+            }
+            if (!releasePendingFrame()) {
+                return;
+            }
+            if (pendingEndOfStream) {
+                onEndOfStream();
+            }
+        }
+    }
+
+    /**
+     * @return 帧已交还解码器（渲染或丢弃）返回true，还要等时钟返回false
+     */
+    private boolean releasePendingFrame() {
+        int index = pendingIndex;
+        long ptsUs = pendingPtsUs;
+        boolean render = configuredWithSurface;
+        if (seekTargetUs >= 0 && ptsUs < seekTargetUs && !pendingEndOfStream) {
+            codec.releaseOutputBuffer(index, false);
+            pendingIndex = -1;
+            return true;
+        }
+        seekTargetUs = -1;
+        if (!firstFrameRendered) {
+            // 准备好或跳转后的第一帧立即显示，不管是否在播放
+            codec.releaseOutputBuffer(index, render);
+            pendingIndex = -1;
+            firstFrameRendered = true;
+            if (!playing) {
+                clock = new Clock(ptsUs, 0, clock.speed, false);
+            }
+            if (render) {
+                // 预加载时没有 surface，等绑定 surface 后真正画出来再报首帧
+                reportRenderingStart();
+            }
+            return true;
+        }
+        if (!playing) {
+            return false;
+        }
+        long nowNanos = System.nanoTime();
+        Clock current = clock;
+        long earlyUs = (long) ((ptsUs - current.positionAt(nowNanos)) / current.speed);
+        if (earlyUs > RELEASE_AHEAD_US) {
+            return false;
+        }
+        if (earlyUs < -LATE_THRESHOLD_US) {
+            codec.releaseOutputBuffer(index, false);
+            droppedFrames++;
+        } else if (render) {
+            // 系统在这个时间点附近的 vsync 显示该帧
+            codec.releaseOutputBuffer(index, nowNanos + Math.max(0, earlyUs) * 1000);
+        } else {
+            codec.releaseOutputBuffer(index, false);
+        }
+        pendingIndex = -1;
+        return true;
+    }
+
+    private void reportRenderingStart() {
+        if (renderingStartReported) {
+            return;
+        }
+        renderingStartReported = true;
+        postToMain(preparedGeneration, () -> listener.onInfo(MediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START, 0));
+    }
+
+    private void onEndOfStream() {
+        outputDone = true;
+        if (!playing) {
+            return;
+        }
+        playing = false;
+        long end = durationUs > 0 ? durationUs : clock.positionAt(System.nanoTime());
+        clock = new Clock(end, 0, clock.speed, false);
+        postToMain(preparedGeneration, () -> listener.onCompletion());
+    }
+
+    private void fail(int failedGeneration, int extra, Exception e) {
+        Log.w(TAG, "playback failed: " + extra, e);
+        releaseCodec();
+        postToMain(failedGeneration, () -> listener.onError(MediaPlayer.MEDIA_ERROR_UNKNOWN, extra));
+    }
+
+    private void releaseCodec() {
+        handler.removeCallbacks(workTask);
+        if (codec != null) {
+            try {
+                codec.stop();
+            } catch (IllegalStateException e) {
+                // 出错的解码器可能已经不能 stop，仍要 release
+            }
+            codec.release();
+            codec = null;
+        }
+        if (extractor != null) {
+            extractor.release();
+            extractor = null;
+        }
+        trackFormat = null;
+        playing = false;
+        inputDone = false;
+        outputDone = false;
+        pendingIndex = -1;
+        seekTargetUs = -1;
+        firstFrameRendered = false;
+        renderingStartReported = false;
+    }
+
+    /**
+     * 在主线程执行，期间有过 prepare/stop/reset/release 则丢弃
+     */
+    private void postToMain(final int expectedGeneration, final Runnable callback) {
+        mainHandler.post(() -> {
+            if (!released && generation == expectedGeneration && listener != null) {
+                callback.run();
+            }
+        });
+    }
+    // endregion
+}
@@ -0,0 +1,186 @@
+package com.demo.outwindowvideo;
+
+import android.media.MediaPlayer;
+import android.os.Build;
+import android.util.Log;
+import android.view.Surface;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * 系统 MediaPlayer 实现的 {@link VideoPlayer}
+ * <p>
+ * MediaPlayer 在第一条命令时才创建，也就是在 {@link PlayerThread} 上，它的回调跟着回到播放线程，不占主线程。
+ *
+ * @since 2026/10/17
+ */
+final class MediaPlayerEngine implements VideoPlayer, MediaPlayer.OnPreparedListener,
+        MediaPlayer.OnCompletionListener, MediaPlayer.OnErrorListener, MediaPlayer.OnInfoListener,
+        MediaPlayer.OnVideoSizeChangedListener {
+
+    private static final String TAG = "MediaPlayerEngine";
+
+    /**
+     * 在播放线程创建，渲染线程会来读播放位置
+     */
+    private volatile MediaPlayer mediaPlayer;
+    private volatile Listener listener;
+
+    /**
+     * 给 {@link VideoListener.OnErrorListener} 用，还没执行过命令时为null
+     */
+    MediaPlayer getMediaPlayer() {
+        return mediaPlayer;
+    }
+
+    private MediaPlayer player() {
+        MediaPlayer player = mediaPlayer;
+        if (player == null) {
+            player = new MediaPlayer();
+            player.setOnPreparedListener(this);
+            player.setOnCompletionListener(this);
+            player.setOnErrorListener(this);
+            player.setOnInfoListener(this);
+            player.setOnVideoSizeChangedListener(this);
+            mediaPlayer = player;
+        }
+        return player;
+    }
+
+    @Override
+    public void setSurface(Surface surface) {
+        player().setSurface(surface);
+    }
+
+    @Override
+    public void setDataSource(FileDescriptor fd, long offset, long length) throws IOException {
+        player().setDataSource(fd, offset, length);
+    }
+
+    @Override
+    public void prepareAsync() {
+        player().prepareAsync();
+    }
+
+    @Override
+    public void start() {
+        player().start();
+    }
+
+    @Override
+    public void pause() {
+        player().pause();
+    }
+
+    @Override
+    public void stop() {
+        player().stop();
+    }
+
+    @Override
+    public void seekTo(long positionUs) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            // 默认跳到前一个关键帧，要精确到帧
+            player().seekTo(positionUs / 1000, MediaPlayer.SEEK_CLOSEST);
+        } else {
+            player().seekTo((int) (positionUs / 1000));
+        }
+    }
+
+    @Override
+    public long getCurrentPositionUs() {
+        MediaPlayer player = mediaPlayer;
+        return player != null ? player.getCurrentPosition() * 1000L : 0;
+    }
+
+    @Override
+    public int getVideoWidth() {
+        MediaPlayer player = mediaPlayer;
+        return player != null ? player.getVideoWidth() : 0;
+    }
+
+    @Override
+    public int getVideoHeight() {
+        MediaPlayer player = mediaPlayer;
+        return player != null ? player.getVideoHeight() : 0;
+    }
+
+    @Override
+    public void setPlaybackSpeed(float speed) {
+        try {
+            player().setPlaybackParams(player().getPlaybackParams().setSpeed(speed));
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            Log.w(TAG, "setPlaybackParams failed", e);
+        }
+    }
+
+    @Override
+    public void reset() {
+        MediaPlayer player = mediaPlayer;
+        if (player != null) {
+            player.reset();
+        }
+    }
+
+    @Override
+    public void release() {
+        listener = null;
+        MediaPlayer player = mediaPlayer;
+        if (player == null) {
+            return;
+        }
+        mediaPlayer = null;
+        player.reset();
+        player.release();
+        player.setOnPreparedListener(null);
+        player.setOnCompletionListener(null);
+        player.setOnErrorListener(null);
+        player.setOnInfoListener(null);
+        player.setOnVideoSizeChangedListener(null);
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // region 播放器回调
+    @Override
+    public void onPrepared(MediaPlayer mp) {
+        if (listener != null) {
+            listener.onPrepared();
+        }
+    }
+
+    @Override
+    public void onCompletion(MediaPlayer mp) {
+        if (listener != null) {
+            listener.onCompletion();
+        }
+    }
+
+    @Override
+    public boolean onError(MediaPlayer mp, int what, int extra) {
+        if (listener != null) {
+            listener.onError(what, extra);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean onInfo(MediaPlayer mp, int what, int extra) {
+        if (listener != null) {
+            listener.onInfo(what, extra);
+        }
+        return false;
+    }
+
+    @Override
+    public void onVideoSizeChanged(MediaPlayer mp, int width, int height) {
+        if (listener != null) {
+            listener.onVideoSizeChanged(width, height);
+        }
+    }
+    // endregion
+}
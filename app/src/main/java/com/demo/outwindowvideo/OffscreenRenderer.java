@@ -0,0 +1,317 @@
+package com.demo.outwindowvideo;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+import javax.microedition.khronos.egl.EGLSurface;
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * 不依赖视图的离屏渲染
+ * <p>
+ * 在自己的线程上创建 EGL pbuffer，用与 {@link AlphaVideoView} 相同的 {@link AlphaVideoRenderer} 绘制，
+ * 再把结果读回成RGBA像素。可用来生成合成好的缩略图，或在没有可见视图时测量着色器的耗时。
+ * <p>
+ * 解码器每出一帧绘制一次，也可以用 {@link #requestRender()} 主动重绘。GLES 3 下通过两个 PBO 异步读回：
+ * glReadPixels 只发起拷贝，等 fence 到达后再映射，渲染线程不必等GPU；GLES 2 下退化为同步 glReadPixels。
+ * 结果总是在渲染线程上回调。
+ *
+ * @since 2026/10/17
+ */
+final class OffscreenRenderer {
+
+    /**
+     * 一帧读回完成
+     */
+    interface OnFrameRenderedListener {
+        /**
+         * @param rgba 自上而下逐行排列的RGBA像素，下次回调时会被覆盖，只在回调内有效
+         */
+        void onFrameRendered(ByteBuffer rgba, int width, int height);
+    }
+
+    private static final String TAG = "OffscreenRenderer";
+    private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+    private static final int EGL_OPENGL_ES2_BIT = 4;
+    private static final int PBO_COUNT = 2;
+    private static final long READBACK_POLL_MS = 1;
+    private static final long FENCE_TIMEOUT_NANOS = 100_000_000L;
+
+    private final AlphaVideoRenderer renderer;
+    private final int width;
+    private final int height;
+    private final HandlerThread thread;
+    private Handler handler;
+    private volatile OnFrameRenderedListener listener;
+
+    // 以下只在渲染线程访问
+    private EGL10 egl;
+    private EGLDisplay eglDisplay;
+    private EGLContext eglContext;
+    private EGLSurface eglSurface;
+    private GL10 gl;
+    private final ByteBuffer pixels;
+    private final byte[] row;
+    private final byte[] otherRow;
+    private boolean pboSupported;
+    private final int[] pbos = new int[PBO_COUNT];
+    private final long[] fences = new long[PBO_COUNT];
+    private int oldest;
+    private int pending;
+    private boolean released;
+
+    private final Runnable renderRunnable = this::renderFrame;
+    private final Runnable pollRunnable = this::pollReadbacks;
+
+    /**
+     * @param width  输出宽度，通常与视频彩色部分的宽度相同
+     * @param height 输出高度
+     */
+    OffscreenRenderer(@AlphaModel int alphaModel, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        renderer = new AlphaVideoRenderer(alphaModel);
+        pixels = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder());
+        row = new byte[width * 4];
+        otherRow = new byte[width * 4];
+        thread = new HandlerThread(TAG);
+    }
+
+    /**
+     * 视频的 Surface 创建后回调，需要在 {@link #start()} 之前设置
+     */
+    void setOnSurfacePrepareListener(AlphaVideoRenderer.OnSurfacePrepareListener listener) {
+        renderer.setOnSurfacePrepareListener(listener);
+    }
+
+    void setOnFrameRenderedListener(OnFrameRenderedListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 输入不是解码器（例如用 Canvas 绘制）时需要指定输入缓冲区的大小
+     */
+    void setSourceBufferSize(int width, int height) {
+        renderer.setDefaultBufferSize(width, height);
+    }
+
+    /**
+     * 启动渲染线程并创建EGL环境
+     */
+    void start() {
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        renderer.setRenderRequester(this::requestRender);
+        handler.post(this::initGl);
+    }
+
+    /**
+     * 用当前的视频帧再绘制一次
+     */
+    void requestRender() {
+        if (handler == null) {
+            return;
+        }
+        handler.removeCallbacks(renderRunnable);
+        handler.post(renderRunnable);
+    }
+
+    /**
+     * 释放EGL环境、视频的 Surface 并结束线程，未读回的帧会先回调。未 {@link #start()} 时什么都不用释放
+     */
+    void release() {
+        if (handler == null) {
+            return;
+        }
+        handler.post(() -> {
+            releaseGl();
+            thread.quitSafely();
+        });
+    }
+
+    AlphaVideoRenderer getRenderer() {
+        return renderer;
+    }
+
+    private void initGl() {
+        egl = (EGL10) EGLContext.getEGL();
+        eglDisplay = GLTextureView.EglConfigCache.obtainDisplay(egl);
+        int[] configSpec = {
+                EGL10.EGL_RED_SIZE, 8,
+                EGL10.EGL_GREEN_SIZE, 8,
+                EGL10.EGL_BLUE_SIZE, 8,
+                EGL10.EGL_ALPHA_SIZE, 8,
+                EGL10.EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
+                EGL10.EGL_SURFACE_TYPE, EGL10.EGL_PBUFFER_BIT,
+                EGL10.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfig = new int[1];
+        if (!egl.eglChooseConfig(eglDisplay, configSpec, configs, 1, numConfig) || numConfig[0] == 0) {
+            throw new IllegalArgumentException("No pbuffer config matches configSpec");
+        }
+        EGLConfig config = configs[0];
+        int[] contextAttribs = {EGL_CONTEXT_CLIENT_VERSION, 2, EGL10.EGL_NONE};
+        eglContext = egl.eglCreateContext(eglDisplay, config, EGL10.EGL_NO_CONTEXT, contextAttribs);
+        if (eglContext == null || eglContext == EGL10.EGL_NO_CONTEXT) {
+            throw new RuntimeException("eglCreateContext failed: " + egl.eglGetError());
+        }
+        int[] surfaceAttribs = {EGL10.EGL_WIDTH, width, EGL10.EGL_HEIGHT, height, EGL10.EGL_NONE};
+        eglSurface = egl.eglCreatePbufferSurface(eglDisplay, config, surfaceAttribs);
+        if (eglSurface == null || eglSurface == EGL10.EGL_NO_SURFACE) {
+            throw new RuntimeException("eglCreatePbufferSurface failed: " + egl.eglGetError());
+        }
+        if (!egl.eglMakeCurrent(eglDisplay, eglSurface, eglSurface, eglContext)) {
+            throw new RuntimeException("eglMakeCurrent failed: " + egl.eglGetError());
+        }
+        gl = (GL10) eglContext.getGL();
+
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        pboSupported = version != null && version.startsWith("OpenGL ES ")
+                && version.length() > 10 && version.charAt(10) >= '3';
+        if (pboSupported) {
+            GLES30.glGenBuffers(PBO_COUNT, pbos, 0);
+            for (int pbo : pbos) {
+                GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, pbo);
+                GLES30.glBufferData(GLES30.GL_PIXEL_PACK_BUFFER, pixels.capacity(), null, GLES30.GL_STREAM_READ);
+            }
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+        }
+
+        renderer.onSurfaceCreated(gl, config);
+        renderer.onSurfaceChanged(gl, width, height);
+    }
+
+    private void renderFrame() {
+        if (released) {
+            return;
+        }
+        if (pboSupported && pending == PBO_COUNT) {
+            // 读回跟不上时等最早的一帧，限制在途帧数
+            deliverOldest(true);
+        }
+        renderer.onDrawFrame(gl);
+        if (pboSupported) {
+            int index = (oldest + pending) % PBO_COUNT;
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, pbos[index]);
+            GLES30.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, 0);
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+            fences[index] = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            GLES20.glFlush();
+            pending++;
+            handler.removeCallbacks(pollRunnable);
+            handler.post(pollRunnable);
+        } else {
+            pixels.clear();
+            GLES20.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, pixels);
+            flipRowsInPlace(pixels);
+            deliver();
+        }
+    }
+
+    private void pollReadbacks() {
+        while (pending > 0 && !released) {
+            int status = GLES30.glClientWaitSync(fences[oldest], 0, 0);
+            if (status == GLES30.GL_TIMEOUT_EXPIRED) {
+                handler.postDelayed(pollRunnable, READBACK_POLL_MS);
+                return;
+            }
+            deliverOldest(false);
+        }
+    }
+
+    private void deliverOldest(boolean wait) {
+        int index = oldest;
+        if (wait) {
+            GLES30.glClientWaitSync(fences[index], GLES30.GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT_NANOS);
+        }
+        GLES30.glDeleteSync(fences[index]);
+        fences[index] = 0;
+        oldest = (oldest + 1) % PBO_COUNT;
+        pending--;
+
+        GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, pbos[index]);
+        ByteBuffer mapped = (ByteBuffer) GLES30.glMapBufferRange(GLES30.GL_PIXEL_PACK_BUFFER, 0,
+                pixels.capacity(), GLES30.GL_MAP_READ_BIT);
+        if (mapped != null) {
+            copyFlipped(mapped, pixels);
+            GLES30.glUnmapBuffer(GLES30.GL_PIXEL_PACK_BUFFER);
+        }
+        GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+        if (mapped != null) {
+            deliver();
+        } else {
+            Log.w(TAG, "glMapBufferRange failed: " + GLES20.glGetError());
+        }
+    }
+
+    private void deliver() {
+        OnFrameRenderedListener l = listener;
+        if (l != null) {
+            pixels.position(0);
+            l.onFrameRendered(pixels, width, height);
+        }
+    }
+
+    /**
+     * glReadPixels 自下而上，转换成自上而下
+     */
+    private void copyFlipped(ByteBuffer src, ByteBuffer dst) {
+        int stride = width * 4;
+        for (int y = 0; y < height; y++) {
+            src.position(y * stride);
+            src.get(row);
+            dst.position((height - 1 - y) * stride);
+            dst.put(row);
+        }
+    }
+
+    private void flipRowsInPlace(ByteBuffer buffer) {
+        int stride = width * 4;
+        for (int top = 0, bottom = height - 1; top < bottom; top++, bottom--) {
+            buffer.position(top * stride);
+            buffer.get(row);
+            buffer.position(bottom * stride);
+            buffer.get(otherRow);
+            buffer.position(bottom * stride);
+            buffer.put(row);
+            buffer.position(top * stride);
+            buffer.put(otherRow);
+        }
+    }
+
+    private void releaseGl() {
+        if (released || egl == null) {
+            released = true;
+            return;
+        }
+        while (pending > 0) {
+            deliverOldest(true);
+        }
+        released = true;
+        if (pboSupported) {
+            GLES30.glDeleteBuffers(PBO_COUNT, pbos, 0);
+        }
+        // 趁上下文还是当前的，删掉渲染器的纹理和缓冲，并释放交给解码器的 SurfaceTexture 和 Surface
+        renderer.onDetachedFromContext(gl);
+        egl.eglMakeCurrent(eglDisplay, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_CONTEXT);
+        egl.eglDestroySurface(eglDisplay, eglSurface);
+        ShaderProgramCache.onContextDestroyed(eglContext);
+        GLStateTracker.onContextDestroyed(eglContext);
+        egl.eglDestroyContext(eglDisplay, eglContext);
+        // 与 GLTextureView 共用 EGLDisplay，不调用 eglTerminate
+    }
+}
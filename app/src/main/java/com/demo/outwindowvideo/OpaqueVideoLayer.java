@@ -0,0 +1,231 @@
+package com.demo.outwindowvideo;
+
+import android.graphics.SurfaceTexture;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.view.Surface;
+
+/**
+ * 垫在透明视频下面、在同一次绘制中画出的不透明视频
+ * <p>
+ * 由 {@link AlphaVideoRenderer#setUnderlay(OpaqueVideoLayer)} 挂到渲染器上：清空后先画本层，再混合透明视频，
+ * 两个视频只占用一个 surface、一个合成层。本层用纹理单元1，与透明视频的纹理单元0互不覆盖；
+ * 顶点数据与透明视频共用同一个 VBO，两次绘制之间不用重新设置顶点属性。除 {@link #setBounds} 和 {@link #release()} 外都在渲染线程调用。
+ *
+ * @since 2026/10/17
+ */
+final class OpaqueVideoLayer implements SurfaceTexture.OnFrameAvailableListener {
+
+    static final int TEXTURE_UNIT = GLES20.GL_TEXTURE1;
+    private static final int FLOAT_SIZE_BYTES = 4;
+    private static final int STRIDE_BYTES = 4 * FLOAT_SIZE_BYTES;
+    private static final int UV_OFFSET = 2 * FLOAT_SIZE_BYTES;
+
+    /**
+     * u_rect 是目标区域在裁剪坐标系中的中心和半宽高
+     */
+    private static final String vertexShader = "attribute vec2 a_position;\n"
+            + "attribute vec2 a_texCoord;\n"
+            + "uniform vec4 u_rect;\n"
+            + "varying vec2 v_texcoord;\n"
+            + "void main(void) {\n"
+            + "  gl_Position = vec4(u_rect.xy + a_position * u_rect.zw, 0.0, 1.0);\n"
+            + "  v_texcoord = a_texCoord;\n"
+            + "}\n";
+
+    private static final String fragmentShader = "#extension GL_OES_EGL_image_external : require\n"
+            + "precision mediump float;\n"
+            + "varying vec2 v_texcoord;\n"
+            + "uniform samplerExternalOES sTexture;\n"
+            + "void main() {\n"
+            + "  gl_FragColor = vec4(texture2D(sTexture, v_texcoord).rgb, 1.0);\n"
+            + "}\n";
+
+    private int program;
+    private int rectLocation = -1;
+    private int textureID;
+    /**
+     * surface、outputSurface 和 released 由本对象的锁保护，{@link #release()} 可能在UI线程调用
+     */
+    private SurfaceTexture surface;
+    private Surface outputSurface;
+    private boolean released;
+    private final FrameScheduler frameScheduler = new FrameScheduler();
+    /**
+     * 取到第一帧之前纹理没有内容，不绘制，露出下面的封面
+     */
+    private boolean hasFrame;
+    private final float[] rect = new float[4];
+    private int surfaceWidth;
+    private int surfaceHeight;
+
+    /**
+     * 在视图中的位置，像素，right <= left 表示铺满
+     */
+    private volatile int left;
+    private volatile int top;
+    private volatile int right;
+    private volatile int bottom;
+
+    private AlphaVideoRenderer.OnSurfacePrepareListener onSurfacePrepareListener;
+
+    void onSurfaceCreated(GLStateTracker state) {
+        program = ShaderProgramCache.obtainProgram(vertexShader, fragmentShader, "a_position", "a_texCoord");
+        if (program == 0) {
+            return;
+        }
+        rectLocation = GLES20.glGetUniformLocation(program, "u_rect");
+        // 采样器固定用纹理单元1，只需设置一次
+        state.useProgram(program);
+        GLES20.glUniform1i(GLES20.glGetUniformLocation(program, "sTexture"), TEXTURE_UNIT - GLES20.GL_TEXTURE0);
+
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        textureID = textures[0];
+        state.bindTextureUnit(TEXTURE_UNIT, GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureID);
+        GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER,
+                GLES20.GL_LINEAR);
+        GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER,
+                GLES20.GL_LINEAR);
+
+        Surface prepared;
+        synchronized (this) {
+            // context 重建时旧的纹理已随旧 context 删除，旧的 SurfaceTexture 和 Surface 要自己释放
+            releaseSurfaceLocked();
+            if (released) {
+                return;
+            }
+            surface = new SurfaceTexture(textureID);
+            surface.setOnFrameAvailableListener(this);
+            outputSurface = new Surface(surface);
+            prepared = outputSurface;
+        }
+        frameScheduler.reset();
+        hasFrame = false;
+        if (onSurfacePrepareListener != null) {
+            onSurfacePrepareListener.surfacePrepared(prepared);
+        }
+    }
+
+    /**
+     * 见 {@link AlphaVideoRenderer#onDetachedFromContext}，context 在当前线程
+     */
+    void onDetachedFromContext() {
+        if (textureID != 0) {
+            GLES20.glDeleteTextures(1, new int[]{textureID}, 0);
+            textureID = 0;
+        }
+        synchronized (this) {
+            releaseSurfaceLocked();
+        }
+        hasFrame = false;
+    }
+
+    /**
+     * 视图不再使用本层时调用，任意线程。释放交给播放器的 Surface 和 SurfaceTexture，之后 context 重建也不再创建；
+     * 纹理随 context 删除
+     */
+    synchronized void release() {
+        released = true;
+        releaseSurfaceLocked();
+    }
+
+    private void releaseSurfaceLocked() {
+        if (outputSurface != null) {
+            outputSurface.release();
+            outputSurface = null;
+        }
+        if (surface != null) {
+            surface.setOnFrameAvailableListener(null);
+            surface.release();
+            surface = null;
+        }
+    }
+
+    void onSurfaceChanged(int width, int height) {
+        surfaceWidth = width;
+        surfaceHeight = height;
+    }
+
+    /**
+     * 有新帧时取到纹理上，需要在清空和绘制之前调用
+     */
+    void latchFrame(GLStateTracker state) {
+        synchronized (this) {
+            if (surface == null || !frameScheduler.beginDraw()) {
+                return;
+            }
+            // updateTexImage 绑定到当前纹理单元
+            state.activeTexture(TEXTURE_UNIT);
+            surface.updateTexImage();
+        }
+        state.onTextureBound(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureID);
+        hasFrame = true;
+    }
+
+    /**
+     * 不混合地画到 {@link #setBounds} 指定的区域
+     *
+     * @param vertexBuffer 透明视频的顶点 VBO
+     */
+    void draw(Gles gles, GLStateTracker state, int vertexBuffer) {
+        if (!hasFrame || program == 0 || surfaceWidth <= 0 || surfaceHeight <= 0) {
+            return;
+        }
+        computeRect();
+        if (rect[2] <= 0 || rect[3] <= 0) {
+            return;
+        }
+        state.setBlendEnabled(false);
+        state.useProgram(program);
+        state.uniform4f(rectLocation, rect);
+        state.bindTextureUnit(TEXTURE_UNIT, GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureID);
+        state.bindArrayBuffer(vertexBuffer);
+        state.vertexAttribPointer(0, 2, GLES20.GL_FLOAT, false, STRIDE_BYTES, 0);
+        state.enableVertexAttribArray(0);
+        state.vertexAttribPointer(1, 2, GLES20.GL_FLOAT, false, STRIDE_BYTES, UV_OFFSET);
+        state.enableVertexAttribArray(1);
+        gles.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+    }
+
+    private void computeRect() {
+        int l = left;
+        int t = top;
+        int r = right;
+        int b = bottom;
+        if (r <= l || b <= t) {
+            rect[0] = 0f;
+            rect[1] = 0f;
+            rect[2] = 1f;
+            rect[3] = 1f;
+            return;
+        }
+        rect[0] = (l + r) / (float) surfaceWidth - 1f;
+        rect[1] = 1f - (t + b) / (float) surfaceHeight;
+        rect[2] = (r - l) / (float) surfaceWidth;
+        rect[3] = (b - t) / (float) surfaceHeight;
+    }
+
+    /**
+     * 设置在视图中的位置（相对视图左上角的像素），任意线程调用，下一帧生效
+     */
+    void setBounds(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    @Override
+    public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+        frameScheduler.onFrameAvailable();
+    }
+
+    void setRenderRequester(FrameScheduler.RenderRequester renderRequester) {
+        frameScheduler.setRenderRequester(renderRequester);
+    }
+
+    void setOnSurfacePrepareListener(AlphaVideoRenderer.OnSurfacePrepareListener listener) {
+        this.onSurfacePrepareListener = listener;
+    }
+}
@@ -0,0 +1,236 @@
+package com.demo.outwindowvideo;
+
+/**
+ * 让两个独立播放器的进度保持一致
+ * <p>
+ * 以主视频的播放位置为时钟，定时比较跟随视频与它的差值（漂移），按漂移大小分三档纠正跟随视频：
+ * <ul>
+ * <li>不超过 {@link #setDeadbandUs 死区}：保持原速；</li>
+ * <li>小于 {@link #setSeekThresholdUs 跳转阈值}：按漂移成比例地微调播放速度，几秒内平滑追上，画面不跳；</li>
+ * <li>超过跳转阈值：跟随视频超前时先暂停等主视频赶上（不超过 {@link #setMaxHoldUs}），落后时直接跳转。</li>
+ * </ul>
+ * 主视频一般是有声音的那个，只调整跟随视频，声音不会变调。跳转后等一段时间再比较，避免跳转还没完成时重复跳转。
+ * <p>
+ * MediaPlayer 给 SurfaceTexture 的时间戳是渲染时刻而不是视频中的显示时间戳，不能跨两个视频比较，
+ * 所以时钟取自两个播放器的播放位置。{@link #update(long)} 和 {@link #reset()} 只在主线程调用，统计可以在任意线程查询。
+ *
+ * @since 2026/10/17
+ */
+public final class PlaybackSync {
+
+    static final long DEFAULT_DEADBAND_US = 15_000;
+    static final long DEFAULT_SEEK_THRESHOLD_US = 250_000;
+    static final long DEFAULT_MAX_HOLD_US = 2_000_000;
+    /**
+     * 调速追赶的时间常数：速度偏离 drift / CORRECTION_TIME_US，漂移大约按这个时间指数收敛
+     */
+    static final long CORRECTION_TIME_US = 2_000_000;
+    static final float MAX_SPEED_ADJUST = 0.05f;
+    /**
+     * 速度变化小于这个值时不重新设置，MediaPlayer 每次设置速度都要重新配置音频
+     */
+    private static final float SPEED_STEP = 0.005f;
+    static final long SEEK_SETTLE_NANOS = 500_000_000L;
+
+    interface Stream {
+        /**
+         * @return 当前播放位置，微秒；不知道时返回负数
+         */
+        long getPositionUs();
+
+        boolean isPlaying();
+    }
+
+    interface Follower extends Stream {
+        /**
+         * 只在播放中调用
+         */
+        void setSpeed(float speed);
+
+        void seekTo(long positionUs);
+
+        /**
+         * 暂停等待，之后由 {@link #resume()} 恢复
+         */
+        void hold();
+
+        void resume();
+    }
+
+    private final Stream master;
+    private final Follower follower;
+    private volatile long deadbandUs = DEFAULT_DEADBAND_US;
+    private volatile long seekThresholdUs = DEFAULT_SEEK_THRESHOLD_US;
+    private volatile long maxHoldUs = DEFAULT_MAX_HOLD_US;
+
+    // 以下只在主线程访问
+    private float speed = 1f;
+    private boolean holding;
+    private long settleUntilNanos;
+
+    // 以下为统计，加锁访问
+    private final FrameTimingHistogram absDrift = new FrameTimingHistogram();
+    private long lastDriftUs;
+    private long speedChanges;
+    private long seeks;
+    private long holds;
+
+    PlaybackSync(Stream master, Follower follower) {
+        this.master = master;
+        this.follower = follower;
+    }
+
+    /**
+     * 比较一次并按需纠正，播放期间定时调用
+     */
+    void update(long nowNanos) {
+        if (!master.isPlaying() || (!holding && !follower.isPlaying())) {
+            // 主视频缓冲、暂停或播完了，或者跟随视频不是因为本类暂停的
+            return;
+        }
+        if (nowNanos - settleUntilNanos < 0) {
+            return;
+        }
+        long masterUs = master.getPositionUs();
+        long followerUs = follower.getPositionUs();
+        if (masterUs < 0 || followerUs < 0) {
+            return;
+        }
+        // 正数表示跟随视频超前
+        long drift = followerUs - masterUs;
+        record(drift);
+
+        if (holding) {
+            if (drift <= deadbandUs) {
+                holding = false;
+                follower.resume();
+            }
+            return;
+        }
+        if (Math.abs(drift) >= seekThresholdUs) {
+            setSpeed(1f);
+            if (drift > 0 && drift <= maxHoldUs) {
+                holding = true;
+                follower.hold();
+                synchronized (this) {
+                    holds++;
+                }
+            } else {
+                follower.seekTo(masterUs);
+                settleUntilNanos = nowNanos + SEEK_SETTLE_NANOS;
+                synchronized (this) {
+                    seeks++;
+                }
+            }
+            return;
+        }
+        setSpeed(speedFor(drift, deadbandUs));
+    }
+
+    /**
+     * 用户暂停、停止或重新开始时调用，在操作播放器之前调用，速度恢复为原速，忘掉进行中的纠正
+     */
+    void reset() {
+        setSpeed(1f);
+        holding = false;
+        settleUntilNanos = 0;
+    }
+
+    /**
+     * 落后时加速、超前时减速，速度与漂移成正比，不超过 {@link #MAX_SPEED_ADJUST}
+     */
+    static float speedFor(long driftUs, long deadbandUs) {
+        if (Math.abs(driftUs) <= deadbandUs) {
+            return 1f;
+        }
+        float adjust = (float) driftUs / CORRECTION_TIME_US;
+        return 1f - Math.max(-MAX_SPEED_ADJUST, Math.min(MAX_SPEED_ADJUST, adjust));
+    }
+
+    private void setSpeed(float speed) {
+        if (speed == this.speed || (speed != 1f && Math.abs(speed - this.speed) < SPEED_STEP)) {
+            return;
+        }
+        this.speed = speed;
+        follower.setSpeed(speed);
+        synchronized (this) {
+            speedChanges++;
+        }
+    }
+
+    private synchronized void record(long driftUs) {
+        lastDriftUs = driftUs;
+        absDrift.record(Math.abs(driftUs) * 1000);
+    }
+
+    // region 配置
+    /**
+     * 漂移不超过这个值时不纠正
+     */
+    public void setDeadbandUs(long deadbandUs) {
+        this.deadbandUs = deadbandUs;
+    }
+
+    /**
+     * 漂移超过这个值时不再靠调速，改为暂停等待或跳转
+     */
+    public void setSeekThresholdUs(long seekThresholdUs) {
+        this.seekThresholdUs = seekThresholdUs;
+    }
+
+    /**
+     * 跟随视频超前不超过这个值时暂停等待，更多时直接跳转
+     */
+    public void setMaxHoldUs(long maxHoldUs) {
+        this.maxHoldUs = maxHoldUs;
+    }
+    // endregion
+
+    // region 统计
+    /**
+     * @return 比较过的次数
+     */
+    public synchronized long getSampleCount() {
+        return absDrift.getCount();
+    }
+
+    /**
+     * @return 最近一次的漂移，微秒，正数表示跟随视频超前
+     */
+    public synchronized long getLastDriftUs() {
+        return lastDriftUs;
+    }
+
+    /**
+     * @param percentile 0 ~ 100
+     * @return 漂移绝对值的分位数，微秒
+     */
+    public synchronized long getAbsDriftPercentileUs(double percentile) {
+        return absDrift.getPercentileNanos(percentile) / 1000;
+    }
+
+    public synchronized long getMaxAbsDriftUs() {
+        return absDrift.getMaxNanos() / 1000;
+    }
+
+    public synchronized long getSpeedChangeCount() {
+        return speedChanges;
+    }
+
+    public synchronized long getSeekCount() {
+        return seeks;
+    }
+
+    public synchronized long getHoldCount() {
+        return holds;
+    }
+
+    public synchronized void resetStats() {
+        absDrift.reset();
+        lastDriftUs = 0;
+        speedChanges = 0;
+        seeks = 0;
+        holds = 0;
+    }
+    // endregion
+}
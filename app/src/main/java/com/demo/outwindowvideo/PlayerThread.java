@@ -0,0 +1,215 @@
+package com.demo.outwindowvideo;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * 播放线程：所有 {@link VideoPlayer} 的控制调用都排进这里的命令队列，在一个共用的 HandlerThread 上按顺序执行
+ * <p>
+ * 打开文件、setDataSource、prepare、start/pause/stop、reset、release 在主线程上都可能阻塞几到几十毫秒，
+ * 信息流绑定一条广告时会有好几次。现在主线程只维护状态、入队，立即返回；引擎的回调由
+ * {@link VideoPlayerController} 切回主线程。
+ * <p>
+ * 同一个播放器还没执行的命令会合并：
+ * <ul>
+ * <li>pause 后紧跟 start（或反过来）互相抵消，比如缓冲反复开始结束时；</li>
+ * <li>连续的 seek、setSurface、设置速度只保留最后一个。</li>
+ * </ul>
+ * 合并只看该播放器队尾的命令，中间隔着别的命令时不合并，保证执行顺序和调用顺序一致。
+ *
+ * @since 2026/10/17
+ */
+final class PlayerThread {
+
+    private static final String TAG = "PlayerThread";
+
+    // region 命令类型
+    static final int SET_LISTENER = 0;
+    static final int SET_SURFACE = 1;
+    static final int OPEN = 2;
+    static final int PREPARE = 3;
+    static final int START = 4;
+    static final int PAUSE = 5;
+    static final int STOP = 6;
+    static final int SEEK = 7;
+    static final int SET_SPEED = 8;
+    static final int RESET = 9;
+    static final int RELEASE = 10;
+    // endregion
+
+    private static PlayerThread defaultThread;
+
+    /**
+     * 命令执行失败，在播放线程上回调
+     */
+    interface OnCommandFailedListener {
+        void onCommandFailed(int type, RuntimeException e);
+    }
+
+    private static final class Command {
+        final VideoPlayer target;
+        final int type;
+        Runnable action;
+
+        Command(VideoPlayer target, int type, Runnable action) {
+            this.target = target;
+            this.type = type;
+            this.action = action;
+        }
+    }
+
+    private final Executor worker;
+    private final Executor main;
+    private final OnCommandFailedListener failedListener;
+    private final Object lock = new Object();
+    private final ArrayList<Command> pending = new ArrayList<>();
+    private boolean drainScheduled;
+    private final Runnable drainTask = this::drain;
+
+    private int executed;
+    private int coalesced;
+
+    /**
+     * @param worker 执行命令，同一时间只会有一个排队的 drain 任务
+     * @param main   执行切回主线程的回调
+     */
+    PlayerThread(Executor worker, Executor main) {
+        this(worker, main, null);
+    }
+
+    /**
+     * @param failedListener 命令抛出异常时回调，null 表示忽略
+     */
+    PlayerThread(Executor worker, Executor main, OnCommandFailedListener failedListener) {
+        this.worker = worker;
+        this.main = main;
+        this.failedListener = failedListener;
+    }
+
+    /**
+     * 进程内共用的播放线程
+     */
+    static synchronized PlayerThread getDefault() {
+        if (defaultThread == null) {
+            HandlerThread thread = new HandlerThread(TAG);
+            thread.start();
+            Handler workerHandler = new Handler(thread.getLooper());
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            defaultThread = new PlayerThread(workerHandler::post, mainHandler::post,
+                    (type, e) -> Log.w(TAG, "command " + type + " failed", e));
+        }
+        return defaultThread;
+    }
+
+    /**
+     * 命令和回调都在调用线程立即执行，不排队也不合并，单元测试用
+     */
+    static PlayerThread direct() {
+        return new PlayerThread(Runnable::run, Runnable::run);
+    }
+
+    /**
+     * 把对 target 的一条命令排进队列
+     */
+    void enqueue(VideoPlayer target, int type, Runnable action) {
+        synchronized (lock) {
+            if (!coalesce(target, type, action)) {
+                pending.add(new Command(target, type, action));
+            }
+            if (drainScheduled) {
+                return;
+            }
+            drainScheduled = true;
+        }
+        worker.execute(drainTask);
+    }
+
+    /**
+     * 不针对某个播放器的后台工作（比如读视频旁边的索引文件），和命令一起排队，不合并
+     */
+    void execute(Runnable action) {
+        enqueue(null, -1, action);
+    }
+
+    void runOnMain(Runnable action) {
+        main.execute(action);
+    }
+
+    String getStats() {
+        synchronized (lock) {
+            return "executed=" + executed + " coalesced=" + coalesced + " pending=" + pending.size();
+        }
+    }
+
+    // region 内部
+    /**
+     * @return 已经和队尾的命令合并，不用再入队
+     */
+    private boolean coalesce(VideoPlayer target, int type, Runnable action) {
+        if (target == null) {
+            return false;
+        }
+        int last = -1;
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            if (pending.get(i).target == target) {
+                last = i;
+                break;
+            }
+        }
+        if (last < 0) {
+            return false;
+        }
+        Command previous = pending.get(last);
+        if ((type == START && previous.type == PAUSE) || (type == PAUSE && previous.type == START)) {
+            pending.remove(last);
+            coalesced += 2;
+            return true;
+        }
+        if (type == previous.type && (type == SEEK || type == SET_SURFACE || type == SET_SPEED)) {
+            previous.action = action;
+            coalesced++;
+            return true;
+        }
+        return false;
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Command command;
+                synchronized (lock) {
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                    command = pending.remove(0);
+                    executed++;
+                }
+                try {
+                    command.action.run();
+                } catch (RuntimeException e) {
+                    // 状态机保证了调用顺序，这里只可能是引擎内部出错，不能让一个播放器拖垮整个线程
+                    OnCommandFailedListener listener = failedListener;
+                    if (listener != null) {
+                        listener.onCommandFailed(command.type, e);
+                    }
+                }
+            }
+        } finally {
+            // 命令抛出 Error 或失败回调本身出错时也要清掉标记，否则之后的命令都不会再执行
+            boolean remaining;
+            synchronized (lock) {
+                remaining = !pending.isEmpty();
+                drainScheduled = remaining;
+            }
+            if (remaining) {
+                worker.execute(drainTask);
+            }
+        }
+    }
+    // endregion
+}
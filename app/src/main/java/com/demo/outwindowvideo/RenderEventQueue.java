@@ -0,0 +1,94 @@
+package com.demo.outwindowvideo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 渲染线程的事件队列
+ * <p>
+ * 可增长的数组实现：入队追加到末尾，满了容量翻倍，均摊 O(1)；渲染线程每轮循环通过 {@link #drainTo(List)}
+ * 一次取走全部事件，之后从数组开头重新写入。容量不设上限，生产者不会因为队列满而阻塞。
+ * 带合并 key 的事件（如 resize、切换 alphaModel）在队列里只保留最后一次提交的 Runnable，
+ * 位置沿用第一次入队时的位置。
+ * <p>
+ * 本类不是线程安全的，由持有它的渲染线程的锁保护。
+ *
+ * @since 2026/10/17
+ */
+final class RenderEventQueue {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Runnable[] events;
+    private int size;
+    /**
+     * 合并 key 到所在槽位的映射
+     */
+    private final HashMap<Object, Integer> keySlots = new HashMap<>();
+
+    RenderEventQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    RenderEventQueue(int capacity) {
+        events = new Runnable[Math.max(2, capacity)];
+    }
+
+    /**
+     * 入队
+     *
+     * @param coalesceKey 为 null 时不合并；否则替换队列中 key 相同且尚未执行的事件
+     * @param event       要在渲染线程执行的事件
+     * @return true 表示新增了一个事件，false 表示合并进了已有事件
+     */
+    boolean offer(Object coalesceKey, Runnable event) {
+        if (coalesceKey != null) {
+            Integer slot = keySlots.get(coalesceKey);
+            if (slot != null) {
+                events[slot] = event;
+                return false;
+            }
+        }
+        if (size == events.length) {
+            grow();
+        }
+        events[size] = event;
+        if (coalesceKey != null) {
+            keySlots.put(coalesceKey, size);
+        }
+        size++;
+        return true;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 按入队顺序取出全部事件
+     *
+     * @return 取出的事件数
+     */
+    int drainTo(List<Runnable> out) {
+        int count = size;
+        for (int i = 0; i < count; i++) {
+            out.add(events[i]);
+            events[i] = null;
+        }
+        size = 0;
+        keySlots.clear();
+        return count;
+    }
+
+    /**
+     * 容量翻倍，均摊后入队仍为 O(1)。不阻塞生产者，避免在UI线程上等待渲染线程。
+     */
+    private void grow() {
+        events = Arrays.copyOf(events, events.length << 1);
+    }
+}
@@ -0,0 +1,140 @@
+package com.demo.outwindowvideo;
+
+/**
+ * 单个 {@link GLTextureView} 的逐帧渲染耗时统计
+ * <p>
+ * 渲染线程记录 updateTexImage、onDrawFrame、eglSwapBuffers 的耗时以及相邻两帧的间隔，
+ * 全部写入预分配的直方图，每帧不分配内存。任意线程都可以查询分位数和掉帧数。
+ * <p>
+ * onDrawFrame 的耗时包含渲染器在其中调用的 updateTexImage。
+ * 间隔超过 {@link #IDLE_GAP_NANOS} 视为没有新帧的空闲期（暂停、缓冲），不计入间隔和掉帧。
+ *
+ * @since 2026/10/17
+ */
+public final class RenderMetrics {
+
+    public static final int STAGE_UPDATE_TEX_IMAGE = 0;
+    public static final int STAGE_DRAW_FRAME = 1;
+    public static final int STAGE_SWAP_BUFFERS = 2;
+    public static final int STAGE_FRAME_INTERVAL = 3;
+    private static final int STAGE_COUNT = 4;
+
+    static final long IDLE_GAP_NANOS = 250_000_000L;
+    /**
+     * 未指定期望帧间隔时，至少积累这么多间隔样本后才用中位数判断掉帧
+     */
+    private static final int MIN_INTERVAL_SAMPLES = 30;
+
+    private final FrameTimingHistogram[] histograms = new FrameTimingHistogram[STAGE_COUNT];
+    private long expectedFrameIntervalNanos;
+    private long lastFrameStartNanos;
+    private long frameCount;
+    private long droppedFrames;
+
+    RenderMetrics() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            histograms[i] = new FrameTimingHistogram();
+        }
+    }
+
+    // region 渲染线程记录
+    /**
+     * 一帧开始绘制，记录与上一帧的间隔并判断掉帧
+     */
+    synchronized void onFrameStart(long nowNanos) {
+        frameCount++;
+        long last = lastFrameStartNanos;
+        lastFrameStartNanos = nowNanos;
+        if (last == 0) {
+            return;
+        }
+        long interval = nowNanos - last;
+        if (interval > IDLE_GAP_NANOS) {
+            return;
+        }
+        FrameTimingHistogram intervals = histograms[STAGE_FRAME_INTERVAL];
+        long expected = expectedFrameIntervalNanos;
+        if (expected == 0 && intervals.getCount() >= MIN_INTERVAL_SAMPLES) {
+            expected = intervals.getPercentileNanos(50);
+        }
+        // 超过1.5倍期望间隔即认为中间丢了帧
+        if (expected > 0 && interval * 2 > expected * 3) {
+            droppedFrames += (interval + expected / 2) / expected - 1;
+        }
+        intervals.record(interval);
+    }
+
+    /**
+     * 记录某个阶段的耗时
+     */
+    synchronized void record(int stage, long nanos) {
+        histograms[stage].record(nanos);
+    }
+    // endregion
+
+    // region 查询
+    /**
+     * @param stage      STAGE_* 之一
+     * @param percentile 0 ~ 100，如 50、95、99
+     * @return 该阶段耗时的分位数，纳秒；没有数据时返回0
+     */
+    public synchronized long getPercentileNanos(int stage, double percentile) {
+        return histograms[stage].getPercentileNanos(percentile);
+    }
+
+    public synchronized long getMaxNanos(int stage) {
+        return histograms[stage].getMaxNanos();
+    }
+
+    public synchronized long getSampleCount(int stage) {
+        return histograms[stage].getCount();
+    }
+
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * 设置期望的帧间隔，如视频30fps时传33_333_333。传0（默认）则使用观测到的帧间隔中位数
+     */
+    public synchronized void setExpectedFrameIntervalNanos(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("nanos must be >= 0");
+        }
+        expectedFrameIntervalNanos = nanos;
+    }
+
+    /**
+     * 清空所有统计
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            histograms[i].reset();
+        }
+        lastFrameStartNanos = 0;
+        frameCount = 0;
+        droppedFrames = 0;
+    }
+    // endregion
+
+    @Override
+    public synchronized String toString() {
+        return "RenderMetrics{frames=" + frameCount
+                + ", dropped=" + droppedFrames
+                + ", updateTexImage p50/p95/p99=" + formatStage(STAGE_UPDATE_TEX_IMAGE)
+                + ", drawFrame=" + formatStage(STAGE_DRAW_FRAME)
+                + ", swap=" + formatStage(STAGE_SWAP_BUFFERS)
+                + ", interval=" + formatStage(STAGE_FRAME_INTERVAL)
+                + "}";
+    }
+
+    private String formatStage(int stage) {
+        FrameTimingHistogram h = histograms[stage];
+        return h.getPercentileNanos(50) / 1000 + "/" + h.getPercentileNanos(95) / 1000
+                + "/" + h.getPercentileNanos(99) / 1000 + "us";
+    }
+}
@@ -0,0 +1,378 @@
+package com.demo.outwindowvideo;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLContext;
+
+/**
+ * 着色器程序缓存
+ * <p>
+ * 每个渲染器在每个新的 EGLContext 上都要从源码编译、链接一次着色器，冷启动时占了首帧的一大块时间。这里分三级缓存：
+ * <ol>
+ * <li>同一个 EGLContext 内直接复用已链接的程序，共用渲染线程或复用线程池时多个渲染器只编译一次；</li>
+ * <li>GLES 3 下把链接好的程序二进制按驱动（GL_RENDERER + GL_VERSION）和着色器源码的哈希保存在进程内，
+ * 新的 context 用 glProgramBinary 直接加载；</li>
+ * <li>二进制同时写入磁盘（{@link #setCacheDir(File)}），下次冷启动也不用编译。</li>
+ * </ol>
+ * 二进制加载失败（驱动升级等）时删除该缓存并回退到源码编译。所有 obtain 方法只能在当前有 EGLContext 的渲染线程调用。
+ *
+ * @since 2026/10/17
+ */
+final class ShaderProgramCache {
+
+    private static final String TAG = "ShaderProgramCache";
+    private static final boolean LOG_CACHE = false;
+    private static final int FILE_MAGIC = 0x53504331;
+    private static final int MAX_MEMORY_BINARIES = 8;
+    private static final String FILE_SUFFIX = ".bin";
+
+    /**
+     * EGLContext -> (源码key -> program)。context 销毁时由 {@link #onContextDestroyed(EGLContext)} 移除
+     */
+    private static final HashMap<EGLContext, HashMap<String, Integer>> contextPrograms = new HashMap<>();
+    /**
+     * 驱动+源码key -> 程序二进制，最近最少使用的先淘汰
+     */
+    private static final LinkedHashMap<String, Entry> binaries =
+            new LinkedHashMap<String, Entry>(MAX_MEMORY_BINARIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > MAX_MEMORY_BINARIES;
+                }
+            };
+    private static File cacheDir;
+
+    private static int contextHits;
+    private static int binaryHits;
+    private static int compiles;
+
+    private ShaderProgramCache() {
+    }
+
+    /**
+     * 程序二进制及其格式
+     */
+    static final class Entry {
+        final int format;
+        final byte[] binary;
+
+        Entry(int format, byte[] binary) {
+            this.format = format;
+            this.binary = binary;
+        }
+    }
+
+    /**
+     * 设置程序二进制的磁盘缓存目录，不设置时只缓存在内存中
+     */
+    static synchronized void setCacheDir(File dir) {
+        cacheDir = dir;
+    }
+
+    /**
+     * 取得由这两段源码链接成的程序，失败时返回0
+     *
+     * @param attributes 依次绑定到位置 0、1、2… 的 attribute，链接前绑定，渲染器不必再查询位置
+     */
+    static int obtainProgram(String vertexSource, String fragmentSource, String... attributes) {
+        StringBuilder key = new StringBuilder(vertexSource).append('\0').append(fragmentSource);
+        for (String attribute : attributes) {
+            key.append('\0').append(attribute);
+        }
+        String sourceKey = hash(key.toString());
+        EGLContext context = ((EGL10) EGLContext.getEGL()).eglGetCurrentContext();
+        synchronized (ShaderProgramCache.class) {
+            HashMap<String, Integer> programs = contextPrograms.get(context);
+            Integer program = programs == null ? null : programs.get(sourceKey);
+            if (program != null) {
+                contextHits++;
+                return program;
+            }
+        }
+
+        long start = System.nanoTime();
+        boolean binarySupported = isBinarySupported();
+        String binaryKey = binarySupported ? hash(driverId() + '\0' + sourceKey) : null;
+        int program = binarySupported ? loadBinary(binaryKey) : 0;
+        if (program == 0) {
+            program = compileProgram(vertexSource, fragmentSource, attributes, binarySupported);
+            if (program != 0 && binarySupported) {
+                storeBinary(binaryKey, program);
+            }
+        }
+        if (program == 0) {
+            return 0;
+        }
+        if (LOG_CACHE) {
+            Log.w(TAG, "program ready in " + (System.nanoTime() - start) / 1000 + "us " + getStats());
+        }
+        synchronized (ShaderProgramCache.class) {
+            HashMap<String, Integer> programs = contextPrograms.get(context);
+            if (programs == null) {
+                programs = new HashMap<>();
+                contextPrograms.put(context, programs);
+            }
+            programs.put(sourceKey, program);
+        }
+        return program;
+    }
+
+    /**
+     * context 销毁前后调用，其中的程序随之失效
+     */
+    static synchronized void onContextDestroyed(EGLContext context) {
+        contextPrograms.remove(context);
+    }
+
+    static synchronized String getStats() {
+        return "contextHits=" + contextHits + " binaryHits=" + binaryHits + " compiles=" + compiles;
+    }
+
+    // region 程序二进制
+    private static boolean isBinarySupported() {
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        if (version == null || !version.startsWith("OpenGL ES ") || version.length() <= 10
+                || version.charAt(10) < '3') {
+            return false;
+        }
+        int[] formats = new int[1];
+        GLES20.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formats, 0);
+        return formats[0] > 0;
+    }
+
+    private static String driverId() {
+        return GLES20.glGetString(GLES20.GL_RENDERER) + '/' + GLES20.glGetString(GLES20.GL_VERSION);
+    }
+
+    private static int loadBinary(String binaryKey) {
+        Entry entry;
+        synchronized (ShaderProgramCache.class) {
+            entry = binaries.get(binaryKey);
+        }
+        boolean fromDisk = false;
+        if (entry == null) {
+            entry = readFile(binaryKey);
+            fromDisk = true;
+        }
+        if (entry == null) {
+            return 0;
+        }
+        int program = GLES20.glCreateProgram();
+        if (program == 0) {
+            return 0;
+        }
+        GLES30.glProgramBinary(program, entry.format, ByteBuffer.wrap(entry.binary), entry.binary.length);
+        if (!isLinked(program)) {
+            // 驱动不再接受这份二进制
+            GLES20.glDeleteProgram(program);
+            synchronized (ShaderProgramCache.class) {
+                binaries.remove(binaryKey);
+            }
+            deleteFile(binaryKey);
+            return 0;
+        }
+        synchronized (ShaderProgramCache.class) {
+            binaryHits++;
+            if (fromDisk) {
+                binaries.put(binaryKey, entry);
+            }
+        }
+        return program;
+    }
+
+    private static void storeBinary(String binaryKey, int program) {
+        int[] length = new int[1];
+        GLES20.glGetProgramiv(program, GLES30.GL_PROGRAM_BINARY_LENGTH, length, 0);
+        if (length[0] <= 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length[0]);
+        int[] written = new int[1];
+        int[] format = new int[1];
+        GLES30.glGetProgramBinary(program, length[0], written, 0, format, 0, buffer);
+        if (written[0] <= 0) {
+            return;
+        }
+        byte[] binary = new byte[written[0]];
+        buffer.get(binary);
+        Entry entry = new Entry(format[0], binary);
+        synchronized (ShaderProgramCache.class) {
+            binaries.put(binaryKey, entry);
+        }
+        writeFile(binaryKey, entry);
+    }
+    // endregion
+
+    // region 源码编译
+    private static int compileProgram(String vertexSource, String fragmentSource, String[] attributes,
+                                      boolean retrievable) {
+        int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, vertexSource);
+        if (vertexShader == 0) {
+            return 0;
+        }
+        int pixelShader = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+        if (pixelShader == 0) {
+            GLES20.glDeleteShader(vertexShader);
+            return 0;
+        }
+
+        int program = GLES20.glCreateProgram();
+        if (program != 0) {
+            GLES20.glAttachShader(program, vertexShader);
+            GLES20.glAttachShader(program, pixelShader);
+            for (int i = 0; i < attributes.length; i++) {
+                GLES20.glBindAttribLocation(program, i, attributes[i]);
+            }
+            if (retrievable) {
+                GLES30.glProgramParameteri(program, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GLES20.GL_TRUE);
+            }
+            GLES20.glLinkProgram(program);
+            if (!isLinked(program)) {
+                GLES20.glDeleteProgram(program);
+                program = 0;
+            }
+        }
+        // 链接后着色器对象不再需要，随程序一起释放
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(pixelShader);
+        synchronized (ShaderProgramCache.class) {
+            compiles++;
+        }
+        return program;
+    }
+
+    private static int loadShader(int shaderType, String source) {
+        int shader = GLES20.glCreateShader(shaderType);
+        if (shader != 0) {
+            GLES20.glShaderSource(shader, source);
+            GLES20.glCompileShader(shader);
+            int[] compiled = new int[1];
+            GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
+            if (compiled[0] == 0) {
+                GLES20.glDeleteShader(shader);
+                shader = 0;
+            }
+        }
+        return shader;
+    }
+
+    private static boolean isLinked(int program) {
+        int[] linkStatus = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        return linkStatus[0] == GLES20.GL_TRUE;
+    }
+    // endregion
+
+    // region 磁盘缓存
+    private static File fileFor(String binaryKey) {
+        File dir;
+        synchronized (ShaderProgramCache.class) {
+            dir = cacheDir;
+        }
+        return dir == null ? null : new File(dir, binaryKey + FILE_SUFFIX);
+    }
+
+    private static Entry readFile(String binaryKey) {
+        File file = fileFor(binaryKey);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            Entry entry = readEntry(in);
+            if (entry == null) {
+                file.delete();
+            }
+            return entry;
+        } catch (IOException e) {
+            Log.w(TAG, "read " + file + " failed", e);
+            return null;
+        }
+    }
+
+    private static void writeFile(String binaryKey, Entry entry) {
+        File file = fileFor(binaryKey);
+        if (file == null) {
+            return;
+        }
+        try {
+            CacheFiles.writeAtomically(file, out -> {
+                writeEntry(out, entry);
+                return true;
+            });
+        } catch (IOException e) {
+            Log.w(TAG, "write " + file + " failed", e);
+        }
+    }
+
+    private static void deleteFile(String binaryKey) {
+        File file = fileFor(binaryKey);
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    static void writeEntry(OutputStream out, Entry entry) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(FILE_MAGIC);
+        data.writeInt(entry.format);
+        data.writeInt(entry.binary.length);
+        data.write(entry.binary);
+        data.flush();
+    }
+
+    /**
+     * @return 文件内容不完整或格式不对时返回null
+     */
+    static Entry readEntry(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        try {
+            if (data.readInt() != FILE_MAGIC) {
+                return null;
+            }
+            int format = data.readInt();
+            int length = data.readInt();
+            if (length <= 0) {
+                return null;
+            }
+            ByteArrayOutputStream binary = new ByteArrayOutputStream(Math.min(length, 1 << 20));
+            byte[] chunk = new byte[4096];
+            int remaining = length;
+            while (remaining > 0) {
+                int read = data.read(chunk, 0, Math.min(chunk.length, remaining));
+                if (read < 0) {
+                    return null;
+                }
+                binary.write(chunk, 0, read);
+                remaining -= read;
+            }
+            if (data.read() != -1) {
+                return null;
+            }
+            return new Entry(format, binary.toByteArray());
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+    // endregion
+
+    static String hash(String text) {
+        return CacheFiles.hexDigest("SHA-256", text);
+    }
+}
@@ -0,0 +1,243 @@
+package com.demo.outwindowvideo;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ImageFormat;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.SurfaceTexture;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Surface;
+
+import com.demo.outwindowvideo.kernel.AlphaKernels;
+import com.demo.outwindowvideo.kernel.PackedLayout;
+import com.demo.outwindowvideo.kernel.YuvPlanes;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * GL不可用时的合成方式：解码器输出到 ImageReader，在CPU上合成彩色和透明度，再画到 TextureView 上
+ * <p>
+ * 解码器直接输出 YUV_420_888，合成时一并转换成 RGB（BT.601 有限范围，与GPU外部纹理采样一致），
+ * 按行切分交给所有核并行处理，结果为预乘透明度，与 Bitmap 的内存格式相同。
+ * <p>
+ * 跳帧：每次只取最新的一帧（acquireLatestImage），合成慢于视频帧率时丢掉积压的旧帧，画面始终跟着播放进度走，
+ * 不会越落越远。
+ * <p>
+ * 所有合成和绘制都在自己的 HandlerThread 上，{@link #setOutput} 和 {@link #release()} 可在主线程调用。
+ *
+ * @since 2026/10/17
+ */
+final class SoftwareAlphaRenderer implements ImageReader.OnImageAvailableListener {
+
+    private static final String TAG = "SoftwareAlphaRenderer";
+    /**
+     * 解码器持有一帧、合成持有一帧，再多一帧让解码器不被阻塞
+     */
+    private static final int MAX_IMAGES = 3;
+
+    private static ForkJoinPool pool;
+
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final YuvPlanes planes = new YuvPlanes();
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect destination = new Rect();
+    private final Object outputLock = new Object();
+
+    private volatile @AlphaModel
+    int alphaModel;
+    private ImageReader reader;
+
+    // 以下只在工作线程访问
+    private PackedLayout layout;
+    private int layoutWidth;
+    private int layoutHeight;
+    private int layoutModel;
+    private ByteBuffer pixels;
+    private Bitmap bitmap;
+
+    // 以下由 outputLock 保护
+    private Surface output;
+    private int outputWidth;
+    private int outputHeight;
+
+    private volatile long availableFrames;
+    private volatile long renderedFrames;
+
+    SoftwareAlphaRenderer(@AlphaModel int alphaModel) {
+        this.alphaModel = alphaModel;
+        thread = new HandlerThread(TAG);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * 所有视图共用，数量比核数少一个，留一个核给解码和UI
+     */
+    private static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        }
+        return pool;
+    }
+
+    /**
+     * 创建给解码器输出的 surface，尺寸与上次相同时复用
+     *
+     * @param videoWidth  视频宽度，含透明度区域
+     * @param videoHeight 视频高度，含透明度区域
+     */
+    Surface createInputSurface(int videoWidth, int videoHeight) {
+        ImageReader old = reader;
+        if (old != null && old.getWidth() == videoWidth && old.getHeight() == videoHeight) {
+            return old.getSurface();
+        }
+        if (old != null) {
+            handler.post(old::close);
+        }
+        reader = ImageReader.newInstance(videoWidth, videoHeight, ImageFormat.YUV_420_888, MAX_IMAGES);
+        reader.setOnImageAvailableListener(this, handler);
+        return reader.getSurface();
+    }
+
+    /**
+     * 设置绘制目标，TextureView 的 SurfaceTexture 销毁前必须传 null
+     */
+    void setOutput(SurfaceTexture surfaceTexture, int width, int height) {
+        synchronized (outputLock) {
+            if (output != null) {
+                output.release();
+            }
+            output = surfaceTexture != null ? new Surface(surfaceTexture) : null;
+            outputWidth = width;
+            outputHeight = height;
+        }
+    }
+
+    void setOutputSize(int width, int height) {
+        synchronized (outputLock) {
+            outputWidth = width;
+            outputHeight = height;
+        }
+    }
+
+    void setAlphaModel(@AlphaModel int alphaModel) {
+        this.alphaModel = alphaModel;
+    }
+
+    /**
+     * @return 已画出的帧数
+     */
+    long getRenderedFrames() {
+        return renderedFrames;
+    }
+
+    /**
+     * @return 因合成跟不上而丢掉的帧数
+     */
+    long getDroppedFrames() {
+        return availableFrames - renderedFrames;
+    }
+
+    @Override
+    public void onImageAvailable(ImageReader imageReader) {
+        availableFrames++;
+        Image image;
+        try {
+            image = imageReader.acquireLatestImage();
+        } catch (IllegalStateException e) {
+            // 解码器输出的尺寸与 ImageReader 不一致
+            Log.w(TAG, "acquireLatestImage failed", e);
+            return;
+        }
+        if (image == null) {
+            // 这一帧已被前一次回调取走
+            return;
+        }
+        try {
+            if (composite(image)) {
+                draw();
+                renderedFrames++;
+            }
+        } finally {
+            planes.clear();
+            image.close();
+        }
+    }
+
+    private boolean composite(Image image) {
+        Image.Plane[] imagePlanes = image.getPlanes();
+        if (image.getFormat() != ImageFormat.YUV_420_888 || imagePlanes.length < 3) {
+            return false;
+        }
+        // 解码器会把高度对齐到16等，有效区域看裁剪框，这里假定它从左上角开始
+        Rect crop = image.getCropRect();
+        int width = crop != null && !crop.isEmpty() ? crop.right : image.getWidth();
+        int height = crop != null && !crop.isEmpty() ? crop.bottom : image.getHeight();
+        int model = alphaModel;
+        if (layout == null || width != layoutWidth || height != layoutHeight || model != layoutModel) {
+            layout = AlphaLayout.packedLayout(width, height, model);
+            layoutWidth = width;
+            layoutHeight = height;
+            layoutModel = model;
+            if (bitmap == null || bitmap.getWidth() != layout.getWidth() || bitmap.getHeight() != layout.getHeight()) {
+                bitmap = Bitmap.createBitmap(layout.getWidth(), layout.getHeight(), Bitmap.Config.ARGB_8888);
+                pixels = ByteBuffer.allocateDirect(layout.getWidth() * layout.getHeight() * 4);
+            }
+        }
+        planes.set(imagePlanes[0].getBuffer(), imagePlanes[0].getRowStride(), imagePlanes[1].getBuffer(),
+                imagePlanes[2].getBuffer(), imagePlanes[1].getRowStride(), imagePlanes[1].getPixelStride());
+        AlphaKernels.compositeYuvParallel(pool(), planes, layout, true, pixels, layout.getWidth() * 4);
+        pixels.rewind();
+        bitmap.copyPixelsFromBuffer(pixels);
+        return true;
+    }
+
+    private void draw() {
+        synchronized (outputLock) {
+            if (output == null || !output.isValid() || outputWidth <= 0 || outputHeight <= 0) {
+                return;
+            }
+            Canvas canvas;
+            try {
+                canvas = output.lockCanvas(null);
+            } catch (IllegalArgumentException | Surface.OutOfResourcesException e) {
+                Log.w(TAG, "lockCanvas failed", e);
+                return;
+            }
+            try {
+                canvas.drawColor(0, PorterDuff.Mode.CLEAR);
+                destination.set(0, 0, outputWidth, outputHeight);
+                canvas.drawBitmap(bitmap, null, destination, paint);
+            } finally {
+                output.unlockCanvasAndPost(canvas);
+            }
+        }
+    }
+
+    /**
+     * 释放后不能再使用
+     */
+    void release() {
+        setOutput(null, 0, 0);
+        final ImageReader last = reader;
+        reader = null;
+        handler.post(() -> {
+            if (last != null) {
+                last.close();
+            }
+            if (bitmap != null) {
+                bitmap.recycle();
+                bitmap = null;
+            }
+        });
+        thread.quitSafely();
+    }
+}
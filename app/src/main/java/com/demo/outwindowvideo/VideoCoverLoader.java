@@ -0,0 +1,255 @@
+package com.demo.outwindowvideo;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.text.TextUtils;
+import android.util.Log;
+import android.view.View;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 视频封面：在后台线程按目标视图的尺寸取首帧，缓存在内存和磁盘里
+ * <p>
+ * 原来的 {@link VideoView#getFirstFrame()} 每次都在主线程新建 MediaMetadataRetriever、解出原尺寸的一帧。这里：
+ * <ol>
+ * <li>内存里按访问顺序保留最近的封面，总大小有预算；</li>
+ * <li>磁盘缓存按视频来源（文件名、在安装包里的偏移和长度）和目标尺寸区分，下次启动直接解码 JPEG，
+ * 同一个视频的同一尺寸只会取一次帧；</li>
+ * <li>从内存淘汰、且没有显示在视图上的封面留着，解码磁盘缓存时作为 inBitmap 复用；</li>
+ * <li>同一个封面同时有多个请求时只取一次。</li>
+ * </ol>
+ * 只在主线程调用，回调也在主线程。
+ *
+ * @since 2026/10/17
+ */
+public final class VideoCoverLoader {
+
+    private static final String TAG = "VideoCoverLoader";
+    private static final String DISK_CACHE_DIR = "video_covers";
+    private static final long DISK_CACHE_BYTES = 20L * 1024 * 1024;
+    private static final long MAX_MEMORY_CACHE_BYTES = 16L * 1024 * 1024;
+    private static final int MAX_REUSABLE = 4;
+    private static final int JPEG_QUALITY = 90;
+
+    private static VideoCoverLoader instance;
+
+    public interface Callback {
+        /**
+         * @param cover 取不到时为null
+         */
+        void onCoverLoaded(Bitmap cover);
+    }
+
+    private static final CoverMemoryCache.Bitmaps<Bitmap> BITMAPS = new CoverMemoryCache.Bitmaps<Bitmap>() {
+        @Override
+        public long sizeOf(Bitmap bitmap) {
+            return bitmap.getAllocationByteCount();
+        }
+
+        @Override
+        public boolean isReusable(Bitmap bitmap) {
+            return bitmap.isMutable() && !bitmap.isRecycled();
+        }
+    };
+
+    private final AssetManager assets;
+    private final CoverDiskCache diskCache;
+    /**
+     * 只在主线程访问
+     */
+    private final CoverMemoryCache<Bitmap> memoryCache;
+
+    // region 只在工作线程修改
+    private volatile int diskHits;
+    private volatile int extracted;
+    // endregion
+
+    public static synchronized VideoCoverLoader get(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+            instance = new VideoCoverLoader(app);
+        }
+        return instance;
+    }
+
+    private VideoCoverLoader(Context context) {
+        assets = context.getAssets();
+        diskCache = new CoverDiskCache(new File(context.getCacheDir(), DISK_CACHE_DIR), DISK_CACHE_BYTES);
+        long maxMemoryBytes = Math.min(Runtime.getRuntime().maxMemory() / 16, MAX_MEMORY_CACHE_BYTES);
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        Handler worker = new Handler(thread.getLooper());
+        Handler main = new Handler(Looper.getMainLooper());
+        memoryCache = new CoverMemoryCache<>(maxMemoryBytes, MAX_REUSABLE, BITMAPS, worker::post, main::post);
+    }
+
+    /**
+     * 取视频首帧，缩放到刚好铺满 width×height（centerCrop），不放大
+     */
+    public void load(String assetsFileName, int width, int height, Callback callback) {
+        if (!isValid(assetsFileName, width, height)) {
+            callback.onCoverLoaded(null);
+            return;
+        }
+        memoryCache.load(memoryKey(assetsFileName, width, height), (long) width * height * 4,
+                candidate -> loadInBackground(assetsFileName, width, height, candidate), callback::onCoverLoaded);
+    }
+
+    /**
+     * 按视图的尺寸取首帧设置给它，视图还没布局时等布局完成。同一个视图后设置的视频优先
+     */
+    public void load(final String assetsFileName, final ImageView target) {
+        if (target.getWidth() == 0 || target.getHeight() == 0) {
+            target.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+                @Override
+                public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                           int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                    if (v.getWidth() > 0 && v.getHeight() > 0) {
+                        v.removeOnLayoutChangeListener(this);
+                        load(assetsFileName, target);
+                    }
+                }
+            });
+            return;
+        }
+        final int width = target.getWidth();
+        final int height = target.getHeight();
+        if (!isValid(assetsFileName, width, height)) {
+            target.setImageBitmap(null);
+            return;
+        }
+        memoryCache.bind(target, memoryKey(assetsFileName, width, height), (long) width * height * 4,
+                candidate -> loadInBackground(assetsFileName, width, height, candidate), target::setImageBitmap);
+    }
+
+    /**
+     * 内存紧张时清掉内存缓存，磁盘缓存保留
+     */
+    public void trimMemory() {
+        memoryCache.trimMemory();
+    }
+
+    public String getStats() {
+        return memoryCache.getStats() + " diskHits=" + diskHits + " extracted=" + extracted;
+    }
+
+    /**
+     * 铺满 width×height 需要的尺寸，保持宽高比，不超过视频原尺寸
+     *
+     * @return 宽、高。视频尺寸未知时就用目标尺寸
+     */
+    static int[] scaledSize(int videoWidth, int videoHeight, int width, int height) {
+        if (videoWidth <= 0 || videoHeight <= 0) {
+            return new int[]{width, height};
+        }
+        float scale = Math.min(1f, Math.max((float) width / videoWidth, (float) height / videoHeight));
+        return new int[]{Math.max(1, Math.round(videoWidth * scale)), Math.max(1, Math.round(videoHeight * scale))};
+    }
+
+    // region 内部
+    private static boolean isValid(String assetsFileName, int width, int height) {
+        return !TextUtils.isEmpty(assetsFileName) && width > 0 && height > 0;
+    }
+
+    /**
+     * 工作线程：先查磁盘缓存，没有再从视频取帧并写入磁盘
+     */
+    private Bitmap loadInBackground(String assetsFileName, int width, int height, Bitmap candidate) {
+        try (AssetFileDescriptor fd = assets.openFd(assetsFileName)) {
+            String diskKey = assetsFileName + "@" + fd.getStartOffset() + "+" + fd.getLength() + "/" + width + "x" + height;
+            File file = diskCache.get(diskKey);
+            if (file != null) {
+                Bitmap cover = decode(file, candidate);
+                if (cover != null) {
+                    diskHits++;
+                    return cover;
+                }
+            }
+            final Bitmap frame = extract(fd, width, height);
+            if (frame != null) {
+                diskCache.put(diskKey, out -> frame.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out));
+                extracted++;
+            }
+            return frame;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "cannot load cover of " + assetsFileName, e);
+            return null;
+        }
+    }
+
+    /**
+     * 解码磁盘缓存，能放得下时复用 candidate 的内存
+     */
+    private static Bitmap decode(File file, Bitmap candidate) {
+        String path = file.getPath();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        if (candidate != null) {
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(path, options);
+            options.inJustDecodeBounds = false;
+            if ((long) options.outWidth * options.outHeight * 4 <= candidate.getAllocationByteCount()) {
+                options.inBitmap = candidate;
+            }
+        }
+        // 保持可变，以后才能作为 inBitmap
+        options.inMutable = true;
+        try {
+            return BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            // 格式不兼容，不复用
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(path, options);
+        }
+    }
+
+    private static Bitmap extract(AssetFileDescriptor fd, int width, int height) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(fd.getFileDescriptor(), fd.getStartOffset(), fd.getLength());
+            int[] size = scaledSize(parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH)),
+                    parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT)),
+                    width, height);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                // 解码器直接输出小图
+                return retriever.getScaledFrameAtTime(0, MediaMetadataRetriever.OPTION_CLOSEST_SYNC, size[0], size[1]);
+            }
+            Bitmap frame = retriever.getFrameAtTime(0, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            if (frame == null || (frame.getWidth() == size[0] && frame.getHeight() == size[1])) {
+                return frame;
+            }
+            Bitmap scaled = Bitmap.createScaledBitmap(frame, size[0], size[1], true);
+            if (scaled != frame) {
+                frame.recycle();
+            }
+            return scaled;
+        } finally {
+            retriever.release();
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value != null ? Integer.parseInt(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String memoryKey(String assetsFileName, int width, int height) {
+        return assetsFileName + "/" + width + "x" + height;
+    }
+
+    // endregion
+}
@@ -0,0 +1,105 @@
+package com.demo.outwindowvideo;
+
+import android.view.Surface;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * 解码播放引擎，视图通过 {@link VideoPlayerController} 驱动，不直接依赖具体实现
+ * <p>
+ * 调用顺序与 MediaPlayer 的状态机相同，由 {@link VideoPlayerController} 保证，引擎本身不再检查状态。
+ * 所有方法都在 {@link PlayerThread} 上调用，只有 {@link #getCurrentPositionUs()} 可在任意线程调用；
+ * {@link Listener} 可以在任意线程回调，由 {@link VideoPlayerController} 切回主线程。
+ *
+ * @since 2026/10/17
+ */
+public interface VideoPlayer {
+
+    /**
+     * 系统 MediaPlayer，带音频，兼容性最好
+     */
+    Factory MEDIA_PLAYER = MediaPlayerEngine::new;
+    /**
+     * MediaExtractor + MediaCodec 直接解码到 surface，自己控制起播、出帧时间和丢帧，只播放视频轨
+     */
+    Factory MEDIA_CODEC = MediaCodecEngine::new;
+
+    /**
+     * 输出的 surface，可在任何时候调用；为null时解码但不显示
+     */
+    void setSurface(Surface surface);
+
+    /**
+     * 调用返回后 fd 就可以关闭，引擎要留着用时自己复制
+     */
+    void setDataSource(FileDescriptor fd, long offset, long length) throws IOException;
+
+    /**
+     * 准备完成后回调 {@link Listener#onPrepared()}
+     */
+    void prepareAsync();
+
+    void start();
+
+    void pause();
+
+    /**
+     * 停止后要重新 {@link #prepareAsync()} 才能播放
+     */
+    void stop();
+
+    /**
+     * 精确跳到 positionUs 所在的帧
+     */
+    void seekTo(long positionUs);
+
+    /**
+     * @return 播放位置，微秒
+     */
+    long getCurrentPositionUs();
+
+    int getVideoWidth();
+
+    int getVideoHeight();
+
+    /**
+     * 只在播放中调用
+     */
+    void setPlaybackSpeed(float speed);
+
+    /**
+     * 回到刚创建的状态，可以重新设置数据源
+     */
+    void reset();
+
+    /**
+     * 释放后不能再使用
+     */
+    void release();
+
+    void setListener(Listener listener);
+
+    interface Listener {
+        void onPrepared();
+
+        void onCompletion();
+
+        /**
+         * @param what  MediaPlayer.MEDIA_ERROR_*
+         * @param extra MediaPlayer.MEDIA_ERROR_* 中的细分错误，或引擎自己的错误码
+         */
+        void onError(int what, int extra);
+
+        /**
+         * @param what MediaPlayer.MEDIA_INFO_*，至少包括缓冲开始/结束和首帧渲染
+         */
+        void onInfo(int what, int extra);
+
+        void onVideoSizeChanged(int width, int height);
+    }
+
+    interface Factory {
+        VideoPlayer create();
+    }
+}
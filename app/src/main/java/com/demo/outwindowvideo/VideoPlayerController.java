@@ -0,0 +1,599 @@
+package com.demo.outwindowvideo;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.media.MediaPlayer;
+import android.view.Surface;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * 各个视图共用的播放器状态机，只在状态允许时调用 {@link VideoPlayer}
+ * <p>
+ * 原来 {@link VideoView}、{@link AlphaVideoView} 和 {@link LayerPlayer} 各自复制了一份 MediaPlayer 状态机，
+ * 现在都交给这里，引擎由 {@link VideoPlayer.Factory} 决定。播放器从 {@link VideoPlayerPool} 借来，
+ * {@link #release()} 时还回去。池子借满时播放器可能要排队，也可能在没播放时被收回，收回后状态变为
+ * {@link PlayerState#STOPPED}，再 {@link #start()} 会重新借播放器、打开原来的数据源并从原来的位置继续。
+ * <p>
+ * 状态在主线程维护，对引擎的调用（包括打开文件）排进池子的 {@link PlayerThread} 执行，引擎的回调切回主线程。
+ * 主线程上的状态因此会比引擎先一步，但命令按顺序执行，引擎看到的调用顺序仍然合法。
+ * <p>
+ * 只在主线程调用，{@link #getPositionUs()} 和 {@link #isPlaying()} 除外。
+ *
+ * @since 2026/10/17
+ */
+final class VideoPlayerController implements VideoPlayerPool.Borrower {
+
+    private final VideoPlayerPool pool;
+    private final PlayerThread playerThread;
+    private VideoPlayer.Factory factory;
+    /**
+     * 当前播放器状态
+     */
+    private volatile @PlayerState
+    int currentState = PlayerState.IDLE;
+    private volatile VideoPlayer player;
+    /**
+     * 当前播放器的回调，换数据源、释放或被收回后作废，之前排队的回调不再处理
+     */
+    private Callbacks callbacks;
+    private Surface surface;
+    /**
+     * 停止后调用 start 时要先重新准备，准备好后开始播放
+     */
+    private boolean startWhenPrepared;
+    private int videoWidth;
+    private int videoHeight;
+
+    // region 数据源
+    /**
+     * assets 不为 null 时从 assets 打开，否则用 fd
+     */
+    private AssetManager assets;
+    private String assetsFileName;
+    private FileDescriptor dataSource;
+    private long dataOffset;
+    private long dataLength;
+    /**
+     * 正在池子里排队
+     */
+    private boolean waitingForPlayer;
+    /**
+     * 被收回时的播放位置，重新准备好后跳回去；-1 表示从头
+     */
+    private long resumePositionUs = -1;
+    // endregion
+
+    private VideoListener.OnBufferingListener bufferingListener;
+    private VideoListener.OnFrameListener frameListener;
+    private VideoListener.OnErrorListener errorListener;
+    private OnVideoSizeChangedListener videoSizeChangedListener;
+    private OnPreparedListener preparedListener;
+
+    VideoPlayerController(VideoPlayer.Factory factory) {
+        this(factory, VideoPlayerPool.getDefault());
+    }
+
+    VideoPlayerController(VideoPlayer.Factory factory, VideoPlayerPool pool) {
+        this.factory = factory;
+        this.pool = pool;
+        this.playerThread = pool.getPlayerThread();
+    }
+
+    /**
+     * 换引擎，下次打开视频时生效
+     */
+    void setFactory(VideoPlayer.Factory factory) {
+        if (this.factory != factory) {
+            this.factory = factory;
+            release();
+        }
+    }
+
+    void setSurface(final Surface surface) {
+        this.surface = surface;
+        final VideoPlayer target = player;
+        if (target != null) {
+            playerThread.enqueue(target, PlayerThread.SET_SURFACE, () -> target.setSurface(surface));
+        }
+    }
+
+    /**
+     * 停掉当前视频，打开 assets 里的视频并开始准备，文件在播放线程打开
+     */
+    void open(AssetManager assets, String assetsFileName) {
+        this.assets = assets;
+        this.assetsFileName = assetsFileName;
+        this.dataSource = null;
+        openSource();
+    }
+
+    /**
+     * 同 {@link #open(AssetManager, String)}，fd 要一直有效到下次 open 或 release，被收回后重新打开时还要用
+     */
+    void open(FileDescriptor fd, long offset, long length) {
+        this.assets = null;
+        this.assetsFileName = null;
+        this.dataSource = fd;
+        this.dataOffset = offset;
+        this.dataLength = length;
+        openSource();
+    }
+
+    private boolean hasDataSource() {
+        return assets != null || dataSource != null;
+    }
+
+    /**
+     * 没有播放器时先向池子借，借到后才开始准备
+     */
+    private void openSource() {
+        stop();
+        startWhenPrepared = false;
+        resumePositionUs = -1;
+        videoWidth = 0;
+        videoHeight = 0;
+        if (player == null) {
+            currentState = PlayerState.IDLE;
+            requestPlayer();
+            return;
+        }
+        boolean needsReset = currentState != PlayerState.IDLE;
+        // 上一个视频还没送达的回调作废
+        bind(player);
+        if (needsReset) {
+            // 只有 IDLE 状态才能设置数据源，reset 同时会断开 surface
+            final VideoPlayer target = player;
+            playerThread.enqueue(target, PlayerThread.RESET, target::reset);
+        }
+        currentState = PlayerState.IDLE;
+        prepareDataSource();
+    }
+
+    /**
+     * 接手 other 已经打开的播放器和数据源，通常是预加载好的，other 随后变为 {@link PlayerState#END}。
+     * 两者的引擎或池子不同、other 不在准备中或已准备好时不接手。
+     *
+     * @return 是否接手了
+     */
+    boolean adopt(VideoPlayerController other) {
+        VideoPlayer adopted = other.player;
+        if (adopted == null || other.pool != pool || other.factory != factory
+                || (other.currentState != PlayerState.PREPARING && other.currentState != PlayerState.PREPARED)) {
+            return false;
+        }
+        release();
+        other.player = null;
+        pool.transfer(other, this);
+        player = adopted;
+        // 回调对象一起转过来，other 那边还在路上的准备完成等回调也会交给这里
+        callbacks = other.callbacks;
+        callbacks.owner = this;
+        other.callbacks = null;
+        assets = other.assets;
+        assetsFileName = other.assetsFileName;
+        dataSource = other.dataSource;
+        dataOffset = other.dataOffset;
+        dataLength = other.dataLength;
+        videoWidth = other.videoWidth;
+        videoHeight = other.videoHeight;
+        currentState = other.currentState;
+        other.currentState = PlayerState.END;
+        other.assets = null;
+        other.dataSource = null;
+        // 预加载时没有 surface，这里才绑定
+        setSurface(surface);
+        if (currentState == PlayerState.PREPARED && videoWidth > 0) {
+            handleVideoSizeChanged(videoWidth, videoHeight);
+        }
+        return true;
+    }
+
+    private void requestPlayer() {
+        if (!waitingForPlayer) {
+            waitingForPlayer = true;
+            pool.acquire(factory, this);
+        }
+    }
+
+    private void bind(final VideoPlayer target) {
+        final Callbacks bound = new Callbacks(this, playerThread);
+        callbacks = bound;
+        playerThread.enqueue(target, PlayerThread.SET_LISTENER, () -> target.setListener(bound));
+    }
+
+    private void prepareDataSource() {
+        final VideoPlayer target = player;
+        final Callbacks expected = callbacks;
+        final AssetManager sourceAssets = assets;
+        final String sourceName = assetsFileName;
+        final FileDescriptor sourceFd = dataSource;
+        final long sourceOffset = dataOffset;
+        final long sourceLength = dataLength;
+        setSurface(surface);
+        // 先切状态，打开失败时的回调可能在 direct 模式下同步回来
+        currentState = PlayerState.PREPARING;
+        playerThread.enqueue(target, PlayerThread.OPEN, () -> {
+            try {
+                setDataSource(target, sourceAssets, sourceName, sourceFd, sourceOffset, sourceLength);
+            } catch (IOException | RuntimeException e) {
+                expected.onError(MediaPlayer.MEDIA_ERROR_UNKNOWN, MediaPlayer.MEDIA_ERROR_IO);
+                return;
+            }
+            target.prepareAsync();
+        });
+    }
+
+    /**
+     * 在播放线程执行
+     */
+    private static void setDataSource(VideoPlayer target, AssetManager assets, String assetsFileName,
+                                      FileDescriptor fd, long offset, long length) throws IOException {
+        if (assets == null) {
+            target.setDataSource(fd, offset, length);
+            return;
+        }
+        // 引擎会复制文件描述符，设置完就可以关掉
+        try (AssetFileDescriptor assetFileDescriptor = assets.openFd(assetsFileName)) {
+            target.setDataSource(assetFileDescriptor.getFileDescriptor(),
+                    assetFileDescriptor.getStartOffset(), assetFileDescriptor.getLength());
+        }
+    }
+
+    // region 播放器状态
+    void start() {
+        final VideoPlayer target = player;
+        if (target == null) {
+            if (currentState == PlayerState.STOPPED && hasDataSource()) {
+                // 播放器被池子收回了
+                startWhenPrepared = true;
+                requestPlayer();
+            }
+            return;
+        }
+        switch (currentState) {
+            case PlayerState.PREPARED:
+            case PlayerState.PAUSED:
+            case PlayerState.PLAYBACK_COMPLETED:
+                playerThread.enqueue(target, PlayerThread.START, target::start);
+                currentState = PlayerState.PLAYING;
+                break;
+            case PlayerState.STOPPED:
+                startWhenPrepared = true;
+                currentState = PlayerState.PREPARING;
+                playerThread.enqueue(target, PlayerThread.PREPARE, target::prepareAsync);
+                break;
+        }
+        // 状态变了以后再挪到最近使用，免得刚要播放就被收回
+        pool.touch(this);
+    }
+
+    void pause() {
+        final VideoPlayer target = player;
+        if (target == null) {
+            return;
+        }
+        if (currentState == PlayerState.PLAYING) {
+            playerThread.enqueue(target, PlayerThread.PAUSE, target::pause);
+            currentState = PlayerState.PAUSED;
+        }
+    }
+
+    void stop() {
+        final VideoPlayer target = player;
+        if (target == null) {
+            return;
+        }
+        switch (currentState) {
+            case PlayerState.PREPARED:
+            case PlayerState.PLAYING:
+            case PlayerState.PAUSED:
+            case PlayerState.PLAYBACK_COMPLETED:
+                playerThread.enqueue(target, PlayerThread.STOP, target::stop);
+                currentState = PlayerState.STOPPED;
+                pool.touch(this);
+                break;
+        }
+    }
+
+    /**
+     * 把播放器还给池子，出过错的直接销毁
+     */
+    void release() {
+        if (waitingForPlayer) {
+            waitingForPlayer = false;
+            pool.cancel(this);
+            currentState = PlayerState.END;
+        }
+        if (player != null) {
+            player = null;
+            callbacks = null;
+            if (currentState == PlayerState.ERROR) {
+                pool.discard(this);
+            } else {
+                pool.recycle(this);
+            }
+            currentState = PlayerState.END;
+        }
+        assets = null;
+        dataSource = null;
+        startWhenPrepared = false;
+    }
+
+    /**
+     * 只在播放中生效，暂停时设置速度会让 MediaPlayer 开始播放
+     */
+    void setPlaybackSpeed(final float speed) {
+        final VideoPlayer target = player;
+        if (target != null && currentState == PlayerState.PLAYING) {
+            playerThread.enqueue(target, PlayerThread.SET_SPEED, () -> target.setPlaybackSpeed(speed));
+        }
+    }
+
+    void seekTo(final long positionUs) {
+        final VideoPlayer target = player;
+        if (target != null && hasPosition()) {
+            playerThread.enqueue(target, PlayerThread.SEEK, () -> target.seekTo(positionUs));
+        }
+    }
+
+    @PlayerState
+    int getState() {
+        return currentState;
+    }
+
+    boolean isPlaying() {
+        return player != null && currentState == PlayerState.PLAYING;
+    }
+
+    /**
+     * 可在渲染线程调用，直接读引擎的位置，不经过命令队列
+     *
+     * @return 播放位置，微秒；还没准备好时返回-1
+     */
+    long getPositionUs() {
+        VideoPlayer current = player;
+        if (current == null || !hasPosition()) {
+            return -1;
+        }
+        try {
+            return current.getCurrentPositionUs();
+        } catch (IllegalStateException e) {
+            // 播放线程刚 reset 或释放了播放器
+            return -1;
+        }
+    }
+
+    /**
+     * @return 视频宽度，还不知道时为0
+     */
+    int getVideoWidth() {
+        return player != null && hasPosition() ? videoWidth : 0;
+    }
+
+    int getVideoHeight() {
+        return player != null && hasPosition() ? videoHeight : 0;
+    }
+
+    private boolean hasPosition() {
+        switch (currentState) {
+            case PlayerState.PREPARED:
+            case PlayerState.PLAYING:
+            case PlayerState.PAUSED:
+            case PlayerState.PLAYBACK_COMPLETED:
+                return true;
+            default:
+                return false;
+        }
+    }
+    // endregion
+
+    // region 播放器回调，都在主线程
+    /**
+     * 引擎回调可能来自播放线程或解码线程，这里切回主线程，并丢掉已作废的回调
+     */
+    private static final class Callbacks implements VideoPlayer.Listener {
+        private final PlayerThread playerThread;
+        /**
+         * 预加载交接后换成接手的控制器，只在主线程读写
+         */
+        VideoPlayerController owner;
+
+        Callbacks(VideoPlayerController owner, PlayerThread playerThread) {
+            this.owner = owner;
+            this.playerThread = playerThread;
+        }
+
+        /**
+         * @return 还有效时的控制器，否则为null
+         */
+        private VideoPlayerController current() {
+            VideoPlayerController controller = owner;
+            return controller != null && controller.callbacks == this ? controller : null;
+        }
+
+        @Override
+        public void onPrepared() {
+            playerThread.runOnMain(() -> {
+                VideoPlayerController controller = current();
+                if (controller != null) {
+                    controller.handlePrepared();
+                }
+            });
+        }
+
+        @Override
+        public void onCompletion() {
+            playerThread.runOnMain(() -> {
+                VideoPlayerController controller = current();
+                if (controller != null) {
+                    controller.handleCompletion();
+                }
+            });
+        }
+
+        @Override
+        public void onError(final int what, final int extra) {
+            playerThread.runOnMain(() -> {
+                VideoPlayerController controller = current();
+                if (controller != null) {
+                    controller.handleError(what, extra);
+                }
+            });
+        }
+
+        @Override
+        public void onInfo(final int what, final int extra) {
+            playerThread.runOnMain(() -> {
+                VideoPlayerController controller = current();
+                if (controller != null) {
+                    controller.handleInfo(what);
+                }
+            });
+        }
+
+        @Override
+        public void onVideoSizeChanged(final int width, final int height) {
+            playerThread.runOnMain(() -> {
+                VideoPlayerController controller = current();
+                if (controller != null) {
+                    controller.handleVideoSizeChanged(width, height);
+                }
+            });
+        }
+    }
+
+    private void handlePrepared() {
+        final VideoPlayer target = player;
+        currentState = PlayerState.PREPARED;
+        if (resumePositionUs > 0) {
+            final long positionUs = resumePositionUs;
+            playerThread.enqueue(target, PlayerThread.SEEK, () -> target.seekTo(positionUs));
+        }
+        resumePositionUs = -1;
+        if (startWhenPrepared) {
+            startWhenPrepared = false;
+            playerThread.enqueue(target, PlayerThread.START, target::start);
+            currentState = PlayerState.PLAYING;
+        }
+        if (preparedListener != null) {
+            preparedListener.onPrepared();
+        }
+    }
+
+    private void handleCompletion() {
+        currentState = PlayerState.PLAYBACK_COMPLETED;
+        pool.touch(this);
+    }
+
+    private void handleError(int what, int extra) {
+        currentState = PlayerState.ERROR;
+        startWhenPrepared = false;
+        if (errorListener != null) {
+            VideoPlayer current = player;
+            errorListener.onVideoError(current instanceof MediaPlayerEngine
+                    ? ((MediaPlayerEngine) current).getMediaPlayer() : null, what, extra);
+        }
+    }
+
+    private void handleInfo(int what) {
+        switch (what) {
+            // 开始卡顿
+            case MediaPlayer.MEDIA_INFO_BUFFERING_START:
+                if (bufferingListener != null) {
+                    bufferingListener.onStartBuffering();
+                }
+                break;
+            // 卡顿结束
+            case MediaPlayer.MEDIA_INFO_BUFFERING_END:
+                if (bufferingListener != null) {
+                    bufferingListener.onEndBuffering();
+                }
+                break;
+            // 首帧渲染
+            case MediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START:
+                if (frameListener != null) {
+                    frameListener.onVideoShowFrame();
+                }
+                break;
+        }
+    }
+
+    private void handleVideoSizeChanged(int width, int height) {
+        videoWidth = width;
+        videoHeight = height;
+        if (videoSizeChangedListener != null) {
+            videoSizeChangedListener.onVideoSizeChanged(width, height);
+        }
+    }
+    // endregion
+
+    // region 播放器池
+    @Override
+    public boolean isReclaimable() {
+        switch (currentState) {
+            case PlayerState.PREPARED:
+            case PlayerState.PAUSED:
+            case PlayerState.STOPPED:
+            case PlayerState.PLAYBACK_COMPLETED:
+            case PlayerState.ERROR:
+                return !startWhenPrepared;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void onPlayerGranted(VideoPlayer granted) {
+        waitingForPlayer = false;
+        player = granted;
+        bind(granted);
+        currentState = PlayerState.IDLE;
+        prepareDataSource();
+    }
+
+    @Override
+    public void onPlayerReclaimed(VideoPlayer reclaimed) {
+        long positionUs = currentState == PlayerState.PLAYBACK_COMPLETED ? -1 : getPositionUs();
+        player = null;
+        callbacks = null;
+        if (currentState != PlayerState.ERROR) {
+            if (currentState != PlayerState.STOPPED) {
+                resumePositionUs = positionUs;
+            }
+            currentState = PlayerState.STOPPED;
+        }
+    }
+    // endregion
+
+    // region 视频状态监听
+    void setOnBufferingListener(VideoListener.OnBufferingListener listener) {
+        this.bufferingListener = listener;
+    }
+
+    void setOnFrameListener(VideoListener.OnFrameListener listener) {
+        this.frameListener = listener;
+    }
+
+    void setOnErrorListener(VideoListener.OnErrorListener listener) {
+        this.errorListener = listener;
+    }
+
+    void setOnVideoSizeChangedListener(OnVideoSizeChangedListener listener) {
+        this.videoSizeChangedListener = listener;
+    }
+
+    void setOnPreparedListener(OnPreparedListener listener) {
+        this.preparedListener = listener;
+    }
+    // endregion
+
+    interface OnVideoSizeChangedListener {
+        void onVideoSizeChanged(int width, int height);
+    }
+
+    interface OnPreparedListener {
+        void onPrepared();
+    }
+}
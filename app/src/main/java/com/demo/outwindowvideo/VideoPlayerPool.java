@@ -0,0 +1,385 @@
+package com.demo.outwindowvideo;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进程内共用的播放器池
+ * <p>
+ * 信息流里滑过一屏外窗视频，每个视图都要 new 一个 MediaPlayer、释放时再销毁，原生播放器和解码器反复创建。这里：
+ * <ol>
+ * <li>视图释放时把播放器 reset 后放回池里，下次打开视频时优先复用同一引擎的空闲播放器，空闲的最多保留
+ * maxIdle 个，多出来的按最近最少使用释放；</li>
+ * <li>同时借出的播放器（即同时占用的解码器）不超过 maxActive，默认取设备 AVC 解码器支持的实例数；</li>
+ * <li>借满时收回最近最少使用、且没在播放的借用者的播放器；都在播放则排队，等有人归还。</li>
+ * </ol>
+ * 只在主线程调用，对播放器的 reset/release 排进 {@link PlayerThread} 执行。
+ *
+ * @since 2026/10/17
+ */
+final class VideoPlayerPool {
+
+    private static final String TAG = "VideoPlayerPool";
+    private static final boolean LOG_POOL = false;
+    /**
+     * 设备支持再多实例也只同时解这么多路，给系统和别的应用留余量
+     */
+    private static final int MAX_ACTIVE_LIMIT = 4;
+    private static final String DEFAULT_MIME = "video/avc";
+
+    private static VideoPlayerPool defaultPool;
+
+    /**
+     * 借用者
+     */
+    interface Borrower {
+        /**
+         * @return 池子借满时能否收回它的播放器，正在播放的不能收回
+         */
+        boolean isReclaimable();
+
+        /**
+         * 拿到一个 IDLE 状态的播放器。可能在 {@link #acquire} 里直接回调，也可能排队等到别人归还后回调
+         */
+        void onPlayerGranted(VideoPlayer player);
+
+        /**
+         * 播放器被收回给别的借用者，回调后不能再使用它
+         */
+        void onPlayerReclaimed(VideoPlayer player);
+    }
+
+    private static final class Idle {
+        final VideoPlayer.Factory factory;
+        final VideoPlayer player;
+
+        Idle(VideoPlayer.Factory factory, VideoPlayer player) {
+            this.factory = factory;
+            this.player = player;
+        }
+    }
+
+    private static final class Active {
+        final VideoPlayer.Factory factory;
+        final VideoPlayer player;
+
+        Active(VideoPlayer.Factory factory, VideoPlayer player) {
+            this.factory = factory;
+            this.player = player;
+        }
+    }
+
+    private static final class Waiter {
+        final VideoPlayer.Factory factory;
+        final Borrower borrower;
+        final long sinceNanos;
+
+        Waiter(VideoPlayer.Factory factory, Borrower borrower, long sinceNanos) {
+            this.factory = factory;
+            this.borrower = borrower;
+            this.sinceNanos = sinceNanos;
+        }
+    }
+
+    private final PlayerThread playerThread;
+    private int maxActive;
+    private int maxIdle;
+    /**
+     * 借出的播放器，按访问顺序排列，最近最少使用的在前
+     */
+    private final LinkedHashMap<Borrower, Active> active = new LinkedHashMap<>(8, 0.75f, true);
+    /**
+     * 空闲的播放器，最早归还的在前
+     */
+    private final ArrayList<Idle> idle = new ArrayList<>();
+    private final ArrayList<Waiter> waiters = new ArrayList<>();
+
+    private int acquires;
+    private int hits;
+    private int creates;
+    private int reclaims;
+    private int evictions;
+    private int waits;
+    private int waitsServed;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    VideoPlayerPool(int maxActive, int maxIdle, PlayerThread playerThread) {
+        this.playerThread = playerThread;
+        configure(maxActive, maxIdle);
+    }
+
+    /**
+     * 进程内默认的池子，同时借出的上限取自设备解码器能力
+     */
+    static VideoPlayerPool getDefault() {
+        if (defaultPool == null) {
+            int maxActive = deviceDecoderLimit();
+            defaultPool = new VideoPlayerPool(maxActive, maxActive, PlayerThread.getDefault());
+        }
+        return defaultPool;
+    }
+
+    /**
+     * @return 设备上 AVC 解码器支持的最大实例数，上限 {@link #MAX_ACTIVE_LIMIT}
+     */
+    static int deviceDecoderLimit() {
+        int instances = 0;
+        try {
+            for (MediaCodecInfo info : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()) {
+                if (info.isEncoder()) {
+                    continue;
+                }
+                for (String type : info.getSupportedTypes()) {
+                    if (type.equalsIgnoreCase(DEFAULT_MIME)) {
+                        instances = Math.max(instances,
+                                info.getCapabilitiesForType(type).getMaxSupportedInstances());
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "query codec capabilities failed", e);
+        }
+        return instances <= 0 ? MAX_ACTIVE_LIMIT : Math.min(instances, MAX_ACTIVE_LIMIT);
+    }
+
+    /**
+     * 调整上限，超出的空闲播放器立即释放；借出的不会因此收回，归还后才生效
+     */
+    void configure(int maxActive, int maxIdle) {
+        if (maxActive < 1 || maxIdle < 0) {
+            throw new IllegalArgumentException("maxActive must be >= 1 and maxIdle >= 0");
+        }
+        this.maxActive = maxActive;
+        this.maxIdle = maxIdle;
+        trimIdle(maxIdle);
+        serveWaiters();
+    }
+
+    /**
+     * 借一个 factory 创建的播放器，结果通过 {@link Borrower#onPlayerGranted(VideoPlayer)} 给出。
+     * 已经借到或正在排队的借用者重复调用会被忽略。
+     */
+    void acquire(VideoPlayer.Factory factory, Borrower borrower) {
+        if (active.containsKey(borrower) || indexOfWaiter(borrower) >= 0) {
+            return;
+        }
+        acquires++;
+        if (active.size() < maxActive) {
+            grant(factory, borrower, takeIdle(factory));
+        } else if (!reclaimFor(factory, borrower)) {
+            waits++;
+            waiters.add(new Waiter(factory, borrower, System.nanoTime()));
+            log("wait");
+        }
+    }
+
+    /**
+     * 借用者用过播放器，挪到最近使用；它若因此可以收回，顺便满足排队的借用者
+     */
+    void touch(Borrower borrower) {
+        if (active.get(borrower) != null) {
+            serveWaiters();
+        }
+    }
+
+    /**
+     * 归还播放器，reset 后留作空闲；也会取消排队
+     */
+    void recycle(Borrower borrower) {
+        cancel(borrower);
+        Active entry = active.remove(borrower);
+        if (entry == null) {
+            return;
+        }
+        reset(entry.player);
+        idle.add(new Idle(entry.factory, entry.player));
+        trimIdle(maxIdle);
+        serveWaiters();
+    }
+
+    /**
+     * 归还并销毁播放器，用于出错等不该再复用的情况
+     */
+    void discard(Borrower borrower) {
+        cancel(borrower);
+        Active entry = active.remove(borrower);
+        if (entry == null) {
+            return;
+        }
+        release(entry.player);
+        serveWaiters();
+    }
+
+    /**
+     * 把 from 借到的播放器（或排队位置）转给 to，用于预加载好的播放器交给视图
+     */
+    void transfer(Borrower from, Borrower to) {
+        Active entry = active.remove(from);
+        if (entry != null) {
+            active.put(to, entry);
+        }
+        int index = indexOfWaiter(from);
+        if (index >= 0) {
+            Waiter waiter = waiters.get(index);
+            waiters.set(index, new Waiter(waiter.factory, to, waiter.sinceNanos));
+        }
+    }
+
+    /**
+     * 不再排队
+     */
+    void cancel(Borrower borrower) {
+        int index = indexOfWaiter(borrower);
+        if (index >= 0) {
+            waiters.remove(index);
+        }
+    }
+
+    /**
+     * 释放所有空闲播放器，比如内存不足时
+     */
+    void trimIdle() {
+        trimIdle(0);
+    }
+
+    PlayerThread getPlayerThread() {
+        return playerThread;
+    }
+
+    int getMaxActive() {
+        return maxActive;
+    }
+
+    int getActiveCount() {
+        return active.size();
+    }
+
+    int getIdleCount() {
+        return idle.size();
+    }
+
+    int getWaitingCount() {
+        return waiters.size();
+    }
+
+    String getStats() {
+        int hitRate = acquires == 0 ? 0 : hits * 100 / acquires;
+        long averageWaitMs = waitsServed == 0 ? 0 : totalWaitNanos / waitsServed / 1_000_000;
+        return "acquires=" + acquires + " hits=" + hits + " (" + hitRate + "%) creates=" + creates
+                + " reclaims=" + reclaims + " evictions=" + evictions + " waits=" + waits
+                + " avgWaitMs=" + averageWaitMs + " maxWaitMs=" + maxWaitNanos / 1_000_000
+                + " active=" + active.size() + "/" + maxActive + " idle=" + idle.size();
+    }
+
+    // region 内部
+    private void grant(VideoPlayer.Factory factory, Borrower borrower, VideoPlayer player) {
+        if (player == null) {
+            creates++;
+            player = factory.create();
+        }
+        active.put(borrower, new Active(factory, player));
+        log("grant");
+        borrower.onPlayerGranted(player);
+    }
+
+    /**
+     * 收回最近最少使用且可收回的播放器，同一引擎的直接转交给 borrower
+     *
+     * @return 是否收回了
+     */
+    private boolean reclaimFor(VideoPlayer.Factory factory, Borrower borrower) {
+        Borrower victim = null;
+        for (Map.Entry<Borrower, Active> entry : active.entrySet()) {
+            if (entry.getKey() != borrower && entry.getKey().isReclaimable()) {
+                victim = entry.getKey();
+                break;
+            }
+        }
+        if (victim == null) {
+            return false;
+        }
+        reclaims++;
+        Active entry = active.remove(victim);
+        victim.onPlayerReclaimed(entry.player);
+        if (entry.factory == factory) {
+            reset(entry.player);
+            grant(factory, borrower, entry.player);
+        } else {
+            reset(entry.player);
+            idle.add(new Idle(entry.factory, entry.player));
+            trimIdle(maxIdle);
+            grant(factory, borrower, takeIdle(factory));
+        }
+        return true;
+    }
+
+    private void serveWaiters() {
+        while (!waiters.isEmpty()) {
+            Waiter waiter = waiters.remove(0);
+            long waited = System.nanoTime() - waiter.sinceNanos;
+            if (active.size() < maxActive) {
+                grant(waiter.factory, waiter.borrower, takeIdle(waiter.factory));
+            } else if (!reclaimFor(waiter.factory, waiter.borrower)) {
+                waiters.add(0, waiter);
+                return;
+            }
+            waitsServed++;
+            totalWaitNanos += waited;
+            maxWaitNanos = Math.max(maxWaitNanos, waited);
+        }
+    }
+
+    /**
+     * 命中只统计空闲池，收回后直接转交的不算
+     *
+     * @return 最近归还的同引擎空闲播放器，没有时为 null
+     */
+    private VideoPlayer takeIdle(VideoPlayer.Factory factory) {
+        for (int i = idle.size() - 1; i >= 0; i--) {
+            if (idle.get(i).factory == factory) {
+                hits++;
+                return idle.remove(i).player;
+            }
+        }
+        return null;
+    }
+
+    private void trimIdle(int max) {
+        while (idle.size() > max) {
+            release(idle.remove(0).player);
+            evictions++;
+        }
+    }
+
+    private void reset(final VideoPlayer player) {
+        playerThread.enqueue(player, PlayerThread.SET_LISTENER, () -> player.setListener(null));
+        playerThread.enqueue(player, PlayerThread.RESET, player::reset);
+    }
+
+    private void release(final VideoPlayer player) {
+        playerThread.enqueue(player, PlayerThread.SET_LISTENER, () -> player.setListener(null));
+        playerThread.enqueue(player, PlayerThread.RELEASE, player::release);
+    }
+
+    private int indexOfWaiter(Borrower borrower) {
+        for (int i = 0; i < waiters.size(); i++) {
+            if (waiters.get(i).borrower == borrower) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void log(String event) {
+        if (LOG_POOL) {
+            Log.i(TAG, event + " " + getStats());
+        }
+    }
+    // endregion
+}
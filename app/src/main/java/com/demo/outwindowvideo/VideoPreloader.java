@@ -0,0 +1,300 @@
+package com.demo.outwindowvideo;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.media.MediaPlayer;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 信息流预加载：在条目上屏之前打开数据源、准备好播放器
+ * <p>
+ * 原来视图要等 surface 创建后才打开视频、调用 prepareAsync，上屏后还要等准备完成才能播放。
+ * 给 {@link #preload(List)} 传入接下来 N 个条目的视频，这里按顺序逐个在没有 surface 的情况下准备，
+ * 视图设置了同一个视频并且 surface 就绪时（见 {@link VideoView#setVideoPreloader(VideoPreloader)} 等），
+ * 直接接手准备好的播放器并绑定 surface，省掉准备的时间。
+ * <p>
+ * 预算：
+ * <ol>
+ * <li>最多同时准备 maxPrepared 个；</li>
+ * <li>按视频尺寸估算解码器占用的内存，总量超过预算时释放最远的条目；</li>
+ * <li>{@link VideoPlayerPool} 里至少留 {@link #RESERVED_DECODERS} 个名额给屏幕上的视图，准备好的播放器没在播放，
+ * 池子借满时也会先被收回。</li>
+ * </ol>
+ * 列表变化时（用户划走了）不在新列表里的条目立即释放。只在主线程调用。
+ *
+ * @since 2026/10/17
+ */
+public final class VideoPreloader {
+
+    private static final String TAG = "VideoPreloader";
+    private static final int DEFAULT_MAX_PREPARED = 2;
+    private static final long DEFAULT_MEMORY_BUDGET_BYTES = 32L * 1024 * 1024;
+    /**
+     * 给屏幕上的视图留的解码器名额
+     */
+    private static final int RESERVED_DECODERS = 1;
+    /**
+     * 估算解码器内存时按这么多个 YUV420 输出缓冲区算
+     */
+    private static final int DECODER_BUFFER_COUNT = 6;
+
+    private final Source source;
+    private final VideoPlayerPool pool;
+    private VideoPlayer.Factory factory = VideoPlayer.MEDIA_PLAYER;
+    private int maxPrepared = DEFAULT_MAX_PREPARED;
+    private long memoryBudgetBytes = DEFAULT_MEMORY_BUDGET_BYTES;
+    /**
+     * 按 preload 传入的顺序，越靠前越先准备、越晚因超预算被释放
+     */
+    private final ArrayList<Entry> entries = new ArrayList<>();
+
+    private int requested;
+    private int prepared;
+    private int handedOver;
+    private int misses;
+    private int cancelled;
+    private int overBudget;
+    private int reclaimed;
+    private int failed;
+
+    /**
+     * 打开预加载的视频，默认从 assets 打开；单元测试用不读文件的实现
+     */
+    interface Source {
+        /**
+         * 在主线程调用，让 controller 打开视频并开始准备
+         */
+        void open(VideoPlayerController controller, String assetsFileName);
+    }
+
+    private final class Entry implements VideoPlayerController.OnPreparedListener, VideoListener.OnErrorListener {
+        final String assetsFileName;
+        final VideoPlayerController controller = new VideoPlayerController(factory, pool);
+        boolean started;
+        long estimatedBytes;
+
+        Entry(String assetsFileName) {
+            this.assetsFileName = assetsFileName;
+            controller.setOnPreparedListener(this);
+            controller.setOnErrorListener(this);
+        }
+
+        boolean isStarted() {
+            return started;
+        }
+
+        boolean isPreparing() {
+            return controller.getState() == PlayerState.PREPARING;
+        }
+
+        /**
+         * @return 还在准备中或已准备好；被池子收回或出错后为false
+         */
+        boolean isUsable() {
+            int state = controller.getState();
+            return state == PlayerState.PREPARING || state == PlayerState.PREPARED;
+        }
+
+        void start() {
+            started = true;
+            source.open(controller, assetsFileName);
+        }
+
+        void release() {
+            controller.release();
+        }
+
+        @Override
+        public void onPrepared() {
+            prepared++;
+            estimatedBytes = (long) controller.getVideoWidth() * controller.getVideoHeight() * 3 / 2
+                    * DECODER_BUFFER_COUNT;
+            trimToBudget();
+            schedule();
+        }
+
+        @Override
+        public void onVideoError(MediaPlayer mp, int frameworkErr, int implErr) {
+            Log.w(TAG, "preload " + assetsFileName + " failed: " + frameworkErr + "," + implErr);
+            failed++;
+            entries.remove(this);
+            release();
+            schedule();
+        }
+    }
+
+    public VideoPreloader(Context context) {
+        this(assetsSource(context), VideoPlayerPool.getDefault());
+    }
+
+    VideoPreloader(Source source, VideoPlayerPool pool) {
+        this.source = source;
+        this.pool = pool;
+    }
+
+    private static Source assetsSource(Context context) {
+        Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        final AssetManager assets = appContext.getAssets();
+        return (controller, assetsFileName) -> controller.open(assets, assetsFileName);
+    }
+
+    /**
+     * 预加载用的解码引擎，要和视图的一致才能交接，默认 {@link VideoPlayer#MEDIA_PLAYER}。会释放已预加载的
+     */
+    public void setVideoPlayerFactory(VideoPlayer.Factory factory) {
+        if (this.factory != factory) {
+            cancelAll();
+            this.factory = factory;
+        }
+    }
+
+    /**
+     * @param maxPrepared       最多同时预加载几个视频
+     * @param memoryBudgetBytes 预加载的解码器估算内存总量
+     */
+    public void setBudget(int maxPrepared, long memoryBudgetBytes) {
+        if (maxPrepared < 0 || memoryBudgetBytes < 0) {
+            throw new IllegalArgumentException("budget must be >= 0");
+        }
+        this.maxPrepared = maxPrepared;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        while (entries.size() > maxPrepared) {
+            entries.remove(entries.size() - 1).release();
+            cancelled++;
+        }
+        trimToBudget();
+        schedule();
+    }
+
+    /**
+     * 接下来要上屏的视频，最近的在前。不在列表里的预加载会被取消
+     */
+    public void preload(List<String> upcomingAssets) {
+        ArrayList<Entry> kept = new ArrayList<>();
+        for (String assetsFileName : upcomingAssets) {
+            if (kept.size() >= maxPrepared) {
+                break;
+            }
+            if (indexOf(kept, assetsFileName) >= 0) {
+                continue;
+            }
+            int index = indexOf(entries, assetsFileName);
+            if (index >= 0) {
+                kept.add(entries.remove(index));
+            } else {
+                kept.add(new Entry(assetsFileName));
+                requested++;
+            }
+        }
+        for (Entry entry : entries) {
+            entry.release();
+            cancelled++;
+        }
+        entries.clear();
+        entries.addAll(kept);
+        schedule();
+    }
+
+    /**
+     * 取消所有预加载，比如离开信息流时
+     */
+    public void cancelAll() {
+        for (Entry entry : entries) {
+            entry.release();
+            cancelled++;
+        }
+        entries.clear();
+    }
+
+    public String getStats() {
+        return "requested=" + requested + " prepared=" + prepared + " handedOver=" + handedOver
+                + " misses=" + misses + " cancelled=" + cancelled + " overBudget=" + overBudget
+                + " reclaimed=" + reclaimed + " failed=" + failed + " pending=" + entries.size();
+    }
+
+    /**
+     * 视图打开视频时调用：有该视频的预加载就交给 target
+     *
+     * @return 是否交接了，否则调用方按原来的方式打开
+     */
+    boolean handOver(String assetsFileName, VideoPlayerController target) {
+        int index = indexOf(entries, assetsFileName);
+        if (index < 0) {
+            misses++;
+            return false;
+        }
+        Entry entry = entries.remove(index);
+        boolean adopted = entry.isUsable() && target.adopt(entry.controller);
+        if (adopted) {
+            handedOver++;
+        } else {
+            misses++;
+            entry.release();
+        }
+        schedule();
+        return adopted;
+    }
+
+    // region 内部
+    /**
+     * 一次只准备一个，准备好了再开始下一个
+     */
+    private void schedule() {
+        long usedBytes = 0;
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = entries.get(i);
+            if (entry.isStarted() && !entry.isUsable()) {
+                // 被池子收回了，不重试，免得和屏幕上的视图抢解码器
+                entries.remove(i).release();
+                reclaimed++;
+            } else if (entry.isPreparing()) {
+                return;
+            } else {
+                usedBytes += entry.estimatedBytes;
+            }
+        }
+        for (Entry entry : entries) {
+            if (entry.isStarted()) {
+                continue;
+            }
+            if (usedBytes >= memoryBudgetBytes
+                    || pool.getMaxActive() - pool.getActiveCount() <= RESERVED_DECODERS) {
+                return;
+            }
+            // 文件在播放线程打开，打不开时回调出错，再调度下一个
+            entry.start();
+            return;
+        }
+    }
+
+    /**
+     * 超出内存预算时从最远的开始释放
+     */
+    private void trimToBudget() {
+        long usedBytes = 0;
+        for (Entry entry : entries) {
+            usedBytes += entry.estimatedBytes;
+        }
+        for (int i = entries.size() - 1; i >= 0 && usedBytes > memoryBudgetBytes; i--) {
+            Entry entry = entries.get(i);
+            if (entry.estimatedBytes > 0) {
+                usedBytes -= entry.estimatedBytes;
+                entries.remove(i).release();
+                overBudget++;
+            }
+        }
+    }
+
+    private static int indexOf(List<Entry> list, String assetsFileName) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).assetsFileName.equals(assetsFileName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    // endregion
+}
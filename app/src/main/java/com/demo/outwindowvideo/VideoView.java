@@ -4,7 +4,6 @@ import android.content.Context;
 import android.content.res.AssetFileDescriptor;
 import android.graphics.Bitmap;
 import android.media.MediaMetadataRetriever;
-import android.media.MediaPlayer;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -16,31 +15,21 @@ import androidx.annotation.NonNull;
 /**
  * @since 2022/8/9
  */
-public class VideoView extends SurfaceView
-        implements SurfaceHolder.Callback, MediaPlayer.OnInfoListener, MediaPlayer.OnErrorListener,
-        MediaPlayer.OnCompletionListener {
+public class VideoView extends SurfaceView implements SurfaceHolder.Callback {
 
     private static final String TAG = "VideoView";
 
-    /**
-     * 当前播放器状态
-     */
-    private int currentState = PlayerState.IDLE;
     /**
      * 标记播放器是否准备就绪
      */
     private boolean isSurfaceCreated;
-    /**
-     * mediaPlayer
-     */
-    private MediaPlayer mediaPlayer = null;
+    private final VideoPlayerController controller = new VideoPlayerController(VideoPlayer.MEDIA_PLAYER);
     /**
      * 视频源
      */
     private String assetsFileName;
+    private VideoPreloader preloader;
 
-    private VideoListener.OnBufferingListener bufferingListener;
-    private VideoListener.OnFrameListener frameListener;
     private VideoListener.OnErrorListener errorListener;
 
     // region 构造
@@ -60,13 +49,19 @@ public class VideoView extends SurfaceView
 
     private void initSurfaceHolder() {
         getHolder().addCallback(this);
-        currentState = PlayerState.IDLE;
+        controller.setOnErrorListener((mp, frameworkErr, implErr) -> {
+            Log.w(TAG, "Error: " + frameworkErr + "," + implErr);
+            if (errorListener != null) {
+                errorListener.onVideoError(mp, frameworkErr, implErr);
+            }
+        });
     }
 
     // region surface回调
     @Override
     public void surfaceCreated(@NonNull SurfaceHolder surfaceHolder) {
         this.isSurfaceCreated = true;
+        controller.setSurface(surfaceHolder.getSurface());
         openVideo();
     }
 
@@ -78,6 +73,7 @@ public class VideoView extends SurfaceView
     public void surfaceDestroyed(@NonNull SurfaceHolder surfaceHolder) {
         this.isSurfaceCreated = false;
         release();
+        controller.setSurface(null);
     }
     // endregion
 
@@ -87,167 +83,57 @@ public class VideoView extends SurfaceView
         openVideo();
     }
 
-    private void openVideo() {
-        if (TextUtils.isEmpty(assetsFileName) || !isSurfaceCreated) {
-            return;
-        }
-        stop();
-
-        initMediaPlayer();
-        setVideoDataSourceFromAssets();
-        currentState = PlayerState.PREPARING;
-        prepareAsync();
+    /**
+     * 设置解码引擎，默认 {@link VideoPlayer#MEDIA_PLAYER}。会释放当前的播放器，之后打开的视频生效
+     */
+    public void setVideoPlayerFactory(VideoPlayer.Factory factory) {
+        controller.setFactory(factory);
+        openVideo();
     }
 
-    private void initMediaPlayer() {
-        if (mediaPlayer == null) {
-            mediaPlayer = new MediaPlayer();
-            mediaPlayer.setDisplay(getHolder());
-        }
-        mediaPlayer.setOnInfoListener(this);
-        mediaPlayer.setOnErrorListener(this);
-        mediaPlayer.setOnCompletionListener(this);
-        currentState = PlayerState.IDLE;
+    /**
+     * 打开视频时先看预加载里有没有准备好的播放器，有就直接接手
+     */
+    public void setVideoPreloader(VideoPreloader preloader) {
+        this.preloader = preloader;
     }
 
-    private void setVideoDataSourceFromAssets() {
-        try {
-            AssetFileDescriptor assetFileDescriptor = getContext().getAssets().openFd
-                    (assetsFileName);
-            mediaPlayer.setDataSource(assetFileDescriptor.getFileDescriptor(),
-                    assetFileDescriptor.getStartOffset(), assetFileDescriptor.getLength());
-        } catch (Exception e) {
-            e.printStackTrace();
+    private void openVideo() {
+        if (TextUtils.isEmpty(assetsFileName) || !isSurfaceCreated) {
+            return;
+        }
+        if (preloader != null && preloader.handOver(assetsFileName, controller)) {
+            return;
         }
+        // 文件在播放线程打开
+        controller.open(getContext().getAssets(), assetsFileName);
     }
 
     // region 播放器状态
     public void start() {
-        if (mediaPlayer == null) {
-            return;
-        }
-        switch (currentState) {
-            case PlayerState.PREPARED:
-            case PlayerState.PAUSED:
-            case PlayerState.PLAYBACK_COMPLETED:
-                mediaPlayer.start();
-                currentState = PlayerState.PLAYING;
-                break;
-            case PlayerState.STOPPED:
-                prepareAsync(mediaPlayer -> {
-                    mediaPlayer.start();
-                    currentState = PlayerState.PLAYING;
-                });
-                break;
-        }
+        controller.start();
     }
 
     public void pause() {
-        if (mediaPlayer == null) {
-            return;
-        }
-        if (currentState == PlayerState.PLAYING) {
-            mediaPlayer.pause();
-            currentState = PlayerState.PAUSED;
-        }
+        controller.pause();
     }
 
     public void stop() {
-        if (mediaPlayer == null) {
-            return;
-        }
-        switch (currentState) {
-            case PlayerState.PREPARED:
-            case PlayerState.PLAYING:
-            case PlayerState.PAUSED:
-            case PlayerState.PLAYBACK_COMPLETED:
-                mediaPlayer.stop();
-                currentState = PlayerState.STOPPED;
-                break;
-        }
+        controller.stop();
     }
 
     public void release() {
-        if (mediaPlayer != null) {
-            mediaPlayer.reset();
-            mediaPlayer.release();
-            mediaPlayer.setOnInfoListener(null);
-            mediaPlayer.setOnErrorListener(null);
-            mediaPlayer.setOnCompletionListener(null);
-            mediaPlayer = null;
-            currentState = PlayerState.END;
-        }
-    }
-
-    private void prepareAsync() {
-        prepareAsync(null);
-    }
-
-    private void prepareAsync(final MediaPlayer.OnPreparedListener onPreparedListener) {
-        if (mediaPlayer == null) {
-            return;
-        }
-        if (currentState == PlayerState.PREPARING || currentState == PlayerState.STOPPED) {
-            mediaPlayer.setOnPreparedListener(mp -> {
-                currentState = PlayerState.PREPARED;
-                if (onPreparedListener != null) {
-                    onPreparedListener.onPrepared(mp);
-                }
-            });
-            mediaPlayer.prepareAsync();
-        }
-    }
-    // endregion
-
-    // region 播放器回调
-    @Override
-    public void onCompletion(MediaPlayer mediaPlayer) {
-        currentState = PlayerState.PLAYBACK_COMPLETED;
-    }
-
-    @Override
-    public boolean onError(MediaPlayer mp, int frameworkErr, int implErr) {
-        currentState = PlayerState.ERROR;
-        if (errorListener != null) {
-            errorListener.onVideoError(mp, frameworkErr, implErr);
-        }
-        Log.w(TAG, "Error: " + frameworkErr + "," + implErr);
-        return true;
-    }
-
-    @Override
-    public boolean onInfo(MediaPlayer mediaPlayer, int what, int extra) {
-        switch (what) {
-            // 开始卡顿
-            case MediaPlayer.MEDIA_INFO_BUFFERING_START:
-                if (bufferingListener != null) {
-                    bufferingListener.onStartBuffering();
-                }
-                break;
-            // 卡顿结束
-            case MediaPlayer.MEDIA_INFO_BUFFERING_END:
-                if (bufferingListener != null) {
-                    bufferingListener.onEndBuffering();
-                }
-                break;
-            // 首帧渲染
-            case MediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START:
-                if (frameListener != null) {
-                    frameListener.onVideoShowFrame();
-                }
-                break;
-        }
-        return false;
+        controller.release();
     }
     // endregion
 
     // region 视频状态监听
     public void setOnBufferingListener(VideoListener.OnBufferingListener listener) {
-        this.bufferingListener = listener;
+        controller.setOnBufferingListener(listener);
     }
 
     public void setOnFrameListener(VideoListener.OnFrameListener listener) {
-        this.frameListener = listener;
+        controller.setOnFrameListener(listener);
     }
 
     public void setOnErrorListener(VideoListener.OnErrorListener listener) {
@@ -257,7 +143,10 @@ public class VideoView extends SurfaceView
 
     /**
      * 获取首帧图
+     *
+     * @deprecated 在调用线程解出原尺寸的一帧，每次都重新解码；用 {@link VideoCoverLoader}
      */
+    @Deprecated
     public Bitmap getFirstFrame() {
         if (TextUtils.isEmpty(assetsFileName)) {
             return null;
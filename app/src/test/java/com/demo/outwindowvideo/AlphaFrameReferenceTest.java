@@ -0,0 +1,153 @@
+package com.demo.outwindowvideo;
+
+import com.demo.outwindowvideo.kernel.AlphaKernels;
+import com.demo.outwindowvideo.kernel.AlphaPacker;
+import com.demo.outwindowvideo.kernel.PackedLayout;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 着色器CPU参考实现的拆分和混合结果
+ */
+public class AlphaFrameReferenceTest {
+
+    private static final int COLOR = 0xffc08040;
+    private static final int HALF_ALPHA = 0xff808080;
+
+    @Test
+    public void leftAlphaTakesColorFromRightHalf() {
+        int[] packed = {HALF_ALPHA, COLOR};
+        int[] out = AlphaFrameReference.composite(packed, 2, 1, AlphaModel.VIDEO_TRANS_LEFT_ALPHA);
+        assertEquals(1, out.length);
+        assertEquals(expected(COLOR, 0x80), out[0]);
+    }
+
+    @Test
+    public void rightAlphaTakesColorFromLeftHalf() {
+        int[] packed = {COLOR, HALF_ALPHA};
+        int[] out = AlphaFrameReference.composite(packed, 2, 1, AlphaModel.VIDEO_TRANS_RIGHT_ALPHA);
+        assertEquals(expected(COLOR, 0x80), out[0]);
+    }
+
+    @Test
+    public void verticalLayouts() {
+        int[] colorOnTop = {COLOR, HALF_ALPHA};
+        assertEquals(expected(COLOR, 0x80),
+                AlphaFrameReference.composite(colorOnTop, 1, 2, AlphaModel.VIDEO_TRANS_BOTTOM_ALPHA)[0]);
+        int[] alphaOnTop = {HALF_ALPHA, COLOR};
+        assertEquals(expected(COLOR, 0x80),
+                AlphaFrameReference.composite(alphaOnTop, 1, 2, AlphaModel.VIDEO_TRANS_TOP_ALPHA)[0]);
+    }
+
+    @Test
+    public void keepsRowOrder() {
+        // 2x2 输出，左半透明度从上到下 0、255
+        int[] packed = {
+                0xff000000, 0xff000000, 0xffff0000, 0xff00ff00,
+                0xffffffff, 0xffffffff, 0xff0000ff, 0xffffffff,
+        };
+        int[] out = AlphaFrameReference.composite(packed, 4, 2, AlphaModel.VIDEO_TRANS_LEFT_ALPHA);
+        assertArrayEquals(new int[]{0, 0, 0xff0000ff, 0xffffffff}, out);
+    }
+
+    @Test
+    public void premultipliedKeepsCoverage() {
+        int[] packed = {HALF_ALPHA, COLOR};
+        int straight = AlphaFrameReference.composite(packed, 2, 1, AlphaModel.VIDEO_TRANS_LEFT_ALPHA)[0];
+        int premultiplied = AlphaFrameReference.composite(packed, 2, 1, AlphaModel.VIDEO_TRANS_LEFT_ALPHA, true)[0];
+        // 颜色相同，透明度不再被乘两次
+        assertEquals(straight & 0xffffff, premultiplied & 0xffffff);
+        assertEquals(0x80, premultiplied >>> 24);
+        assertEquals(0x40, straight >>> 24);
+    }
+
+    @Test
+    public void opaqueAndTransparentAreExact() {
+        assertEquals(255, AlphaFrameReference.multiply(255, 255));
+        assertEquals(0, AlphaFrameReference.multiply(200, 0));
+    }
+
+    /**
+     * 着色器按 {@link AlphaLayout} 的区域采样，每个输出像素中心都应落在参考实现取的那个输入像素上
+     */
+    @Test
+    public void layoutRectsMatchReference() {
+        int[] models = {AlphaModel.VIDEO_TRANS_TOP_ALPHA, AlphaModel.VIDEO_TRANS_BOTTOM_ALPHA,
+                AlphaModel.VIDEO_TRANS_LEFT_ALPHA, AlphaModel.VIDEO_TRANS_RIGHT_ALPHA};
+        int packedWidth = 8;
+        int packedHeight = 6;
+        for (int model : models) {
+            int width = AlphaFrameReference.outputWidth(packedWidth, model);
+            int height = AlphaFrameReference.outputHeight(packedHeight, model);
+            // 每个像素的值就是它的下标，合成结果里的颜色可以反推出采样位置
+            int[] packed = new int[packedWidth * packedHeight];
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] = 0xff000000 | i;
+            }
+            float[] colorRect = AlphaLayout.colorRect(model);
+            float[] alphaRect = AlphaLayout.alphaRect(model);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    float u = (x + 0.5f) / width;
+                    float v = (y + 0.5f) / height;
+                    int color = sample(colorRect, u, v, packedWidth, packedHeight);
+                    int alpha = sample(alphaRect, u, v, packedWidth, packedHeight);
+                    // 参考实现取透明度像素的 r 通道，完全不透明时输出的就是彩色像素的下标
+                    packed[alpha] = 0xffff0000;
+                    assertEquals("model " + model, 0xff000000 | color,
+                            AlphaFrameReference.composite(packed, packedWidth, packedHeight, model)[y * width + x]);
+                    packed[alpha] = 0xff000000 | alpha;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cpuKernelsMatchReference() {
+        Random random = new Random(19);
+        int width = 24;
+        int height = 16;
+        int[] argb = new int[width * height];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = random.nextInt();
+        }
+        for (int model = AlphaModel.VIDEO_TRANS_TOP_ALPHA; model <= AlphaModel.VIDEO_TRANS_RIGHT_QUARTER_ALPHA; model++) {
+            int packedWidth = AlphaLayout.packedWidth(width, model);
+            int packedHeight = AlphaLayout.packedHeight(height, model);
+            PackedLayout layout = AlphaLayout.packedLayout(packedWidth, packedHeight, model);
+            int[] packed = AlphaPacker.pack(argb, layout);
+            assertEquals(width, layout.getWidth());
+            assertEquals(height, layout.getHeight());
+
+            int[] reference = AlphaFrameReference.composite(packed, packedWidth, packedHeight, model, true);
+            int[] premultiplied = new int[width * height];
+            AlphaKernels.composite(packed, layout, true, premultiplied);
+            assertArrayEquals("model " + model, reference, premultiplied);
+
+            // 直通输出的透明度与预乘相同，rgb 保持原样
+            int[] straight = new int[width * height];
+            AlphaKernels.composite(packed, layout, false, straight);
+            for (int i = 0; i < straight.length; i++) {
+                assertEquals(reference[i] >>> 24, straight[i] >>> 24);
+                assertEquals(argb[i] & 0xffffff, straight[i] & 0xffffff);
+            }
+        }
+    }
+
+    private static int sample(float[] rect, float u, float v, int width, int height) {
+        int x = (int) ((rect[0] + u * rect[2]) * width);
+        int y = (int) ((rect[1] + v * rect[3]) * height);
+        return y * width + x;
+    }
+
+    private static int expected(int color, int a) {
+        int r = AlphaFrameReference.multiply((color >> 16) & 0xff, a);
+        int g = AlphaFrameReference.multiply((color >> 8) & 0xff, a);
+        int b = AlphaFrameReference.multiply(color & 0xff, a);
+        return AlphaFrameReference.multiply(a, a) << 24 | r << 16 | g << 8 | b;
+    }
+}
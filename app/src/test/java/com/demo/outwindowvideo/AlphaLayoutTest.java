@@ -0,0 +1,65 @@
+package com.demo.outwindowvideo;
+
+import com.demo.outwindowvideo.kernel.AlphaPacker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 打包布局和缩小分辨率的透明度经参考实现放大后的结果
+ */
+public class AlphaLayoutTest {
+
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 8;
+
+    @Test
+    public void reducedLayoutsDecodeFewerPixels() {
+        assertEquals(WIDTH * 2, AlphaLayout.packedWidth(WIDTH, AlphaModel.VIDEO_TRANS_RIGHT_ALPHA));
+        assertEquals(24, AlphaLayout.packedWidth(WIDTH, AlphaModel.VIDEO_TRANS_RIGHT_HALF_ALPHA));
+        assertEquals(20, AlphaLayout.packedWidth(WIDTH, AlphaModel.VIDEO_TRANS_RIGHT_QUARTER_ALPHA));
+        assertEquals(HEIGHT, AlphaLayout.packedHeight(HEIGHT, AlphaModel.VIDEO_TRANS_RIGHT_QUARTER_ALPHA));
+
+        for (int model : new int[]{AlphaModel.VIDEO_TRANS_RIGHT_HALF_ALPHA, AlphaModel.VIDEO_TRANS_RIGHT_QUARTER_ALPHA}) {
+            int packedWidth = AlphaLayout.packedWidth(WIDTH, model);
+            assertEquals(WIDTH, AlphaFrameReference.outputWidth(packedWidth, model));
+            assertEquals(HEIGHT, AlphaFrameReference.outputHeight(HEIGHT, model));
+        }
+    }
+
+    @Test
+    public void uniformAlphaMatchesFullResolution() {
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = 0x80000000 | (i * 7 & 0xff) << 16 | (i * 3 & 0xff) << 8 | i;
+        }
+        int[] expected = composite(argb, AlphaModel.VIDEO_TRANS_RIGHT_ALPHA);
+        assertArrayEquals(expected, composite(argb, AlphaModel.VIDEO_TRANS_RIGHT_HALF_ALPHA));
+        assertArrayEquals(expected, composite(argb, AlphaModel.VIDEO_TRANS_RIGHT_QUARTER_ALPHA));
+    }
+
+    @Test
+    public void rampIsUpsampledSmoothly() {
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                argb[y * WIDTH + x] = (x * 16) << 24 | 0xffffff;
+            }
+        }
+        int[] out = composite(argb, AlphaModel.VIDEO_TRANS_RIGHT_QUARTER_ALPHA);
+        // 边缘的两个像素外被 clamp，其余与原始透明度只差舍入
+        for (int x = 2; x < WIDTH - 2; x++) {
+            int a = x * 16;
+            int expected = AlphaFrameReference.multiply(a, a);
+            assertTrue("x=" + x, Math.abs((out[x] >>> 24) - expected) <= 2);
+        }
+    }
+
+    private static int[] composite(int[] argb, int model) {
+        int packedWidth = AlphaLayout.packedWidth(WIDTH, model);
+        int packedHeight = AlphaLayout.packedHeight(HEIGHT, model);
+        int[] packed = AlphaPacker.pack(argb, AlphaLayout.packedLayout(packedWidth, packedHeight, model));
+        return AlphaFrameReference.composite(packed, packedWidth, packedHeight, model);
+    }
+}
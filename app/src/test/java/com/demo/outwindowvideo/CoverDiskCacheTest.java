@@ -0,0 +1,102 @@
+package com.demo.outwindowvideo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class CoverDiskCacheTest {
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("covers").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(root);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static CacheFiles.Writer bytes(int count) {
+        return out -> {
+            out.write(new byte[count]);
+            return true;
+        };
+    }
+
+    @Test
+    public void writtenEntryIsFoundBySameKey() throws IOException {
+        CoverDiskCache cache = new CoverDiskCache(new File(root, "covers"), 1000);
+        assertNull(cache.get("a.mp4@0+10/100x100"));
+        assertTrue(cache.put("a.mp4@0+10/100x100", bytes(10)));
+
+        File file = cache.get("a.mp4@0+10/100x100");
+        assertNotNull(file);
+        assertEquals(10, file.length());
+        // 来源或尺寸不同就是不同的封面
+        assertNull(cache.get("a.mp4@0+11/100x100"));
+        assertEquals("hits=1 misses=2 evictions=0", cache.getStats());
+    }
+
+    @Test
+    public void failedWriteLeavesNothing() {
+        CoverDiskCache cache = new CoverDiskCache(root, 1000);
+        assertFalse(cache.put("a", out -> {
+            out.write(1);
+            throw new IOException("fake");
+        }));
+        assertNull(cache.get("a"));
+        assertEquals(0, root.list().length);
+    }
+
+    @Test
+    public void incompleteWriteLeavesNothing() {
+        CoverDiskCache cache = new CoverDiskCache(root, 1000);
+        // 例如 Bitmap.compress 返回 false
+        assertFalse(cache.put("a", out -> {
+            out.write(1);
+            return false;
+        }));
+        assertNull(cache.get("a"));
+        assertEquals(0, root.list().length);
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        CoverDiskCache cache = new CoverDiskCache(root, 250);
+        cache.put("a", bytes(100));
+        cache.put("b", bytes(100));
+        new File(root, CoverDiskCache.hashKey("a")).setLastModified(1000);
+        new File(root, CoverDiskCache.hashKey("b")).setLastModified(2000);
+        // 读一次 a，b 就成了最久没用的
+        assertNotNull(cache.get("a"));
+
+        cache.put("c", bytes(100));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertTrue(cache.getStats().endsWith("evictions=1"));
+    }
+
+    @Test
+    public void hashKeyIsStableFileName() {
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", CoverDiskCache.hashKey("abc"));
+    }
+}
@@ -0,0 +1,219 @@
+package com.demo.outwindowvideo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用假的图片类型和手动执行的工作线程验证合并请求、内存预算和复用
+ */
+public class CoverMemoryCacheTest {
+
+    private static final class FakeBitmap {
+        final long bytes;
+        final String name;
+
+        FakeBitmap(String name, long bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final CoverMemoryCache.Bitmaps<FakeBitmap> BITMAPS = new CoverMemoryCache.Bitmaps<FakeBitmap>() {
+        @Override
+        public long sizeOf(FakeBitmap bitmap) {
+            return bitmap.bytes;
+        }
+
+        @Override
+        public boolean isReusable(FakeBitmap bitmap) {
+            return true;
+        }
+    };
+
+    private final List<Runnable> worker = new ArrayList<>();
+    private final List<FakeBitmap> candidates = new ArrayList<>();
+    private final List<String> loads = new ArrayList<>();
+    /**
+     * 绑定按弱引用记录目标，测试期间留着强引用
+     */
+    private final List<Object> targets = new ArrayList<>();
+
+    private CoverMemoryCache<FakeBitmap> cache(long maxBytes) {
+        return new CoverMemoryCache<>(maxBytes, 4, BITMAPS, worker::add, Runnable::run);
+    }
+
+    /**
+     * 返回 name 对应的新图，大小为 bytes
+     */
+    private CoverMemoryCache.Loader<FakeBitmap> loader(String name, long bytes) {
+        return candidate -> {
+            loads.add(name);
+            candidates.add(candidate);
+            return new FakeBitmap(name, bytes);
+        };
+    }
+
+    private void bind(CoverMemoryCache<FakeBitmap> cache, Object target, String key, List<FakeBitmap> shown) {
+        cache.bind(target, key, 100, loader(key, 100), shown::add);
+        runWorker();
+    }
+
+    private Object target() {
+        Object target = new Object();
+        targets.add(target);
+        return target;
+    }
+
+    private void runWorker() {
+        while (!worker.isEmpty()) {
+            worker.remove(0).run();
+        }
+    }
+
+    @Test
+    public void concurrentRequestsForOneKeyLoadOnce() {
+        CoverMemoryCache<FakeBitmap> cache = cache(1000);
+        List<FakeBitmap> results = new ArrayList<>();
+        cache.load("a", 100, loader("a", 100), results::add);
+        cache.load("a", 100, loader("a", 100), results::add);
+        cache.bind(target(), "a", 100, loader("a", 100), results::add);
+        assertEquals(1, worker.size());
+        assertTrue(results.isEmpty());
+
+        runWorker();
+        assertEquals(Arrays.asList("a"), loads);
+        assertEquals(3, results.size());
+        assertSame(results.get(0), results.get(1));
+        assertSame(results.get(0), results.get(2));
+
+        // 之后直接从内存取
+        cache.load("a", 100, loader("a", 100), results::add);
+        assertTrue(worker.isEmpty());
+        assertEquals(4, results.size());
+        assertEquals("requests=4 memoryHits=1 loaded=1 reused=0 failed=0 memoryBytes=100", cache.getStats());
+    }
+
+    @Test
+    public void leastRecentlyUsedCoverIsEvictedOverBudget() {
+        CoverMemoryCache<FakeBitmap> cache = cache(250);
+        List<FakeBitmap> shown = new ArrayList<>();
+        bind(cache, target(), "a", shown);
+        bind(cache, target(), "b", shown);
+        // 读一次 a，b 就成了最久没用的
+        cache.load("a", 100, loader("a", 100), shown::add);
+        bind(cache, target(), "c", shown);
+        assertEquals(200, cache.getMemoryBytes());
+
+        loads.clear();
+        cache.load("a", 100, loader("a", 100), shown::add);
+        cache.load("c", 100, loader("c", 100), shown::add);
+        cache.load("b", 100, loader("b", 100), shown::add);
+        runWorker();
+        assertEquals(Arrays.asList("b"), loads);
+    }
+
+    @Test
+    public void coverLargerThanBudgetIsKept() {
+        CoverMemoryCache<FakeBitmap> cache = cache(50);
+        cache.load("a", 100, loader("a", 100), cover -> {
+        });
+        runWorker();
+        assertEquals(100, cache.getMemoryBytes());
+    }
+
+    @Test
+    public void evictedCoverIsReusedOnlyAfterItsTargetMovesOn() {
+        CoverMemoryCache<FakeBitmap> cache = cache(100);
+        List<FakeBitmap> shown = new ArrayList<>();
+        Object first = target();
+        bind(cache, first, "a", shown);
+        bind(cache, target(), "b", shown);
+        // a 被挤出内存，但还显示在 first 上
+        assertEquals(0, cache.getReusableCount());
+
+        bind(cache, first, "c", shown);
+        // b 还显示着；a 从 first 上换下来，可以复用了
+        assertEquals(1, cache.getReusableCount());
+
+        candidates.clear();
+        cache.bind(target(), "d", 100, loader("d", 100), shown::add);
+        runWorker();
+        assertEquals("a", String.valueOf(candidates.get(0)));
+    }
+
+    @Test
+    public void externalCoverIsNeverReused() {
+        CoverMemoryCache<FakeBitmap> cache = cache(100);
+        List<FakeBitmap> shown = new ArrayList<>();
+        cache.load("a", 100, loader("a", 100), shown::add);
+        runWorker();
+        Object target = target();
+        bind(cache, target, "b", shown);
+        bind(cache, target, "c", shown);
+        // a 交给了调用方，b 被挤出后从 target 上换下来
+        assertEquals(1, cache.getReusableCount());
+
+        candidates.clear();
+        cache.load("d", 100, loader("d", 100), shown::add);
+        runWorker();
+        assertEquals("b", String.valueOf(candidates.get(0)));
+    }
+
+    @Test
+    public void smallestReusableThatFitsIsChosen() {
+        CoverMemoryCache<FakeBitmap> cache = cache(0);
+        List<FakeBitmap> shown = new ArrayList<>();
+        Object target = target();
+        cache.bind(target, "big", 400, loader("big", 400), shown::add);
+        runWorker();
+        cache.bind(target, "small", 100, loader("small", 100), shown::add);
+        runWorker();
+        cache.bind(target, "last", 10, loader("last", 10), shown::add);
+        runWorker();
+        assertEquals(2, cache.getReusableCount());
+
+        candidates.clear();
+        cache.load("x", 150, loader("x", 150), shown::add);
+        runWorker();
+        assertEquals("big", String.valueOf(candidates.get(0)));
+        // 没用上的交还给缓存
+        assertEquals(2, cache.getReusableCount());
+
+        cache.load("y", 50, candidate -> candidate, shown::add);
+        runWorker();
+        assertEquals("small", String.valueOf(shown.get(shown.size() - 1)));
+        assertTrue(cache.getStats().contains("reused=1"));
+    }
+
+    @Test
+    public void failedLoadEndsTheRequest() {
+        CoverMemoryCache<FakeBitmap> cache = cache(1000);
+        List<FakeBitmap> results = new ArrayList<>();
+        cache.load("a", 100, candidate -> {
+            throw new IllegalStateException("fake");
+        }, results::add);
+        try {
+            runWorker();
+        } catch (IllegalStateException expected) {
+            // 交给工作线程的未捕获异常处理
+        }
+        worker.clear();
+        assertEquals(1, results.size());
+        assertNull(results.get(0));
+
+        cache.load("a", 100, loader("a", 100), results::add);
+        runWorker();
+        assertEquals("a", String.valueOf(results.get(1)));
+        assertTrue(cache.getStats().contains("failed=1"));
+    }
+}
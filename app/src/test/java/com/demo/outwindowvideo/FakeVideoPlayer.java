@@ -0,0 +1,127 @@
+package com.demo.outwindowvideo;
+
+import android.media.MediaPlayer;
+import android.view.Surface;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 不解码的 {@link VideoPlayer}，记录收到的调用，回调由测试手动触发
+ */
+class FakeVideoPlayer implements VideoPlayer {
+
+    final List<String> calls = new ArrayList<>();
+    Listener listener;
+    Surface surface;
+    long positionUs;
+    float speed = 1f;
+    int width;
+    int height;
+    boolean failDataSource;
+    boolean released;
+
+    @Override
+    public void setSurface(Surface surface) {
+        this.surface = surface;
+        calls.add("setSurface");
+    }
+
+    @Override
+    public void setDataSource(FileDescriptor fd, long offset, long length) throws IOException {
+        calls.add("setDataSource");
+        if (failDataSource) {
+            throw new IOException("fake");
+        }
+    }
+
+    @Override
+    public void prepareAsync() {
+        calls.add("prepareAsync");
+    }
+
+    @Override
+    public void start() {
+        calls.add("start");
+    }
+
+    @Override
+    public void pause() {
+        calls.add("pause");
+    }
+
+    @Override
+    public void stop() {
+        calls.add("stop");
+    }
+
+    @Override
+    public void seekTo(long positionUs) {
+        calls.add("seekTo");
+        this.positionUs = positionUs;
+    }
+
+    @Override
+    public long getCurrentPositionUs() {
+        if (released) {
+            throw new IllegalStateException("released");
+        }
+        return positionUs;
+    }
+
+    @Override
+    public int getVideoWidth() {
+        return width;
+    }
+
+    @Override
+    public int getVideoHeight() {
+        return height;
+    }
+
+    @Override
+    public void setPlaybackSpeed(float speed) {
+        calls.add("setPlaybackSpeed");
+        this.speed = speed;
+    }
+
+    @Override
+    public void reset() {
+        calls.add("reset");
+        surface = null;
+    }
+
+    @Override
+    public void release() {
+        calls.add("release");
+        released = true;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // region 模拟引擎回调
+    void prepared(int width, int height) {
+        this.width = width;
+        this.height = height;
+        listener.onVideoSizeChanged(width, height);
+        listener.onPrepared();
+    }
+
+    void firstFrame() {
+        listener.onInfo(MediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START, 0);
+    }
+
+    void complete() {
+        listener.onCompletion();
+    }
+
+    void error(int extra) {
+        listener.onError(MediaPlayer.MEDIA_ERROR_UNKNOWN, extra);
+    }
+    // endregion
+}
@@ -0,0 +1,95 @@
+package com.demo.outwindowvideo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用假的帧源和 RENDERMODE_WHEN_DIRTY 渲染循环验证绘制次数
+ */
+public class FrameSchedulerTest {
+
+    private FrameScheduler scheduler;
+    private FakeRenderLoop renderLoop;
+
+    @Before
+    public void setUp() {
+        scheduler = new FrameScheduler();
+        renderLoop = new FakeRenderLoop(scheduler);
+        scheduler.setRenderRequester(renderLoop);
+    }
+
+    @Test
+    public void drawsOncePerProducedFrame() {
+        for (int i = 0; i < 30; i++) {
+            scheduler.onFrameAvailable();
+            renderLoop.runPasses(3);
+        }
+        assertEquals(30, renderLoop.draws);
+        assertEquals(30, renderLoop.texImageUpdates);
+    }
+
+    @Test
+    public void noDrawsWithoutFrames() {
+        // 暂停、停止、缓冲时解码器不出帧
+        renderLoop.runPasses(120);
+        assertEquals(0, renderLoop.draws);
+    }
+
+    @Test
+    public void framesArrivingBeforeDrawCollapse() {
+        scheduler.onFrameAvailable();
+        scheduler.onFrameAvailable();
+        scheduler.onFrameAvailable();
+        renderLoop.runPasses(3);
+        assertEquals(1, renderLoop.renderRequests);
+        assertEquals(1, renderLoop.draws);
+        assertEquals(1, renderLoop.texImageUpdates);
+    }
+
+    @Test
+    public void sizeChangeRedrawsWithoutUpdatingTexture() {
+        scheduler.onFrameAvailable();
+        renderLoop.runPasses(1);
+        renderLoop.requestRender();
+        renderLoop.runPasses(1);
+        assertEquals(2, renderLoop.draws);
+        assertEquals(1, renderLoop.texImageUpdates);
+    }
+
+    /**
+     * 和 GLThread 的 RENDERMODE_WHEN_DIRTY 一致：只有 requestRender 之后才绘制一次
+     */
+    private static class FakeRenderLoop implements FrameScheduler.RenderRequester {
+        private final FrameScheduler scheduler;
+        private boolean requestRender;
+        int renderRequests;
+        int draws;
+        int texImageUpdates;
+
+        FakeRenderLoop(FrameScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void requestRender() {
+            renderRequests++;
+            requestRender = true;
+        }
+
+        void runPasses(int passes) {
+            for (int i = 0; i < passes; i++) {
+                if (!requestRender) {
+                    continue;
+                }
+                requestRender = false;
+                // AlphaVideoRenderer.onDrawFrame
+                if (scheduler.beginDraw()) {
+                    texImageUpdates++;
+                }
+                draws++;
+            }
+        }
+    }
+}
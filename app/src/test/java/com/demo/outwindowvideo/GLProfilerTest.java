@@ -0,0 +1,111 @@
+package com.demo.outwindowvideo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+
+import javax.microedition.khronos.opengles.GL;
+import javax.microedition.khronos.opengles.GL10;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用 GLProfiler 统计 AlphaVideoRenderer 绘制路径每帧的GL调用，调用次数变化时及时发现
+ */
+public class GLProfilerTest {
+
+    /**
+     * 第一帧需要设置全部状态
+     */
+    private static final int FIRST_FRAME_CALLS = 14;
+    /**
+     * 状态不变时每帧只有 glClear 和 glDrawArrays
+     */
+    private static final int STEADY_FRAME_CALLS = 2;
+    private static final int GL_BLEND = 0x0BE2;
+
+    private GLProfiler profiler;
+    private GL10 gl;
+    private AlphaVideoRenderer renderer;
+
+    @Before
+    public void setUp() {
+        profiler = new GLProfiler(noOp(Gles.class));
+        gl = (GL10) profiler.wrap(noOp(GL10.class));
+        renderer = new AlphaVideoRenderer(AlphaModel.VIDEO_TRANS_LEFT_ALPHA);
+        renderer.setGlObjects(3, 1);
+    }
+
+    @Test
+    public void countsDrawPathCalls() {
+        drawFrame();
+        GLProfiler.FrameSummary frame = profiler.getLastFrame();
+        assertEquals(0, frame.getFrameIndex());
+        assertEquals(FIRST_FRAME_CALLS, frame.getTotalCalls());
+        assertEquals(1, frame.getCallCount("glDrawArrays"));
+        assertEquals(2, frame.getCallCount("glVertexAttribPointer"));
+        // 只有 glActiveTexture(GL_TEXTURE0) 恰好与GL默认状态相同
+        assertEquals(1, frame.getTotalRedundantCalls());
+    }
+
+    @Test
+    public void noStateRepeatedAcrossFrames() {
+        for (int i = 0; i < 3; i++) {
+            drawFrame();
+        }
+        GLProfiler.FrameSummary frame = profiler.getLastFrame();
+        assertEquals(2, frame.getFrameIndex());
+        assertEquals(STEADY_FRAME_CALLS, frame.getTotalCalls());
+        assertEquals(1, frame.getCallCount("glClear"));
+        assertEquals(1, frame.getCallCount("glDrawArrays"));
+        assertEquals(0, frame.getTotalRedundantCalls());
+    }
+
+    @Test
+    public void stateChangesAreNotRedundant() {
+        Gles gles = (Gles) gl;
+        gles.glEnable(GL_BLEND);
+        gles.glDisable(GL_BLEND);
+        gles.glEnable(GL_BLEND);
+        gles.glClearColor(0, 0, 0, 0);
+        gles.glClearColor(0, 0, 0, 1);
+        profiler.onFrameEnd();
+        assertEquals(0, profiler.getLastFrame().getTotalRedundantCalls());
+        assertTrue(profiler.getLastFrame().getOverheadNanos() >= 0);
+    }
+
+    @Test
+    public void repeatedStateIsFlagged() {
+        Gles gles = (Gles) gl;
+        gles.glEnable(GL_BLEND);
+        gles.glEnable(GL_BLEND);
+        gles.glClearColor(0, 0, 0, 0);
+        gles.glClearColor(0, 0, 0, 0);
+        profiler.onFrameEnd();
+        GLProfiler.FrameSummary frame = profiler.getLastFrame();
+        assertEquals(1, frame.getRedundantCount("glEnable"));
+        assertEquals(1, frame.getRedundantCount("glClearColor"));
+    }
+
+    @Test
+    public void newContextForgetsState() {
+        Gles gles = (Gles) gl;
+        gles.glEnable(GL_BLEND);
+        gles = (Gles) profiler.wrap(noOp(GL10.class));
+        gles.glEnable(GL_BLEND);
+        profiler.onFrameEnd();
+        assertEquals(0, profiler.getLastFrame().getTotalRedundantCalls());
+    }
+
+    private void drawFrame() {
+        renderer.onDrawFrame(gl);
+        profiler.onFrameEnd();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T noOp(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type, GL.class},
+                (proxy, method, args) -> null);
+    }
+}
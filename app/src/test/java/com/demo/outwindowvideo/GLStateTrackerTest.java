@@ -0,0 +1,240 @@
+package com.demo.outwindowvideo;
+
+import com.demo.outwindowvideo.kernel.AlphaBoundsIndex;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.microedition.khronos.opengles.GL;
+import javax.microedition.khronos.opengles.GL10;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用记录调用的假GL验证状态缓存只在变化时调用GL
+ */
+public class GLStateTrackerTest {
+
+    private static final int GL_TEXTURE0 = 0x84C0;
+    private static final int GL_TEXTURE_EXTERNAL_OES = 0x8D65;
+    private static final int GL_FLOAT = 0x1406;
+    private static final int GL_SRC_ALPHA = 0x0302;
+    private static final int GL_ONE = 1;
+    private static final int PROGRAM = 3;
+    private static final int VERTEX_BUFFER = 1;
+
+    private final List<String> calls = new ArrayList<>();
+    private GL10 gl;
+    private GLStateTracker tracker;
+
+    @Before
+    public void setUp() {
+        gl = (GL10) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{GL10.class, Gles.class, GL.class},
+                (proxy, method, args) -> {
+                    calls.add(method.getName());
+                    return null;
+                });
+        tracker = new GLStateTracker();
+        tracker.setGles((Gles) gl);
+    }
+
+    @Test
+    public void skipsUnchangedState() {
+        tracker.setBlendEnabled(true);
+        tracker.setBlendEnabled(true);
+        tracker.blendFunc(GL_SRC_ALPHA, GL_ONE);
+        tracker.blendFunc(GL_SRC_ALPHA, GL_ONE);
+        tracker.clearColor(0, 0, 0, 0);
+        tracker.clearColor(0, 0, 0, 0);
+        tracker.useProgram(3);
+        tracker.useProgram(3);
+        assertEquals(Arrays.asList("glEnable", "glBlendFunc", "glClearColor", "glUseProgram"), calls);
+
+        calls.clear();
+        tracker.setBlendEnabled(false);
+        tracker.clearColor(0, 0, 0, 1);
+        tracker.useProgram(4);
+        assertEquals(Arrays.asList("glDisable", "glClearColor", "glUseProgram"), calls);
+    }
+
+    @Test
+    public void externalTextureBindKeepsTrackerInSync() {
+        tracker.activeTexture(GL_TEXTURE0);
+        tracker.bindTexture(GL_TEXTURE_EXTERNAL_OES, 5);
+        tracker.bindTexture(GL_TEXTURE_EXTERNAL_OES, 5);
+        assertEquals(Arrays.asList("glActiveTexture", "glBindTexture"), calls);
+
+        // 例如另一个渲染器的 updateTexImage
+        tracker.onTextureBound(GL_TEXTURE_EXTERNAL_OES, 7);
+        calls.clear();
+        tracker.bindTexture(GL_TEXTURE_EXTERNAL_OES, 5);
+        assertEquals(Arrays.asList("glBindTexture"), calls);
+    }
+
+    @Test
+    public void externalBindOnUnknownUnitForgetsBindings() {
+        tracker.activeTexture(GL_TEXTURE0);
+        tracker.bindTexture(GL_TEXTURE_EXTERNAL_OES, 5);
+        tracker.reset();
+        tracker.onTextureBound(GL_TEXTURE_EXTERNAL_OES, 7);
+        calls.clear();
+        tracker.activeTexture(GL_TEXTURE0);
+        tracker.bindTexture(GL_TEXTURE_EXTERNAL_OES, 5);
+        assertEquals(Arrays.asList("glActiveTexture", "glBindTexture"), calls);
+    }
+
+    @Test
+    public void attribPointerDependsOnBoundBuffer() {
+        tracker.bindArrayBuffer(1);
+        tracker.vertexAttribPointer(0, 2, GL_FLOAT, false, 16, 0);
+        tracker.vertexAttribPointer(0, 2, GL_FLOAT, false, 16, 0);
+        tracker.enableVertexAttribArray(0);
+        tracker.enableVertexAttribArray(0);
+        assertEquals(Arrays.asList("glBindBuffer", "glVertexAttribPointer", "glEnableVertexAttribArray"), calls);
+
+        calls.clear();
+        tracker.bindArrayBuffer(2);
+        tracker.vertexAttribPointer(0, 2, GL_FLOAT, false, 16, 0);
+        tracker.vertexAttribPointer(0, 2, GL_FLOAT, false, 16, 8);
+        assertEquals(Arrays.asList("glBindBuffer", "glVertexAttribPointer", "glVertexAttribPointer"), calls);
+    }
+
+    @Test
+    public void rendererIssuesOnlyClearAndDrawOnceWarm() {
+        AlphaVideoRenderer renderer = new AlphaVideoRenderer(AlphaModel.VIDEO_TRANS_TOP_ALPHA);
+        renderer.setGlObjects(PROGRAM, VERTEX_BUFFER);
+        renderer.onSurfaceChanged(gl, 720, 1280);
+        renderer.onDrawFrame(gl);
+        assertTrue(calls.contains("glVertexAttribPointer"));
+        assertEquals(1, countOf("glViewport"));
+
+        calls.clear();
+        renderer.onDrawFrame(gl);
+        renderer.onDrawFrame(gl);
+        assertEquals(Arrays.asList("glClear", "glDrawArrays", "glClear", "glDrawArrays"), calls);
+
+        // 尺寸变化只补一次 glViewport
+        calls.clear();
+        renderer.onSurfaceChanged(gl, 1280, 720);
+        renderer.onDrawFrame(gl);
+        assertEquals(Arrays.asList("glViewport", "glClear", "glDrawArrays"), calls);
+    }
+
+    @Test
+    public void uniformsCachedPerProgram() {
+        float[] rect = {0f, 0f, 0.5f, 1f};
+        tracker.useProgram(3);
+        tracker.uniform4f(0, rect);
+        tracker.uniform4f(0, new float[]{0f, 0f, 0.5f, 1f});
+        assertEquals(Arrays.asList("glUseProgram", "glUniform4f"), calls);
+
+        // 另一个程序里同一 location 是不同的 uniform
+        calls.clear();
+        tracker.useProgram(4);
+        tracker.uniform4f(0, rect);
+        tracker.useProgram(3);
+        tracker.uniform4f(0, rect);
+        assertEquals(Arrays.asList("glUseProgram", "glUniform4f", "glUseProgram", "glUniform4f"), calls);
+    }
+
+    @Test
+    public void rendererScissorsToBoundsAndSkipsTransparentFrames() {
+        AlphaBoundsIndex bounds = new AlphaBoundsIndex.Builder()
+                .addFrame(0, 0f, 0f, 0f, 0f)
+                .addFrame(33_000, 0.25f, 0f, 0.5f, 0.5f)
+                .build();
+        long[] position = {0};
+        AlphaVideoRenderer renderer = new AlphaVideoRenderer(AlphaModel.VIDEO_TRANS_LEFT_ALPHA);
+        renderer.setGlObjects(PROGRAM, VERTEX_BUFFER);
+        renderer.setAlphaBounds(bounds, () -> position[0], 0);
+        renderer.onSurfaceChanged(gl, 100, 200);
+
+        calls.clear();
+        renderer.onDrawFrame(gl);
+        assertEquals(Arrays.asList("glDisable", "glClearColor", "glClear"), calls);
+
+        calls.clear();
+        position[0] = 33_000;
+        renderer.onDrawFrame(gl);
+        assertEquals(1, countOf("glScissor"));
+        assertEquals(1, countOf("glDrawArrays"));
+        // 清空前关闭裁剪，绘制前打开
+        assertTrue(calls.indexOf("glClear") < calls.indexOf("glEnable"));
+
+        calls.clear();
+        renderer.onDrawFrame(gl);
+        assertEquals(Arrays.asList("glDisable", "glClear", "glEnable", "glDrawArrays"), calls);
+    }
+
+    @Test
+    public void premultipliedOutputDisablesBlending() {
+        AlphaVideoRenderer renderer = new AlphaVideoRenderer(AlphaModel.VIDEO_TRANS_LEFT_ALPHA);
+        renderer.setGlObjects(PROGRAM, VERTEX_BUFFER);
+        renderer.onDrawFrame(gl);
+
+        calls.clear();
+        renderer.setPremultipliedAlpha(true);
+        renderer.onDrawFrame(gl);
+        renderer.onDrawFrame(gl);
+        assertEquals(Arrays.asList("glClear", "glDisable", "glDrawArrays", "glClear", "glDrawArrays"), calls);
+    }
+
+    @Test
+    public void bindTextureUnitKeepsEachLayerBound() {
+        tracker.bindTextureUnit(GL_TEXTURE0, GL_TEXTURE_EXTERNAL_OES, 5);
+        tracker.bindTextureUnit(GL_TEXTURE0 + 1, GL_TEXTURE_EXTERNAL_OES, 6);
+        assertEquals(Arrays.asList("glActiveTexture", "glBindTexture", "glActiveTexture", "glBindTexture"), calls);
+
+        // 两层交替绘制时不需要切换纹理单元
+        calls.clear();
+        tracker.bindTextureUnit(GL_TEXTURE0, GL_TEXTURE_EXTERNAL_OES, 5);
+        tracker.bindTextureUnit(GL_TEXTURE0 + 1, GL_TEXTURE_EXTERNAL_OES, 6);
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    public void frontBlendsPremultipliedOverUnderlay() {
+        AlphaVideoRenderer renderer = new AlphaVideoRenderer(AlphaModel.VIDEO_TRANS_LEFT_ALPHA);
+        renderer.setGlObjects(PROGRAM, VERTEX_BUFFER);
+        renderer.setUnderlay(new OpaqueVideoLayer());
+        renderer.onDrawFrame(gl);
+        assertEquals(1, countOf("glBlendFunc"));
+        assertEquals(1, countOf("glEnable"));
+
+        // 叠在不透明视频上时预乘开关不影响混合方式
+        calls.clear();
+        renderer.setPremultipliedAlpha(true);
+        renderer.onDrawFrame(gl);
+        assertEquals(Arrays.asList("glClear", "glDrawArrays"), calls);
+    }
+
+    @Test
+    public void rendererOnlyClearsWithoutProgram() {
+        // 着色器编译失败时 onSurfaceCreated 提前返回，没有程序也没有 VBO
+        AlphaVideoRenderer renderer = new AlphaVideoRenderer(AlphaModel.VIDEO_TRANS_LEFT_ALPHA);
+        renderer.setUnderlay(new OpaqueVideoLayer());
+        renderer.onSurfaceChanged(gl, 100, 200);
+        renderer.onDrawFrame(gl);
+        renderer.onDrawFrame(gl);
+        assertEquals(2, countOf("glClear"));
+        assertEquals(0, countOf("glDrawArrays"));
+        assertEquals(0, countOf("glUseProgram"));
+        assertEquals(0, countOf("glVertexAttribPointer"));
+    }
+
+    private int countOf(String name) {
+        int count = 0;
+        for (String call : calls) {
+            if (call.equals(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
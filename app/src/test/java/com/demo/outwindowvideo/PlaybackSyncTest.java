@@ -0,0 +1,167 @@
+package com.demo.outwindowvideo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用模拟时钟推进两个假播放器，验证漂移在各种情况下都能收敛
+ */
+public class PlaybackSyncTest {
+
+    private static final long STEP_US = 10_000;
+    private static final long SYNC_INTERVAL_US = 100_000;
+
+    /**
+     * 按模拟时间推进的播放器，rate 模拟解码快慢，跳转要过 seekLatencyUs 才生效
+     */
+    private static class SimulatedPlayer implements PlaybackSync.Follower {
+        long positionUs;
+        boolean playing = true;
+        float speed = 1f;
+        float rate = 1f;
+        long seekLatencyUs;
+        long pendingSeekUs = -1;
+        long seekRemainingUs;
+
+        SimulatedPlayer(long positionUs) {
+            this.positionUs = positionUs;
+        }
+
+        void advance(long us) {
+            if (pendingSeekUs >= 0) {
+                seekRemainingUs -= us;
+                if (seekRemainingUs <= 0) {
+                    positionUs = pendingSeekUs;
+                    pendingSeekUs = -1;
+                }
+                return;
+            }
+            if (playing) {
+                positionUs += Math.round(us * speed * rate);
+            }
+        }
+
+        @Override
+        public long getPositionUs() {
+            return positionUs;
+        }
+
+        @Override
+        public boolean isPlaying() {
+            return playing;
+        }
+
+        @Override
+        public void setSpeed(float speed) {
+            assertTrue("speed set while not playing", playing);
+            this.speed = speed;
+        }
+
+        @Override
+        public void seekTo(long positionUs) {
+            pendingSeekUs = positionUs;
+            seekRemainingUs = seekLatencyUs;
+        }
+
+        @Override
+        public void hold() {
+            playing = false;
+        }
+
+        @Override
+        public void resume() {
+            playing = true;
+        }
+    }
+
+    private final SimulatedPlayer master = new SimulatedPlayer(0);
+
+    /**
+     * 推进 durationUs 的模拟时间，每 {@link #SYNC_INTERVAL_US} 对齐一次
+     */
+    private void run(PlaybackSync sync, SimulatedPlayer follower, long durationUs) {
+        for (long t = 0; t < durationUs; t += STEP_US) {
+            master.advance(STEP_US);
+            follower.advance(STEP_US);
+            if (t % SYNC_INTERVAL_US == 0) {
+                sync.update(t * 1000);
+            }
+        }
+    }
+
+    private static long drift(SimulatedPlayer follower, SimulatedPlayer master) {
+        return follower.positionUs - master.positionUs;
+    }
+
+    @Test
+    public void smallDriftIsCorrectedBySpeedAlone() {
+        SimulatedPlayer follower = new SimulatedPlayer(-120_000);
+        PlaybackSync sync = new PlaybackSync(master, follower);
+        run(sync, follower, 10_000_000);
+
+        assertTrue(Math.abs(drift(follower, master)) <= PlaybackSync.DEFAULT_DEADBAND_US);
+        assertEquals(1f, follower.speed, 0f);
+        assertEquals(0, sync.getSeekCount());
+        assertEquals(0, sync.getHoldCount());
+        assertTrue(sync.getSpeedChangeCount() > 0);
+    }
+
+    @Test
+    public void followerFarAheadIsHeld() {
+        SimulatedPlayer follower = new SimulatedPlayer(600_000);
+        PlaybackSync sync = new PlaybackSync(master, follower);
+        run(sync, follower, 3_000_000);
+
+        assertTrue(follower.playing);
+        assertTrue(Math.abs(drift(follower, master)) <= PlaybackSync.DEFAULT_DEADBAND_US);
+        assertEquals(1, sync.getHoldCount());
+        assertEquals(0, sync.getSeekCount());
+    }
+
+    @Test
+    public void followerFarBehindSeeksThenConverges() {
+        SimulatedPlayer follower = new SimulatedPlayer(-1_000_000);
+        // 跳转期间主视频继续走，跳完还差一点，由调速补上
+        follower.seekLatencyUs = 150_000;
+        PlaybackSync sync = new PlaybackSync(master, follower);
+        run(sync, follower, 10_000_000);
+
+        assertEquals(1, sync.getSeekCount());
+        assertTrue(Math.abs(drift(follower, master)) <= PlaybackSync.DEFAULT_DEADBAND_US);
+        assertEquals(1_000_000, sync.getMaxAbsDriftUs(), 200_000);
+    }
+
+    @Test
+    public void slowDecoderStaysBounded() {
+        SimulatedPlayer follower = new SimulatedPlayer(0);
+        // 跟随视频的解码始终慢1%
+        follower.rate = 0.99f;
+        PlaybackSync sync = new PlaybackSync(master, follower);
+        run(sync, follower, 60_000_000);
+
+        assertEquals(0, sync.getSeekCount());
+        // 比例控制的稳态误差约为 1% * 时间常数
+        assertTrue(sync.getAbsDriftPercentileUs(99) < 3 * PlaybackSync.DEFAULT_DEADBAND_US);
+        assertTrue(follower.speed > 1f);
+    }
+
+    @Test
+    public void pausedMasterIsNotCompared() {
+        SimulatedPlayer follower = new SimulatedPlayer(-100_000);
+        master.playing = false;
+        PlaybackSync sync = new PlaybackSync(master, follower);
+        run(sync, follower, 1_000_000);
+
+        assertEquals(0, sync.getSampleCount());
+        assertEquals(1f, follower.speed, 0f);
+    }
+
+    @Test
+    public void speedIsProportionalAndClamped() {
+        assertEquals(1f, PlaybackSync.speedFor(10_000, 15_000), 0f);
+        assertEquals(1.01f, PlaybackSync.speedFor(-20_000, 15_000), 1e-6f);
+        assertEquals(0.99f, PlaybackSync.speedFor(20_000, 15_000), 1e-6f);
+        assertEquals(1f + PlaybackSync.MAX_SPEED_ADJUST, PlaybackSync.speedFor(-240_000, 15_000), 0f);
+    }
+}
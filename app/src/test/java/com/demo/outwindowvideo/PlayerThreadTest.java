@@ -0,0 +1,120 @@
+package com.demo.outwindowvideo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PlayerThreadTest {
+
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final PlayerThread playerThread = new PlayerThread(scheduled::add, Runnable::run);
+    private final List<String> executed = new ArrayList<>();
+    private final FakeVideoPlayer a = new FakeVideoPlayer();
+    private final FakeVideoPlayer b = new FakeVideoPlayer();
+
+    private void enqueue(VideoPlayer target, int type, String name) {
+        playerThread.enqueue(target, type, () -> executed.add(name));
+    }
+
+    private void runScheduled() {
+        while (!scheduled.isEmpty()) {
+            scheduled.remove(0).run();
+        }
+    }
+
+    @Test
+    public void commandsRunInOrderWithASingleDrain() {
+        enqueue(a, PlayerThread.OPEN, "open");
+        enqueue(a, PlayerThread.START, "start");
+        enqueue(b, PlayerThread.OPEN, "openB");
+        assertEquals(1, scheduled.size());
+        assertTrue(executed.isEmpty());
+
+        runScheduled();
+        assertEquals(Arrays.asList("open", "start", "openB"), executed);
+        assertEquals("executed=3 coalesced=0 pending=0", playerThread.getStats());
+    }
+
+    @Test
+    public void pauseAndStartCancelOut() {
+        enqueue(a, PlayerThread.START, "start");
+        enqueue(a, PlayerThread.PAUSE, "pause");
+        enqueue(a, PlayerThread.START, "start");
+        runScheduled();
+        assertEquals(Arrays.asList("start"), executed);
+        assertEquals("executed=1 coalesced=2 pending=0", playerThread.getStats());
+    }
+
+    @Test
+    public void onlyTheLastSeekIsKept() {
+        enqueue(a, PlayerThread.SEEK, "seek1");
+        enqueue(b, PlayerThread.SEEK, "seekB");
+        enqueue(a, PlayerThread.SEEK, "seek2");
+        runScheduled();
+        // b 的命令隔开了，但合并只看同一个播放器队尾的命令
+        assertEquals(Arrays.asList("seek2", "seekB"), executed);
+    }
+
+    @Test
+    public void commandsAreNotMergedAcrossOtherCommands() {
+        enqueue(a, PlayerThread.PAUSE, "pause");
+        enqueue(a, PlayerThread.SEEK, "seek");
+        enqueue(a, PlayerThread.START, "start");
+        enqueue(null, -1, "work");
+        playerThread.execute(() -> executed.add("work2"));
+        runScheduled();
+        assertEquals(Arrays.asList("pause", "seek", "start", "work", "work2"), executed);
+    }
+
+    @Test
+    public void failingCommandDoesNotStopTheQueue() {
+        playerThread.enqueue(a, PlayerThread.START, () -> {
+            throw new IllegalStateException("fake");
+        });
+        enqueue(b, PlayerThread.START, "startB");
+        runScheduled();
+        assertEquals(Arrays.asList("startB"), executed);
+    }
+
+    @Test
+    public void failureIsReportedToListener() {
+        List<String> failures = new ArrayList<>();
+        PlayerThread thread = new PlayerThread(scheduled::add, Runnable::run,
+                (type, e) -> failures.add(type + ":" + e.getMessage()));
+        thread.enqueue(a, PlayerThread.PREPARE, () -> {
+            throw new IllegalStateException("fake");
+        });
+        thread.enqueue(b, PlayerThread.START, () -> executed.add("startB"));
+        runScheduled();
+        assertEquals(Arrays.asList(PlayerThread.PREPARE + ":fake"), failures);
+        assertEquals(Arrays.asList("startB"), executed);
+    }
+
+    @Test
+    public void errorEscapingTheDrainReschedulesRemainingCommands() {
+        playerThread.enqueue(a, PlayerThread.OPEN, () -> {
+            throw new AssertionError("fake");
+        });
+        enqueue(b, PlayerThread.START, "startB");
+        // Error 不捕获，交给 worker 的未捕获异常处理
+        Error thrown = null;
+        try {
+            scheduled.remove(0).run();
+        } catch (AssertionError e) {
+            thrown = e;
+        }
+        assertEquals("fake", thrown.getMessage());
+        assertEquals(1, scheduled.size());
+
+        runScheduled();
+        assertEquals(Arrays.asList("startB"), executed);
+        enqueue(a, PlayerThread.START, "startA");
+        assertEquals(1, scheduled.size());
+        runScheduled();
+        assertEquals(Arrays.asList("startB", "startA"), executed);
+    }
+}
@@ -0,0 +1,107 @@
+package com.demo.outwindowvideo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 入队顺序、合并和扩容
+ */
+public class RenderEventQueueTest {
+
+    @Test
+    public void drainsInOfferOrder() {
+        RenderEventQueue queue = new RenderEventQueue();
+        List<String> log = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(queue.offer(null, event(log, "e" + i)));
+        }
+        assertEquals(5, queue.size());
+
+        List<Runnable> out = new ArrayList<>();
+        assertEquals(5, queue.drainTo(out));
+        run(out);
+        assertEquals("[e0, e1, e2, e3, e4]", log.toString());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void coalescedEventKeepsFirstSlotAndLatestRunnable() {
+        RenderEventQueue queue = new RenderEventQueue();
+        List<String> log = new ArrayList<>();
+        Object resize = new Object();
+        assertTrue(queue.offer(resize, event(log, "resize1")));
+        assertTrue(queue.offer(null, event(log, "a")));
+        assertFalse(queue.offer(resize, event(log, "resize2")));
+        assertTrue(queue.offer(null, event(log, "b")));
+        assertFalse(queue.offer(resize, event(log, "resize3")));
+        assertEquals(3, queue.size());
+
+        List<Runnable> out = new ArrayList<>();
+        queue.drainTo(out);
+        run(out);
+        assertEquals("[resize3, a, b]", log.toString());
+    }
+
+    @Test
+    public void keyIsNotCoalescedAcrossDrains() {
+        RenderEventQueue queue = new RenderEventQueue();
+        List<String> log = new ArrayList<>();
+        Object key = new Object();
+        queue.offer(key, event(log, "first"));
+        queue.drainTo(new ArrayList<>());
+
+        assertTrue(queue.offer(key, event(log, "second")));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void growsPastCapacityAndKeepsCoalescing() {
+        RenderEventQueue queue = new RenderEventQueue(2);
+        List<String> log = new ArrayList<>();
+        Object early = new Object();
+        Object late = new Object();
+        queue.offer(early, event(log, "early1"));
+        for (int i = 0; i < 10; i++) {
+            queue.offer(null, event(log, "e" + i));
+        }
+        queue.offer(late, event(log, "late1"));
+        // 扩容之后合并仍然要落在原来的槽位上
+        assertFalse(queue.offer(early, event(log, "early2")));
+        assertFalse(queue.offer(late, event(log, "late2")));
+        assertEquals(12, queue.size());
+
+        List<Runnable> out = new ArrayList<>();
+        assertEquals(12, queue.drainTo(out));
+        run(out);
+        assertEquals("[early2, e0, e1, e2, e3, e4, e5, e6, e7, e8, e9, late2]", log.toString());
+    }
+
+    @Test
+    public void reusedAfterDrain() {
+        RenderEventQueue queue = new RenderEventQueue(2);
+        List<String> log = new ArrayList<>();
+        List<Runnable> out = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            queue.offer(null, event(log, "x" + round));
+            queue.offer(null, event(log, "y" + round));
+            queue.offer(null, event(log, "z" + round));
+            queue.drainTo(out);
+        }
+        run(out);
+        assertEquals("[x0, y0, z0, x1, y1, z1, x2, y2, z2]", log.toString());
+    }
+
+    private static Runnable event(List<String> log, String name) {
+        return () -> log.add(name);
+    }
+
+    private static void run(List<Runnable> events) {
+        for (Runnable event : events) {
+            event.run();
+        }
+    }
+}
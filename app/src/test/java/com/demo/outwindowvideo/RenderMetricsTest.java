@@ -0,0 +1,89 @@
+package com.demo.outwindowvideo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 直方图分位数和掉帧统计
+ */
+public class RenderMetricsTest {
+
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    @Test
+    public void bucketsAreContiguous() {
+        long previousUpper = 0;
+        for (int i = 0; i < FrameTimingHistogram.BUCKET_COUNT; i++) {
+            long upper = FrameTimingHistogram.upperBoundMicros(i);
+            assertTrue(upper > previousUpper);
+            assertEquals(i, FrameTimingHistogram.bucketFor(upper - 1));
+            previousUpper = upper;
+        }
+    }
+
+    @Test
+    public void percentilesWithinBucketPrecision() {
+        FrameTimingHistogram histogram = new FrameTimingHistogram();
+        // 1ms ~ 100ms 均匀分布
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+        assertClose(50_000_000L, histogram.getPercentileNanos(50));
+        assertClose(95_000_000L, histogram.getPercentileNanos(95));
+        assertClose(99_000_000L, histogram.getPercentileNanos(99));
+        assertEquals(100_000_000L, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void countsDroppedFramesAgainstExpectedInterval() {
+        RenderMetrics metrics = new RenderMetrics();
+        metrics.setExpectedFrameIntervalNanos(FRAME_NANOS);
+        long now = 1;
+        metrics.onFrameStart(now);
+        for (int i = 0; i < 10; i++) {
+            now += FRAME_NANOS;
+            metrics.onFrameStart(now);
+        }
+        assertEquals(0, metrics.getDroppedFrames());
+
+        // 丢了两帧
+        now += 3 * FRAME_NANOS;
+        metrics.onFrameStart(now);
+        assertEquals(2, metrics.getDroppedFrames());
+        assertEquals(12, metrics.getFrameCount());
+    }
+
+    @Test
+    public void idleGapIsNotJank() {
+        RenderMetrics metrics = new RenderMetrics();
+        metrics.setExpectedFrameIntervalNanos(FRAME_NANOS);
+        metrics.onFrameStart(1);
+        // 暂停了一秒
+        metrics.onFrameStart(1 + 1_000_000_000L);
+        assertEquals(0, metrics.getDroppedFrames());
+        assertEquals(0, metrics.getSampleCount(RenderMetrics.STAGE_FRAME_INTERVAL));
+    }
+
+    @Test
+    public void usesMedianIntervalWhenNoExpectationSet() {
+        RenderMetrics metrics = new RenderMetrics();
+        long videoFrame = 2 * FRAME_NANOS;
+        long now = 1;
+        metrics.onFrameStart(now);
+        for (int i = 0; i < 60; i++) {
+            now += videoFrame;
+            metrics.onFrameStart(now);
+        }
+        // 30fps的视频在60Hz屏幕上不算掉帧
+        assertEquals(0, metrics.getDroppedFrames());
+        now += 2 * videoFrame;
+        metrics.onFrameStart(now);
+        assertEquals(1, metrics.getDroppedFrames());
+    }
+
+    private static void assertClose(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 8);
+    }
+}
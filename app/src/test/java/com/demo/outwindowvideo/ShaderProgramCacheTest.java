@@ -0,0 +1,61 @@
+package com.demo.outwindowvideo;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * 程序二进制磁盘格式和缓存key
+ */
+public class ShaderProgramCacheTest {
+
+    @Test
+    public void entryRoundTrip() throws Exception {
+        byte[] binary = new byte[10_000];
+        for (int i = 0; i < binary.length; i++) {
+            binary[i] = (byte) i;
+        }
+        byte[] file = write(new ShaderProgramCache.Entry(0x8741, binary));
+
+        ShaderProgramCache.Entry entry = ShaderProgramCache.readEntry(new ByteArrayInputStream(file));
+        assertNotNull(entry);
+        assertEquals(0x8741, entry.format);
+        assertArrayEquals(binary, entry.binary);
+    }
+
+    @Test
+    public void rejectsTruncatedOrForeignFiles() throws Exception {
+        byte[] file = write(new ShaderProgramCache.Entry(1, new byte[64]));
+
+        byte[] truncated = Arrays.copyOf(file, file.length - 1);
+        assertNull(ShaderProgramCache.readEntry(new ByteArrayInputStream(truncated)));
+
+        byte[] trailing = Arrays.copyOf(file, file.length + 1);
+        assertNull(ShaderProgramCache.readEntry(new ByteArrayInputStream(trailing)));
+
+        byte[] foreign = file.clone();
+        foreign[0] ^= 1;
+        assertNull(ShaderProgramCache.readEntry(new ByteArrayInputStream(foreign)));
+
+        assertNull(ShaderProgramCache.readEntry(new ByteArrayInputStream(new byte[0])));
+    }
+
+    @Test
+    public void keyDependsOnEverySource() {
+        String key = ShaderProgramCache.hash("vs\0fs");
+        assertEquals(64, key.length());
+        assertEquals(key, ShaderProgramCache.hash("vs\0fs"));
+        assertNotEquals(key, ShaderProgramCache.hash("vs\0fs2"));
+        assertNotEquals(key, ShaderProgramCache.hash("vs2\0fs"));
+    }
+
+    private static byte[] write(ShaderProgramCache.Entry entry) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ShaderProgramCache.writeEntry(out, entry);
+        return out.toByteArray();
+    }
+}
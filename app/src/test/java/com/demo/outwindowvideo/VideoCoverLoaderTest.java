@@ -0,0 +1,25 @@
+package com.demo.outwindowvideo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class VideoCoverLoaderTest {
+
+    @Test
+    public void coverFillsTargetKeepingAspectRatio() {
+        // 横屏视频放进正方形视图，按高铺满
+        assertArrayEquals(new int[]{356, 200}, VideoCoverLoader.scaledSize(1280, 720, 200, 200));
+        assertArrayEquals(new int[]{400, 225}, VideoCoverLoader.scaledSize(1280, 720, 400, 100));
+    }
+
+    @Test
+    public void coverIsNeverUpscaled() {
+        assertArrayEquals(new int[]{320, 180}, VideoCoverLoader.scaledSize(320, 180, 1080, 1920));
+    }
+
+    @Test
+    public void unknownVideoSizeUsesTargetSize() {
+        assertArrayEquals(new int[]{300, 200}, VideoCoverLoader.scaledSize(0, 0, 300, 200));
+    }
+}
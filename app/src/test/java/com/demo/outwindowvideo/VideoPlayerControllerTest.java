@@ -0,0 +1,233 @@
+package com.demo.outwindowvideo;
+
+import android.media.MediaPlayer;
+
+import org.junit.Test;
+
+import java.io.FileDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用假引擎验证状态机只在允许的状态下调用引擎
+ */
+public class VideoPlayerControllerTest {
+
+    private final List<FakeVideoPlayer> created = new ArrayList<>();
+    private final VideoPlayer.Factory factory = () -> {
+        FakeVideoPlayer player = new FakeVideoPlayer();
+        created.add(player);
+        return player;
+    };
+    private final VideoPlayerPool pool = new VideoPlayerPool(1, 1, PlayerThread.direct());
+    private final VideoPlayerController controller = new VideoPlayerController(factory, pool);
+
+    private FakeVideoPlayer open() {
+        controller.open(new FileDescriptor(), 0, 100);
+        return created.get(created.size() - 1);
+    }
+
+    @Test
+    public void startBeforePreparedIsIgnored() {
+        FakeVideoPlayer player = open();
+        assertEquals(PlayerState.PREPARING, controller.getState());
+        controller.start();
+        assertFalse(player.calls.contains("start"));
+        assertEquals(-1, controller.getPositionUs());
+
+        player.prepared(640, 360);
+        controller.start();
+        assertEquals(PlayerState.PLAYING, controller.getState());
+        assertEquals(Arrays.asList("setSurface", "setDataSource", "prepareAsync", "start"), player.calls);
+        assertEquals(640, controller.getVideoWidth());
+    }
+
+    @Test
+    public void startAfterStopPreparesAgain() {
+        FakeVideoPlayer player = open();
+        player.prepared(640, 360);
+        controller.start();
+        controller.stop();
+        assertEquals(PlayerState.STOPPED, controller.getState());
+
+        player.calls.clear();
+        controller.start();
+        assertEquals(Arrays.asList("prepareAsync"), player.calls);
+        player.prepared(640, 360);
+        assertEquals(PlayerState.PLAYING, controller.getState());
+        assertEquals(Arrays.asList("prepareAsync", "start"), player.calls);
+    }
+
+    @Test
+    public void reopeningResetsAndRestoresSurface() {
+        FakeVideoPlayer player = open();
+        player.prepared(640, 360);
+        controller.start();
+
+        player.calls.clear();
+        open();
+        assertEquals(1, created.size());
+        assertEquals(Arrays.asList("stop", "reset", "setSurface", "setDataSource", "prepareAsync"), player.calls);
+    }
+
+    @Test
+    public void speedAndSeekNeedAPreparedPlayer() {
+        FakeVideoPlayer player = open();
+        controller.setPlaybackSpeed(1.02f);
+        controller.seekTo(1_000_000);
+        assertEquals(Arrays.asList("setSurface", "setDataSource", "prepareAsync"), player.calls);
+
+        player.prepared(640, 360);
+        controller.setPlaybackSpeed(1.02f);
+        assertEquals(1f, player.speed, 0f);
+        controller.seekTo(1_000_000);
+        assertEquals(1_000_000, controller.getPositionUs());
+
+        controller.start();
+        controller.setPlaybackSpeed(1.02f);
+        assertEquals(1.02f, player.speed, 0f);
+    }
+
+    @Test
+    public void callbacksUpdateStateAndReachListeners() {
+        final int[] events = new int[3];
+        controller.setOnFrameListener(() -> events[0]++);
+        controller.setOnErrorListener((mp, frameworkErr, implErr) -> {
+            assertNull(mp);
+            events[1] = implErr;
+        });
+        controller.setOnVideoSizeChangedListener((width, height) -> events[2] = width);
+        FakeVideoPlayer player = open();
+        player.prepared(640, 360);
+        player.firstFrame();
+        controller.start();
+        player.complete();
+        assertEquals(PlayerState.PLAYBACK_COMPLETED, controller.getState());
+        player.error(MediaPlayer.MEDIA_ERROR_IO);
+
+        assertEquals(PlayerState.ERROR, controller.getState());
+        assertEquals(1, events[0]);
+        assertEquals(MediaPlayer.MEDIA_ERROR_IO, events[1]);
+        assertEquals(640, events[2]);
+    }
+
+    @Test
+    public void dataSourceFailureIsReportedAsError() {
+        controller.setOnErrorListener((mp, frameworkErr, implErr) ->
+                assertEquals(MediaPlayer.MEDIA_ERROR_IO, implErr));
+        controller.open(new FileDescriptor(), 0, 100);
+        FakeVideoPlayer player = created.get(0);
+        player.failDataSource = true;
+        controller.open(new FileDescriptor(), 0, 100);
+
+        assertEquals(PlayerState.ERROR, controller.getState());
+        assertFalse(player.calls.subList(player.calls.lastIndexOf("setDataSource"), player.calls.size())
+                .contains("prepareAsync"));
+    }
+
+    @Test
+    public void releaseReturnsEngineToPool() {
+        FakeVideoPlayer first = open();
+        first.prepared(640, 360);
+        controller.release();
+        assertEquals(PlayerState.END, controller.getState());
+        assertFalse(first.released);
+        assertNull(first.listener);
+        assertEquals("reset", first.calls.get(first.calls.size() - 1));
+        assertEquals(-1, controller.getPositionUs());
+        controller.start();
+
+        FakeVideoPlayer second = open();
+        assertSame(first, second);
+        assertEquals(1, created.size());
+        assertEquals(PlayerState.PREPARING, controller.getState());
+    }
+
+    @Test
+    public void erroredEngineIsNotReused() {
+        FakeVideoPlayer player = open();
+        player.error(MediaPlayer.MEDIA_ERROR_IO);
+        controller.release();
+        assertTrue(player.released);
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void changingFactoryReturnsEngine() {
+        FakeVideoPlayer player = open();
+        controller.setFactory(VideoPlayer.MEDIA_CODEC);
+        assertTrue(player.calls.contains("reset"));
+        assertEquals(PlayerState.END, controller.getState());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void reclaimedPlayerResumesWhereItStopped() {
+        FakeVideoPlayer player = open();
+        player.prepared(640, 360);
+        controller.start();
+        controller.seekTo(2_000_000);
+        controller.pause();
+
+        // 池子只有一个名额，另一个视图打开视频时收回暂停中的播放器
+        VideoPlayerController other = new VideoPlayerController(factory, pool);
+        other.open(new FileDescriptor(), 0, 100);
+        assertEquals(PlayerState.STOPPED, controller.getState());
+        assertEquals(PlayerState.PREPARING, other.getState());
+        assertEquals(1, created.size());
+
+        // other 在播放，不能收回，只能排队
+        player.prepared(640, 360);
+        other.start();
+        controller.start();
+        assertEquals(1, pool.getWaitingCount());
+
+        other.release();
+        assertEquals(PlayerState.PREPARING, controller.getState());
+        player.calls.clear();
+        player.prepared(640, 360);
+        assertEquals(Arrays.asList("seekTo", "start"), player.calls);
+        assertEquals(2_000_000, player.positionUs);
+        assertEquals(PlayerState.PLAYING, controller.getState());
+    }
+
+    @Test
+    public void adoptTakesOverPreparedPlayerAndBindsSurface() {
+        final int[] width = new int[1];
+        controller.setOnVideoSizeChangedListener((w, h) -> width[0] = w);
+        // 预加载的控制器没有 surface
+        VideoPlayerController preloaded = new VideoPlayerController(factory, pool);
+        preloaded.open(new FileDescriptor(), 0, 100);
+        FakeVideoPlayer player = created.get(0);
+        player.prepared(640, 360);
+        assertNull(player.surface);
+
+        assertTrue(controller.adopt(preloaded));
+        assertEquals(PlayerState.PREPARED, controller.getState());
+        assertEquals(PlayerState.END, preloaded.getState());
+        assertEquals(640, width[0]);
+        // 引擎的回调改送到接手的控制器
+        player.listener.onVideoSizeChanged(320, 180);
+        assertEquals(320, width[0]);
+        assertEquals("setSurface", player.calls.get(player.calls.size() - 1));
+
+        // 借用关系也转过来了，释放后回到池里
+        controller.start();
+        assertEquals("start", player.calls.get(player.calls.size() - 1));
+        controller.release();
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    public void adoptRefusesAnotherEngine() {
+        VideoPlayerController preloaded = new VideoPlayerController(VideoPlayer.MEDIA_CODEC, pool);
+        assertFalse(controller.adopt(preloaded));
+
+        VideoPlayerController idle = new VideoPlayerController(factory, pool);
+        assertFalse(controller.adopt(idle));
+    }
+}
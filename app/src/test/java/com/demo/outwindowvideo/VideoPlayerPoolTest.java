@@ -0,0 +1,156 @@
+package com.demo.outwindowvideo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VideoPlayerPoolTest {
+
+    private final List<FakeVideoPlayer> created = new ArrayList<>();
+    private final VideoPlayer.Factory factory = () -> {
+        FakeVideoPlayer player = new FakeVideoPlayer();
+        created.add(player);
+        return player;
+    };
+
+    private static final class TestBorrower implements VideoPlayerPool.Borrower {
+        boolean reclaimable = true;
+        VideoPlayer player;
+        VideoPlayer reclaimed;
+
+        @Override
+        public boolean isReclaimable() {
+            return reclaimable;
+        }
+
+        @Override
+        public void onPlayerGranted(VideoPlayer player) {
+            this.player = player;
+        }
+
+        @Override
+        public void onPlayerReclaimed(VideoPlayer player) {
+            this.reclaimed = player;
+            this.player = null;
+        }
+    }
+
+    @Test
+    public void recycledPlayerIsReusedAfterReset() {
+        VideoPlayerPool pool = new VideoPlayerPool(2, 2, PlayerThread.direct());
+        TestBorrower a = new TestBorrower();
+        pool.acquire(factory, a);
+        VideoPlayer first = a.player;
+        pool.recycle(a);
+        assertTrue(created.get(0).calls.contains("reset"));
+        assertEquals(1, pool.getIdleCount());
+
+        TestBorrower b = new TestBorrower();
+        pool.acquire(factory, b);
+        assertSame(first, b.player);
+        assertEquals(1, created.size());
+        assertTrue(pool.getStats().startsWith("acquires=2 hits=1 (50%) creates=1"));
+    }
+
+    @Test
+    public void idlePlayersOfAnotherEngineAreNotReused() {
+        VideoPlayerPool pool = new VideoPlayerPool(2, 2, PlayerThread.direct());
+        TestBorrower a = new TestBorrower();
+        pool.acquire(factory, a);
+        pool.recycle(a);
+
+        VideoPlayer.Factory other = FakeVideoPlayer::new;
+        pool.acquire(other, a);
+        assertNotSame(created.get(0), a.player);
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void leastRecentlyReturnedIdlePlayerIsEvicted() {
+        VideoPlayerPool pool = new VideoPlayerPool(3, 1, PlayerThread.direct());
+        TestBorrower a = new TestBorrower();
+        TestBorrower b = new TestBorrower();
+        pool.acquire(factory, a);
+        pool.acquire(factory, b);
+        pool.recycle(a);
+        pool.recycle(b);
+
+        assertEquals(1, pool.getIdleCount());
+        assertTrue(created.get(0).released);
+        assertFalse(created.get(1).released);
+        assertTrue(pool.getStats().contains("evictions=1"));
+
+        pool.trimIdle();
+        assertTrue(created.get(1).released);
+    }
+
+    @Test
+    public void fullPoolReclaimsLeastRecentlyUsedIdleBorrower() {
+        VideoPlayerPool pool = new VideoPlayerPool(2, 2, PlayerThread.direct());
+        TestBorrower a = new TestBorrower();
+        TestBorrower b = new TestBorrower();
+        pool.acquire(factory, a);
+        pool.acquire(factory, b);
+        // a 刚用过，b 变成最久没用的
+        pool.touch(a);
+
+        TestBorrower c = new TestBorrower();
+        pool.acquire(factory, c);
+        assertNull(b.player);
+        assertSame(b.reclaimed, c.player);
+        assertNotNull(a.player);
+        assertEquals(2, created.size());
+        assertEquals(2, pool.getActiveCount());
+    }
+
+    @Test
+    public void playingBorrowersAreNotReclaimedAndNewcomersWait() {
+        VideoPlayerPool pool = new VideoPlayerPool(1, 1, PlayerThread.direct());
+        TestBorrower a = new TestBorrower();
+        a.reclaimable = false;
+        pool.acquire(factory, a);
+
+        TestBorrower b = new TestBorrower();
+        pool.acquire(factory, b);
+        pool.acquire(factory, b);
+        assertNull(b.player);
+        assertEquals(1, pool.getWaitingCount());
+
+        // a 暂停后被收回给排队的 b
+        a.reclaimable = true;
+        pool.touch(a);
+        assertNotNull(b.player);
+        assertNull(a.player);
+        assertEquals(0, pool.getWaitingCount());
+        assertTrue(pool.getStats().contains("reclaims=1 evictions=0 waits=1"));
+    }
+
+    @Test
+    public void cancelledWaiterIsNotGranted() {
+        VideoPlayerPool pool = new VideoPlayerPool(1, 1, PlayerThread.direct());
+        TestBorrower a = new TestBorrower();
+        a.reclaimable = false;
+        pool.acquire(factory, a);
+        TestBorrower b = new TestBorrower();
+        pool.acquire(factory, b);
+        pool.cancel(b);
+
+        pool.recycle(a);
+        assertNull(b.player);
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void discardedPlayerIsReleased() {
+        VideoPlayerPool pool = new VideoPlayerPool(1, 1, PlayerThread.direct());
+        TestBorrower a = new TestBorrower();
+        pool.acquire(factory, a);
+        pool.discard(a);
+        assertTrue(created.get(0).released);
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(0, pool.getActiveCount());
+    }
+}
@@ -0,0 +1,179 @@
+package com.demo.outwindowvideo;
+
+import org.junit.Test;
+
+import java.io.FileDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用假引擎和同步的播放线程验证预加载的调度、预算、取消和交接
+ */
+public class VideoPreloaderTest {
+
+    /**
+     * 10x10 的视频按6个 YUV420 缓冲区估算
+     */
+    private static final long VIDEO_BYTES = 10 * 10 * 3 / 2 * 6;
+
+    private final List<FakeVideoPlayer> created = new ArrayList<>();
+    private final VideoPlayer.Factory factory = () -> {
+        FakeVideoPlayer player = new FakeVideoPlayer();
+        created.add(player);
+        return player;
+    };
+    private final List<String> opened = new ArrayList<>();
+    private final Map<String, FakeVideoPlayer> players = new HashMap<>();
+    private VideoPlayerPool pool;
+
+    /**
+     * 不留空闲播放器，每次打开都新建一个，按文件名记下
+     */
+    private VideoPreloader preloader(int maxActive) {
+        pool = new VideoPlayerPool(maxActive, 0, PlayerThread.direct());
+        VideoPreloader preloader = new VideoPreloader((controller, assetsFileName) -> {
+            opened.add(assetsFileName);
+            controller.open(new FileDescriptor(), 0, 100);
+            players.put(assetsFileName, created.get(created.size() - 1));
+        }, pool);
+        preloader.setVideoPlayerFactory(factory);
+        return preloader;
+    }
+
+    private void prepared(String assetsFileName) {
+        players.get(assetsFileName).prepared(10, 10);
+    }
+
+    @Test
+    public void preparesOneAtATimeInListOrder() {
+        VideoPreloader preloader = preloader(4);
+        preloader.preload(Arrays.asList("a", "b", "c"));
+        // 默认最多预加载两个
+        assertEquals(Arrays.asList("a"), opened);
+
+        prepared("a");
+        assertEquals(Arrays.asList("a", "b"), opened);
+        prepared("b");
+        assertEquals(Arrays.asList("a", "b"), opened);
+        assertTrue(preloader.getStats().startsWith("requested=2 prepared=2 "));
+    }
+
+    @Test
+    public void decoderIsReservedForVisibleViews() {
+        VideoPreloader preloader = preloader(2);
+        preloader.preload(Arrays.asList("a", "b"));
+        prepared("a");
+        // 再借一个池子就只剩给屏幕上视图的名额了
+        assertEquals(Arrays.asList("a"), opened);
+        assertEquals(1, pool.getActiveCount());
+
+        preloader.handOver("a", new VideoPlayerController(factory, pool));
+        assertEquals(1, pool.getActiveCount());
+        assertEquals(Arrays.asList("a"), opened);
+    }
+
+    @Test
+    public void schedulingStopsAtMemoryBudget() {
+        VideoPreloader preloader = preloader(4);
+        preloader.setBudget(3, VIDEO_BYTES);
+        preloader.preload(Arrays.asList("a", "b", "c"));
+        prepared("a");
+        assertEquals(Arrays.asList("a"), opened);
+        assertTrue(preloader.getStats().contains("overBudget=0"));
+    }
+
+    @Test
+    public void farthestPreparedIsEvictedOverBudget() {
+        VideoPreloader preloader = preloader(8);
+        preloader.setBudget(3, VIDEO_BYTES * 2 + 1);
+        preloader.preload(Arrays.asList("a", "b", "c"));
+        prepared("a");
+        prepared("b");
+        prepared("c");
+        assertTrue(players.get("c").calls.contains("release"));
+        assertTrue(preloader.getStats().contains("overBudget=1"));
+
+        // 收紧预算时同样从最远的开始
+        preloader.setBudget(3, VIDEO_BYTES);
+        assertTrue(players.get("b").calls.contains("release"));
+        assertFalse(players.get("a").calls.contains("release"));
+        assertTrue(preloader.getStats().contains("overBudget=2"));
+        assertTrue(preloader.getStats().endsWith("pending=1"));
+    }
+
+    @Test
+    public void loweringMaxPreparedCancelsFarthest() {
+        VideoPreloader preloader = preloader(4);
+        preloader.preload(Arrays.asList("a", "b"));
+        prepared("a");
+        preloader.setBudget(1, VIDEO_BYTES * 4);
+        assertTrue(players.get("b").calls.contains("release"));
+        assertTrue(preloader.getStats().contains("cancelled=1"));
+        assertTrue(preloader.getStats().endsWith("pending=1"));
+    }
+
+    @Test
+    public void entriesLeavingTheListAreCancelled() {
+        VideoPreloader preloader = preloader(4);
+        preloader.preload(Arrays.asList("a", "b"));
+        prepared("a");
+        assertEquals(Arrays.asList("a", "b"), opened);
+
+        // 用户划过了 a，b 还在准备，c 排在后面
+        preloader.preload(Arrays.asList("b", "c"));
+        assertTrue(players.get("a").calls.contains("release"));
+        assertFalse(players.get("b").calls.contains("release"));
+        assertEquals(Arrays.asList("a", "b"), opened);
+        assertTrue(preloader.getStats().startsWith("requested=3 "));
+        assertTrue(preloader.getStats().contains("cancelled=1"));
+
+        prepared("b");
+        assertEquals(Arrays.asList("a", "b", "c"), opened);
+        assertFalse(preloader.handOver("a", new VideoPlayerController(factory, pool)));
+    }
+
+    @Test
+    public void preparedPlayerIsHandedOver() {
+        VideoPreloader preloader = preloader(4);
+        preloader.preload(Arrays.asList("a"));
+        prepared("a");
+
+        VideoPlayerController target = new VideoPlayerController(factory, pool);
+        assertTrue(preloader.handOver("a", target));
+        assertEquals(PlayerState.PREPARED, target.getState());
+        assertEquals(10, target.getVideoWidth());
+        assertEquals(1, created.size());
+
+        players.get("a").calls.clear();
+        target.start();
+        assertEquals(Arrays.asList("start"), players.get("a").calls);
+        assertTrue(preloader.getStats().contains("handedOver=1 misses=0"));
+        assertTrue(preloader.getStats().endsWith("pending=0"));
+    }
+
+    @Test
+    public void preparingPlayerIsHandedOverAndFinishesForTheView() {
+        VideoPreloader preloader = preloader(4);
+        preloader.preload(Arrays.asList("a"));
+
+        VideoPlayerController target = new VideoPlayerController(factory, pool);
+        assertTrue(preloader.handOver("a", target));
+        assertEquals(PlayerState.PREPARING, target.getState());
+        prepared("a");
+        assertEquals(PlayerState.PREPARED, target.getState());
+    }
+
+    @Test
+    public void unknownVideoIsAMiss() {
+        VideoPreloader preloader = preloader(4);
+        preloader.preload(Arrays.asList("a"));
+        assertFalse(preloader.handOver("b", new VideoPlayerController(factory, pool)));
+        assertTrue(preloader.getStats().contains("handedOver=0 misses=1"));
+        assertTrue(preloader.getStats().endsWith("pending=1"));
+    }
+}
@@ -0,0 +1,155 @@
+package com.demo.outwindowvideo.benchmark;
+
+import com.demo.outwindowvideo.kernel.AlphaKernels;
+import com.demo.outwindowvideo.kernel.PackedLayout;
+import com.demo.outwindowvideo.kernel.YuvPlanes;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU合成的吞吐量，megapixels 计数器即每秒合成的百万像素数（按输出像素计）
+ * <p>
+ * ./gradlew :benchmark:jmh
+ *
+ * @since 2026/10/17
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class AlphaKernelsBenchmark {
+
+    private static final float[] LEFT_HALF = {0f, 0f, 0.5f, 1f};
+    private static final float[] RIGHT_HALF = {0.5f, 0f, 0.5f, 1f};
+    private static final float[] QUARTER_STRIP_COLOR = {0f, 0f, 0.8f, 1f};
+    private static final float[] QUARTER_STRIP_ALPHA = {0.8f, 0f, 0.2f, 0.25f};
+
+    /**
+     * 输出（彩色部分）的分辨率
+     */
+    @Param({"1280x720", "1920x1080"})
+    public String size;
+
+    /**
+     * side：左右各一半的全分辨率透明度；quarter：右侧窄条里四分之一分辨率的透明度，需要双线性放大
+     */
+    @Param({"side", "quarter"})
+    public String layoutName;
+
+    @Param({"false", "true"})
+    public boolean premultiplied;
+
+    private PackedLayout layout;
+    private int[] packed;
+    private int[] out;
+    private ByteBuffer packedBytes;
+    private ByteBuffer outBytes;
+    private YuvPlanes yuv;
+    private ForkJoinPool pool;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Pixels {
+        public double megapixels;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            megapixels = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+        if ("side".equals(layoutName)) {
+            layout = PackedLayout.of(width * 2, height, LEFT_HALF, RIGHT_HALF);
+        } else {
+            layout = PackedLayout.of(width + width / 4, height, QUARTER_STRIP_COLOR, QUARTER_STRIP_ALPHA);
+        }
+        int packedPixels = layout.getPackedWidth() * layout.getPackedHeight();
+        packed = new int[packedPixels];
+        Random random = new Random(1);
+        for (int i = 0; i < packedPixels; i++) {
+            packed[i] = random.nextInt();
+        }
+        out = new int[layout.getWidth() * layout.getHeight()];
+        packedBytes = ByteBuffer.allocateDirect(packedPixels * 4);
+        for (int i = 0; i < packedPixels; i++) {
+            packedBytes.putInt(i * 4, packed[i]);
+        }
+        outBytes = ByteBuffer.allocateDirect(out.length * 4);
+        // I420，同解码器输出到 ImageReader 的 YUV_420_888
+        int chromaWidth = (layout.getPackedWidth() + 1) / 2;
+        int chromaHeight = (layout.getPackedHeight() + 1) / 2;
+        yuv = new YuvPlanes().set(randomBytes(random, packedPixels), layout.getPackedWidth(),
+                randomBytes(random, chromaWidth * chromaHeight), randomBytes(random, chromaWidth * chromaHeight),
+                chromaWidth, 1);
+        pool = new ForkJoinPool();
+    }
+
+    private static ByteBuffer randomBytes(Random random, int count) {
+        byte[] bytes = new byte[count];
+        random.nextBytes(bytes);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(count);
+        buffer.put(bytes).rewind();
+        return buffer;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int[] intArray(Pixels pixels) {
+        AlphaKernels.composite(packed, layout, premultiplied, out);
+        pixels.megapixels += out.length / 1e6;
+        return out;
+    }
+
+    @Benchmark
+    public int[] intArrayParallel(Pixels pixels) {
+        AlphaKernels.compositeParallel(pool, packed, layout, premultiplied, out);
+        pixels.megapixels += out.length / 1e6;
+        return out;
+    }
+
+    @Benchmark
+    public ByteBuffer byteBuffer(Pixels pixels) {
+        AlphaKernels.composite(packedBytes, layout.getPackedWidth() * 4, layout, premultiplied,
+                outBytes, layout.getWidth() * 4);
+        pixels.megapixels += out.length / 1e6;
+        return outBytes;
+    }
+
+    @Benchmark
+    public ByteBuffer byteBufferParallel(Pixels pixels) {
+        AlphaKernels.compositeParallel(pool, packedBytes, layout.getPackedWidth() * 4, layout, premultiplied,
+                outBytes, layout.getWidth() * 4);
+        pixels.megapixels += out.length / 1e6;
+        return outBytes;
+    }
+
+    @Benchmark
+    public ByteBuffer yuvParallel(Pixels pixels) {
+        AlphaKernels.compositeYuvParallel(pool, yuv, layout, premultiplied, outBytes, layout.getWidth() * 4);
+        pixels.megapixels += out.length / 1e6;
+        return outBytes;
+    }
+}
@@ -0,0 +1,153 @@
+package com.demo.outwindowvideo.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GLThread 等待/唤醒方式的开销：threads 个渲染线程按 GLThread 的方式挂起，每次只请求其中一个渲染一帧
+ * <p>
+ * global 是原先所有线程共用 glThreadManager 一把锁的做法，perThread 是每个线程一把锁。
+ * 主结果是每秒渲染的帧数，wakeups 计数器是每秒从 wait() 返回的次数，两者相除即每帧的唤醒次数，
+ * perThread 下应当接近 1。
+ * <p>
+ * ./gradlew :benchmark:jmh
+ *
+ * @since 2026/10/17
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class GLThreadSignallingBenchmark {
+
+    @Param({"global", "perThread"})
+    public String monitor;
+
+    @Param({"8"})
+    public int threads;
+
+    private final AtomicLong wakeups = new AtomicLong();
+    private final List<FakeRenderThread> renderThreads = new ArrayList<>();
+    private FakeRenderThread target;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Wakeups {
+        public long wakeups;
+        private long last;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            wakeups = 0;
+            last = -1;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Object globalLock = "global".equals(monitor) ? new Object() : null;
+        for (int i = 0; i < threads; i++) {
+            FakeRenderThread thread = new FakeRenderThread(globalLock, wakeups);
+            renderThreads.add(thread);
+            thread.start();
+        }
+        target = renderThreads.get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        for (FakeRenderThread thread : renderThreads) {
+            thread.requestExitAndWait();
+        }
+        renderThreads.clear();
+    }
+
+    @Benchmark
+    public int requestRender(Wakeups counters) throws InterruptedException {
+        if (counters.last < 0) {
+            counters.last = wakeups.get();
+        }
+        int frames = target.requestRenderAndWait();
+        // 空闲线程是异步醒来的，按累计值算差，晚到的唤醒记到下一帧里
+        long now = wakeups.get();
+        counters.wakeups += now - counters.last;
+        counters.last = now;
+        return frames;
+    }
+
+    /**
+     * 照搬 GLThread 的 wait/notify 协议，不做任何 EGL 操作
+     */
+    private static class FakeRenderThread extends Thread {
+        private final Object lock;
+        private final AtomicLong wakeups;
+
+        private boolean requestRender;
+        private boolean shouldExit;
+        private boolean exited;
+        private int framesRendered;
+
+        FakeRenderThread(Object globalLock, AtomicLong wakeups) {
+            this.lock = globalLock != null ? globalLock : new Object();
+            this.wakeups = wakeups;
+        }
+
+        @Override
+        public void run() {
+            synchronized (lock) {
+                try {
+                    while (!shouldExit) {
+                        if (requestRender) {
+                            requestRender = false;
+                            framesRendered++;
+                            lock.notifyAll();
+                            continue;
+                        }
+                        lock.wait();
+                        wakeups.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    // 正常退出
+                } finally {
+                    exited = true;
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        int requestRenderAndWait() throws InterruptedException {
+            synchronized (lock) {
+                int target = framesRendered + 1;
+                requestRender = true;
+                lock.notifyAll();
+                while (framesRendered < target) {
+                    lock.wait();
+                }
+                return framesRendered;
+            }
+        }
+
+        void requestExitAndWait() throws InterruptedException {
+            synchronized (lock) {
+                shouldExit = true;
+                lock.notifyAll();
+                while (!exited) {
+                    lock.wait();
+                }
+            }
+        }
+    }
+}